@@ -2,6 +2,7 @@ package ontologizer.calculation;
 
 import static ontologizer.ontology.TermID.tid;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static ontologizer.calculation.CalculationTestUtils.asList;
 
 import java.io.File;
@@ -11,6 +12,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -19,6 +22,8 @@ import ontologizer.OntologizerThreadGroups;
 import ontologizer.association.AssociationContainer;
 import ontologizer.calculation.b2g.B2GParam;
 import ontologizer.calculation.b2g.Bayes2GOCalculation;
+import ontologizer.calculation.b2g.Bayes2GOCalculation.Bayes2GOCalculationProgress;
+import ontologizer.calculation.b2g.Bayes2GOCalculation.Bayes2GOTemperingProgress;
 import ontologizer.calculation.b2g.Bayes2GOEnrichedGOTermsResult;
 import ontologizer.calculation.b2g.Bayes2GOGOTermProperties;
 import ontologizer.dotwriter.AbstractDotAttributesProvider;
@@ -96,6 +101,166 @@ public class Bayes2GOCalculationTest
 		assertEquals(0, marg(result, "GO:0000002"), 1e-5);
 	}
 
+	private static EnrichedGOTermsResult calculateWithChains(SingleCalculationSetting scs, Ontology ontology, AssociationContainer assoc,
+			int mcmcSteps, ExecutorService executor, Bayes2GOCalculationProgress progress)
+	{
+		Bayes2GOCalculation calc = new Bayes2GOCalculation();
+		calc.setSeed(2);
+		calc.setMcmcSteps(mcmcSteps);
+		calc.setAlpha(B2GParam.Type.MCMC);
+		calc.setBeta(B2GParam.Type.MCMC);
+		calc.setExpectedNumber(2);
+		calc.setNumberOfChains(4);
+		calc.setExecutor(executor);
+		calc.setBayes2GOCalculationProgress(progress);
+		return calc.calculateStudySet(ontology, assoc, scs.pop, scs.study, new None());
+	}
+
+	@Test
+	public void testBayes2GOMultipleChains()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+
+		final int [] lastStep = new int[1];
+		EnrichedGOTermsResult result = calculateWithChains(scs, ontology, assoc, 520000, null, new Bayes2GOCalculationProgress()
+		{
+			@Override
+			public void update(int iterationNumber, int step, double acceptProb, int numAccept, double score)
+			{
+				lastStep[0] = step;
+			}
+		});
+		assertEquals(11, result.getSize());
+		assertEquals(1, marg(result, "GO:0000004"), 1e-5);
+		assertEquals(1, marg(result, "GO:0000010"), 1e-5);
+		assertEquals(0, marg(result, "GO:0000011"), 1e-5);
+		assertEquals(0, marg(result, "GO:0000001"), 1e-5);
+
+		/* The chains have been stopped before each one has performed its share of the steps */
+		assertTrue(lastStep[0] + 1 < 520000 / 4);
+
+		/* The chains are independent of the thread they are run on */
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			EnrichedGOTermsResult parallelResult = calculateWithChains(scs, ontology, assoc, 520000, executor, null);
+			for (AbstractGOTermProperties prop : result)
+				assertEquals(((Bayes2GOGOTermProperties)prop).marg, marg(parallelResult, prop.term.toString()), 0.0);
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testBayes2GOChainsShorterThanBurnin()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+
+		/* Each chain gets 15000 steps, which is less than the default burn-in */
+		EnrichedGOTermsResult result = calculateWithChains(scs, ontology, assoc, 60000, null, null);
+		assertEquals(11, result.getSize());
+		for (AbstractGOTermProperties prop : result)
+		{
+			double marg = ((Bayes2GOGOTermProperties)prop).marg;
+			assertTrue(marg >= 0 && marg <= 1);
+		}
+	}
+
+	private static EnrichedGOTermsResult calculateTempered(SingleCalculationSetting scs, Ontology ontology, AssociationContainer assoc,
+			ExecutorService executor, Bayes2GOCalculationProgress progress)
+	{
+		Bayes2GOCalculation calc = new Bayes2GOCalculation();
+		calc.setSeed(2);
+		calc.setMcmcSteps(200000);
+		calc.setAlpha(B2GParam.Type.MCMC);
+		calc.setBeta(B2GParam.Type.MCMC);
+		calc.setExpectedNumber(2);
+		calc.setNumberOfTemperatures(4);
+		calc.setNumberOfChains(2);
+		calc.setExecutor(executor);
+		calc.setBayes2GOCalculationProgress(progress);
+		return calc.calculateStudySet(ontology, assoc, scs.pop, scs.study, new None());
+	}
+
+	@Test
+	public void testBayes2GOTempering()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+
+		final double [][] rates = new double[2][];
+		final int [] lastStep = new int[] { -1, -1 };
+		EnrichedGOTermsResult result = calculateTempered(scs, ontology, assoc, null, new Bayes2GOTemperingProgress()
+		{
+			@Override
+			public void update(int iterationNumber, int step, double acceptProb, int numAccept, double score)
+			{
+				/* Exactly one replica reports each step, also after swaps */
+				if (iterationNumber == lastStep[0])
+					assertEquals(lastStep[1] + 1, step);
+				lastStep[0] = iterationNumber;
+				lastStep[1] = step;
+			}
+
+			@Override
+			public void updateTempering(int iterationNumber, int step, double [] acceptRates, double [] swapRates)
+			{
+				rates[0] = acceptRates;
+				rates[1] = swapRates;
+			}
+		});
+		assertEquals(11, result.getSize());
+		assertEquals(1, marg(result, "GO:0000004"), 1e-5);
+		assertEquals(1, marg(result, "GO:0000010"), 1e-5);
+		assertEquals(0, marg(result, "GO:0000011"), 1e-5);
+		assertEquals(0, marg(result, "GO:0000001"), 1e-5);
+
+		/* Hotter replicas accept more proposals */
+		assertEquals(4, rates[0].length);
+		assertEquals(3, rates[1].length);
+		assertTrue(rates[0][3] > rates[0][0]);
+		for (double r : rates[1])
+			assertTrue(r > 0 && r <= 1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			EnrichedGOTermsResult parallelResult = calculateTempered(scs, ontology, assoc, executor, null);
+			for (AbstractGOTermProperties prop : result)
+				assertEquals(((Bayes2GOGOTermProperties)prop).marg, marg(parallelResult, prop.term.toString()), 0.0);
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void testBayes2GOParameterIntegratedOut()
 	{
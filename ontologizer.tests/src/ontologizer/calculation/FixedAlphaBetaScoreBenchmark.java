@@ -0,0 +1,87 @@
+package ontologizer.calculation;
+
+import static ontologizer.ontology.TermID.tid;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.calculation.b2g.FixedAlphaBetaScore;
+import ontologizer.enumeration.TermEnumerator;
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+import sonumina.collections.IntMapper;
+
+/**
+ * Measures the number of mcmc steps per second that can be performed with
+ * a FixedAlphaBetaScore on the internal ontology, once with alpha, beta and
+ * p sampled from the grid and once with the parameters integrated out. The
+ * b2g classes aren't part of the maven build, hence this is a plain main()
+ * rather than a JMH benchmark. Each measurement is repeated after a warm up
+ * and the best one is reported.
+ */
+public class FixedAlphaBetaScoreBenchmark
+{
+	private static final int WARMUP_RUNS = 3;
+	private static final int RUNS = 5;
+	private static final int STEPS = 5000000;
+
+	/**
+	 * Performs the given number of mcmc steps.
+	 *
+	 * @return the number of steps per microsecond.
+	 */
+	private static double run(int [][] termLinks, boolean [] observed, boolean integrateParams, int steps)
+	{
+		Random rnd = new Random(2);
+		FixedAlphaBetaScore score = new FixedAlphaBetaScore(rnd, termLinks, observed);
+		score.setIntegrateParams(integrateParams);
+		score.setExpectedNumberOfTerms(Double.NaN);
+
+		double current = score.getScore();
+		long start = System.nanoTime();
+		for (int t=0;t<steps;t++)
+		{
+			long oldPossibilities = score.getNeighborhoodSize();
+			score.proposeNewState(rnd.nextLong());
+			double newScore = score.getScore();
+			double acceptProb = Math.exp(newScore - current) * oldPossibilities / score.getNeighborhoodSize();
+			if (rnd.nextDouble() >= acceptProb) score.undoProposal();
+			else current = newScore;
+		}
+		return steps / ((System.nanoTime() - start) / 1000.0);
+	}
+
+	public static void main(String [] args)
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting sss = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+		TermEnumerator popEnumerator = sss.pop.enumerateTerms(ontology, assoc);
+		IntMapper<TermID> termMapper = IntMapper.create(popEnumerator.getAllAnnotatedTermsAsList());
+		IntMapper<ByteString> geneMapper = IntMapper.create(popEnumerator.getGenesAsList());
+		int [][] termLinks = CalculationUtils.makeTermLinks(popEnumerator, termMapper, geneMapper);
+		boolean [] observed = geneMapper.getDense(sss.study.getAllGeneNames());
+
+		for (boolean integrateParams : new boolean[]{false, true})
+		{
+			for (int i=0;i<WARMUP_RUNS;i++)
+				run(termLinks, observed, integrateParams, STEPS);
+
+			double best = 0;
+			for (int i=0;i<RUNS;i++)
+				best = Math.max(best, run(termLinks, observed, integrateParams, STEPS));
+
+			System.out.printf("integrateParams=%b: %.2f million steps/s%n", integrateParams, best);
+		}
+	}
+}
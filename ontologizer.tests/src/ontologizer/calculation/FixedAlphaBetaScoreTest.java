@@ -11,6 +11,7 @@ import org.junit.Test;
 
 import ontologizer.association.AssociationContainer;
 import ontologizer.calculation.b2g.FixedAlphaBetaScore;
+import ontologizer.calculation.util.Gamma;
 import ontologizer.enumeration.TermEnumerator;
 import ontologizer.internal.InternalOntology;
 import ontologizer.ontology.Ontology;
@@ -103,4 +104,93 @@ public class FixedAlphaBetaScoreTest
 		Assert.assertEquals(expectedMax, foundMax, 1e-10);
 	}
 
+	/**
+	 * Evaluates the score of the given state directly via the likelihood.
+	 */
+	private static double referenceScore(FixedAlphaBetaScore score, int [][] termLinks, boolean [] observed, boolean integrateParams)
+	{
+		boolean [] hidden = new boolean[observed.length];
+		int [] activeTerms = score.getActiveTerms();
+		for (int t : activeTerms)
+			for (int g : termLinks[t])
+				hidden[g] = true;
+
+		int n00 = 0;
+		int n01 = 0;
+		int n10 = 0;
+		int n11 = 0;
+		for (int g=0;g<observed.length;g++)
+		{
+			if (observed[g])
+			{
+				if (hidden[g]) n11++;
+				else n10++;
+			} else
+			{
+				if (hidden[g]) n01++;
+				else n00++;
+			}
+		}
+		int m1 = activeTerms.length;
+		int m0 = termLinks.length - m1;
+
+		if (integrateParams)
+			return logBeta(1 + n10, 1 + n00) + logBeta(1 + n01, 1 + n11) + logBeta(1 + m1, 1 + m0);
+
+		double alpha = score.getAlpha();
+		double beta = score.getBeta();
+		double p = score.getP();
+		return Math.log(alpha) * n10 + Math.log(1-alpha)*n00 + Math.log(1-beta)*n11 + Math.log(beta)*n01 +
+				Math.log(p)*m1 + Math.log(1-p)*m0;
+	}
+
+	private static double logBeta(int a, int b)
+	{
+		return Gamma.lgamma(a) + Gamma.lgamma(b) - Gamma.lgamma(a + b);
+	}
+
+	private static void assertScoresMatchLikelihood(boolean integrateParams, double alpha, double beta, double expectedNumberOfTerms)
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		final HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting sss = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+		TermEnumerator popEnumerator = sss.pop.enumerateTerms(ontology, assoc);
+		IntMapper<TermID> termMapper = IntMapper.create(popEnumerator.getAllAnnotatedTermsAsList());
+		IntMapper<ByteString> geneMapper = IntMapper.create(popEnumerator.getGenesAsList());
+		int [][] termLinks = CalculationUtils.makeTermLinks(popEnumerator, termMapper, geneMapper);
+		boolean [] observed = geneMapper.getDense(sss.study.getAllGeneNames());
+
+		FixedAlphaBetaScore score = new FixedAlphaBetaScore(new Random(3), termLinks, observed);
+		score.setIntegrateParams(integrateParams);
+		score.setAlpha(alpha);
+		score.setBeta(beta);
+		score.setExpectedNumberOfTerms(expectedNumberOfTerms);
+
+		Random rnd = new Random(4);
+		for (int t=0;t<20000;t++)
+		{
+			score.proposeNewState(rnd.nextLong());
+			if (rnd.nextBoolean()) score.undoProposal();
+			Assert.assertEquals(referenceScore(score, termLinks, observed, integrateParams), score.getScore(), 1e-9);
+		}
+
+		/* Changing the parameter grid invalidates the tables */
+		score.setMaxAlpha(0.5);
+		Assert.assertEquals(referenceScore(score, termLinks, observed, integrateParams), score.getScore(), 1e-9);
+	}
+
+	@Test
+	public void testScoresMatchLikelihood()
+	{
+		assertScoresMatchLikelihood(false, Double.NaN, Double.NaN, Double.NaN);
+		assertScoresMatchLikelihood(false, 0.25, 0.6, 2);
+		assertScoresMatchLikelihood(true, Double.NaN, Double.NaN, Double.NaN);
+	}
 }
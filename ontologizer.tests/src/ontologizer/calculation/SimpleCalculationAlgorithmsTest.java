@@ -2,9 +2,19 @@ package ontologizer.calculation;
 
 import static ontologizer.calculation.CalculationTestUtils.assertResultEquals;
 import static ontologizer.calculation.CalculationTestUtils.performTestCalculation;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.TermID;
+import ontologizer.statistics.None;
+
 public class SimpleCalculationAlgorithmsTest
 {
 	@Test
@@ -125,4 +135,38 @@ public class SimpleCalculationAlgorithmsTest
 
 		assertResultEquals(expected, TopologyWeightGOTermProperties.class, r);
 	}
+
+	@Test
+	public void whetherParallelTopWeightWorks()
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			TopologyWeightedCalculation calc = new TopologyWeightedCalculation();
+			calc.setExecutor(executor);
+
+			EnrichedGOTermsResult serial = performTestCalculation(new TopologyWeightedCalculation());
+			EnrichedGOTermsResult parallel = performTestCalculation(calc);
+			for (AbstractGOTermProperties prop : serial)
+				assertEquals(prop.p, parallel.getGOTermProperties(prop.term).p, 0.0);
+
+			/* Irrelevant terms separate the relevant ones from their relevant ancestors */
+			InternalOntology internal = new InternalOntology();
+			internal.graph.setRelevantSubset("slim");
+			HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>();
+			wantedActiveTerms.put(new TermID("GO:0000010"), 0.3);
+			for (long seed = 1; seed <= 10; seed++)
+			{
+				SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(seed), wantedActiveTerms, 0.05, internal.graph, internal.assoc);
+				serial = new TopologyWeightedCalculation().calculateStudySet(internal.graph, internal.assoc, scs.pop, scs.study, new None());
+				parallel = calc.calculateStudySet(internal.graph, internal.assoc, scs.pop, scs.study, new None());
+				assertEquals(serial.getSize(), parallel.getSize());
+				for (AbstractGOTermProperties prop : serial)
+					assertEquals(prop.p, parallel.getGOTermProperties(prop.term).p, 0.0);
+			}
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
 }
@@ -0,0 +1,102 @@
+package ontologizer.calculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ontologizer.enumeration.IncrementalTermEnumerator;
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.PValue;
+import ontologizer.types.ByteString;
+
+public class TermForTermPValueCalculationTest
+{
+	private static SingleCalculationSetting createSetting(InternalOntology internal)
+	{
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>();
+		wantedActiveTerms.put(new TermID("GO:0000004"), 0.2);
+		wantedActiveTerms.put(new TermID("GO:0000010"), 0.3);
+		return SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.05, internal.graph, internal.assoc);
+	}
+
+	private static void assertSamePValues(InternalOntology internal, PopulationSet pop, StudySet study, Hypergeometric hyperg)
+	{
+		StudySet copy = new StudySet();
+		for (ByteString gene : study)
+			copy.addGene(gene, "");
+
+		PValue [] expected = new TermForTermPValueCalculation(internal.graph, internal.assoc, pop, copy, hyperg).calculateRawPValues(null);
+		PValue [] actual = new TermForTermPValueCalculation(internal.graph, internal.assoc, pop, study, hyperg).calculateRawPValues(null);
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+		{
+			TermForTermGOTermProperties e = (TermForTermGOTermProperties)expected[i];
+			TermForTermGOTermProperties a = (TermForTermGOTermProperties)actual[i];
+			assertEquals(e.term, a.term);
+			assertEquals(e.term.toString(), e.annotatedStudyGenes, a.annotatedStudyGenes);
+			assertEquals(e.term.toString(), e.p, a.p, 0.0);
+			assertEquals(e.term.toString(), e.ignoreAtMTC, a.ignoreAtMTC);
+		}
+	}
+
+	@Test
+	public void testIncrementalCounts()
+	{
+		InternalOntology internal = new InternalOntology();
+		SingleCalculationSetting scs = createSetting(internal);
+		Hypergeometric hyperg = new Hypergeometric();
+
+		StudySet study = scs.study;
+		study.enumerateTermsIncrementally(internal.graph, internal.assoc);
+		assertSamePValues(internal, scs.pop, study, hyperg);
+
+		/* Tweak the study set by a few genes at a time */
+		List<ByteString> outside = new ArrayList<ByteString>();
+		for (ByteString gene : scs.pop)
+		{
+			if (!study.contains(gene))
+				outside.add(gene);
+		}
+		List<ByteString> inside = new ArrayList<ByteString>();
+		for (ByteString gene : study)
+			inside.add(gene);
+
+		for (int i = 0; i < 5; i++)
+		{
+			study.addGenes(outside.subList(2 * i, 2 * i + 2));
+			assertSamePValues(internal, scs.pop, study, hyperg);
+
+			study.removeGenes(inside.subList(3 * i, 3 * i + 3));
+			assertSamePValues(internal, scs.pop, study, hyperg);
+		}
+	}
+
+	@Test
+	public void testEnumeratorIsKeyedOnOntology()
+	{
+		InternalOntology internal = new InternalOntology();
+		InternalOntology other = new InternalOntology();
+		StudySet study = createSetting(internal).study;
+
+		IncrementalTermEnumerator e = study.enumerateTermsIncrementally(internal.graph, internal.assoc);
+		assertSame(e, study.enumerateTermsIncrementally(internal.graph, internal.assoc));
+		assertNull(study.getIncrementalTermEnumerator(other.graph, internal.assoc));
+
+		IncrementalTermEnumerator o = study.enumerateTermsIncrementally(other.graph, internal.assoc);
+		assertNotSame(e, o);
+		assertSame(o, study.getIncrementalTermEnumerator(other.graph, internal.assoc));
+		assertNull(study.getIncrementalTermEnumerator(internal.graph, internal.assoc));
+	}
+}
@@ -0,0 +1,144 @@
+package ontologizer.calculation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import ontologizer.enumeration.TermEnumerator;
+import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.PValue;
+import ontologizer.statistics.WestfallYoungStepDown;
+import ontologizer.types.ByteString;
+
+public class TopPValueCalculationTest
+{
+	/**
+	 * The former recursive implementation of elim that serves as reference.
+	 */
+	private static HashSet<ByteString> elim(Ontology graph, Hypergeometric hyperg, TermEnumerator pop, TermEnumerator study,
+			int popGeneCount, int studyGeneCount, TermID term, HashMap<TermID,HashSet<ByteString>> markedGenesMap, HashMap<TermID,PValue> result)
+	{
+		if (markedGenesMap.containsKey(term))
+			return markedGenesMap.get(term);
+
+		HashSet<ByteString> markedGenes = new HashSet<ByteString>();
+		Set<TermID> d = graph.getTermChildren(term);
+		if (d != null)
+		{
+			for (TermID c : d)
+				markedGenes.addAll(elim(graph, hyperg, pop, study, popGeneCount, studyGeneCount, c, markedGenesMap, result));
+		}
+
+		TermAnnotatedGenes studyAnnotated = study.getAnnotatedGenes(term);
+		TermAnnotatedGenes popAnnotated = pop.getAnnotatedGenes(term);
+
+		int studyCount = 0;
+		for (ByteString gene : studyAnnotated.totalAnnotated)
+			if (!markedGenes.contains(gene)) studyCount++;
+		int popCount = 0;
+		for (ByteString gene : popAnnotated.totalAnnotated)
+			if (!markedGenes.contains(gene)) popCount++;
+
+		if (popAnnotated.totalAnnotated.size() != 0)
+		{
+			PValue p = new PValue();
+			if (studyCount != 0)
+			{
+				p.p = hyperg.phypergeometric(popGeneCount, (double)popCount / popGeneCount, studyGeneCount, studyCount);
+				if (p.p < TopPValueCalculation.SIGNIFICANCE_LEVEL)
+					markedGenes.addAll(studyAnnotated.totalAnnotated);
+			} else
+			{
+				p.p = 1.0;
+				p.ignoreAtMTC = true;
+			}
+			result.put(term, p);
+		}
+		markedGenesMap.put(term, markedGenes);
+		return markedGenes;
+	}
+
+	private static SingleCalculationSetting createSetting(InternalOntology internal, long seed)
+	{
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>();
+		wantedActiveTerms.put(new TermID("GO:0000004"), 0.2);
+		wantedActiveTerms.put(new TermID("GO:0000010"), 0.3);
+		return SingleCalculationSetting.create(new Random(seed), wantedActiveTerms, 0.05, internal.graph, internal.assoc);
+	}
+
+	@Test
+	public void testMatchesRecursiveElim()
+	{
+		InternalOntology internal = new InternalOntology();
+		Ontology graph = internal.graph;
+		Hypergeometric hyperg = new Hypergeometric();
+
+		for (long seed = 1; seed <= 10; seed++)
+		{
+			SingleCalculationSetting scs = createSetting(internal, seed);
+			PopulationSet pop = scs.pop;
+			StudySet study = scs.study;
+
+			HashMap<TermID,PValue> expected = new HashMap<TermID,PValue>();
+			elim(graph, hyperg, pop.enumerateTerms(graph, internal.assoc), study.enumerateTerms(graph, internal.assoc),
+					pop.getGeneCount(), study.getGeneCount(), graph.getRootTerm().getID(), new HashMap<TermID,HashSet<ByteString>>(), expected);
+
+			TopPValueCalculation calc = new TopPValueCalculation(graph, internal.assoc, pop, study, hyperg);
+			PValue [] actual = calc.calculateRawPValues(null);
+			assertEquals(expected.size(), actual.length);
+			for (PValue p : actual)
+			{
+				TopGOTermProperties prop = (TopGOTermProperties)p;
+				PValue e = expected.get(prop.term);
+				assertEquals(prop.term.toString(), e.p, prop.p, 1e-12);
+				assertEquals(prop.term.toString(), e.ignoreAtMTC, prop.ignoreAtMTC);
+				assertEquals(study.enumerateTerms(graph, internal.assoc).getAnnotatedGenes(prop.term).totalAnnotatedCount(), prop.annotatedStudyGenes);
+			}
+		}
+	}
+
+	private static double [] adjust(TopPValueCalculation calc, ExecutorService executor)
+	{
+		WestfallYoungStepDown correction = new WestfallYoungStepDown();
+		correction.setNumberOfResamplingSteps(200);
+		correction.setSeed(7);
+		correction.setExecutor(executor);
+
+		PValue [] p = correction.adjustPValues(calc, null);
+		double [] adjusted = new double[p.length];
+		for (int i = 0; i < p.length; i++)
+			adjusted[i] = p[i].p_adjusted;
+		return adjusted;
+	}
+
+	@Test
+	public void testConcurrentResampling()
+	{
+		InternalOntology internal = new InternalOntology();
+		SingleCalculationSetting scs = createSetting(internal, 1);
+		TopPValueCalculation calc = new TopPValueCalculation(internal.graph, internal.assoc, scs.pop, scs.study, new Hypergeometric());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			assertArrayEquals(adjust(calc, null), adjust(calc, executor), 0.0);
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+}
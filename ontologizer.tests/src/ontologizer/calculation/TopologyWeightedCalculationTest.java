@@ -0,0 +1,370 @@
+package ontologizer.calculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.Association;
+import ontologizer.association.AssociationContainer;
+import ontologizer.enumeration.BitmapTermEnumerator;
+import ontologizer.enumeration.TermEnumerator;
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Ontology.GOLevels;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.Subset;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermRelation;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.None;
+import ontologizer.types.ByteString;
+
+public class TopologyWeightedCalculationTest
+{
+	/**
+	 * The former implementation that keeps a weight for every gene of every
+	 * term and serves as reference. Within a level, the terms are processed
+	 * in the order of their indices, like the current implementation does.
+	 */
+	private static class Reference
+	{
+		private Ontology graph;
+		private TermEnumerator pop;
+		private TermEnumerator study;
+		private Hypergeometric hyperg = new Hypergeometric();
+		private Map<TermID,Map<ByteString,Double>> weights = new HashMap<TermID,Map<ByteString,Double>>();
+		private Map<TermID,Double> p = new HashMap<TermID,Double>();
+
+		private double getWeight(TermID t, ByteString gene)
+		{
+			Map<ByteString,Double> w = weights.get(t);
+			if (w == null || !w.containsKey(gene)) return 1;
+			return w.get(gene);
+		}
+
+		private void setWeight(TermID t, ByteString gene, double w)
+		{
+			if (!weights.containsKey(t))
+				weights.put(t, new HashMap<ByteString,Double>());
+			weights.get(t).put(gene, w);
+		}
+
+		private double wFisher(TermID u)
+		{
+			double goidAnnotatedPopGeneCount = 0;
+			double goidAnnotatedStudyGeneCount = 0;
+			double popGeneCount = 0;
+			double studyGeneCount = 0;
+
+			for (ByteString gene : pop.getAnnotatedGenes(u).totalAnnotated)
+				goidAnnotatedPopGeneCount += getWeight(u, gene);
+			for (ByteString gene : study.getAnnotatedGenes(u).totalAnnotated)
+				goidAnnotatedStudyGeneCount += getWeight(u, gene);
+			for (ByteString gene : pop.getGenesAsList())
+				popGeneCount += getWeight(u, gene);
+			for (ByteString gene : study.getGenesAsList())
+				studyGeneCount += getWeight(u, gene);
+
+			double pu = 1;
+			if (goidAnnotatedStudyGeneCount != 0)
+			{
+				pu = hyperg.phypergeometric((int)Math.ceil(popGeneCount), Math.ceil(goidAnnotatedPopGeneCount) / Math.ceil(popGeneCount),
+						(int)studyGeneCount, (int)goidAnnotatedStudyGeneCount);
+			}
+			p.put(u, pu);
+			return pu;
+		}
+
+		private void computeTermSig(TermID u, Set<TermID> children)
+		{
+			if (graph.isArtificialRootTerm(u)) return;
+
+			double pu = wFisher(u);
+			if (children.size() == 0) return;
+
+			HashMap<TermID,Double> w = new HashMap<TermID,Double>();
+			HashSet<TermID> sigChildren = new HashSet<TermID>();
+			for (TermID child : children)
+			{
+				w.put(child, pu / p.get(child));
+				if (w.get(child) > 1) sigChildren.add(child);
+			}
+
+			if (sigChildren.size() == 0)
+			{
+				for (TermID child : children)
+				{
+					for (ByteString gene : pop.getAnnotatedGenes(u).totalAnnotated)
+						setWeight(child, gene, getWeight(child, gene) * w.get(child));
+					wFisher(child);
+				}
+				return;
+			}
+
+			for (TermID child : sigChildren)
+			{
+				Set<TermID> upper = graph.getTermsOfInducedGraph(graph.getRootTerm().getID(), u);
+				upper.remove(u);
+				upper.remove(graph.getRootTerm().getID());
+				for (TermID up : upper)
+				{
+					for (ByteString gene : pop.getAnnotatedGenes(up).totalAnnotated)
+						setWeight(up, gene, getWeight(up, gene) / w.get(child));
+				}
+			}
+		}
+
+		public Map<TermID,Double> calculate(Ontology graph, AssociationContainer assoc, PopulationSet populationSet, StudySet studySet)
+		{
+			this.graph = graph;
+			pop = populationSet.enumerateTerms(graph, assoc);
+			study = studySet.enumerateTerms(graph, assoc);
+
+			final BitmapTermEnumerator indices = populationSet.enumerateTermsAsBitmaps(graph, assoc);
+			Set<TermID> allAnnotatedTerms = study.getAllAnnotatedTermsAsSet();
+			GOLevels levels = graph.getGOLevels(allAnnotatedTerms);
+			for (int i = levels.getMaxLevel(); i >= 0; i--)
+			{
+				List<TermID> terms = new ArrayList<TermID>(levels.getLevelTermSet(i));
+				Collections.sort(terms, new Comparator<TermID>()
+				{
+					@Override
+					public int compare(TermID o1, TermID o2)
+					{
+						return Integer.compare(indices.getTermIndex(o1), indices.getTermIndex(o2));
+					}
+				});
+
+				for (TermID t : terms)
+				{
+					Set<TermID> annotatedChildren = new HashSet<TermID>();
+					for (TermID c : graph.getTermChildren(t))
+					{
+						if (allAnnotatedTerms.contains(c))
+							annotatedChildren.add(c);
+					}
+					computeTermSig(t, annotatedChildren);
+				}
+			}
+			return p;
+		}
+	}
+
+	@Test
+	public void testMatchesFormerImplementation()
+	{
+		InternalOntology internal = new InternalOntology();
+		assertMatchesFormerImplementation(internal.graph, internal.assoc);
+	}
+
+	@Test
+	public void testMatchesFormerImplementationWithSubset()
+	{
+		InternalOntology internal = new InternalOntology();
+		internal.graph.setRelevantSubset("slim");
+		assertMatchesFormerImplementation(internal.graph, internal.assoc);
+	}
+
+	/**
+	 * Runs the tasks in the reverse order of their submission as soon as
+	 * the result of a task is requested.
+	 */
+	private static class ReverseExecutor extends AbstractExecutorService
+	{
+		private ArrayList<Runnable> pending = new ArrayList<Runnable>();
+
+		@Override
+		protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable)
+		{
+			return new FutureTask<T>(callable)
+			{
+				@Override
+				public T get() throws InterruptedException, ExecutionException
+				{
+					while (!pending.isEmpty())
+						pending.remove(pending.size() - 1).run();
+					return super.get();
+				}
+			};
+		}
+
+		@Override
+		public void execute(Runnable command)
+		{
+			pending.add(command);
+		}
+
+		@Override
+		public void shutdown()
+		{
+		}
+
+		@Override
+		public List<Runnable> shutdownNow()
+		{
+			return new ArrayList<Runnable>();
+		}
+
+		@Override
+		public boolean isShutdown()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit)
+		{
+			return true;
+		}
+	}
+
+	/** An ontology restricted to a slim and its associations */
+	private static class Slim
+	{
+		public Ontology graph;
+		public AssociationContainer assoc;
+	}
+
+	/**
+	 * Creates an ontology of the given terms and annotates each of the
+	 * given number of genes to one or two random terms.
+	 *
+	 * @param terms the terms, all but the irrelevant ones are part of the slim
+	 * @param irrelevant the terms that are not part of the slim
+	 * @param numGenes the number of genes
+	 * @return the ontology, restricted to the slim, and its associations
+	 */
+	private static Slim createSlim(List<Term> terms, List<Term> irrelevant, int numGenes)
+	{
+		Subset slim = new Subset("slim", "Slim");
+		for (Term t : terms)
+		{
+			if (!irrelevant.contains(t))
+				t.setSubsets(new ArrayList<Subset>(Arrays.asList(slim)));
+		}
+
+		Slim slimOntology = new Slim();
+		slimOntology.graph = Ontology.create(new TermContainer(new HashSet<Term>(terms), ByteString.EMPTY, ByteString.EMPTY));
+		slimOntology.graph.setRelevantSubset("slim");
+
+		Random rnd = new Random(1);
+		ArrayList<Association> associations = new ArrayList<Association>();
+		ArrayList<ByteString> genes = new ArrayList<ByteString>();
+		for (int i = 1; i <= numGenes; i++)
+		{
+			ByteString gene = new ByteString("gene" + i);
+			genes.add(gene);
+			for (int j = rnd.nextInt(2); j >= 0; j--)
+				associations.add(new Association(gene, terms.get(rnd.nextInt(terms.size())).getID()));
+		}
+		slimOntology.assoc = new AssociationContainer(associations, new AnnotationContext(genes, new HashMap<ByteString,ByteString>(), new HashMap<ByteString,ByteString>()));
+		return slimOntology;
+	}
+
+	/**
+	 * In the complete ontology, B is a level below A because of the
+	 * irrelevant X. Within the slim, both are on the same level and share
+	 * the children C and E.
+	 */
+	@Test
+	public void testMatchesFormerImplementationWithSubsetLevels()
+	{
+		Term r = new Term("GO:0000001", "R");
+		Term a = new Term("GO:0000002", "A", new ParentTermID(r.getID(), TermRelation.IS_A));
+		Term x = new Term("GO:0000003", "X", new ParentTermID(r.getID(), TermRelation.IS_A));
+		Term b = new Term("GO:0000004", "B", new ParentTermID(x.getID(), TermRelation.IS_A));
+		Term c = new Term("GO:0000005", "C", new ParentTermID(a.getID(), TermRelation.IS_A), new ParentTermID(b.getID(), TermRelation.IS_A));
+		Term e = new Term("GO:0000006", "E", new ParentTermID(a.getID(), TermRelation.IS_A), new ParentTermID(b.getID(), TermRelation.IS_A));
+		Term d = new Term("GO:0000007", "D", new ParentTermID(c.getID(), TermRelation.IS_A));
+
+		Slim slim = createSlim(Arrays.asList(r, a, x, b, c, e, d), Arrays.asList(x), 300);
+		assertMatchesFormerImplementation(slim.graph, slim.assoc, "GO:0000002", "GO:0000004", "GO:0000005");
+	}
+
+	/**
+	 * The irrelevant Y separates U and its child K from G, whose weights
+	 * are changed by U. H forms another subgraph.
+	 */
+	@Test
+	public void testMatchesFormerImplementationWithSubsetGaps()
+	{
+		Term r = new Term("GO:0000001", "R");
+		Term g = new Term("GO:0000002", "G", new ParentTermID(r.getID(), TermRelation.IS_A));
+		Term y = new Term("GO:0000003", "Y", new ParentTermID(g.getID(), TermRelation.IS_A));
+		Term u = new Term("GO:0000004", "U", new ParentTermID(y.getID(), TermRelation.IS_A));
+		Term k = new Term("GO:0000005", "K", new ParentTermID(u.getID(), TermRelation.IS_A));
+		Term h = new Term("GO:0000006", "H", new ParentTermID(r.getID(), TermRelation.IS_A));
+		Term i = new Term("GO:0000007", "I", new ParentTermID(h.getID(), TermRelation.IS_A));
+
+		Slim slim = createSlim(Arrays.asList(r, g, y, u, k, h, i), Arrays.asList(y), 300);
+		assertMatchesFormerImplementation(slim.graph, slim.assoc, "GO:0000005", "GO:0000007", "GO:0000002", "GO:0000006");
+	}
+
+	private void assertMatchesFormerImplementation(Ontology graph, AssociationContainer assoc)
+	{
+		assertMatchesFormerImplementation(graph, assoc, "GO:0000004", "GO:0000010", "GO:0000003", "GO:0000008");
+	}
+
+	/**
+	 * Compares the results for ten settings. The first and the second
+	 * term are active in all settings, the remaining ones alternate. The
+	 * independent subgraphs must give the same results in any order.
+	 */
+	private void assertMatchesFormerImplementation(Ontology graph, AssociationContainer assoc, String...activeTerms)
+	{
+		for (long seed = 1; seed <= 10; seed++)
+		{
+			HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>();
+			wantedActiveTerms.put(new TermID(activeTerms[0]), 0.2);
+			wantedActiveTerms.put(new TermID(activeTerms[1]), 0.3);
+			wantedActiveTerms.put(new TermID(activeTerms[2 + (int)(seed % (activeTerms.length - 2))]), 0.3);
+			SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(seed), wantedActiveTerms, 0.05, graph, assoc);
+
+			Map<TermID,Double> expected = new Reference().calculate(graph, assoc, scs.pop, scs.study);
+			EnrichedGOTermsResult actual = new TopologyWeightedCalculation().calculateStudySet(graph, assoc, scs.pop, scs.study, new None());
+
+			assertEquals(expected.size(), actual.getSize());
+			for (Map.Entry<TermID,Double> e : expected.entrySet())
+			{
+				AbstractGOTermProperties prop = actual.getGOTermProperties(e.getKey());
+				assertNotNull(e.getKey().toString(), prop);
+				assertEquals(e.getKey().toString(), e.getValue(), prop.p, 1e-12);
+			}
+
+			TopologyWeightedCalculation calc = new TopologyWeightedCalculation();
+			calc.setExecutor(new ReverseExecutor());
+			EnrichedGOTermsResult parallel = calc.calculateStudySet(graph, assoc, scs.pop, scs.study, new None());
+			for (AbstractGOTermProperties prop : actual)
+				assertEquals(prop.term.toString(), prop.p, parallel.getGOTermProperties(prop.term).p, 0.0);
+		}
+	}
+}
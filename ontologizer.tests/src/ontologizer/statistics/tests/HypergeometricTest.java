@@ -1,11 +1,15 @@
 package ontologizer.statistics.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.HypergeometricCache;
 
 public class HypergeometricTest
 {
@@ -40,4 +44,149 @@ public class HypergeometricTest
 		// drawing more white than available in total
 		assertTrue(hyper.phyper(10,8,5,12,false) == 0);
 	}
+
+	/**
+	 * The log factorial as calculated by the former, Vector-based
+	 * implementation.
+	 */
+	private static double [] referenceLogFactorials(int n)
+	{
+		double [] lfactorial = new double[n + 1];
+		for (int j = 2; j <= n; j++)
+			lfactorial[j] = lfactorial[j - 1] + Math.log(j);
+		return lfactorial;
+	}
+
+	/**
+	 * The upper tail as calculated by the former implementation.
+	 */
+	private static double referencePhypergeometric(double [] lf, int n, int np, int k, int r)
+	{
+		int nq = n - np;
+		double log_n_choose_k = lf[n] - lf[k] - lf[n - k];
+		int top = Math.min(k, np);
+		double lfoo = (lf[np] - lf[top] - lf[np - top]) + (lf[nq] - lf[k - top] - lf[nq - k + top]);
+
+		double sum = 0.0;
+		for (int i = top; i >= r; --i)
+		{
+			sum += Math.exp(lfoo - log_n_choose_k);
+			if (i > r)
+				lfoo = lfoo + Math.log((double) i / (double) (np - i + 1)) + Math.log((double) (nq - k + i) / (double) (k - i + 1));
+		}
+		return sum;
+	}
+
+	@Test
+	public void testRegression()
+	{
+		Random rnd = new Random(2);
+		double [] lf = referenceLogFactorials(6000);
+		Hypergeometric sized = new Hypergeometric(6000);
+
+		for (int i = 0; i < 10000; i++)
+		{
+			int n = 2 + rnd.nextInt(5999);
+			int np = rnd.nextInt(n + 1);
+			int k = 1 + rnd.nextInt(n - 1);
+			if (k - Math.min(k, np) > n - np) continue;
+			int r = 1 + rnd.nextInt(Math.max(1, Math.min(k, np)));
+
+			double expected = referencePhypergeometric(lf, n, np, k, r);
+			assertEquals(expected, hyper.phypergeometric(n, (double)np / n, k, r), 1e-12);
+			assertEquals(expected, sized.phypergeometric(n, (double)np / n, k, r), 1e-12);
+			assertEquals(hyper.phyper(r - 1, n, np, k, false), sized.phyper(r - 1, n, np, k, false), 1e-12);
+			assertEquals(lf[n], hyper.logfact(n), 1e-12);
+		}
+	}
+
+	@Test
+	public void testPresized()
+	{
+		double [] lf = referenceLogFactorials(3000);
+		Hypergeometric sized = new Hypergeometric(1000);
+		assertEquals(1000, sized.getPopulationSize());
+		assertEquals(1, new Hypergeometric().getPopulationSize());
+
+		/* Factorials beyond the population are still available */
+		for (int j = 0; j <= 3000; j += 7)
+			assertEquals(lf[j], sized.logfact(j), 1e-12);
+		assertEquals(1000, sized.getPopulationSize());
+	}
+
+	@Test
+	public void testBatch()
+	{
+		int [] annotatedPopulation = new int[]{4, 40, 40, 100, 1, 0};
+		int [] annotatedStudy = new int[]{2, 22, 3, 0, 1, 0};
+		double [] p = hyper.phypergeometric(1526, 190, annotatedPopulation, annotatedStudy);
+
+		assertEquals(annotatedPopulation.length, p.length);
+		for (int i = 0; i < p.length; i++)
+			assertTrue(p[i] == hyper.phypergeometric(1526, (double)annotatedPopulation[i] / 1526, 190, annotatedStudy[i]));
+	}
+
+	@Test
+	public void testConcurrentGrowth() throws InterruptedException
+	{
+		final Hypergeometric shared = new Hypergeometric();
+		final double [] lf = referenceLogFactorials(20000);
+		final boolean [] failed = new boolean[1];
+
+		Thread [] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int seed = t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					Random rnd = new Random(seed);
+					for (int i = 0; i < 10000; i++)
+					{
+						int j = rnd.nextInt(20001);
+						if (shared.logfact(j) != lf[j])
+							failed[0] = true;
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue(!failed[0]);
+	}
+
+	@Test
+	public void testCache()
+	{
+		HypergeometricCache cache = new HypergeometricCache(64);
+		Hypergeometric cached = new Hypergeometric(1526, cache);
+		Hypergeometric uncached = new Hypergeometric(1526, null);
+
+		for (int round = 0; round < 2; round++)
+		{
+			for (int np = 1; np <= 20; np++)
+			{
+				double expected = uncached.phypergeometric(1526, (double)np / 1526, 190, 2);
+				assertTrue(expected == cached.phypergeometric(1526, (double)np / 1526, 190, 2));
+			}
+		}
+		assertEquals(40, cache.getHits() + cache.getMisses());
+		assertTrue(cache.getHits() > 0);
+
+		/* The capacity is respected, but results stay correct */
+		for (int np = 1; np <= 1000; np++)
+			assertTrue(uncached.phypergeometric(1526, (double)np / 1526, 190, 3) == cached.phypergeometric(1526, (double)np / 1526, 190, 3));
+
+		cache.clear();
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		assertEquals(null, uncached.getCache());
+
+		/* Instances without an explicit cache share the default one */
+		assertSame(HypergeometricCache.getDefault(), new Hypergeometric().getCache());
+		assertSame(HypergeometricCache.getDefault(), new Hypergeometric(1526).getCache());
+	}
 }
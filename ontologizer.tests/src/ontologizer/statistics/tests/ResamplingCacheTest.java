@@ -0,0 +1,238 @@
+package ontologizer.statistics.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ontologizer.statistics.IFingerprintable;
+import ontologizer.statistics.IPValueCalculation;
+import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.ISeededPValueCalculation;
+import ontologizer.statistics.PValue;
+import ontologizer.statistics.PvalueSetStore;
+import ontologizer.statistics.ResamplingCache;
+import ontologizer.statistics.WestfallYoungStepDownCached;
+
+public class ResamplingCacheTest
+{
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private static PvalueSetStore createStore(int sets, int setSize, long seed)
+	{
+		Random rnd = new Random(seed);
+		PvalueSetStore store = new PvalueSetStore(sets, setSize);
+		for (int i = 0; i < sets; i++)
+		{
+			PValue [] p = new PValue[setSize];
+			for (int j = 0; j < setSize; j++)
+			{
+				p[j] = new PValue();
+				p[j].p = rnd.nextDouble();
+				p[j].ignoreAtMTC = rnd.nextInt(4) == 0;
+			}
+			store.add(p);
+		}
+		return store;
+	}
+
+	@Test
+	public void testStoreAndLoad()
+	{
+		ResamplingCache cache = new ResamplingCache(tmpFolder.getRoot(), 1 << 20);
+		PvalueSetStore store = createStore(20, 30, 1);
+		long key = ResamplingCache.getKey(1234, "Test", 10, 20);
+
+		assertNull(cache.load(key, 30, 20));
+		cache.store(key, store);
+
+		PvalueSetStore loaded = cache.load(key, 30, 20);
+		assertNotNull(loaded);
+		assertEquals(store.size(), loaded.size());
+		double [] expected = new double[30];
+		double [] actual = new double[30];
+		for (int i = 0; i < store.size(); i++)
+			assertArrayEquals(store.get(i, expected), loaded.get(i, actual), 0.0);
+
+		/* Entries that do not match the expected dimensions are stale and discarded */
+		assertNull(cache.load(key, 31, 20));
+		assertNull(cache.load(key, 30, 20));
+
+		cache.store(key, store);
+		cache.clear();
+		assertNull(cache.load(key, 30, 20));
+	}
+
+	@Test
+	public void testTruncatedEntryIsDiscarded() throws Exception
+	{
+		ResamplingCache cache = new ResamplingCache(tmpFolder.getRoot(), 1 << 20);
+		long key = ResamplingCache.getKey(1, "Test", 10, 20);
+		cache.store(key, createStore(20, 30, 1));
+
+		File [] files = tmpFolder.getRoot().listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+		raf.setLength(raf.length() - 8);
+		raf.close();
+
+		assertNull(cache.load(key, 30, 20));
+		assertFalse(files[0].exists());
+	}
+
+	/**
+	 * Overwrites the int at the given position of the only entry.
+	 */
+	private void corrupt(long position, int value) throws Exception
+	{
+		File [] files = tmpFolder.getRoot().listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+		raf.seek(position);
+		raf.writeInt(Integer.reverseBytes(value));
+		raf.close();
+	}
+
+	@Test
+	public void testInconsistentEntryIsDiscarded() throws Exception
+	{
+		ResamplingCache cache = new ResamplingCache(tmpFolder.getRoot(), 1 << 20);
+		long key = ResamplingCache.getKey(1, "Test", 10, 20);
+		int header = 28;
+
+		/* The second set ends before it starts */
+		cache.store(key, createStore(20, 30, 1));
+		corrupt(header + 4, -1);
+		assertNull(cache.load(key, 30, 20));
+		assertEquals(0, tmpFolder.getRoot().listFiles().length);
+
+		/* The first index is beyond the set size */
+		cache.store(key, createStore(20, 30, 1));
+		corrupt(header + 4 * 21, 30);
+		assertNull(cache.load(key, 30, 20));
+		assertEquals(0, tmpFolder.getRoot().listFiles().length);
+
+		/* An intact entry is still accepted */
+		cache.store(key, createStore(20, 30, 1));
+		assertNotNull(cache.load(key, 30, 20));
+	}
+
+	@Test
+	public void testEviction() throws Exception
+	{
+		PvalueSetStore store = createStore(20, 30, 1);
+		ResamplingCache cache = new ResamplingCache(tmpFolder.getRoot(), 1 << 20);
+		cache.store(0, store);
+		long size = tmpFolder.getRoot().listFiles()[0].length();
+
+		/* Room for two entries */
+		cache = new ResamplingCache(tmpFolder.getRoot(), 2 * size);
+		cache.store(1, store);
+
+		/* Entry 0 is the least recently used one */
+		long now = System.currentTimeMillis();
+		for (File f : tmpFolder.getRoot().listFiles())
+			f.setLastModified(now - (f.getName().startsWith("0000000000000000") ? 200000 : 100000));
+
+		cache.store(2, store);
+		assertEquals(2, tmpFolder.getRoot().listFiles().length);
+		assertNull(cache.load(0, 30, 20));
+		assertNotNull(cache.load(1, 30, 20));
+		assertNotNull(cache.load(2, 30, 20));
+	}
+
+	/**
+	 * A fingerprinted calculation whose p-values are drawn uniformly at random.
+	 */
+	private static class RandomPValues implements IPValueCalculation, ISeededPValueCalculation, IFingerprintable
+	{
+		private static final int M = 40;
+
+		private PValue [] draw(Random rnd)
+		{
+			PValue [] p = new PValue[M];
+			for (int i = 0; i < M; i++)
+			{
+				p[i] = new PValue();
+				p[i].p = rnd.nextDouble();
+			}
+			return p;
+		}
+
+		@Override
+		public PValue[] calculateRawPValues(IPValueCalculationProgress progress)
+		{
+			return draw(new Random(1));
+		}
+
+		@Override
+		public PValue[] calculateRandomPValues(IPValueCalculationProgress progress)
+		{
+			return draw(new Random());
+		}
+
+		@Override
+		public PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd)
+		{
+			return draw(rnd);
+		}
+
+		@Override
+		public int currentStudySetSize()
+		{
+			return 10;
+		}
+
+		@Override
+		public int getNumberOfPValues()
+		{
+			return M;
+		}
+
+		@Override
+		public long getFingerprint()
+		{
+			return 42;
+		}
+	}
+
+	private double [] adjust(long seed)
+	{
+		WestfallYoungStepDownCached correction = new WestfallYoungStepDownCached();
+		correction.setCacheDirectory(tmpFolder.getRoot(), 1 << 20);
+		correction.setNumberOfResamplingSteps(50);
+		correction.setSeed(seed);
+
+		PValue [] p = correction.adjustPValues(new RandomPValues(), null);
+		double [] adjusted = new double[p.length];
+		for (int i = 0; i < p.length; i++)
+			adjusted[i] = p[i].p_adjusted;
+		return adjusted;
+	}
+
+	@Test
+	public void testReuseAcrossInstances()
+	{
+		double [] first = adjust(1);
+		assertEquals(1, tmpFolder.getRoot().listFiles().length);
+
+		/* A different seed would produce different samples, but the stored ones are used */
+		assertArrayEquals(first, adjust(2), 0.0);
+
+		/* Resetting the cache of an instance keeps the stored samples */
+		WestfallYoungStepDownCached correction = new WestfallYoungStepDownCached();
+		correction.setCacheDirectory(tmpFolder.getRoot(), 1 << 20);
+		correction.resetCache();
+		assertEquals(1, tmpFolder.getRoot().listFiles().length);
+	}
+}
@@ -0,0 +1,249 @@
+package ontologizer.statistics.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ontologizer.statistics.AbstractResamplingTestCorrection;
+import ontologizer.statistics.FDRBySteffen;
+import ontologizer.statistics.IPValueCalculation;
+import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.IResamplingProgress;
+import ontologizer.statistics.ISeededPValueCalculation;
+import ontologizer.statistics.PValue;
+import ontologizer.statistics.WestfallYoungSingleStep;
+import ontologizer.statistics.WestfallYoungSingleStepApproximate;
+import ontologizer.statistics.WestfallYoungStepDown;
+import ontologizer.statistics.WestfallYoungStepDownCached;
+
+public class ResamplingTest
+{
+	/**
+	 * A calculation whose p-values are drawn uniformly at random.
+	 */
+	private static class RandomPValues implements IPValueCalculation, ISeededPValueCalculation
+	{
+		private static final int M = 50;
+
+		private int studySetSize = 10;
+
+		/** The number of drawn random p-value sets */
+		private AtomicInteger draws = new AtomicInteger();
+
+		private PValue [] draw(Random rnd)
+		{
+			PValue [] p = new PValue[M];
+			for (int i = 0; i < M; i++)
+			{
+				p[i] = new PValue();
+				p[i].p = rnd.nextDouble();
+			}
+			return p;
+		}
+
+		@Override
+		public PValue[] calculateRawPValues(IPValueCalculationProgress progress)
+		{
+			PValue [] p = draw(new Random(1));
+			p[0].p = 1e-6;
+			return p;
+		}
+
+		@Override
+		public PValue[] calculateRandomPValues(IPValueCalculationProgress progress)
+		{
+			return draw(new Random());
+		}
+
+		@Override
+		public PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd)
+		{
+			draws.incrementAndGet();
+			return draw(rnd);
+		}
+
+		@Override
+		public int currentStudySetSize()
+		{
+			return studySetSize;
+		}
+
+		@Override
+		public int getNumberOfPValues()
+		{
+			return M;
+		}
+	}
+
+	private static double [] adjust(AbstractResamplingTestCorrection correction, ExecutorService executor)
+	{
+		correction.setSeed(42);
+		correction.setNumberOfResamplingSteps(101);
+		correction.setExecutor(executor);
+		correction.resetCache();
+
+		PValue [] p = correction.adjustPValues(new RandomPValues(), null);
+		double [] adjusted = new double[p.length];
+		for (int i = 0; i < p.length; i++)
+			adjusted[i] = p[i].p_adjusted;
+		return adjusted;
+	}
+
+	@Test
+	public void testReproducibleAcrossExecutors()
+	{
+		AbstractResamplingTestCorrection [] corrections = new AbstractResamplingTestCorrection[]{
+				new WestfallYoungSingleStep(), new WestfallYoungStepDown(),
+				new WestfallYoungStepDownCached(), new FDRBySteffen()
+		};
+
+		ExecutorService one = Executors.newFixedThreadPool(1);
+		ExecutorService four = Executors.newFixedThreadPool(4);
+		try
+		{
+			for (AbstractResamplingTestCorrection correction : corrections)
+			{
+				double [] serial = adjust(correction, null);
+				assertTrue(correction.getName(), Arrays.equals(serial, adjust(correction, one)));
+				assertTrue(correction.getName(), Arrays.equals(serial, adjust(correction, four)));
+			}
+		} finally
+		{
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+
+	@Test
+	public void testUnseededCalculation()
+	{
+		final RandomPValues seeded = new RandomPValues();
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger draws = new AtomicInteger();
+
+		/* Implements only the plain interface, hence is resampled in the calling thread */
+		IPValueCalculation unseeded = new IPValueCalculation()
+		{
+			@Override
+			public PValue[] calculateRawPValues(IPValueCalculationProgress progress)
+			{
+				return seeded.calculateRawPValues(progress);
+			}
+
+			@Override
+			public PValue[] calculateRandomPValues(IPValueCalculationProgress progress)
+			{
+				assertTrue(Thread.currentThread() == caller);
+				draws.incrementAndGet();
+				return seeded.calculateRandomPValues(progress);
+			}
+
+			@Override
+			public int currentStudySetSize()
+			{
+				return seeded.currentStudySetSize();
+			}
+
+			@Override
+			public int getNumberOfPValues()
+			{
+				return seeded.getNumberOfPValues();
+			}
+		};
+
+		WestfallYoungStepDown correction = new WestfallYoungStepDown();
+		correction.setNumberOfResamplingSteps(30);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			correction.setExecutor(executor);
+			assertEquals(RandomPValues.M, correction.adjustPValues(unseeded, null).length);
+		} finally
+		{
+			executor.shutdown();
+		}
+		assertEquals(30, draws.get());
+		assertEquals(0, seeded.draws.get());
+	}
+
+	@Test
+	public void testProgress()
+	{
+		final int [] state = new int[2];
+		WestfallYoungStepDown correction = new WestfallYoungStepDown();
+		correction.setProgressUpdate(new IResamplingProgress()
+		{
+			@Override
+			public void init(int max)
+			{
+				state[0] = max;
+			}
+
+			@Override
+			public void update(int current)
+			{
+				assertTrue(current >= state[1]);
+				state[1] = current;
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try
+		{
+			adjust(correction, executor);
+		} finally
+		{
+			executor.shutdown();
+		}
+		assertEquals(101, state[0]);
+		assertEquals(101, state[1]);
+	}
+
+	/**
+	 * Returns the number of resampling steps that were needed to adjust the
+	 * p-values of a study set of the given size.
+	 */
+	private static int countDraws(AbstractResamplingTestCorrection correction, int studySetSize)
+	{
+		RandomPValues calc = new RandomPValues();
+		calc.studySetSize = studySetSize;
+		correction.adjustPValues(calc, null);
+		return calc.draws.get();
+	}
+
+	@Test
+	public void testSizeTolerance()
+	{
+		AbstractResamplingTestCorrection [] corrections = new AbstractResamplingTestCorrection[]{
+				new WestfallYoungSingleStep(), new WestfallYoungSingleStepApproximate(),
+				new WestfallYoungStepDownCached()
+		};
+
+		for (AbstractResamplingTestCorrection correction : corrections)
+		{
+			correction.setNumberOfResamplingSteps(20);
+			correction.setSizeTolerance(0);
+			assertEquals(correction.getName(), 20, countDraws(correction, 100));
+			assertEquals(correction.getName(), 0, countDraws(correction, 100));
+			assertEquals(correction.getName(), 20, countDraws(correction, 105));
+
+			/* 108 is within 10% of 100 and of 105, 111 only of 105, 120 of none */
+			correction.setSizeTolerance(10);
+			assertEquals(correction.getName(), 0, countDraws(correction, 108));
+			assertEquals(correction.getName(), 0, countDraws(correction, 111));
+			assertEquals(correction.getName(), 0, countDraws(correction, 91));
+			assertEquals(correction.getName(), 20, countDraws(correction, 120));
+
+			correction.resetCache();
+			assertEquals(correction.getName(), 20, countDraws(correction, 105));
+		}
+		assertEquals(10, new WestfallYoungSingleStepApproximate().getSizeTolerance());
+	}
+}
@@ -55,4 +55,39 @@ public class PValueSetStoreTest
 		Assert.assertTrue(count == 3);
 	}
 
+	@Test
+	public void testPrimitiveAccess()
+	{
+		int nSets = 5;
+		int setSize = 100;
+
+		/* Capacity is exceeded on purpose */
+		PvalueSetStore store = new PvalueSetStore(2,setSize);
+
+		double [][] expected = new double[nSets][setSize];
+		for (int i=0; i < nSets; i++) {
+			PValue [] pvals = new PValue[setSize];
+			for (int j=0; j < setSize; j++) {
+				pvals[j] = new PValue();
+				pvals[j].p = (i * setSize + j) / 1000.0;
+				pvals[j].ignoreAtMTC = (j % 3) == 0;
+				expected[i][j] = pvals[j].ignoreAtMTC ? 1.0 : pvals[j].p;
+			}
+			store.add(pvals);
+		}
+
+		Assert.assertEquals(nSets, store.size());
+		Assert.assertEquals(setSize, store.getSetSize());
+
+		double [] p = new double[setSize];
+		for (int i=0; i < nSets; i++)
+			Assert.assertArrayEquals(expected[i], store.get(i, p), 0.0);
+
+		int i = 0;
+		for (PValue [] pvals : store) {
+			for (int j=0; j < setSize; j++)
+				Assert.assertEquals(expected[i][j], pvals[j].p, 0.0);
+			i++;
+		}
+	}
 }
@@ -1,6 +1,8 @@
 package ontologizer.calculation;
 
+import ontologizer.set.PopulationSet;
 import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.HypergeometricCache;
 
 /**
  *
@@ -14,7 +16,25 @@ public abstract class AbstractHypergeometricCalculation implements ICalculation
 {
 	/**
 	 * An object responsible for calculation of hypergeometric
-	 * data
+	 * data. All calculations share the p-value memo
+	 * {@link HypergeometricCache#getDefault()}. As the object is passed on
+	 * to the p-value calculations, the memo is also used during resampling.
 	 */
-	protected Hypergeometric hyperg = new Hypergeometric();
+	protected Hypergeometric hyperg = new Hypergeometric(1);
+
+	/**
+	 * Returns the object responsible for calculation of hypergeometric
+	 * data for the given population. Its log factorial table is sized to
+	 * the population, so the table isn't modified during the calculation.
+	 *
+	 * @param populationSet the population set of the calculation.
+	 * @return the object, which is also stored in {@link #hyperg}.
+	 */
+	protected synchronized Hypergeometric getHypergeometric(PopulationSet populationSet)
+	{
+		int populationSize = populationSet.getGeneCount();
+		if (hyperg.getPopulationSize() < populationSize)
+			hyperg = new Hypergeometric(populationSize);
+		return hyperg;
+	}
 }
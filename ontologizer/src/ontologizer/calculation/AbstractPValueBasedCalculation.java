@@ -45,7 +45,7 @@ public abstract class AbstractPValueBasedCalculation extends AbstractHypergeomet
 		studySetResult.setCalculationName(this.getName());
 		studySetResult.setCorrectionName(testCorrection.getName());
 
-		IPValueCalculation pValueCalculation = newPValueCalculation(graph, associations, populationSet, studySet, hyperg);
+		IPValueCalculation pValueCalculation = newPValueCalculation(graph, associations, populationSet, studySet, getHypergeometric(populationSet));
 		PValue p[] = testCorrection.adjustPValues(pValueCalculation, CalculationProgress2TestCorrectionProgress.createUnlessNull(calculationProgress));
 
 		/* Add the results to the result list and filter out terms
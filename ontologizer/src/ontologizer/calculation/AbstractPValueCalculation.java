@@ -1,24 +1,27 @@
 package ontologizer.calculation;
 
+import static ontologizer.util.Util.mix;
+
 import java.util.Arrays;
-import java.util.List;
+import java.util.Random;
 
 import ontologizer.association.AssociationContainer;
 import ontologizer.association.Gene2Associations;
-import ontologizer.enumeration.TermEnumerator;
-import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.enumeration.BitmapTermEnumerator;
 import ontologizer.ontology.Ontology;
 import ontologizer.ontology.TermID;
 import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.IFingerprintable;
 import ontologizer.statistics.IPValueCalculation;
 import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.ISeededPValueCalculation;
 import ontologizer.statistics.PValue;
 import ontologizer.types.ByteString;
 import sonumina.collections.ObjectIntHashMap;
 
-public abstract class AbstractPValueCalculation implements IPValueCalculation
+public abstract class AbstractPValueCalculation implements IPValueCalculation, ISeededPValueCalculation, IFingerprintable
 {
 	protected final Ontology graph;
 	protected final AssociationContainer associations;
@@ -33,6 +36,12 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 	private ObjectIntHashMap<TermID> termId2Index;
 	protected int [][] term2Items;
 
+	/** The fingerprint of the population genes in the order of their indices */
+	private long genesFingerprint;
+
+	/** The fingerprint of the calculation context, 0 if not yet calculated */
+	private long fingerprint;
+
 	public AbstractPValueCalculation(Ontology graph,
 			AssociationContainer goAssociations, PopulationSet populationSet,
 			StudySet studySet, Hypergeometric hyperg)
@@ -48,40 +57,62 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 
 	private void initCalculationContext(Ontology graph, AssociationContainer goAssociations, StudySet populationSet)
 	{
-		TermEnumerator populationTermEnumerator = populationSet.enumerateTerms(graph, goAssociations);
+		/* The enumerator already provides dense gene indices and sorted gene index arrays */
+		BitmapTermEnumerator populationTermEnumerator = populationSet.enumerateTermsAsBitmaps(graph, goAssociations);
 		totalNumberOfAnnotatedTerms = populationTermEnumerator.getTotalNumberOfAnnotatedTerms();
 
-		List<ByteString> itemList = populationTermEnumerator.getGenesAsList();
-		item2Index = new ObjectIntHashMap<ByteString>(itemList.size()*3/2);
-		int itemId = 0;
-		for (ByteString item : itemList)
+		int numItems = populationTermEnumerator.getNumberOfGenes();
+		item2Index = new ObjectIntHashMap<ByteString>(numItems*3/2);
+		for (int itemId = 0; itemId < numItems; itemId++)
 		{
-			item2Index.put(item, itemId++);
+			ByteString gene = populationTermEnumerator.getGene(itemId);
+			item2Index.put(gene, itemId);
+			genesFingerprint = mix(genesFingerprint ^ gene.hashCode());
 		}
 
 		termIds = new TermID[totalNumberOfAnnotatedTerms];
 		term2Items = new int[totalNumberOfAnnotatedTerms][];
 
 		int i = 0;
-
-		for (TermID term : populationTermEnumerator)
+		for (int t : populationTermEnumerator.getAnnotatedTermIndices())
 		{
-			TermAnnotatedGenes tag = populationTermEnumerator.getAnnotatedGenes(term);
-			int nTermItems = tag.totalAnnotated.size();
+			term2Items[i] = populationTermEnumerator.getTotalAnnotatedGenes(t);
+			termIds[i] = populationTermEnumerator.getTermID(t);
+			i++;
+		}
+	}
+
+	/**
+	 * Returns a fingerprint of the calculation method, the population genes,
+	 * the terms, their parents and their annotated population genes.
+	 */
+	public synchronized long getFingerprint()
+	{
+		if (fingerprint != 0)
+			return fingerprint;
 
-			term2Items[i] = new int[nTermItems];
+		long h = mix(getClass().getName().hashCode());
 
-			int j = 0;
-			for (ByteString item : tag.totalAnnotated)
-			{
-				term2Items[i][j++] = item2Index.get(item);
-			}
+		h = mix(h ^ genesFingerprint);
 
-			Arrays.sort(term2Items[i]);
+		for (int i = 0; i < termIds.length; i++)
+		{
+			h = mix(h ^ termIds[i].toString().hashCode());
 
-			termIds[i] = term;
-			i++;
+			/* The order of the parents is not defined */
+			long parents = 0;
+			for (TermID parent : graph.getTermParents(termIds[i]))
+				parents += mix(parent.toString().hashCode());
+			h = mix(h ^ parents);
+
+			for (int item : term2Items[i])
+				h = mix(h ^ item);
+			h = mix(h ^ term2Items[i].length);
 		}
+
+		if (h == 0) h = 1;
+		fingerprint = h;
+		return h;
 	}
 
 	protected final int getTotalNumberOfAnnotatedTerms()
@@ -119,6 +150,11 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 		return calculatePValues(populationSet.generateRandomStudySet(observedStudySet.getGeneCount()), progress);
 	}
 
+	public final PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd)
+	{
+		return calculatePValues(populationSet.generateRandomStudySet(observedStudySet.getGeneCount(), rnd), progress);
+	}
+
 
 	/**
 	 * Get a unique id representation of the given study set.
@@ -16,9 +16,11 @@ import ontologizer.association.AssociationContainer;
 import ontologizer.association.Gene2Associations;
 import ontologizer.enumeration.TermEnumerator;
 import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Term;
 import ontologizer.ontology.TermID;
 import ontologizer.set.StudySet;
 import ontologizer.types.ByteString;
+import sonumina.math.graph.CommonAncestorIndex;
 
 /**
  * Stripped-down-version of the general HashMap function suitable
@@ -424,6 +426,15 @@ public class SemanticCalculation
 	 */
 	private Object [] associations;
 
+	/** Answers the most informative common ancestor queries, the information content is -log(p) */
+	private CommonAncestorIndex<TermID> micaIndex;
+
+	/**
+	 * Non-redundant associations (indexed by genes) as indices of the micaIndex.
+	 * Null if not all terms are covered by the index.
+	 */
+	private int [][] associationIndices;
+
 	private HashMap<ByteString,Integer> gene2index = new HashMap<ByteString,Integer>();
 
 	public SemanticCalculation(Ontology g, AssociationContainer assoc)
@@ -474,6 +485,27 @@ public class SemanticCalculation
 			i++;
 		}
 
+		/* Precompute the index for the shared information content */
+		HashMap<TermID,Double> informationContent = new HashMap<TermID,Double>();
+		for (Term t : g)
+			informationContent.put(t.getID(), -Math.log(p(t.getID())));
+		micaIndex = g.createCommonAncestorIndex(informationContent);
+
+		associationIndices = new int[associations.length][];
+		for (i=0;i<associations.length && associationIndices != null;i++)
+		{
+			TermID [] terms = (TermID[])associations[i];
+			associationIndices[i] = new int[terms.length];
+			for (int j=0;j<terms.length;j++)
+			{
+				if ((associationIndices[i][j] = micaIndex.getVertexIndex(terms[j])) == -1)
+				{
+					associationIndices = null;
+					break;
+				}
+			}
+		}
+
 		if (numberOfProcessors > 1)
 		{
 			cacheLock = new ReentrantReadWriteLock();
@@ -525,6 +557,15 @@ public class SemanticCalculation
 	 */
 	private double sim(TermID t1, TermID t2)
 	{
+		int i1 = micaIndex.getVertexIndex(t1);
+		int i2 = micaIndex.getVertexIndex(t2);
+		if (i1 != -1 && i2 != -1)
+		{
+			int mica = micaIndex.getMICA(i1, i2);
+			if (mica == -1) return 0;
+			return Math.max(0, micaIndex.getInformationContent(mica));
+		}
+
 		/* Similarity of terms is symmetric */
 		if (t1.id > t2.id)
 		{
@@ -583,6 +624,13 @@ public class SemanticCalculation
 
 		if (g1 < 0 || g2 < 0) return 0;
 
+		if (associationIndices != null)
+		{
+			int mica = micaIndex.getMaxMICA(associationIndices[g1], associationIndices[g2]);
+			if (mica == -1) return 0;
+			return Math.max(0, micaIndex.getInformationContent(mica));
+		}
+
 		sim = 0.0;
 
 		TermID [] tl1 = (TermID[])associations[g1];
@@ -1,6 +1,7 @@
 package ontologizer.calculation;
 
 import ontologizer.association.AssociationContainer;
+import ontologizer.enumeration.IncrementalTermEnumerator;
 import ontologizer.ontology.Ontology;
 import ontologizer.ontology.TermID;
 import ontologizer.set.PopulationSet;
@@ -30,6 +31,18 @@ public class TermForTermPValueCalculation extends AbstractPValueCalculation
 
 		PValue p [] = new PValue[getTotalNumberOfAnnotatedTerms()];
 
+		int popGeneCount = populationSet.getGeneCount();
+		int studyGeneCount = studySet.getGeneCount();
+
+		/* A study set that is tweaked gene by gene may maintain its counts
+		 * incrementally. They can be taken as they are if every study gene
+		 * is a distinct gene of the population */
+		IncrementalTermEnumerator studyTermEnumerator = studySet.getIncrementalTermEnumerator(graph, associations);
+		if (studyTermEnumerator != null && (studyIds.length != studyGeneCount || studyTermEnumerator.getNumberOfGenes() != studyGeneCount))
+			studyTermEnumerator = null;
+
+		int [] annotatedPopGeneCounts = new int[termIds.length];
+		int [] annotatedStudyGeneCounts = new int[termIds.length];
 		for (int i = 0; i < termIds.length; i++)
 		{
 			if (progress != null && (i % 256) == 0)
@@ -37,11 +50,22 @@ public class TermForTermPValueCalculation extends AbstractPValueCalculation
 				progress.update(i);
 			}
 
+			annotatedPopGeneCounts[i] = term2Items[i].length;
+			if (studyTermEnumerator != null)
+				annotatedStudyGeneCounts[i] = studyTermEnumerator.getTotalAnnotatedCount(studyTermEnumerator.getTermIndex(termIds[i]));
+			else
+				annotatedStudyGeneCounts[i] = Util.commonInts(studyIds, term2Items[i]);
+		}
+
+		/* Evaluate the upper tails of all terms in one go */
+		double [] pvalues = hyperg.phypergeometric(popGeneCount, studyGeneCount,
+				annotatedPopGeneCounts, annotatedStudyGeneCounts);
+
+		for (int i = 0; i < termIds.length; i++)
+		{
 			TermID term = termIds[i];
-			int goidAnnotatedPopGeneCount = term2Items[i].length;
-			int popGeneCount = populationSet.getGeneCount();
-			int studyGeneCount = studySet.getGeneCount();
-			int goidAnnotatedStudyGeneCount = Util.commonInts(studyIds, term2Items[i]);
+			int goidAnnotatedPopGeneCount = annotatedPopGeneCounts[i];
+			int goidAnnotatedStudyGeneCount = annotatedStudyGeneCounts[i];
 
 			TermForTermGOTermProperties myP = new TermForTermGOTermProperties();
 			myP.term = term;
@@ -62,8 +86,7 @@ public class TermForTermPValueCalculation extends AbstractPValueCalculation
 				 * white balls after the whole drawing process?
 				 */
 
-				myP.p = hyperg.phypergeometric(popGeneCount, (double)goidAnnotatedPopGeneCount / (double)popGeneCount,
-						studyGeneCount, goidAnnotatedStudyGeneCount);
+				myP.p = pvalues[i];
 				myP.p_min = hyperg.dhyper(
 						goidAnnotatedPopGeneCount,
 						popGeneCount,
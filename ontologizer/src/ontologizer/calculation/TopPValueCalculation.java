@@ -0,0 +1,164 @@
+package ontologizer.calculation;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.enumeration.BitmapTermEnumerator;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Term;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.PValue;
+import sonumina.math.graph.CSRDirectedGraphView;
+
+/**
+ * The p-value calculation of the topGO elim method.
+ *
+ * The terms are processed bottom-up in reverse topological order. The genes
+ * that have been marked by significant descendants of a term are kept as a
+ * bitmap over the population genes and are removed from the counts of the
+ * term. As the marked genes of a term are a subset of its annotated study
+ * genes, both counts are reduced by the size of the intersection of the
+ * marked and the annotated genes.
+ *
+ * The calculation holds no state that is modified when the p-values are
+ * calculated, hence random p-values may be calculated concurrently.
+ */
+public class TopPValueCalculation extends AbstractPValueCalculation
+{
+	/** The level below which a term marks its genes */
+	static final double SIGNIFICANCE_LEVEL = 0.01;
+
+	/** The population enumerator whose term indices are the vertex indices of the view */
+	private final BitmapTermEnumerator populationTermEnumerator;
+
+	/** The view of the ontology */
+	private final CSRDirectedGraphView<Term> view;
+
+	/** Maps the vertex indices of the view to the index of the p-value or -1 */
+	private final int [] vertex2Index;
+
+	public TopPValueCalculation(Ontology graph,
+			AssociationContainer associations, PopulationSet populationSet,
+			StudySet studySet, Hypergeometric hyperg)
+	{
+		super(graph, associations, populationSet, studySet, hyperg);
+
+		populationTermEnumerator = populationSet.enumerateTermsAsBitmaps(graph, associations);
+		view = populationTermEnumerator.getView();
+
+		/* The p-values follow the order of the annotated terms of the enumerator */
+		vertex2Index = new int[view.getNumberOfVertices()];
+		for (int v = 0; v < vertex2Index.length; v++)
+			vertex2Index[v] = -1;
+		int [] annotatedTerms = populationTermEnumerator.getAnnotatedTermIndices();
+		for (int i = 0; i < annotatedTerms.length; i++)
+			vertex2Index[annotatedTerms[i]] = i;
+	}
+
+	protected PValue [] calculatePValues(StudySet studySet, IPValueCalculationProgress progress)
+	{
+		int words = (populationTermEnumerator.getNumberOfGenes() + 63) >>> 6;
+		long [] studyBits = new long[words];
+		for (int id : getUniqueIDs(studySet))
+			studyBits[id >>> 6] |= 1L << id;
+
+		int popGeneCount = populationSet.getGeneCount();
+		int studyGeneCount = studySet.getGeneCount();
+
+		PValue p [] = new PValue[getTotalNumberOfAnnotatedTerms()];
+
+		/* The genes marked by the significant descendants of each term, null if there are none.
+		 * A term that doesn't mark any genes on its own may share the set of a child */
+		long [][] marked = new long[view.getNumberOfVertices()][];
+
+		/* The number of parents of each term that still need its marked genes */
+		int [] pendingParents = new int[view.getNumberOfVertices()];
+		for (int v = 0; v < pendingParents.length; v++)
+			pendingParents[v] = view.parentOffsets[v + 1] - view.parentOffsets[v];
+
+		int [] order = view.topologicalOrder;
+		int processed = 0;
+		for (int k = order.length - 1; k >= 0; k--)
+		{
+			int v = order[k];
+
+			/* Determine genes that are marked */
+			long [] m = null;
+			boolean shared = false;
+			for (int j = view.childOffsets[v]; j < view.childOffsets[v + 1]; j++)
+			{
+				int c = view.children[j];
+				long [] mc = marked[c];
+
+				/* Release the set once all parents have seen it */
+				if (--pendingParents[c] == 0)
+					marked[c] = null;
+
+				if (mc == null || mc == m)
+					continue;
+				if (m == null)
+				{
+					m = mc;
+					shared = true;
+					continue;
+				}
+				if (shared)
+				{
+					m = m.clone();
+					shared = false;
+				}
+				for (int w = 0; w < words; w++)
+					m[w] |= mc[w];
+			}
+
+			int i = vertex2Index[v];
+			if (i >= 0)
+			{
+				if (progress != null && (processed++ % 256) == 0)
+					progress.update(processed);
+
+				int annotatedPopGeneCount = populationTermEnumerator.getTotalAnnotatedCount(v);
+				int annotatedStudyGeneCount = populationTermEnumerator.getTotalAnnotatedCount(v, studyBits);
+				int markedGeneCount = m != null ? populationTermEnumerator.getTotalAnnotatedCount(v, m) : 0;
+
+				int goidAnnotatedPopGeneCount = annotatedPopGeneCount - markedGeneCount;
+				int goidAnnotatedStudyGeneCount = annotatedStudyGeneCount - markedGeneCount;
+
+				TopGOTermProperties myP = new TopGOTermProperties();
+				myP.term = termIds[i];
+				myP.annotatedStudyGenes = annotatedStudyGeneCount;
+				myP.annotatedPopulationGenes = annotatedPopGeneCount;
+
+				if (goidAnnotatedStudyGeneCount != 0)
+				{
+					/* See TermForTermPValueCalculation, but with the marked genes removed from the urn */
+					myP.p = hyperg.phypergeometric(popGeneCount, (double)goidAnnotatedPopGeneCount / (double)popGeneCount, studyGeneCount, goidAnnotatedStudyGeneCount);
+					myP.p_min = hyperg.dhyper(goidAnnotatedPopGeneCount, popGeneCount, goidAnnotatedPopGeneCount, goidAnnotatedPopGeneCount);
+
+					if (myP.p < SIGNIFICANCE_LEVEL)
+					{
+						/* Mark the annotated study genes */
+						if (m == null)
+							m = new long[words];
+						else if (shared)
+							m = m.clone();
+						populationTermEnumerator.addTotalAnnotatedGenes(v, studyBits, m);
+					}
+				} else
+				{
+					/* Mark this p value as irrelevant so it isn't considered in an mtc */
+					myP.p = 1.0;
+					myP.ignoreAtMTC = true;
+					myP.p_min = 1.0;
+				}
+				myP.p_adjusted = myP.p;
+				p[i] = myP;
+			}
+
+			if (pendingParents[v] != 0)
+				marked[v] = m;
+		}
+		return p;
+	}
+}
@@ -1,6 +1,5 @@
 package ontologizer.calculation;
 
-import java.util.HashMap;
 import java.util.HashSet;
 
 import ontologizer.types.ByteString;
@@ -20,9 +19,6 @@ public class TopologyWeightGOTermProperties extends AbstractGOTermProperties
 	/** Genes which should be removed for terms in upper levels */
 	public HashSet<ByteString> markedGenes;
 
-	/** Weight of the annotated genes */
-	private HashMap<ByteString,Double> weight = new HashMap<ByteString,Double>();
-
 	@Override
 	public int getNumberOfProperties()
 	{
@@ -66,30 +62,4 @@ public class TopologyWeightGOTermProperties extends AbstractGOTermProperties
 	{
 		return propNumber == 3;
 	}
-
-	/**
-	 * Returns the weight of the given gene. If no weight
-	 * has been set yet, returns 1.
-	 *
-	 * @param gene
-	 * @return the weight
-	 */
-	public double getWeight(ByteString gene)
-	{
-		Double w = weight.get(gene);
-		if (w == null) return 1;
-		return w;
-	}
-
-	/**
-	 * Sets the weight.
-	 *
-	 * @param gene
-	 * @param w
-	 */
-	public void setWeight(ByteString gene, double w)
-	{
-		weight.put(gene,w);
-	}
-
 }
@@ -1,172 +1,454 @@
 package ontologizer.calculation;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import ontologizer.association.AssociationContainer;
-import ontologizer.enumeration.TermEnumerator;
-import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.association.Gene2Associations;
+import ontologizer.enumeration.BitmapTermEnumerator;
 import ontologizer.ontology.Ontology;
-import ontologizer.ontology.TermID;
-import ontologizer.ontology.Ontology.GOLevels;
+import ontologizer.ontology.Term;
 import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.statistics.AbstractTestCorrection;
+import ontologizer.statistics.Hypergeometric;
 import ontologizer.types.ByteString;
-
+import sonumina.math.graph.CSRDirectedGraphView;
+
+/**
+ * The weight method of topGO.
+ *
+ * Terms and genes are identified by the dense indices of the population's
+ * {@link BitmapTermEnumerator}. Every readjustment of the weights of a term
+ * applies to all of its annotated genes alike, hence the weights of a term
+ * are kept as a single factor. A child additionally inherits the factor of
+ * the parent that readjusted it for the genes of the parent that are not
+ * annotated to the child. These weights are applied whenever the weighted
+ * counts of the term are determined.
+ *
+ * Study genes that are not part of the population are not counted, like in
+ * the p-value based calculations. Within a level, the terms are processed in
+ * the order of their indices.
+ *
+ * Terms that are connected only via the root never affect each other. If an
+ * executor is set, such independent subgraphs are processed in parallel.
+ */
 public class TopologyWeightedCalculation extends AbstractHypergeometricCalculation implements IProgressFeedback
 {
 	static final double SIGNIFICANCE_LEVEL = 0.01;
 
 	private ICalculationProgress calculationProgress;
 
-	private void computeTermSig(PopulationSet populationSet, StudySet studySet, Ontology graph, TermID u, Set<TermID> children, EnrichedGOTermsResult studySetResult, TermEnumerator studyTermEnumerator, TermEnumerator populationTermEnumerator)
+	/** Used to process independent subgraphs, null to process them in the calling thread */
+	private ExecutorService executor;
+
+	/**
+	 * Per-thread buffers for the inherited weights of the genes.
+	 */
+	private static class Scratch
 	{
-		if (graph.isArtificialRootTerm(u)) return;
+		/** The inherited weights, all entries are 1 between uses */
+		public double [] weights;
 
-		/* Execute Fisher */
-		TopologyWeightGOTermProperties prop = wFisher(populationSet, studySet, graph, u, studySetResult, studyTermEnumerator, populationTermEnumerator);
+		/** Whether a gene has been touched, all entries are false between uses */
+		public boolean [] isTouched;
 
-		if (children == null || children.size() == 0) return;
+		/** The touched genes */
+		public int [] touched;
 
-		HashMap<TermID,Double> weights = new HashMap<TermID,Double>();
-		HashSet<TermID> sigChildren = new HashSet<TermID>();
-		for (TermID child : children)
+		public Scratch(int numGenes)
 		{
-			TopologyWeightGOTermProperties childProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(child);
-			double w = sigRatio(childProp.p, prop.p);
-			weights.put(child,w);
-			if (w > 1) sigChildren.add(child);
+			weights = new double[numGenes];
+			Arrays.fill(weights, 1.0);
+			isTouched = new boolean[numGenes];
+			touched = new int[numGenes];
 		}
+	}
+
+	/**
+	 * The state of the calculation of a single study set.
+	 */
+	private class Context
+	{
+		private BitmapTermEnumerator populationTermEnumerator;
+		private CSRDirectedGraphView<Term> view;
+
+		/** The vertex index of the root */
+		private int root;
+
+		/** Whether the root is an artificial one */
+		private boolean artificialRoot;
+
+		/** Whether a relevant subset or subontology restricts the terms */
+		private boolean restricted;
+
+		/** The study genes as bitmap over the population genes */
+		private long [] studyBits;
+
+		private int popGeneCount;
+		private int studyGeneCount;
+
+		/** The number of population genes annotated to each term */
+		private int [] popCounts;
+
+		/** The number of study genes annotated to each term, 0 for irrelevant terms */
+		private int [] studyCounts;
+
+		/** The weight of the genes annotated to each term */
+		private double [] factors;
 
-		if (sigChildren.size() == 0)
+		/** The parents that readjusted the weights of each term, only the first numInherited[t] entries are valid */
+		private int [][] inheritedTerms;
+
+		/** The factors of the parents that readjusted the weights of each term */
+		private double [][] inheritedFactors;
+
+		private int [] numInherited;
+
+		/** The annotated population genes of the terms, determined on demand */
+		private int [][] genes;
+
+		private TopologyWeightGOTermProperties [] props;
+
+		/** Calculates the p-values, its table is sized to the population */
+		private Hypergeometric hyperg;
+
+		public Context(Ontology graph, AssociationContainer associations, PopulationSet populationSet, StudySet studySet)
 		{
-			/* Case 1: U is the most significant term in the family */
-			for (TermID child : children)
+			hyperg = getHypergeometric(populationSet);
+			populationTermEnumerator = populationSet.enumerateTermsAsBitmaps(graph, associations);
+			view = populationTermEnumerator.getView();
+			root = view.getVertexIndex(graph.getRootTerm());
+			artificialRoot = graph.isArtificialRootTerm(graph.getRootTerm().getID());
+			restricted = graph.getRelevantSubset() != null ||
+					(graph.getRelevantSubontology() != null && !graph.isRootTerm(graph.getRelevantSubontology()));
+
+			popGeneCount = populationTermEnumerator.getNumberOfGenes();
+			studyBits = new long[(popGeneCount + 63) >>> 6];
+			for (ByteString gene : studySet)
 			{
-				TopologyWeightGOTermProperties childProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(child);
-				double w = weights.get(child);
+				int g = populationTermEnumerator.getGeneIndex(gene);
+				if (g < 0)
+				{
+					/* Try synonyms etc. */
+					Gene2Associations g2a = associations.get(gene);
+					if (g2a != null)
+						g = populationTermEnumerator.getGeneIndex(g2a.name());
+				}
+				if (g >= 0 && (studyBits[g >>> 6] & (1L << g)) == 0)
+				{
+					studyBits[g >>> 6] |= 1L << g;
+					studyGeneCount++;
+				}
+			}
+
+			int n = view.getNumberOfVertices();
+			popCounts = new int[n];
+			studyCounts = new int[n];
+			for (int t : populationTermEnumerator.getAnnotatedTermIndices())
+			{
+				popCounts[t] = populationTermEnumerator.getTotalAnnotatedCount(t);
+				studyCounts[t] = populationTermEnumerator.getTotalAnnotatedCount(t, studyBits);
+			}
+
+			factors = new double[n];
+			Arrays.fill(factors, 1.0);
+			inheritedTerms = new int[n][];
+			inheritedFactors = new double[n][];
+			numInherited = new int[n];
+			genes = new int[n][];
+			props = new TopologyWeightGOTermProperties[n];
+		}
 
-				/* Readjust the weight for every gene annotated to the child */
-				TermAnnotatedGenes childAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
-				for (ByteString gene : childAnnotatedGenes.totalAnnotated)
-					childProp.setWeight(gene, childProp.getWeight(gene) * w);
+		/**
+		 * @return the terms to which at least a single study gene is annotated,
+		 *  ordered descending by their level, i.e., the length of the longest
+		 *  path from the root. If the terms are restricted, the level is
+		 *  the one within the graph of the relevant terms.
+		 */
+		public int [] getTermsBottomUp()
+		{
+			int n = view.getNumberOfVertices();
+			int [] levels = new int[n];
+			int maxLevel = 0;
+			for (int v : view.topologicalOrder)
+			{
+				if (restricted)
+				{
+					if (!populationTermEnumerator.isRelevant(v)) continue;
+
+					/* An irrelevant term on a path is skipped, hence consider all relevant ancestors */
+					for (int j = view.ancestorOffsets[v]; j < view.ancestorOffsets[v + 1]; j++)
+					{
+						int a = view.ancestors[j];
+						if (a != v && populationTermEnumerator.isRelevant(a))
+							levels[v] = Math.max(levels[v], levels[a] + 1);
+					}
+				} else
+				{
+					for (int j = view.parentOffsets[v]; j < view.parentOffsets[v + 1]; j++)
+						levels[v] = Math.max(levels[v], levels[view.parents[j]] + 1);
+				}
+				maxLevel = Math.max(maxLevel, levels[v]);
+			}
 
-				/* Recalculate the child's significance */
-				wFisher(populationSet, studySet, graph, child, studySetResult, studyTermEnumerator, populationTermEnumerator);
+			/* Bucket the terms by their level */
+			int [] levelOffsets = new int[maxLevel + 2];
+			int numTerms = 0;
+			for (int v = 0; v < n; v++)
+			{
+				if (studyCounts[v] == 0) continue;
+				levelOffsets[maxLevel - levels[v] + 1]++;
+				numTerms++;
+			}
+			for (int l = 0; l <= maxLevel; l++)
+				levelOffsets[l + 1] += levelOffsets[l];
+			int [] terms = new int[numTerms];
+			for (int v = 0; v < n; v++)
+			{
+				if (studyCounts[v] == 0) continue;
+				terms[levelOffsets[maxLevel - levels[v]]++] = v;
 			}
-			return;
+			return terms;
 		}
 
-		/* Case 2: At least one child is more significant than u */
-		for (TermID child : sigChildren)
+		/**
+		 * Splits the given terms into groups of terms that are connected
+		 * without the root. A term is connected to all of its ancestors
+		 * among the terms, as these are the ones whose weights it changes.
+		 * The order of the terms is kept within each group. The root itself
+		 * is not part of any group.
+		 *
+		 * @param terms the terms
+		 * @return the groups
+		 */
+		public List<int []> getIndependentGroups(int [] terms)
 		{
-			double w = weights.get(child);
+			/* Union-find over the terms */
+			int [] component = new int[view.getNumberOfVertices()];
+			for (int v = 0; v < component.length; v++)
+				component[v] = v;
 
-			Set<TermID> upper = graph.getTermsOfInducedGraph(graph.getRootTerm().getID(), u);
-			upper.remove(u);
-			upper.remove(graph.getRootTerm().getID());
+			for (int v : terms)
+			{
+				if (v == root) continue;
+				for (int j = view.ancestorOffsets[v]; j < view.ancestorOffsets[v + 1]; j++)
+				{
+					int a = view.ancestors[j];
+					if (a == v || a == root || studyCounts[a] == 0) continue;
+					component[find(component, v)] = find(component, a);
+				}
+			}
 
-			for (TermID up : upper)
+			int [] groupOfComponent = new int[component.length];
+			Arrays.fill(groupOfComponent, -1);
+			List<int []> groups = new ArrayList<int []>();
+			int [] sizes = new int[terms.length];
+			for (int v : terms)
+			{
+				if (v == root) continue;
+				int c = find(component, v);
+				if (groupOfComponent[c] == -1)
+					groupOfComponent[c] = groups.size();
+				sizes[groupOfComponent[c]]++;
+				if (groups.size() <= groupOfComponent[c])
+					groups.add(null);
+			}
+			for (int i = 0; i < groups.size(); i++)
+				groups.set(i, new int[sizes[i]]);
+			Arrays.fill(sizes, 0);
+			for (int v : terms)
 			{
-				ensureGOTermPropertiesExistence(graph, up, studySetResult, studyTermEnumerator, populationTermEnumerator);
+				if (v == root) continue;
+				int g = groupOfComponent[find(component, v)];
+				groups.get(g)[sizes[g]++] = v;
+			}
+			return groups;
+		}
 
-				TopologyWeightGOTermProperties upProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(up);
+		private int find(int [] component, int v)
+		{
+			while (component[v] != v)
+			{
+				component[v] = component[component[v]];
+				v = component[v];
+			}
+			return v;
+		}
 
-				TermAnnotatedGenes upAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(up);
+		private int [] getGenes(int t)
+		{
+			int [] g = genes[t];
+			if (g == null)
+				g = genes[t] = populationTermEnumerator.getTotalAnnotatedGenes(t);
+			return g;
+		}
 
-				for (ByteString gene : upAnnotatedGenes.totalAnnotated)
-					upProp.setWeight(gene, upProp.getWeight(gene) / w);
+		private TopologyWeightGOTermProperties ensureGOTermPropertiesExistence(int u)
+		{
+			TopologyWeightGOTermProperties prop = props[u];
+			if (prop == null)
+			{
+				prop = new TopologyWeightGOTermProperties();
+				prop.term = populationTermEnumerator.getTermID(u);
+				prop.annotatedStudyGenes = studyCounts[u];
+				prop.annotatedPopulationGenes = popCounts[u];
+				props[u] = prop;
 			}
+			return prop;
 		}
 
-		HashSet<TermID> newChildren = new HashSet<TermID>();
-		for (TermID t : children)
+		/**
+		 * Multiplies the weights of the genes of the given term by w.
+		 * Genes of the parent that are not annotated to the term are
+		 * affected as well.
+		 */
+		private void readjust(int t, int parent, double w)
 		{
-			if (!sigChildren.contains(t))
-				newChildren.add(t);
+			factors[t] *= w;
+
+			int k = numInherited[t];
+			if (inheritedTerms[t] == null)
+			{
+				inheritedTerms[t] = new int[2];
+				inheritedFactors[t] = new double[2];
+			} else if (k == inheritedTerms[t].length)
+			{
+				inheritedTerms[t] = Arrays.copyOf(inheritedTerms[t], k * 2);
+				inheritedFactors[t] = Arrays.copyOf(inheritedFactors[t], k * 2);
+			}
+			inheritedTerms[t][k] = parent;
+			inheritedFactors[t][k] = w;
+			numInherited[t] = k + 1;
 		}
-	}
 
-	/**
-	 * Perform the weighted fisher test.
-	 *
-	 * @param populationSet
-	 * @param studySet
-	 * @param graph
-	 * @param u
-	 * @param studySetResult
-	 * @param studyTermEnumerator
-	 * @param populationTermEnumerator
-	 * @return
-	 */
-	private TopologyWeightGOTermProperties wFisher(PopulationSet populationSet,
-			StudySet studySet, Ontology graph, TermID u,
-			EnrichedGOTermsResult studySetResult,
-			TermEnumerator studyTermEnumerator,
-			TermEnumerator populationTermEnumerator)
-	{
+		/**
+		 * Perform the weighted fisher test.
+		 *
+		 * @param u the term
+		 * @param scratch the buffers of the current thread
+		 * @return the properties of the term
+		 */
+		private TopologyWeightGOTermProperties wFisher(int u, Scratch scratch)
+		{
+			TopologyWeightGOTermProperties prop = ensureGOTermPropertiesExistence(u);
 
-		TopologyWeightGOTermProperties prop = ensureGOTermPropertiesExistence(
-				graph, u, studySetResult, studyTermEnumerator,
-				populationTermEnumerator);
+			double goidAnnotatedPopGeneCount = factors[u] * popCounts[u];
+			double goidAnnotatedStudyGeneCount = factors[u] * studyCounts[u];
+			double popGeneCount = goidAnnotatedPopGeneCount + (this.popGeneCount - popCounts[u]);
+			double studyGeneCount = goidAnnotatedStudyGeneCount + (this.studyGeneCount - studyCounts[u]);
 
-		TermAnnotatedGenes populationAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
-		TermAnnotatedGenes studyAnnotatedGenes = studyTermEnumerator.getAnnotatedGenes(u);
+			/* Apply the weights that the genes not annotated to u inherited from the parents */
+			int numTouched = 0;
+			for (int i = 0; i < numInherited[u]; i++)
+			{
+				double w = inheritedFactors[u][i];
+				for (int g : getGenes(inheritedTerms[u][i]))
+				{
+					if (populationTermEnumerator.isTotalAnnotated(u, g))
+						continue;
+					if (!scratch.isTouched[g])
+					{
+						scratch.isTouched[g] = true;
+						scratch.touched[numTouched++] = g;
+					}
+					scratch.weights[g] *= w;
+				}
+			}
+			for (int i = 0; i < numTouched; i++)
+			{
+				int g = scratch.touched[i];
+				double delta = scratch.weights[g] - 1.0;
+				popGeneCount += delta;
+				if ((studyBits[g >>> 6] & (1L << g)) != 0)
+					studyGeneCount += delta;
+				scratch.weights[g] = 1.0;
+				scratch.isTouched[g] = false;
+			}
 
-		double goidAnnotatedPopGeneCount = 0;
-		double goidAnnotatedStudyGeneCount = 0;
-		double popGeneCount = 0;
-		double studyGeneCount = 0;
+			if (goidAnnotatedStudyGeneCount != 0)
+			{
+				prop.p = hyperg.phypergeometric((int)Math.ceil(popGeneCount), Math.ceil(goidAnnotatedPopGeneCount) / Math.ceil(popGeneCount),
+						(int)studyGeneCount, (int)goidAnnotatedStudyGeneCount);
+			} else
+			{
+				prop.p = 1;
+				prop.p_min = 1.0;
+			}
+			prop.p_adjusted = prop.p;
+			return prop;
+		}
 
-		for (ByteString gene : populationAnnotatedGenes.totalAnnotated)
-			goidAnnotatedPopGeneCount += prop.getWeight(gene);
+		public void computeTermSig(int u, Scratch scratch)
+		{
+			if (u == root && artificialRoot) return;
 
-		for (ByteString gene : studyAnnotatedGenes.totalAnnotated)
-			goidAnnotatedStudyGeneCount += prop.getWeight(gene);
+			/* Execute Fisher */
+			TopologyWeightGOTermProperties prop = wFisher(u, scratch);
 
-		/* Cannot use the population set items directly here as there could be synonyms. The term enumerator
-		 * will contain normalized item names.
-		 */
-		for (ByteString gene : populationTermEnumerator.getGenesAsList())
-			popGeneCount += prop.getWeight(gene);
+			int numChildren = 0;
+			int numSigChildren = 0;
+			int [] children = new int[view.childOffsets[u + 1] - view.childOffsets[u]];
+			double [] weights = new double[children.length];
+			for (int j = view.childOffsets[u]; j < view.childOffsets[u + 1]; j++)
+			{
+				int child = view.children[j];
+				if (studyCounts[child] == 0) continue;
 
-		/* Same as above */
-		for (ByteString gene : studyTermEnumerator.getGenesAsList())
-			studyGeneCount += prop.getWeight(gene);
+				double w = sigRatio(props[child].p, prop.p);
+				children[numChildren] = child;
+				weights[numChildren++] = w;
+				if (w > 1) numSigChildren++;
+			}
 
-		if (goidAnnotatedStudyGeneCount != 0)
-		{
-			prop.p = hyperg.phypergeometric((int)Math.ceil(popGeneCount), Math.ceil(goidAnnotatedPopGeneCount) / Math.ceil(popGeneCount),
-					(int)studyGeneCount, (int)goidAnnotatedStudyGeneCount);
-		} else
-		{
-			prop.p = 1;
-			prop.p_min = 1.0;
+			if (numChildren == 0) return;
+
+			if (numSigChildren == 0)
+			{
+				/* Case 1: U is the most significant term in the family */
+				for (int i = 0; i < numChildren; i++)
+				{
+					/* Readjust the weight for every gene annotated to u */
+					readjust(children[i], u, weights[i]);
+
+					/* Recalculate the child's significance */
+					wFisher(children[i], scratch);
+				}
+				return;
+			}
+
+			/* Case 2: At least one child is more significant than u */
+			for (int i = 0; i < numChildren; i++)
+			{
+				double w = weights[i];
+				if (w <= 1) continue;
+
+				for (int j = view.ancestorOffsets[u]; j < view.ancestorOffsets[u + 1]; j++)
+				{
+					int up = view.ancestors[j];
+					if (up == u || up == root || studyCounts[up] == 0)
+						continue;
+
+					ensureGOTermPropertiesExistence(up);
+					factors[up] /= w;
+				}
+			}
 		}
-		prop.p_adjusted = prop.p;
-		return prop;
-	}
 
-	private TopologyWeightGOTermProperties ensureGOTermPropertiesExistence(
-			Ontology graph, TermID u, EnrichedGOTermsResult studySetResult,
-			TermEnumerator studyTermEnumerator,
-			TermEnumerator populationTermEnumerator)
-	{
-		TopologyWeightGOTermProperties prop = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(u);
-		if (prop == null)
+		/**
+		 * Processes the given terms in the given order.
+		 */
+		public void computeTermSigs(int [] terms)
 		{
-			TermAnnotatedGenes populationAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
-			TermAnnotatedGenes studyAnnotatedGenes = studyTermEnumerator.getAnnotatedGenes(u);
-
-			prop = new TopologyWeightGOTermProperties();
-			prop.term = u;
-			prop.annotatedStudyGenes = studyAnnotatedGenes.totalAnnotatedCount();
-			prop.annotatedPopulationGenes = populationAnnotatedGenes.totalAnnotatedCount();
-			studySetResult.addGOTermProperties(prop);
+			Scratch scratch = new Scratch(popGeneCount);
+			for (int t : terms)
+				computeTermSig(t, scratch);
 		}
-		return prop;
 	}
 
 	private double sigRatio(double a, double b)
@@ -174,6 +456,18 @@ public class TopologyWeightedCalculation extends AbstractHypergeometricCalculati
 		return b/a;
 	}
 
+	/**
+	 * Sets the executor that is used to process independent parts of the
+	 * ontology in parallel.
+	 *
+	 * @param executor the executor or null if the terms should be processed
+	 *  in the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
 	public EnrichedGOTermsResult calculateStudySet(Ontology graph,
 			AssociationContainer goAssociations, PopulationSet populationSet,
 			StudySet studySet, AbstractTestCorrection testCorrection)
@@ -182,41 +476,81 @@ public class TopologyWeightedCalculation extends AbstractHypergeometricCalculati
 		studySetResult.setCalculationName(this.getName());
 		studySetResult.setCorrectionName(testCorrection.getName());
 
-		TermEnumerator studyTermEnumerator = studySet.enumerateTerms(graph,goAssociations);
-		TermEnumerator populationTermEnumerator = populationSet.enumerateTerms(graph,goAssociations);
-
-		Set<TermID> allAnnotatedTerms = studyTermEnumerator.getAllAnnotatedTermsAsSet();
-		GOLevels levels = graph.getGOLevels(allAnnotatedTerms);
-
-		int maxLevel = levels.getMaxLevel();
+		final Context context = new Context(graph, goAssociations, populationSet, studySet);
+		int [] terms = context.getTermsBottomUp();
 
 		if (calculationProgress != null)
-			calculationProgress.init(maxLevel);
+			calculationProgress.init(terms.length);
 
-		for (int i=maxLevel;i>=0;i--)
+		if (executor == null)
 		{
-			if (calculationProgress != null)
-				calculationProgress.update(maxLevel - i + 1);
-
-			Set<TermID> terms = levels.getLevelTermSet(i);
-
-			for (TermID t : terms)
+			Scratch scratch = new Scratch(context.popGeneCount);
+			for (int i = 0; i < terms.length; i++)
+			{
+				context.computeTermSig(terms[i], scratch);
+				if (calculationProgress != null)
+					calculationProgress.update(i + 1);
+			}
+		} else
+		{
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (final int [] group : context.getIndependentGroups(terms))
 			{
-				Set<TermID> descs = graph.getTermChildren(t);
-				Set<TermID> annotatedDescs = new HashSet<TermID>();
-				for (TermID d : descs)
+				futures.add(executor.submit(new Callable<Integer>()
 				{
-					if (allAnnotatedTerms.contains(d))
-						annotatedDescs.add(d);
-				}
+					@Override
+					public Integer call()
+					{
+						context.computeTermSigs(group);
+						return group.length;
+					}
+				}));
+			}
 
-				computeTermSig(populationSet, studySet, graph, t, annotatedDescs, studySetResult, studyTermEnumerator, populationTermEnumerator);
+			int done = 0;
+			for (Future<Integer> future : futures)
+			{
+				done += get(future);
+				if (calculationProgress != null)
+					calculationProgress.update(done);
 			}
+
+			/* The root connects the groups, hence it is processed last */
+			if (terms.length > 0 && terms[terms.length - 1] == context.root)
+				context.computeTermSig(context.root, new Scratch(context.popGeneCount));
+			if (calculationProgress != null)
+				calculationProgress.update(terms.length);
+		}
+
+		for (int t : terms)
+		{
+			if (context.props[t] != null)
+				studySetResult.addGOTermProperties(context.props[t]);
 		}
 
 		return studySetResult;
 	}
 
+	private static <T> T get(Future<T> future)
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
 	public String getDescription()
 	{
 		// TODO Auto-generated method stub
@@ -1,8 +1,13 @@
 package ontologizer.calculation.b2g;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +37,9 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 {
 	private static Logger logger = Logger.getLogger(Bayes2GOCalculation.class.getName());
 
+	/** Number of steps after which the convergence of multiple chains is checked */
+	private static final int CONVERGENCE_CHECK_STEPS = 10000;
+
 	private long seed = 0;
 
 	private boolean usePrior = true;
@@ -48,8 +56,16 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 	private boolean randomStart = false;
 
 	private int mcmcSteps = 1020000;
+	private int burnin = 20000;
 	private int updateReportTime = 1000; /* Update report time in ms */
 
+	private int numberOfChains = 1;
+	private double convergenceThreshold = 1.01;
+	private int numberOfTemperatures = 1;
+	private double maxTemperature = 8;
+	private int swapInterval = 100;
+	private ExecutorService executor;
+
 	private Bayes2GOCalculationProgress bayes2GOCalculationProgress;
 
 	/**
@@ -62,6 +78,26 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		void update(int iterationNumber, int step, double acceptProb, int numAccept, double score);
 	}
 
+	/**
+	 * Provides additional feedback for tempered bayes2go calculations. The
+	 * calculation checks whether its {@link Bayes2GOCalculationProgress}
+	 * implements this interface.
+	 */
+	public static interface Bayes2GOTemperingProgress extends Bayes2GOCalculationProgress
+	{
+		/**
+		 * Called regularly, i.e., at the update report time and at the end of
+		 * each EM iteration, with the rates of the tempered calculation.
+		 *
+		 * @param iterationNumber the number of the current EM iteration
+		 * @param step the number of steps performed by each replica so far
+		 * @param acceptRates the acceptance rates of the proposals at each temperature,
+		 *  starting with the target temperature
+		 * @param swapRates the rates of accepted swaps between adjacent temperatures
+		 */
+		void updateTempering(int iterationNumber, int step, double [] acceptRates, double [] swapRates);
+	}
+
 
 	public Bayes2GOCalculation()
 	{
@@ -77,6 +113,13 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		this.calculationProgress = calc.calculationProgress;
 		this.takePopulationAsReference = calc.takePopulationAsReference;
 		this.mcmcSteps = calc.mcmcSteps;
+		this.burnin = calc.burnin;
+		this.numberOfChains = calc.numberOfChains;
+		this.convergenceThreshold = calc.convergenceThreshold;
+		this.numberOfTemperatures = calc.numberOfTemperatures;
+		this.maxTemperature = calc.maxTemperature;
+		this.swapInterval = calc.swapInterval;
+		this.executor = calc.executor;
 	}
 
 	/**
@@ -204,6 +247,97 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		this.mcmcSteps = mcmcSteps;
 	}
 
+	/**
+	 * Sets the number of steps of each chain after which the states are
+	 * recorded. If a chain doesn't get more steps than the burn-in, the
+	 * burn-in is reduced to half of the steps of the chain.
+	 *
+	 * @param burnin
+	 */
+	public void setBurnin(int burnin)
+	{
+		this.burnin = burnin;
+	}
+
+	/**
+	 * Sets the number of independent chains. The mcmc steps are distributed
+	 * among the chains and the records of all chains are merged at the end.
+	 * Each chain gets its own seed that is derived from the seed of the
+	 * calculation. If more than one chain is used, the chains are stopped as
+	 * soon as the potential scale reduction factor of each term activation
+	 * drops below the convergence threshold.
+	 *
+	 * @param numberOfChains
+	 */
+	public void setNumberOfChains(int numberOfChains)
+	{
+		this.numberOfChains = numberOfChains;
+	}
+
+	/**
+	 * Sets the threshold of the potential scale reduction factor (the
+	 * Gelman-Rubin statistic) below which multiple chains are considered
+	 * to have converged.
+	 *
+	 * @param convergenceThreshold
+	 */
+	public void setConvergenceThreshold(double convergenceThreshold)
+	{
+		this.convergenceThreshold = convergenceThreshold;
+	}
+
+	/**
+	 * Sets the number of temperatures for parallel tempering. Each chain
+	 * is then run as this number of replicas whose temperatures follow a
+	 * geometric ladder from 1 to the max temperature. The replicas regularly
+	 * offer to swap the temperatures of adjacent levels and only the replica
+	 * at temperature 1 records its state. The replicas of a chain are
+	 * advanced by the same thread. Tempering therefore parallelises only
+	 * across the chains set via {@link #setNumberOfChains(int)}; with a
+	 * single chain, the executor is not used.
+	 *
+	 * @param numberOfTemperatures the number of temperatures, 1 disables
+	 *  tempering.
+	 */
+	public void setNumberOfTemperatures(int numberOfTemperatures)
+	{
+		this.numberOfTemperatures = numberOfTemperatures;
+	}
+
+	/**
+	 * Sets the temperature of the hottest replica.
+	 *
+	 * @param maxTemperature
+	 */
+	public void setMaxTemperature(double maxTemperature)
+	{
+		this.maxTemperature = maxTemperature;
+	}
+
+	/**
+	 * Sets the number of steps after which the replicas offer to swap
+	 * their temperatures.
+	 *
+	 * @param swapInterval
+	 */
+	public void setSwapInterval(int swapInterval)
+	{
+		this.swapInterval = swapInterval;
+	}
+
+	/**
+	 * Sets the executor that is used to run multiple chains in parallel. The
+	 * replicas of a tempered chain always share a thread. The result doesn't
+	 * depend on whether an executor is used.
+	 *
+	 * @param executor the executor or null if the chains should be run
+	 *  in the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
 	/**
 	 * Sets whether a random start should be used.
 	 *
@@ -279,6 +413,481 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		this.usePrior = usePrior;
 	}
 
+	/**
+	 * A single Markov chain. Each chain owns its source of randomness and its
+	 * score, hence different chains can be advanced concurrently.
+	 */
+	private class Chain
+	{
+		private final Random rnd;
+
+		/** The temperature level, 0 is the level of the target distribution */
+		private int level;
+		private double inverseTemperature = 1;
+
+		/** The number of steps and accepts per level, null if the chain isn't tempered */
+		private int [] numStepsAtLevel;
+		private int [] numAcceptsAtLevel;
+
+		private Bayes2GOScore bayes2GOScore;
+		private FixedAlphaBetaScore fixedAlphaBetaScore;
+
+		/** The number of steps after which the states are recorded */
+		private int burnin;
+
+		private double score;
+		private int steps;
+		private int numAccepts;
+		private int numRejects;
+
+		private double maxScore;
+		private int [] maxScoredTerms;
+		private double maxScoredAlpha;
+		private double maxScoredBeta;
+		private double maxScoredP;
+		private int maxWhenSeen;
+
+		public Chain(Random rnd)
+		{
+			this.rnd = rnd;
+		}
+
+		/**
+		 * Starts the chain with the given score.
+		 *
+		 * @param bayes2GOScore the score whose state is sampled
+		 * @param fixedAlphaBetaScore the same score if it is a FixedAlphaBetaScore, otherwise null
+		 * @param burnin the number of steps after which the states are recorded
+		 */
+		public void start(Bayes2GOScore bayes2GOScore, FixedAlphaBetaScore fixedAlphaBetaScore, int burnin)
+		{
+			this.bayes2GOScore = bayes2GOScore;
+			this.fixedAlphaBetaScore = fixedAlphaBetaScore;
+			this.burnin = burnin;
+
+			score = bayes2GOScore.getScore();
+			steps = 0;
+			numAccepts = 0;
+			numRejects = 0;
+
+			maxScore = score;
+			maxScoredTerms = bayes2GOScore.getActiveTerms();
+			maxScoredAlpha = Double.NaN;
+			maxScoredBeta = Double.NaN;
+			maxScoredP = Double.NaN;
+			maxWhenSeen = -1;
+
+			if (numStepsAtLevel != null)
+			{
+				Arrays.fill(numStepsAtLevel, 0);
+				Arrays.fill(numAcceptsAtLevel, 0);
+			}
+		}
+
+		/**
+		 * Performs the given number of steps.
+		 *
+		 * @param iteration the number of the current EM iteration
+		 * @param numberOfSteps the number of steps to perform
+		 * @param progress the progress that is notified after each step or null
+		 */
+		public void run(int iteration, int numberOfSteps, Bayes2GOCalculationProgress progress)
+		{
+			for (int i=0;i<numberOfSteps;i++)
+			{
+				int t = steps++;
+
+				/* Remember maximum score and terms */
+				if (score > maxScore)
+				{
+					maxScore = score;
+					maxScoredTerms = bayes2GOScore.getActiveTerms();
+					if (fixedAlphaBetaScore != null)
+					{
+						maxScoredAlpha = fixedAlphaBetaScore.getAlpha();
+						maxScoredBeta = fixedAlphaBetaScore.getBeta();
+						maxScoredP = fixedAlphaBetaScore.getP();
+					}
+					maxWhenSeen = t;
+				}
+
+				long oldPossibilities = bayes2GOScore.getNeighborhoodSize();
+				long r = rnd.nextLong();
+				bayes2GOScore.proposeNewState(r);
+				double newScore = bayes2GOScore.getScore();
+				long newPossibilities = bayes2GOScore.getNeighborhoodSize();
+
+				double acceptProb = Math.exp(inverseTemperature * (newScore - score))*(double)oldPossibilities/(double)newPossibilities; /* last quotient is the hasting ratio */
+
+				double u = rnd.nextDouble();
+				if (u >= acceptProb)
+				{
+					bayes2GOScore.undoProposal();
+					numRejects++;
+				} else
+				{
+					score = newScore;
+					numAccepts++;
+					if (numAcceptsAtLevel != null)
+						numAcceptsAtLevel[level]++;
+				}
+
+				if (numStepsAtLevel != null)
+					numStepsAtLevel[level]++;
+
+				if (t>burnin && level == 0)
+					bayes2GOScore.record();
+
+				if (progress != null)
+					progress.update(iteration, t, acceptProb, numAccepts, score);
+			}
+		}
+	}
+
+	/**
+	 * Advances all chains by the given number of steps. The chains are
+	 * advanced concurrently if an executor has been set.
+	 *
+	 * @param chains the chains to advance
+	 * @param iteration the number of the current EM iteration
+	 * @param numberOfSteps the number of steps to perform
+	 */
+	private void runChains(Chain [] chains, final int iteration, final int numberOfSteps)
+	{
+		if (executor == null || chains.length == 1)
+		{
+			for (int j=0;j<chains.length;j++)
+				chains[j].run(iteration, numberOfSteps, j == 0 ? bayes2GOCalculationProgress : null);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(chains.length);
+		for (int j=0;j<chains.length;j++)
+		{
+			final Chain chain = chains[j];
+			final Bayes2GOCalculationProgress progress = j == 0 ? bayes2GOCalculationProgress : null;
+			futures.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					chain.run(iteration, numberOfSteps, progress);
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures)
+			get(future);
+	}
+
+	private static <T> T get(Future<T> future)
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * The replica exchange of tempered chains. The chains are arranged in
+	 * groups of replicas, one for each temperature. Rather than the states,
+	 * the temperatures of the replicas are exchanged. Each group has its own
+	 * source of randomness and counters, hence different groups can be
+	 * advanced concurrently.
+	 */
+	private static class Tempering
+	{
+		private final double [] inverseTemperatures;
+		private final Random [] rnd;
+
+		/** The number of swap attempts and swaps per group and level */
+		private final int [][] numSwapAttempts;
+		private final int [][] numSwaps;
+
+		/**
+		 * @param numberOfTemperatures the number of temperatures, i.e., replicas of each group
+		 * @param maxTemperature the temperature of the hottest replica
+		 * @param rnd the source of randomness of each group
+		 */
+		public Tempering(int numberOfTemperatures, double maxTemperature, Random [] rnd)
+		{
+			this.rnd = rnd;
+
+			inverseTemperatures = new double[numberOfTemperatures];
+			for (int k=0;k<numberOfTemperatures;k++)
+				inverseTemperatures[k] = 1 / Math.pow(maxTemperature, (double)k / (numberOfTemperatures - 1));
+
+			numSwapAttempts = new int[rnd.length][numberOfTemperatures - 1];
+			numSwaps = new int[rnd.length][numberOfTemperatures - 1];
+		}
+
+		public int getNumberOfGroups()
+		{
+			return rnd.length;
+		}
+
+		/**
+		 * Assigns the initial temperatures to the given chains.
+		 *
+		 * @param chains the chains, arranged in groups of replicas
+		 */
+		public void init(Chain [] chains)
+		{
+			for (int j=0;j<chains.length;j++)
+			{
+				Chain chain = chains[j];
+				chain.level = j % inverseTemperatures.length;
+				chain.inverseTemperature = inverseTemperatures[chain.level];
+				chain.numStepsAtLevel = new int[inverseTemperatures.length];
+				chain.numAcceptsAtLevel = new int[inverseTemperatures.length];
+			}
+		}
+
+		public void reset()
+		{
+			for (int g=0;g<rnd.length;g++)
+			{
+				Arrays.fill(numSwapAttempts[g], 0);
+				Arrays.fill(numSwaps[g], 0);
+			}
+		}
+
+		/**
+		 * Offers the replicas of two randomly chosen adjacent levels of the
+		 * given group to swap their temperatures.
+		 *
+		 * @param chains the chains, arranged in groups of replicas
+		 * @param group the index of the group
+		 */
+		public void swap(Chain [] chains, int group)
+		{
+			int replicas = inverseTemperatures.length;
+			int level = rnd[group].nextInt(replicas - 1);
+
+			Chain c1 = null;
+			Chain c2 = null;
+			for (int j=group*replicas;j<(group+1)*replicas;j++)
+			{
+				if (chains[j].level == level) c1 = chains[j];
+				else if (chains[j].level == level + 1) c2 = chains[j];
+			}
+
+			double acceptProb = Math.exp((inverseTemperatures[level] - inverseTemperatures[level + 1]) * (c2.score - c1.score));
+
+			numSwapAttempts[group][level]++;
+			if (rnd[group].nextDouble() < acceptProb)
+			{
+				c1.level = level + 1;
+				c1.inverseTemperature = inverseTemperatures[level + 1];
+				c2.level = level;
+				c2.inverseTemperature = inverseTemperatures[level];
+				numSwaps[group][level]++;
+			}
+		}
+
+		/**
+		 * @param chains the chains
+		 * @return the acceptance rates of the proposals at each level, 0 for
+		 *  levels that haven't been visited yet.
+		 */
+		public double [] getAcceptRates(Chain [] chains)
+		{
+			double [] rates = new double[inverseTemperatures.length];
+			for (int k=0;k<rates.length;k++)
+			{
+				int numSteps = 0;
+				int numAccepts = 0;
+				for (Chain chain : chains)
+				{
+					numSteps += chain.numStepsAtLevel[k];
+					numAccepts += chain.numAcceptsAtLevel[k];
+				}
+				if (numSteps > 0)
+					rates[k] = (double)numAccepts / numSteps;
+			}
+			return rates;
+		}
+
+		/**
+		 * @return the rates of accepted swaps between adjacent levels, 0 for
+		 *  levels that haven't been offered to swap yet.
+		 */
+		public double [] getSwapRates()
+		{
+			double [] rates = new double[inverseTemperatures.length - 1];
+			for (int k=0;k<rates.length;k++)
+			{
+				int attempts = 0;
+				int swaps = 0;
+				for (int g=0;g<rnd.length;g++)
+				{
+					attempts += numSwapAttempts[g][k];
+					swaps += numSwaps[g][k];
+				}
+				if (attempts > 0)
+					rates[k] = (double)swaps / attempts;
+			}
+			return rates;
+		}
+	}
+
+	/**
+	 * Advances the replicas of a group by the given number of steps. The
+	 * replicas offer to swap their temperatures after each swap interval.
+	 * The progress follows the replica of the first group that is at
+	 * temperature 1.
+	 *
+	 * @param chains the chains, arranged in groups of replicas
+	 * @param tempering the replica exchange
+	 * @param group the index of the group
+	 * @param iteration the number of the current EM iteration
+	 * @param numberOfSteps the number of steps to perform
+	 */
+	private void runGroup(Chain [] chains, Tempering tempering, int group, int iteration, int numberOfSteps)
+	{
+		int replicas = chains.length / tempering.getNumberOfGroups();
+
+		for (int done = 0; done < numberOfSteps; )
+		{
+			int steps = Math.min(Math.max(1, swapInterval), numberOfSteps - done);
+			for (int j=group*replicas;j<(group+1)*replicas;j++)
+				chains[j].run(iteration, steps, group == 0 && chains[j].level == 0 ? bayes2GOCalculationProgress : null);
+			done += steps;
+
+			tempering.swap(chains, group);
+		}
+	}
+
+	/**
+	 * Advances all chains by the given number of steps. Tempered chains
+	 * offer to swap their temperatures after each swap interval. The chains,
+	 * or the groups of tempered chains, are advanced concurrently if an
+	 * executor has been set.
+	 *
+	 * @param chains the chains to advance
+	 * @param tempering the replica exchange or null if the chains aren't tempered
+	 * @param iteration the number of the current EM iteration
+	 * @param numberOfSteps the number of steps to perform
+	 */
+	private void advanceChains(final Chain [] chains, final Tempering tempering, final int iteration, final int numberOfSteps)
+	{
+		if (tempering == null)
+		{
+			runChains(chains, iteration, numberOfSteps);
+			return;
+		}
+
+		int numberOfGroups = tempering.getNumberOfGroups();
+		if (executor == null || numberOfGroups == 1)
+		{
+			for (int g=0;g<numberOfGroups;g++)
+				runGroup(chains, tempering, g, iteration, numberOfSteps);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(numberOfGroups);
+		for (int g=0;g<numberOfGroups;g++)
+		{
+			final int group = g;
+			futures.add(executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					runGroup(chains, tempering, group, iteration, numberOfSteps);
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures)
+			get(future);
+	}
+
+	/**
+	 * Reports the rates of the tempered chains if the progress is interested
+	 * in them.
+	 *
+	 * @param chains the chains
+	 * @param tempering the replica exchange or null if the chains aren't tempered
+	 * @param iteration the number of the current EM iteration
+	 * @param step the number of steps performed by each chain so far
+	 */
+	private void updateTempering(Chain [] chains, Tempering tempering, int iteration, int step)
+	{
+		if (tempering != null && bayes2GOCalculationProgress instanceof Bayes2GOTemperingProgress)
+			((Bayes2GOTemperingProgress)bayes2GOCalculationProgress).updateTempering(iteration, step, tempering.getAcceptRates(chains), tempering.getSwapRates());
+	}
+
+	/**
+	 * Returns the largest potential scale reduction factor (the Gelman-Rubin
+	 * statistic) of the activation states of all terms. The activation state
+	 * of a term is a binary variable, hence the within chain variances can be
+	 * derived from the activation counts alone. All chains must have recorded
+	 * the same number of states. The records of tempered chains are pooled
+	 * over the replicas of a group.
+	 *
+	 * @param chains the chains to compare
+	 * @param replicas the number of replicas of each group
+	 * @return the largest factor, which is infinite if chains that don't vary
+	 *  disagree with each other.
+	 */
+	private static double getPotentialScaleReduction(Chain [] chains, int replicas)
+	{
+		int m = chains.length / replicas;
+		int numTerms = chains[0].bayes2GOScore.numTerms;
+
+		double n = 0;
+		for (int j=0;j<replicas;j++)
+			n += chains[j].bayes2GOScore.numRecords;
+
+		double maxR = 1;
+
+		for (int t=0;t<numTerms;t++)
+		{
+			double sumMeans = 0;
+			double sumMeansSquared = 0;
+			double w = 0;
+
+			for (int g=0;g<chains.length;g+=replicas)
+			{
+				int count = 0;
+				for (int j=g;j<g+replicas;j++)
+					count += chains[j].bayes2GOScore.termActivationCounts[t];
+
+				double mean = count / n;
+				sumMeans += mean;
+				sumMeansSquared += mean * mean;
+				w += mean * (1 - mean) * n / (n - 1);
+			}
+			w /= m;
+
+			/* Variance of the chain means times n */
+			double b = Math.max(0, (sumMeansSquared - sumMeans * sumMeans / m) * n / (m - 1));
+
+			if (w == 0)
+			{
+				if (b == 0) continue;
+				return Double.POSITIVE_INFINITY;
+			}
+
+			double r = Math.sqrt(((n - 1) / n * w + b / n) / w);
+			if (r > maxR) maxR = r;
+		}
+		return maxR;
+	}
+
 	private void calculateByMCMC(Ontology graph,
 			Bayes2GOEnrichedGOTermsResult result,
 			TermEnumerator populationEnumerator,
@@ -304,6 +913,30 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 			rnd = new Random(newSeed);
 		}
 
+		/* A single chain uses the seeded source directly, multiple chains
+		 * get seeds that are derived from it */
+		int replicas = Math.max(1, numberOfTemperatures);
+		int numberOfGroups = Math.max(1, numberOfChains);
+		Chain [] chains = new Chain[numberOfGroups * replicas];
+		if (chains.length == 1)
+		{
+			chains[0] = new Chain(rnd);
+		} else
+		{
+			for (int j=0;j<chains.length;j++)
+				chains[j] = new Chain(new Random(rnd.nextLong()));
+		}
+
+		Tempering tempering = null;
+		if (replicas > 1)
+		{
+			Random [] groupRnd = new Random[numberOfGroups];
+			for (int g=0;g<numberOfGroups;g++)
+				groupRnd[g] = new Random(rnd.nextLong());
+			tempering = new Tempering(replicas, maxTemperature, groupRnd);
+			tempering.init(chains);
+		}
+
 		boolean doAlphaEm = false;
 		boolean doBetaEm = false;
 		boolean doPEm = false;
@@ -344,144 +977,143 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		logger.log(Level.INFO, allTerms.size() + " terms and " + populationEnumerator.getGenes().size() + " genes in consideration.");
 
 
+		/* The steps are distributed among the groups of chains */
+		int maxSteps = (int)(((long)mcmcSteps + numberOfGroups - 1) / numberOfGroups);
+
+		/* A chain that spends all of its share on the burn-in wouldn't record anything */
+		int chainBurnin = burnin;
+		if (chainBurnin >= maxSteps)
+		{
+			chainBurnin = maxSteps / 2;
+			logger.log(Level.WARNING, "Each chain performs only " + maxSteps + " steps, hence the burn-in is reduced from " + burnin + " to " + chainBurnin + " steps");
+		}
+
 		IntMapper<TermID> termMapper = IntMapper.create(populationEnumerator.getAllAnnotatedTermsAsList());
 		IntMapper<ByteString> geneMapper = IntMapper.create(populationEnumerator.getGenesAsList());
 		int [][] termLinks = CalculationUtils.makeTermLinks(populationEnumerator, termMapper, geneMapper);
 
 		for (int i=0;i<maxIter;i++)
 		{
-			Bayes2GOScore bayes2GOScore;
-
-			FixedAlphaBetaScore fixedAlphaBetaScore = null;
-			ValuedGOScore valuedScore = null;
-
 			if (!valuedCalculation)
 			{
-				fixedAlphaBetaScore = new FixedAlphaBetaScore(rnd, termLinks, geneMapper.getDense(studyEnumerator.getGenes()));
-				fixedAlphaBetaScore.setIntegrateParams(integrateParams);
-
 				if (doEm)
 				{
 					System.out.println("EM-Iter("+i+")" + alpha + "  " + beta + "  " + expectedNumberOfTerms);
 				} else
 				{
 					System.out.println("MCMC only: " + alpha + "  " + beta + "  " + expectedNumberOfTerms);
-
 				}
+			}
 
-				fixedAlphaBetaScore.setAlpha(alpha);
-				if (this.alpha.hasMax())
-					fixedAlphaBetaScore.setMaxAlpha(this.alpha.getMax());
-				fixedAlphaBetaScore.setBeta(beta);
-				if (this.beta.hasMax())
-					fixedAlphaBetaScore.setMaxBeta(this.beta.getMax());
-				fixedAlphaBetaScore.setExpectedNumberOfTerms(expectedNumberOfTerms);
-				fixedAlphaBetaScore.setUsePrior(usePrior);
-
-				logger.log(Level.INFO, "Score of empty set: " + fixedAlphaBetaScore.getScore());
+			for (Chain chain : chains)
+			{
+				FixedAlphaBetaScore fixedAlphaBetaScore = null;
+				Bayes2GOScore bayes2GOScore;
 
-				/* Provide a starting point */
-				if (randomStart)
+				if (!valuedCalculation)
 				{
-					int numberOfTerms = fixedAlphaBetaScore.EXPECTED_NUMBER_OF_TERMS[rnd.nextInt(fixedAlphaBetaScore.EXPECTED_NUMBER_OF_TERMS.length)];
-					double pForStart = ((double)numberOfTerms) / allTerms.size();
+					fixedAlphaBetaScore = new FixedAlphaBetaScore(chain.rnd, termLinks, geneMapper.getDense(studyEnumerator.getGenes()));
+					fixedAlphaBetaScore.setIntegrateParams(integrateParams);
+					fixedAlphaBetaScore.setAlpha(alpha);
+					if (this.alpha.hasMax())
+						fixedAlphaBetaScore.setMaxAlpha(this.alpha.getMax());
+					fixedAlphaBetaScore.setBeta(beta);
+					if (this.beta.hasMax())
+						fixedAlphaBetaScore.setMaxBeta(this.beta.getMax());
+					fixedAlphaBetaScore.setExpectedNumberOfTerms(expectedNumberOfTerms);
+					fixedAlphaBetaScore.setUsePrior(usePrior);
+
+					logger.log(Level.INFO, "Score of empty set: " + fixedAlphaBetaScore.getScore());
+
+					/* Provide a starting point */
+					if (randomStart)
+					{
+						int numberOfTerms = fixedAlphaBetaScore.EXPECTED_NUMBER_OF_TERMS[chain.rnd.nextInt(fixedAlphaBetaScore.EXPECTED_NUMBER_OF_TERMS.length)];
+						double pForStart = ((double)numberOfTerms) / allTerms.size();
 
-					for (int j=0;j<allTerms.size();j++)
-						if (rnd.nextDouble() < pForStart) fixedAlphaBetaScore.switchState(j);
+						for (int j=0;j<allTerms.size();j++)
+							if (chain.rnd.nextDouble() < pForStart) fixedAlphaBetaScore.switchState(j);
 
-					logger.log(Level.INFO, "Starting with " + fixedAlphaBetaScore.getActiveTerms().length + " terms (p=" + pForStart + ")");
+						logger.log(Level.INFO, "Starting with " + fixedAlphaBetaScore.getActiveTerms().length + " terms (p=" + pForStart + ")");
+					}
+
+					bayes2GOScore = fixedAlphaBetaScore;
+				} else
+				{
+					bayes2GOScore = new ValuedGOScore(chain.rnd, termLinks, termMapper, geneMapper, studySet);
 				}
 
-				bayes2GOScore = fixedAlphaBetaScore;
-			} else
-			{
-				valuedScore = new ValuedGOScore(rnd, termLinks, termMapper, geneMapper, studySet);
-				bayes2GOScore = valuedScore;
+				chain.start(bayes2GOScore, fixedAlphaBetaScore, chainBurnin);
+				logger.log(Level.INFO, "Score of initial set: " + chain.score);
 			}
 
-			result.setScore(bayes2GOScore);
+			Bayes2GOScore bayes2GOScore = chains[0].bayes2GOScore;
+			FixedAlphaBetaScore fixedAlphaBetaScore = chains[0].fixedAlphaBetaScore;
 
-			double score = bayes2GOScore.getScore();
-			logger.log(Level.INFO, "Score of initial set: " + score);
+			result.setScore(bayes2GOScore);
 
-			int maxSteps = mcmcSteps;
-			int burnin = 20000;
-			int numAccepts = 0;
-			int numRejects = 0;
+			if (tempering != null)
+				tempering.reset();
 
 			if (calculationProgress != null)
 				calculationProgress.init(maxSteps);
 
-			double maxScore = score;
-			int [] maxScoredTerms = bayes2GOScore.getActiveTerms();
-			double maxScoredAlpha = Double.NaN;
-			double maxScoredBeta = Double.NaN;
-			double maxScoredP = Double.NaN;
-			int maxWhenSeen = -1;
-
 			long start = System.currentTimeMillis();
 
-			for (int t=0;t<maxSteps;t++)
+			int steps = 0;
+			while (steps < maxSteps)
 			{
-				/* Remember maximum score and terms */
-				if (score > maxScore)
-				{
-					maxScore = score;
-					maxScoredTerms = bayes2GOScore.getActiveTerms();
-					if (fixedAlphaBetaScore != null)
-					{
-						maxScoredAlpha = fixedAlphaBetaScore.getAlpha();
-						maxScoredBeta = fixedAlphaBetaScore.getBeta();
-						maxScoredP = fixedAlphaBetaScore.getP();
-					}
-					maxWhenSeen = t;
-				}
+				int numberOfSteps = Math.min(CONVERGENCE_CHECK_STEPS, maxSteps - steps);
+				advanceChains(chains, tempering, i, numberOfSteps);
+				steps += numberOfSteps;
 
 				long now = System.currentTimeMillis();
 				if (now - start > updateReportTime)
 				{
-					logger.log(Level.INFO, (t*100/maxSteps) + "% (score=" + score +" maxScore=" + maxScore + " #terms="+bayes2GOScore.getActiveTerms().length+
-										" accept/reject=" + Double.toString((double)numAccepts / (double)numRejects) +
-										" accept/steps=" + Double.toString((double)numAccepts / (double)t) +
+					Chain chain = chains[0];
+					logger.log(Level.INFO, (int)((long)steps*100/maxSteps) + "% (score=" + chain.score +" maxScore=" + chain.maxScore + " #terms="+bayes2GOScore.getActiveTerms().length+
+										" accept/reject=" + Double.toString((double)chain.numAccepts / (double)chain.numRejects) +
+										" accept/steps=" + Double.toString((double)chain.numAccepts / (double)steps) +
 										" exp=" + expectedNumberOfTerms + " usePrior=" + usePrior + ")");
 					start = now;
 
 					if (calculationProgress != null)
-						calculationProgress.update(t);
-				}
-
-				long oldPossibilities = bayes2GOScore.getNeighborhoodSize();
-				long r = rnd.nextLong();
-				bayes2GOScore.proposeNewState(r);
-				double newScore = bayes2GOScore.getScore();
-				long newPossibilities = bayes2GOScore.getNeighborhoodSize();
-
-				double acceptProb = Math.exp(newScore - score)*(double)oldPossibilities/(double)newPossibilities; /* last quotient is the hasting ratio */
-
-				boolean DEBUG = false;
+						calculationProgress.update(steps);
 
-				if (DEBUG) System.out.print(bayes2GOScore.getActiveTerms().length + "  score=" + score + " newScore="+newScore + " maxScore=" + maxScore + " a=" + acceptProb);
+					updateTempering(chains, tempering, i, steps);
+				}
 
-				double u = rnd.nextDouble();
-				if (u >= acceptProb)
+				/* Stop once the chains agree on the activation of all terms */
+				if (numberOfGroups > 1 && steps - chainBurnin - 1 >= CONVERGENCE_CHECK_STEPS)
 				{
-					bayes2GOScore.undoProposal();
-					numRejects++;
-				} else
-				{
-					score = newScore;
-					numAccepts++;
+					double r = getPotentialScaleReduction(chains, replicas);
+					if (r < convergenceThreshold)
+					{
+						logger.log(Level.INFO, "Chains converged after " + steps + " steps (R=" + r + ")");
+						break;
+					}
 				}
-				if (DEBUG) System.out.println();
-
-				if (t>burnin)
-					bayes2GOScore.record();
+			}
 
+			updateTempering(chains, tempering, i, steps);
 
-				if (bayes2GOCalculationProgress != null)
-					bayes2GOCalculationProgress.update(i, t, acceptProb, numAccepts, score);
+			/* Merge the records of all chains into the first one */
+			Chain best = chains[0];
+			int numAccepts = 0;
+			int numRejects = 0;
+			for (Chain chain : chains)
+			{
+				if (chain != chains[0])
+					bayes2GOScore.merge(chain.bayes2GOScore);
+				if (chain.maxScore > best.maxScore)
+					best = chain;
+				numAccepts += chain.numAccepts;
+				numRejects += chain.numRejects;
 			}
 
+			if (bayes2GOScore.numRecords == 0)
+				logger.log(Level.WARNING, "No states have been recorded, the marginals are undefined. Increase the number of mcmc steps.");
+
 			if (fixedAlphaBetaScore != null)
 			{
 				if (doAlphaEm)
@@ -533,8 +1165,8 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 			System.out.println("numAccepts=" + numAccepts + "  numRejects = " + numRejects);
 
 			/* Print out the term combination which scored max */
-			System.out.println("Term combination that reaches score of " + maxScore + " when alpha=" + maxScoredAlpha + ", beta=" + maxScoredBeta + ", p=" + maxScoredP + " at step " + maxWhenSeen);
-			for (int t : maxScoredTerms)
+			System.out.println("Term combination that reaches score of " + best.maxScore + " when alpha=" + best.maxScoredAlpha + ", beta=" + best.maxScoredBeta + ", p=" + best.maxScoredP + " at step " + best.maxWhenSeen);
+			for (int t : best.maxScoredTerms)
 			{
 				TermID tid = termMapper.get(t);
 				System.out.println(tid.toString() + "/" + graph.getTerm(tid).getName());
@@ -565,7 +1197,8 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 	}
 
 	/**
-	 * Set the callback interface for notifications about a special Bayes2GO progress
+	 * Set the callback interface for notifications about a special Bayes2GO progress.
+	 * If multiple chains are used, only the steps of the first chain are reported.
 	 *
 	 * @param bayes2GOCalculationProgress
 	 */
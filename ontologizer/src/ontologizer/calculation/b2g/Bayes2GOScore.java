@@ -192,6 +192,20 @@ abstract public class Bayes2GOScore extends Bayes2GOScoreBase
 		numRecords++;
 	}
 
+	/**
+	 * Adds the records of the given score to the records of this score.
+	 * Both scores must be defined over the same terms.
+	 *
+	 * @param other the score whose records should be added
+	 */
+	public void merge(Bayes2GOScore other)
+	{
+		for (int i = 0; i < numTerms; i++)
+			termActivationCounts[i] += other.termActivationCounts[i];
+
+		numRecords += other.numRecords;
+	}
+
 	/**
 	 * @return the terms that are currently activated
 	 */
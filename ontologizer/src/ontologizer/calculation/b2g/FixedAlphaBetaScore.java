@@ -56,6 +56,20 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	private long totalN11;
 	private long totalT;
 
+	/** Whether the tables must be computed before they can be used */
+	private boolean tablesOutdated = true;
+
+	/* The log-likelihood contributions of the counts for each grid point. A fixed value is used for all grid points */
+	private double [] logAlpha;
+	private double [] logOneMinusAlpha;
+	private double [] logBeta;
+	private double [] logOneMinusBeta;
+	private double [] logP;
+	private double [] logOneMinusP;
+
+	/** The log gamma function for all arguments that may occur if the parameters are integrated out */
+	private double [] logGammaTable;
+
 	/**
 	 * Assumes a fixed alpha value.
 	 *
@@ -65,6 +79,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		this.alpha = alpha;
 		doAlphaMCMC = Double.isNaN(alpha);
+		tablesOutdated = true;
 	}
 
 	/**
@@ -76,6 +91,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		this.beta = beta;
 		doBetaMCMC = Double.isNaN(beta);
+		tablesOutdated = true;
 	}
 
 	@Override
@@ -83,6 +99,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		super.setExpectedNumberOfTerms(terms);
 		doExpMCMC = Double.isNaN(terms);
+		tablesOutdated = true;
 	}
 
 	public void setMaxAlpha(double maxAlpha)
@@ -101,6 +118,8 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		ALPHA[0] = 0.0000001;
 		for (int i=1;i<20;i++)
 			ALPHA[i] = i * maxAlpha / span;
+
+		tablesOutdated = true;
 	}
 
 	public void setMaxBeta(double maxBeta)
@@ -120,6 +139,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		for (int i=1;i<20;i++)
 			BETA[i] = i * maxBeta / span;
 
+		tablesOutdated = true;
 	}
 
 	/**
@@ -298,28 +318,49 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		return p;
 	}
 
-	private final double [] lGamma = new double[20000];
-
-	private double logGamma(int a)
+	/**
+	 * Fills the given table with the logarithms of the given grid points or,
+	 * if the fixed value is not NaN, with its logarithm.
+	 */
+	private static double [] log(double [] grid, double fixed, boolean complement)
 	{
-		if (a == 1 || a == 2) return 0.0;
-
-		if (a < lGamma.length)
+		double [] table = new double[grid.length];
+		for (int i=0;i<grid.length;i++)
 		{
-			double lg = lGamma[a];
-			if (lg == 0.0)
-			{
-				lg = Gamma.lgamma(a);
-				lGamma[a] = lg;
-			}
-			return lg;
+			double v = Double.isNaN(fixed) ? grid[i] : fixed;
+			table[i] = Math.log(complement ? 1 - v : v);
 		}
-		return Gamma.lgamma(a);
+		return table;
 	}
 
-	private double logBeta(int a, int b)
+	/**
+	 * Computes the tables that are used to evaluate the score. They contain
+	 * the logarithms for all grid points of the parameters and the log gamma
+	 * function for all counts that may occur if the parameters are
+	 * integrated out.
+	 */
+	private void computeTables()
 	{
-		return logGamma(a) + logGamma(b) - logGamma(a+b);
+		logAlpha = log(ALPHA, alpha, false);
+		logOneMinusAlpha = log(ALPHA, alpha, true);
+		logBeta = log(BETA, beta, false);
+		logOneMinusBeta = log(BETA, beta, true);
+
+		double [] p = new double[EXPECTED_NUMBER_OF_TERMS.length];
+		for (int i=0;i<p.length;i++)
+			p[i] = (double)EXPECTED_NUMBER_OF_TERMS[i] / numTerms;
+		logP = log(p, this.p, false);
+		logOneMinusP = log(p, this.p, true);
+
+		if (logGammaTable == null)
+		{
+			/* The arguments are bounded by the pseudo counts plus the number of genes or terms */
+			logGammaTable = new double[Math.max(observedGenes.length, numTerms) + 3];
+			for (int a=3;a<logGammaTable.length;a++)
+				logGammaTable[a] = Gamma.lgamma(a);
+		}
+
+		tablesOutdated = false;
 	}
 
 	@Override
@@ -327,37 +368,26 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		double newScore2;
 
+		if (tablesOutdated)
+			computeTables();
+
 		if (!integrateParams)
 		{
-			double alpha;
-			double beta;
-			double p;
-
-			alpha = getAlpha();
-			beta = getBeta();
-			p = getP();
-
-			newScore2 = Math.log(alpha) * n10 + Math.log(1-alpha)*n00 + Math.log(1-beta)*n11 + Math.log(beta)*n01;
+			newScore2 = logAlpha[alphaIdx] * n10 + logOneMinusAlpha[alphaIdx]*n00 + logOneMinusBeta[betaIdx]*n11 + logBeta[betaIdx]*n01;
 
 			if (usePrior)
-				newScore2 += Math.log(p)*(numTerms - numInactiveTerms) + Math.log(1-p)*numInactiveTerms;
+				newScore2 += logP[expIdx]*(numTerms - numInactiveTerms) + logOneMinusP[expIdx]*numInactiveTerms;
 		} else
 		{
-			/* Prior */
-			int alpha1 = 1; /* Psedocounts, false positive */
-			int alpha2 = 1; /* Psedocounts, true negative */
-			int beta1 = 1; /* Pseudocounts, false negative */
-			int beta2 = 1; /* Pseudocounts, true positives */
-			int p1 = 1; /* Pseudocounts, on */
-			int p2 = 1; /* Pseudocounts, off */
-
-			int m1 = numTerms - numInactiveTerms;
-			int m0 = numInactiveTerms;
-
-			double s1 = logBeta(alpha1 + n10, alpha2 + n00);
-			double s2 = logBeta(beta1 + n01, beta2 + n11);
+			/* Each parameter follows a beta distribution with pseudo counts of 1 (false
+			 * positives, true negatives, false negatives, true positives, on, off),
+			 * hence the score is the sum of the logs of the beta functions of the counts
+			 * plus the pseudo counts */
+			double [] lg = logGammaTable;
+			double s1 = lg[1 + n10] + lg[1 + n00] - lg[2 + n10 + n00];
+			double s2 = lg[1 + n01] + lg[1 + n11] - lg[2 + n01 + n11];
 			/* FIXME: At least for p we should also try a four parameter beta distribution */
-			double s3 = logBeta(p1 + m1, p2 + m0);
+			double s3 = lg[1 + numTerms - numInactiveTerms] + lg[1 + numInactiveTerms] - lg[2 + numTerms];
 			newScore2 = s1 + s2 + s3;
 		}
 
@@ -396,6 +426,27 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		totalT += (numTerms - numInactiveTerms);
 	}
 
+	@Override
+	public void merge(Bayes2GOScore other)
+	{
+		super.merge(other);
+
+		FixedAlphaBetaScore o = (FixedAlphaBetaScore)other;
+
+		totalN00 += o.totalN00;
+		totalN01 += o.totalN01;
+		totalN10 += o.totalN10;
+		totalN11 += o.totalN11;
+
+		for (int i=0;i<totalAlpha.length;i++)
+			totalAlpha[i] += o.totalAlpha[i];
+		for (int i=0;i<totalBeta.length;i++)
+			totalBeta[i] += o.totalBeta[i];
+		for (int i=0;i<totalExp.length;i++)
+			totalExp[i] += o.totalExp[i];
+		totalT += o.totalT;
+	}
+
 	public double getAvgN00()
 	{
 		return (double)totalN00 / numRecords;
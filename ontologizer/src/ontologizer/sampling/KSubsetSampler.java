@@ -55,7 +55,7 @@ public class KSubsetSampler<T>
 		}
 		// this.objects.addAll(objects);
 		this.nObj = this.objects.size();
-		this.hyperg = new Hypergeometric();
+		this.hyperg = new Hypergeometric(nObj, null);
 		this.rnd = new Random();
 	}
 
@@ -69,7 +69,7 @@ public class KSubsetSampler<T>
 	{
 		this.objects = new ArrayList<T>(coll);
 		this.nObj = coll.size();
-		this.hyperg = new Hypergeometric();
+		this.hyperg = new Hypergeometric(nObj, null);
 		this.rnd = rnd;
 	}
 
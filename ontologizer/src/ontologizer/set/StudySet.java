@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,6 +19,8 @@ import java.util.logging.Logger;
 import ontologizer.association.Association;
 import ontologizer.association.AssociationContainer;
 import ontologizer.association.Gene2Associations;
+import ontologizer.enumeration.BitmapTermEnumerator;
+import ontologizer.enumeration.IncrementalTermEnumerator;
 import ontologizer.enumeration.TermEnumerator;
 import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
 import ontologizer.filter.GeneFilter;
@@ -61,6 +64,18 @@ public class StudySet implements Iterable<ByteString>
 	/** Cached TermEnumerator */
 	private TermEnumerator termEnumerator;
 
+	/** Cached BitmapTermEnumerator */
+	private BitmapTermEnumerator bitmapTermEnumerator;
+
+	/** Incrementally maintained enumerator, survives adding and removing of genes */
+	private IncrementalTermEnumerator incrementalTermEnumerator;
+
+	/** The ontology of the incremental enumerator */
+	private Ontology incrementalGraph;
+
+	/** The associations that are used to maintain the incremental enumerator */
+	private AssociationContainer incrementalAssociations;
+
 	/** The current random ID. Used for unique study set names */
 	private int randomID = 0;
 
@@ -163,8 +178,50 @@ public class StudySet implements Iterable<ByteString>
 	 * TODO: Rename
 	 */
 	public void resetCounterAndEnumerator()
+	{
+		resetEnumerators();
+		incrementalTermEnumerator = null;
+		incrementalGraph = null;
+		incrementalAssociations = null;
+	}
+
+	/**
+	 * Drops the enumerators that cannot follow changes of the gene set.
+	 */
+	private void resetEnumerators()
 	{
 		termEnumerator = null;
+		bitmapTermEnumerator = null;
+	}
+
+	/**
+	 * Updates the incremental enumerator, if any, after a gene has been added.
+	 *
+	 * @param geneName
+	 */
+	private void geneAdded(ByteString geneName)
+	{
+		if (incrementalTermEnumerator == null)
+			return;
+
+		Gene2Associations geneAssociations = incrementalAssociations.get(geneName);
+		if (geneAssociations != null)
+			incrementalTermEnumerator.addGene(geneAssociations);
+	}
+
+	/**
+	 * Updates the incremental enumerator, if any, after a gene has been removed.
+	 *
+	 * @param geneName
+	 */
+	private void geneRemoved(ByteString geneName)
+	{
+		if (incrementalTermEnumerator == null)
+			return;
+
+		Gene2Associations geneAssociations = incrementalAssociations.get(geneName);
+		if (geneAssociations != null)
+			incrementalTermEnumerator.removeGene(geneAssociations.name());
 	}
 
 	/**
@@ -181,9 +238,10 @@ public class StudySet implements Iterable<ByteString>
 		ItemAttribute attr = new ItemAttribute();
 		attr.description = description;
 
-		gene2Attribute.put(geneName,attr);
+		if (gene2Attribute.put(geneName,attr) == null)
+			geneAdded(geneName);
 
-		resetCounterAndEnumerator();
+		resetEnumerators();
 	}
 
 	/**
@@ -194,8 +252,9 @@ public class StudySet implements Iterable<ByteString>
 	 */
 	public void addGene(ByteString geneName, ItemAttribute attribute)
 	{
-		gene2Attribute.put(geneName, attribute);
-		resetCounterAndEnumerator();
+		if (gene2Attribute.put(geneName, attribute) == null)
+			geneAdded(geneName);
+		resetEnumerators();
 	}
 
 	/**
@@ -359,6 +418,72 @@ public class StudySet implements Iterable<ByteString>
 		return termEnumerator;
 	}
 
+	/**
+	 * Enumerate genes annotated for every term using dense gene and term
+	 * indices. Multiple calls to this method are fast, if the gene set has not
+	 * been changed in-between.
+	 *
+	 * @param graph defines the ontology
+	 * @param associationContainer defines the associations
+	 * @return the term enumerator
+	 */
+	public synchronized BitmapTermEnumerator enumerateTermsAsBitmaps(Ontology graph, AssociationContainer associationContainer)
+	{
+		if (bitmapTermEnumerator != null) return bitmapTermEnumerator;
+
+		bitmapTermEnumerator = new BitmapTermEnumerator(graph);
+		for (ByteString geneName : gene2Attribute.keySet())
+		{
+			Gene2Associations geneAssociations = associationContainer.get(geneName);
+			if (geneAssociations != null)
+				bitmapTermEnumerator.push(geneAssociations);
+		}
+		return bitmapTermEnumerator;
+	}
+
+	/**
+	 * Enumerate genes annotated for every term such that the enumeration
+	 * follows subsequent additions and removals of genes. Each change only
+	 * updates the terms annotated to the affected gene.
+	 *
+	 * @param graph defines the ontology
+	 * @param associationContainer defines the associations
+	 * @return the term enumerator
+	 */
+	public synchronized IncrementalTermEnumerator enumerateTermsIncrementally(Ontology graph, AssociationContainer associationContainer)
+	{
+		IncrementalTermEnumerator enumerator = getIncrementalTermEnumerator(graph, associationContainer);
+		if (enumerator != null)
+			return enumerator;
+
+		incrementalTermEnumerator = new IncrementalTermEnumerator(graph);
+		incrementalGraph = graph;
+		incrementalAssociations = associationContainer;
+		for (ByteString geneName : gene2Attribute.keySet())
+		{
+			Gene2Associations geneAssociations = associationContainer.get(geneName);
+			if (geneAssociations != null)
+				incrementalTermEnumerator.addGene(geneAssociations);
+		}
+		return incrementalTermEnumerator;
+	}
+
+	/**
+	 * Returns the incremental enumerator if it has been created for the
+	 * given ontology and associations by
+	 * {@link #enumerateTermsIncrementally(Ontology, AssociationContainer)}.
+	 *
+	 * @param graph defines the ontology
+	 * @param associationContainer defines the associations
+	 * @return the term enumerator or null.
+	 */
+	public synchronized IncrementalTermEnumerator getIncrementalTermEnumerator(Ontology graph, AssociationContainer associationContainer)
+	{
+		if (incrementalTermEnumerator != null && incrementalGraph == graph && incrementalAssociations == associationContainer)
+			return incrementalTermEnumerator;
+		return null;
+	}
+
 	/**
 	 * @return an unique name derived from the study sets' name
 	 */
@@ -385,6 +510,23 @@ public class StudySet implements Iterable<ByteString>
 		return sampler.sampleRandomStudySet(desiredSize);
 	}
 
+	/**
+	 * Generate a studyset which contains desiredSize random
+	 * selected genes of the population.
+	 *
+	 * @param desiredSize specifies the desired size of
+	 *        the studyset.
+	 * @param rnd the source of randomness.
+	 *
+	 * @return the generated random studyset.
+	 */
+	public StudySet generateRandomStudySet(int desiredSize, Random rnd)
+	{
+		StudySetSampler sampler = new StudySetSampler(this, rnd);
+
+		return sampler.sampleRandomStudySet(desiredSize);
+	}
+
 	public void setName(String newStudySetName)
 	{
 		name = newStudySetName;
@@ -694,13 +836,21 @@ public class StudySet implements Iterable<ByteString>
 	public void removeGenes(Collection<ByteString> toBeRemoved)
 	{
 		for (ByteString g : toBeRemoved)
-			gene2Attribute.remove(g);
+		{
+			if (gene2Attribute.remove(g) != null)
+				geneRemoved(g);
+		}
+		resetEnumerators();
 	}
 
 	public void addGenes(Collection<ByteString> toBeAdded)
 	{
 		for (ByteString g : toBeAdded)
-			gene2Attribute.put(g,new ItemAttribute());
+		{
+			if (gene2Attribute.put(g,new ItemAttribute()) == null)
+				geneAdded(g);
+		}
+		resetEnumerators();
 	}
 
 
@@ -1,14 +1,59 @@
 package ontologizer.statistics;
 
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 public abstract class AbstractResamplingTestCorrection extends AbstractTestCorrection
 	implements IResampling
 {
+	private static Logger logger = Logger.getLogger(AbstractResamplingTestCorrection.class.getName());
+
+	/** The maximum number of resampling tasks that are in flight */
+	private static final int MAX_PENDING_TASKS = 64;
+
+	/** The number of resampling steps that are done within a single task */
+	private static final int STEPS_PER_TASK = 4;
+
 	/** Specifies the number of resampling steps */
 	protected int numberOfResamplingSteps = 500;
 
+	/**
+	 * The percentage by which the size of a study set may differ from the
+	 * size of the study sets whose samples are reused
+	 */
+	protected int sizeTolerance;
+
 	/** Used for progress update */
 	private IResamplingProgress progress;
 
+	/** Used to run the resampling steps, null to run them in the calling thread */
+	private ExecutorService executor;
+
+	/** The seed from which the seeds of the individual resampling steps are derived */
+	private long seed = new Random().nextLong();
+
+	/**
+	 * Interface for receiving the p-values of the resampled study sets.
+	 */
+	protected interface IResampledPValuesVisitor
+	{
+		/**
+		 * Called for each resampling step in order of the steps.
+		 *
+		 * @param step the index of the resampling step.
+		 * @param randomRawP the p-values of the resampled study set.
+		 */
+		void visit(int step, PValue [] randomRawP);
+	}
+
 	/**
 	 * Set the number of resampling steps.
 	 */
@@ -25,6 +70,82 @@ public abstract class AbstractResamplingTestCorrection extends AbstractTestCorre
 		return numberOfResamplingSteps;
 	}
 
+	public int getSizeTolerance()
+	{
+		return sizeTolerance;
+	}
+
+	public void setSizeTolerance(int t)
+	{
+		sizeTolerance = t;
+	}
+
+	/**
+	 * Returns the samples that were made for the study set size that is
+	 * closest to the given one in terms of their ratio, provided that the
+	 * sizes differ by at most the size tolerance.
+	 *
+	 * @param samplesPerSize the samples keyed by the study set size.
+	 * @param studySetSize the size of the current study set.
+	 * @return the samples or null if there are no suitable samples.
+	 */
+	protected <T> T getSamples(TreeMap<Integer,T> samplesPerSize, int studySetSize)
+	{
+		T samples = samplesPerSize.get(studySetSize);
+		if (samples != null)
+		{
+			logger.log(Level.FINE, "Using available samples for study set size " + studySetSize);
+			return samples;
+		}
+
+		Integer lower = samplesPerSize.lowerKey(studySetSize);
+		Integer higher = samplesPerSize.higherKey(studySetSize);
+
+		double lowerRatio = lower != null && lower > 0 ? (double)studySetSize / lower : Double.POSITIVE_INFINITY;
+		double higherRatio = higher != null && studySetSize > 0 ? (double)higher / studySetSize : Double.POSITIVE_INFINITY;
+		double ratioCutoff = 1 + 0.01 * sizeTolerance;
+
+		Integer best = lowerRatio <= higherRatio ? lower : higher;
+		if (best == null || Math.min(lowerRatio, higherRatio) > ratioCutoff)
+			return null;
+
+		logger.log(Level.FINE, "Using available samples made for study set size " + best + " for study set size " + studySetSize);
+		return samplesPerSize.get(best);
+	}
+
+	/**
+	 * Sets the executor that is used to run the resampling steps. It is
+	 * only used for p-value calculations that implement
+	 * {@link ISeededPValueCalculation}, other calculations are resampled
+	 * in the calling thread.
+	 *
+	 * @param executor the executor or null if the resampling steps should be
+	 *  run in the calling thread.
+	 */
+	public void setExecutor(ExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the seed for the resampling. The outcome of the resampling
+	 * depends only on the seed, not on the executor.
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * @return the seed for the resampling.
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+
 	/**
 	 * Sets the progress update instance used for
 	 * progress notifications.
@@ -50,4 +171,124 @@ public abstract class AbstractResamplingTestCorrection extends AbstractTestCorre
 	{
 		if (progress != null) progress.update(c);
 	}
+
+	/**
+	 * Returns the seed of the given resampling step. The seeds are derived
+	 * from the main seed in the manner of SplitMix64.
+	 *
+	 * @param step
+	 * @return the seed
+	 */
+	private long getStepSeed(int step)
+	{
+		long z = seed + (step + 1) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Calculates the p-values of the given range of resampling steps.
+	 */
+	private PValue [][] resampleSteps(IPValueCalculation pvalueCalc, int from, int to, AtomicInteger done)
+	{
+		PValue [][] randomRawP = new PValue[to - from][];
+		for (int b = from; b < to; b++)
+		{
+			if (pvalueCalc instanceof ISeededPValueCalculation)
+				randomRawP[b - from] = ((ISeededPValueCalculation)pvalueCalc).calculateRandomPValues(null, new Random(getStepSeed(b)));
+			else
+				randomRawP[b - from] = pvalueCalc.calculateRandomPValues(null);
+			done.incrementAndGet();
+		}
+		return randomRawP;
+	}
+
+	/**
+	 * Resamples the given number of study sets and passes the p-values of
+	 * each one to the visitor. If the calculation implements
+	 * {@link ISeededPValueCalculation}, each resampling step draws from its
+	 * own random number generator whose seed is derived from the seed of
+	 * this instance, hence the outcome doesn't depend on whether an executor
+	 * is used or on the number of its threads. Other calculations are
+	 * resampled in the calling thread. The visitor is always called in the
+	 * calling thread and in order of the steps.
+	 *
+	 * The progress is initialized and updated with the number of completed
+	 * steps of all workers.
+	 *
+	 * @param pvalueCalc the calculation.
+	 * @param numberOfSteps the number of resampling steps.
+	 * @param visitor the visitor receiving the p-values.
+	 */
+	protected void resample(final IPValueCalculation pvalueCalc, int numberOfSteps, IResampledPValuesVisitor visitor)
+	{
+		final AtomicInteger done = new AtomicInteger();
+
+		initProgress(numberOfSteps);
+
+		if (executor == null || !(pvalueCalc instanceof ISeededPValueCalculation))
+		{
+			for (int b = 0; b < numberOfSteps; b++)
+			{
+				visitor.visit(b, resampleSteps(pvalueCalc, b, b + 1, done)[0]);
+				updateProgress(b + 1);
+			}
+			return;
+		}
+
+		ArrayDeque<Future<PValue[][]>> pending = new ArrayDeque<Future<PValue[][]>>();
+		int submitted = 0;
+		int visited = 0;
+		try
+		{
+			while (visited < numberOfSteps)
+			{
+				while (submitted < numberOfSteps && pending.size() < MAX_PENDING_TASKS)
+				{
+					final int from = submitted;
+					final int to = Math.min(numberOfSteps, from + STEPS_PER_TASK);
+					pending.add(executor.submit(new Callable<PValue[][]>()
+					{
+						@Override
+						public PValue[][] call()
+						{
+							return resampleSteps(pvalueCalc, from, to, done);
+						}
+					}));
+					submitted = to;
+				}
+
+				/* Collect the steps in order */
+				PValue [][] randomRawP = getSteps(pending.poll());
+				for (PValue [] p : randomRawP)
+					visitor.visit(visited++, p);
+				updateProgress(done.get());
+			}
+		} finally
+		{
+			for (Future<PValue[][]> f : pending)
+				f.cancel(true);
+		}
+	}
+
+	private static PValue [][] getSteps(Future<PValue[][]> future)
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
 }
@@ -7,11 +7,12 @@ import java.util.Arrays;
  * @author grossman
  *
  */
-public class FDRBySteffen extends AbstractTestCorrection
-						   implements IResampling
+public class FDRBySteffen extends AbstractResamplingTestCorrection
 {
-	/** Specifies the number of resampling steps */
-	private int numberOfResamplingSteps = 1000;
+	public FDRBySteffen()
+	{
+		numberOfResamplingSteps = 1000;
+	}
 
 	public String getDescription()
 	{
@@ -32,26 +33,25 @@ public class FDRBySteffen extends AbstractTestCorrection
 		PValue [] rawP = pvalues.calculateRawPValues(null);
 		Arrays.sort(rawP);
 
-		int m = rawP.length;
+		final int m = rawP.length;
 
 		/* this will hold the sorted resampled p-values*/
-		double [][] pValues = new double[numberOfResamplingSteps][m];
+		final double [][] pValues = new double[numberOfResamplingSteps][m];
 
 		/* create them */
-		for (int b=0; b < numberOfResamplingSteps; b++)
+		resample(pvalues, numberOfResamplingSteps, new IResampledPValuesVisitor()
 		{
-			/* Compute raw p values of "permuted" data */
-			PValue [] randomRawP = pvalues.calculateRandomPValues(null);
-			Arrays.sort(randomRawP);
-
-			assert(randomRawP.length == m);
+			@Override
+			public void visit(int b, PValue[] randomRawP)
+			{
+				Arrays.sort(randomRawP);
 
-			for (i=0;i<m;i++)
-				pValues[b][i] = randomRawP[i].p;
+				assert(randomRawP.length == m);
 
-			System.out.print("created " + (b+1) + " samples out of " + numberOfResamplingSteps + "\r");
-		}
-		System.out.println();
+				for (int i=0;i<m;i++)
+					pValues[b][i] = randomRawP[i].p;
+			}
+		});
 
 		/* For every P-value determine the adjusted P-value */
 
@@ -66,7 +66,7 @@ public class FDRBySteffen extends AbstractTestCorrection
 		// initializing
 		for (int b=0; b < numberOfResamplingSteps; b++) {
 			lastSampleRejects[b] = 0;
-			while (pValues[b][lastSampleRejects[b]] < lastPValue) {
+			while (lastSampleRejects[b] < m && pValues[b][lastSampleRejects[b]] < lastPValue) {
 				lastSampleRejects[b]++;
 			}
 			lastTotalSampleRejects += lastSampleRejects[b];
@@ -105,7 +105,7 @@ public class FDRBySteffen extends AbstractTestCorrection
 			lastObservedRejections += lc;
 			lastTotalSampleRejects = 0;
 			for (int b=0; b < numberOfResamplingSteps; b++) {
-				while (pValues[b][lastSampleRejects[b]] < lastPValue) {
+				while (lastSampleRejects[b] < m && pValues[b][lastSampleRejects[b]] < lastPValue) {
 					lastSampleRejects[b]++;
 				}
 				lastTotalSampleRejects += lastSampleRejects[b];
@@ -129,29 +129,9 @@ public class FDRBySteffen extends AbstractTestCorrection
 		return rawP;
 	}
 
-	public void setNumberOfResamplingSteps(int n)
-	{
-		numberOfResamplingSteps = n;
-	}
-
-	public int getNumberOfResamplingSteps()
-	{
-		return numberOfResamplingSteps;
-	}
-
 	public void resetCache()
 	{
 		// no cache, nothing to do here!
 
 	}
-
-	public int getSizeTolerance()
-	{
-		return 0;
-	}
-
-	public void setSizeTolerance(int t)
-	{
-
-	}
 }
@@ -1,12 +1,17 @@
 package ontologizer.statistics;
 
-import java.util.Vector;
 import java.lang.Math;
 
 /**
- * Class with static methods to calculate probabilities according to the
+ * Class with methods to calculate probabilities according to the
  * hypergeometric distribution.
  *
+ * The log factorials are taken from a table that is filled once when the
+ * instance is constructed and never modified afterwards, hence a single
+ * instance can be shared among several threads. The table should be sized
+ * to the population. Factorials beyond it are taken from a second table
+ * that grows on demand.
+ *
  * @author Peter N. Robinson, Sebastian Bauer
  */
 
@@ -14,10 +19,19 @@ public class Hypergeometric
 {
 
 	/**
-	 * This Vector contains log factorials for each index value and acts as a
-	 * cache.
+	 * This array contains log factorials for each index value up to the
+	 * population size. It is never changed after construction.
+	 */
+	private final double [] lfactorial;
+
+	/**
+	 * Log factorials beyond the population size, null if none have been
+	 * requested yet. The contents of a published array are never changed.
 	 */
-	private Vector<Double> lfactorial;
+	private volatile double [] overflow;
+
+	/** Memo for the results of phypergeometric(), may be null */
+	private final HypergeometricCache cache;
 
 	/**
 	 * <P>
@@ -55,6 +69,47 @@ public class Hypergeometric
 	 *            Number of study genes in group
 	 */
 	public double phypergeometric(int n, double p, int k, int r)
+	{
+		return phypergeometric(n, p, k, r, k < n ? lNchooseK(n, k) : 0);
+	}
+
+	/**
+	 * Calculates the term-for-term p-values for a batch of terms, i.e., for
+	 * each term the probability to observe at least the given number of
+	 * annotated study genes. The result for index i is the same as the one
+	 * of {@link #phypergeometric(int, double, int, int)} with
+	 * p = annotatedPopulation[i] / n and r = annotatedStudy[i].
+	 *
+	 * @param n
+	 *            Number of population genes
+	 * @param k
+	 *            Number of study genes
+	 * @param annotatedPopulation
+	 *            Number of population genes annotated to each term
+	 * @param annotatedStudy
+	 *            Number of study genes annotated to each term
+	 * @return the p-values
+	 */
+	public double [] phypergeometric(int n, int k, int [] annotatedPopulation, int [] annotatedStudy)
+	{
+		if (annotatedPopulation.length != annotatedStudy.length)
+			throw new IllegalArgumentException("Count arrays differ in length");
+
+		/* Make sure that the table is large enough for the entire batch */
+		double [] table = table(n);
+		double log_n_choose_k = k < n ? table[n] - table[k] - table[n - k] : 0;
+
+		double [] pvalues = new double[annotatedPopulation.length];
+		for (int i=0;i<pvalues.length;i++)
+			pvalues[i] = phypergeometric(n, (double)annotatedPopulation[i] / (double)n, k, annotatedStudy[i], log_n_choose_k);
+		return pvalues;
+	}
+
+	/**
+	 * The implementation of {@link #phypergeometric(int, double, int, int)}
+	 * for a precalculated log(n choose k).
+	 */
+	private double phypergeometric(int n, double p, int k, int r, double log_n_choose_k)
 	{
 		/*
 		 * Study group cannot be larger than population. If this happens there
@@ -73,7 +128,28 @@ public class Hypergeometric
 		int np = (int) java.lang.Math.round(n * p); // Round to nearest int
 		int nq = (int) java.lang.Math.round(n * q);
 
-		double log_n_choose_k = lNchooseK(n, k);
+		/* The key doesn't capture inconsistent roundings */
+		if (cache != null && np + nq == n)
+			return cache.get(this, n, np, k, r, log_n_choose_k);
+
+		return phypergeometric(n, np, nq, k, r, log_n_choose_k);
+	}
+
+	/**
+	 * Calculates the upper tail bypassing the cache. Called by the cache in
+	 * case of a miss.
+	 */
+	double phypergeometricUncached(int n, int np, int k, int r, double log_n_choose_k)
+	{
+		return phypergeometric(n, np, n - np, k, r, log_n_choose_k);
+	}
+
+	/**
+	 * The implementation of {@link #phypergeometric(int, double, int, int)}
+	 * for rounded group sizes and a precalculated log(n choose k).
+	 */
+	private double phypergeometric(int n, int np, int nq, int k, int r, double log_n_choose_k)
+	{
 		int top = k;
 		if (np < k)
 		{
@@ -135,6 +211,21 @@ public class Hypergeometric
 		return Math.exp(lNchooseK(M,x)+lNchooseK(N-M,n-x)-lNchooseK(N,n));
 	}
 
+	/**
+	 * Same as {@link #dhyper(int, int, int, int)} but with a precalculated
+	 * log(N choose n) and a table that covers N.
+	 */
+	private static double dhyper(double [] table, int x, int N, int M, int n, double log_N_choose_n)
+	{
+		if (x > M) return 0;
+		if (x > n) return 0;
+		if (n - x > N - M) return 0;
+
+		double lMx = table[M] - table[x] - table[M - x];
+		double lNMnx = table[N - M] - table[n - x] - table[N - M - (n - x)];
+		return Math.exp(lMx+lNMnx-log_N_choose_n);
+	}
+
 	/**
 	 * Calculates P(X &gt; x) where X is the hypergeometric distribution
 	 * with indices N,M,n. If lowerTail is set to true, then P(X &lt;= x)
@@ -158,17 +249,21 @@ public class Hypergeometric
 		up = Math.min(n,M);
 		p = 0;
 
+		/* All factorials of the summands are within 0..N */
+		double [] table = table(Math.max(N, Math.max(M, n)));
+		double lNn = n <= N ? lNchooseK(N,n) : 0; /* otherwise all summands are 0 */
+
 		if (x < up / 2)
 		{
 			for (i = x; i >= 0; i--)
-				p += dhyper(i,N,M,n);
+				p += dhyper(table,i,N,M,n,lNn);
 
 			if (lowerTail) return p;
 			else return 1 - p;
 		} else
 		{
 			for (i = x+1;i <= up;i++)
-				p += dhyper(i,N,M,n);
+				p += dhyper(table,i,N,M,n,lNn);
 
 			if (lowerTail) return 1 - p;
 			else return p;
@@ -183,41 +278,110 @@ public class Hypergeometric
 	}
 
 	/**
-	 * return the log factorial of i. Use a cache to avoid repeatedly
-	 * calculating this. If we have a cache miss, fill up all values from the
-	 * last valid cache value to the value we currently need.
+	 * return the log factorial of i. The value is taken from the table
+	 * that has been filled at construction time. If i is beyond it, the
+	 * value is taken from a second table that is replaced by a larger one
+	 * if necessary.
 	 */
 	public double logfact(int i)
 	{
-		/*
-		 * Make sure value is already in lfactorial. If not, calculate all
-		 * values up to that for i
-		 */
-		if (i > (lfactorial.size() - 1))
-		{
-			for (int j = lfactorial.size(); j <= i; j++)
-			{
-				double lf = lfactorial.get(j - 1).doubleValue()
-						+ java.lang.Math.log(j);
-				lfactorial.add(j, new Double(lf));
-			}
-		}
+		return table(i)[i];
+	}
 
-		return lfactorial.get(i).doubleValue();
+	/**
+	 * Returns a log factorial table that contains at least the entries
+	 * 0..i.
+	 */
+	private double [] table(int i)
+	{
+		if (i < lfactorial.length)
+			return lfactorial;
+		double [] table = overflow;
+		if (table != null && i < table.length)
+			return table;
+		return grow(i);
+	}
+
+	private synchronized double [] grow(int i)
+	{
+		double [] table = overflow;
+		if (table == null)
+			table = lfactorial;
+		if (i < table.length)
+			return table;
+
+		/* Grow at least geometrically so repeated misses stay cheap */
+		int length = Math.max(i + 1, Math.min(Integer.MAX_VALUE - 8, table.length * 2));
+		overflow = fill(table, length);
+		return overflow;
+	}
+
+	/**
+	 * Returns a log factorial table of the given length whose first entries
+	 * are copied from the given table.
+	 */
+	private static double [] fill(double [] table, int length)
+	{
+		double [] newTable = new double[length];
+		System.arraycopy(table, 0, newTable, 0, table.length);
+		for (int j = table.length; j < length; j++)
+			newTable[j] = newTable[j - 1] + java.lang.Math.log(j);
+		return newTable;
 	}
 
 	/**
-	 * Initialize the object lfactorial, which will act as a cache for log
-	 * factorial calculations.
+	 * Initialize the object with a small log factorial table and the
+	 * shared p-value cache of default capacity. Prefer
+	 * {@link #Hypergeometric(int)} if the population size is known.
 	 */
 	public Hypergeometric()
 	{
+		this(1);
+	}
 
-		lfactorial = new Vector<Double>();
-		lfactorial.add(0, new Double(0.0)); /* 0! = 1, therefore let log(0)=0 */
-		lfactorial.add(1, new Double(0.0));
+	/**
+	 * Initialize the object with a log factorial table that is large enough
+	 * for all calculations for a population of the given size and the
+	 * shared p-value cache of default capacity.
+	 *
+	 * @param populationSize the number of population genes.
+	 * @see HypergeometricCache#getDefault()
+	 */
+	public Hypergeometric(int populationSize)
+	{
+		this(populationSize, HypergeometricCache.getDefault());
+	}
 
+	/**
+	 * Initialize the object with a log factorial table that is large enough
+	 * for all calculations for a population of the given size.
+	 *
+	 * @param populationSize the number of population genes.
+	 * @param cache the memo for p-values, which may be shared with other
+	 *  instances. Specify null to disable memoization.
+	 */
+	public Hypergeometric(int populationSize, HypergeometricCache cache)
+	{
+		this.cache = cache;
+		/* 0! = 1, therefore let log(0)=0 */
+		lfactorial = fill(new double[2], Math.max(2, populationSize + 1));
 	}
 
-}
+	/**
+	 * @return the largest population size that is covered by the log
+	 *  factorial table filled at construction time.
+	 */
+	public int getPopulationSize()
+	{
+		return lfactorial.length - 1;
+	}
+
+	/**
+	 * @return the memo for p-values or null if memoization is disabled.
+	 */
+	public HypergeometricCache getCache()
+	{
+		return cache;
+	}
 
+}
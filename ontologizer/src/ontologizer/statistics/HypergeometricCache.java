@@ -0,0 +1,220 @@
+package ontologizer.statistics;
+
+import static ontologizer.util.Util.mix;
+
+import java.util.Arrays;
+
+/**
+ * A bounded memo for hypergeometric upper tail probabilities, keyed by the
+ * size of the population, the number of annotated population genes, the
+ * size of the study and the number of annotated study genes.
+ *
+ * Keys and values are stored in primitive arrays. The cache is split into
+ * segments that are locked independently, so it can be used by several
+ * threads at once. Each key has a fixed number of candidate slots within its
+ * segment. If all of them are occupied, the slot at which the key's probe
+ * sequence starts is overwritten, hence the cache never grows beyond its
+ * capacity.
+ */
+public final class HypergeometricCache
+{
+	/** The default number of entries */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** The number of slots that are probed for a key */
+	private static final int PROBES = 4;
+
+	private static final int NUM_SEGMENTS = 16;
+
+	private static final class Segment
+	{
+		/** Packed (population, study) of an entry. */
+		final long [] keys1;
+
+		/** Packed (annotated population, annotated study) of an entry. */
+		final long [] keys2;
+
+		final double [] values;
+
+		/** Whether a slot is occupied */
+		final boolean [] used;
+
+		final int mask;
+
+		long hits;
+		long misses;
+
+		Segment(int capacity)
+		{
+			keys1 = new long[capacity];
+			keys2 = new long[capacity];
+			values = new double[capacity];
+			used = new boolean[capacity];
+			mask = capacity - 1;
+		}
+	}
+
+	private final Segment [] segments;
+
+	/** Holds the default instance, which is created on first use */
+	private static class DefaultHolder
+	{
+		static final HypergeometricCache INSTANCE = new HypergeometricCache();
+	}
+
+	/**
+	 * @return the cache of default capacity that is shared by all
+	 *  instances of {@link Hypergeometric} that don't specify their own.
+	 */
+	public static HypergeometricCache getDefault()
+	{
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * Constructs a cache with the default capacity.
+	 */
+	public HypergeometricCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a cache that holds at most the given number of entries.
+	 *
+	 * @param capacity the maximum number of entries. It is rounded up to the
+	 *  next power of two that can be distributed among the segments.
+	 */
+	public HypergeometricCache(int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+
+		int segmentCapacity = PROBES;
+		while (segmentCapacity * NUM_SEGMENTS < capacity)
+			segmentCapacity <<= 1;
+
+		segments = new Segment[NUM_SEGMENTS];
+		for (int i=0;i<NUM_SEGMENTS;i++)
+			segments[i] = new Segment(segmentCapacity);
+	}
+
+	private static long pack(int a, int b)
+	{
+		return ((long)a << 32) | (b & 0xffffffffL);
+	}
+
+	private static int hash(long key1, long key2)
+	{
+		return (int)mix(key1 * 0x9e3779b97f4a7c15L ^ key2);
+	}
+
+	/**
+	 * Returns the upper tail for the given parameters, calculating it via
+	 * the given instance if it is not cached.
+	 *
+	 * @param hyperg the instance used in case of a miss.
+	 * @param n the number of population genes.
+	 * @param np the number of annotated population genes.
+	 * @param k the number of study genes.
+	 * @param r the number of annotated study genes.
+	 * @param log_n_choose_k the precalculated log(n choose k).
+	 * @return the probability to observe at least r annotated study genes.
+	 */
+	double get(Hypergeometric hyperg, int n, int np, int k, int r, double log_n_choose_k)
+	{
+		long key1 = pack(n, k);
+		long key2 = pack(np, r);
+		int h = hash(key1, key2);
+		Segment s = segments[h & (NUM_SEGMENTS - 1)];
+		int start = (h >>> 4) & s.mask;
+
+		synchronized (s)
+		{
+			for (int i=0;i<PROBES;i++)
+			{
+				int slot = (start + i) & s.mask;
+				if (!s.used[slot])
+					break;
+				if (s.keys1[slot] == key1 && s.keys2[slot] == key2)
+				{
+					s.hits++;
+					return s.values[slot];
+				}
+			}
+			s.misses++;
+		}
+
+		/* Calculate outside of the lock */
+		double value = hyperg.phypergeometricUncached(n, np, k, r, log_n_choose_k);
+
+		synchronized (s)
+		{
+			int victim = start;
+			for (int i=0;i<PROBES;i++)
+			{
+				int slot = (start + i) & s.mask;
+				if (!s.used[slot])
+				{
+					victim = slot;
+					break;
+				}
+				if (s.keys1[slot] == key1 && s.keys2[slot] == key2)
+					return value;
+			}
+			s.keys1[victim] = key1;
+			s.keys2[victim] = key2;
+			s.values[victim] = value;
+			s.used[victim] = true;
+		}
+		return value;
+	}
+
+	/**
+	 * @return the number of lookups that could be answered from the cache.
+	 */
+	public long getHits()
+	{
+		long hits = 0;
+		for (Segment s : segments)
+		{
+			synchronized (s)
+			{
+				hits += s.hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that required a calculation.
+	 */
+	public long getMisses()
+	{
+		long misses = 0;
+		for (Segment s : segments)
+		{
+			synchronized (s)
+			{
+				misses += s.misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Removes all entries and resets the counters.
+	 */
+	public void clear()
+	{
+		for (Segment s : segments)
+		{
+			synchronized (s)
+			{
+				Arrays.fill(s.used, false);
+				s.hits = 0;
+				s.misses = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package ontologizer.statistics;
+
+/**
+ * Implemented by p-value calculations whose results are fully determined by
+ * their inputs, such as the ontology, the associations, the population and
+ * the calculation method. Such calculations can share resampled p-values
+ * across runs.
+ */
+public interface IFingerprintable
+{
+	/**
+	 * @return a fingerprint of all inputs that determine the p-values of a
+	 *  study set, except for the study set itself. The value must be stable
+	 *  across runs.
+	 */
+	long getFingerprint();
+}
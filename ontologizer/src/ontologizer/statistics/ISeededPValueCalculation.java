@@ -0,0 +1,24 @@
+package ontologizer.statistics;
+
+import java.util.Random;
+
+/**
+ * Implemented by p-value calculations that draw their random datasets from
+ * a given random number generator. The resampling based test corrections
+ * use it to make the outcome depend only on their seed and to distribute
+ * the resampling steps over several threads.
+ */
+public interface ISeededPValueCalculation
+{
+	/**
+	 * Same as {@link IPValueCalculation#calculateRandomPValues(IPValueCalculationProgress)}
+	 * but the random dataset is drawn using the given random number
+	 * generator. Implementations must support concurrent calls of this
+	 * method.
+	 *
+	 * @param progress the interface for updating the progress
+	 * @param rnd the source of randomness
+	 * @return the calculated random p-values
+	 */
+	PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd);
+}
@@ -1,8 +1,10 @@
 package ontologizer.statistics;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  *
@@ -13,6 +15,12 @@ import java.util.Iterator;
  * "ignoreAtMTC" attributes and the "p" value itself, nothing else gets stored.
  * Especially, the "p_min" and "p_adjusted" entries get lost.
  *
+ * The deflated sets are stored one after another in a pair of primitive
+ * arrays holding the indices and the p-values. Sets can be retrieved as
+ * double arrays via {@link #get(int, double[])}, which doesn't allocate.
+ * A store that has been loaded by {@link ResamplingCache} refers to the
+ * mapped file instead and cannot be extended.
+ *
  * @author grossman
  *
  */
@@ -28,26 +36,44 @@ public class PvalueSetStore implements Iterable<PValue[]>
 	 */
 	public class PValueSetStoreIterator implements Iterator<PValue[]>
 	{
-		private Iterator<HashMap<Integer, Double>> reducedIterator = reducedStoredSets.iterator();
+		private int set;
 
 		public boolean hasNext()
 		{
-			return reducedIterator.hasNext();
+			return set < numberOfSets;
 		}
 
 		public PValue[] next()
 		{
-			return inflate_pvals(reducedIterator.next());
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return inflate_pvals(set++);
 		}
 
 		public void remove()
 		{
-			reducedIterator.remove();
+			throw new UnsupportedOperationException();
 		}
 
 	}
 
-	private ArrayList<HashMap<Integer, Double>> reducedStoredSets;
+	/** The number of sets that have been added */
+	private int numberOfSets;
+
+	/** The start of each set within indices and values, the last entry is the end */
+	private int [] offsets;
+
+	/** The indices of the stored p-values */
+	private int [] indices;
+
+	/** The stored p-values */
+	private double [] values;
+
+	/** The indices of the stored p-values if the store is mapped, otherwise null */
+	private IntBuffer mappedIndices;
+
+	/** The stored p-values if the store is mapped, otherwise null */
+	private DoubleBuffer mappedValues;
 
 	private int setSize;
 
@@ -58,29 +84,65 @@ public class PvalueSetStore implements Iterable<PValue[]>
 	 */
 	public PvalueSetStore(int numberOfResamplingSteps, int setSize)
 	{
-		reducedStoredSets = new ArrayList<HashMap<Integer, Double>>(numberOfResamplingSteps);
 		this.setSize = setSize;
+
+		offsets = new int[Math.max(1, numberOfResamplingSteps) + 1];
+		indices = new int[16];
+		values = new double[16];
+	}
+
+	/**
+	 * Constructs a read-only store whose p-values reside in the given buffers.
+	 *
+	 * @param setSize
+	 * @param offsets the start of each set and the end of the last one.
+	 * @param indices
+	 * @param values
+	 */
+	PvalueSetStore(int setSize, int [] offsets, IntBuffer indices, DoubleBuffer values)
+	{
+		this.setSize = setSize;
+		this.offsets = offsets;
+		this.numberOfSets = offsets.length - 1;
+		this.mappedIndices = indices;
+		this.mappedValues = values;
 	}
 
 	public void add(PValue[] values)
 	{
-		reducedStoredSets.add(deflate_pvals(values));
+		if (mappedValues != null)
+			throw new UnsupportedOperationException("Store is read-only");
+		deflate_pvals(values);
 	}
 
-	private HashMap<Integer, Double> deflate_pvals(PValue[] values)
+	private void deflate_pvals(PValue[] pvals)
 	{
-		HashMap<Integer, Double> reducedSet = new HashMap<Integer, Double>();
-		for (int i = 0; i < values.length; i++)
+		int start = offsets[numberOfSets];
+		int end = start;
+
+		if (numberOfSets + 1 == offsets.length)
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+
+		for (int i = 0; i < pvals.length; i++)
 		{
-			if (!values[i].ignoreAtMTC)
+			if (!pvals[i].ignoreAtMTC)
 			{
-				reducedSet.put(i, values[i].p);
+				if (end == values.length)
+				{
+					int newLength = Math.max(end + setSize, end * 2);
+					indices = Arrays.copyOf(indices, newLength);
+					values = Arrays.copyOf(values, newLength);
+				}
+				indices[end] = i;
+				values[end] = pvals[i].p;
+				end++;
 			}
 		}
-		return reducedSet;
+
+		offsets[++numberOfSets] = end;
 	}
 
-	private PValue[] inflate_pvals(HashMap<Integer, Double> reducedSet)
+	private PValue[] inflate_pvals(int set)
 	{
 		PValue[] pvals = new PValue[setSize];
 
@@ -93,15 +155,94 @@ public class PvalueSetStore implements Iterable<PValue[]>
 		}
 
 		// set old values
-		for (int k : reducedSet.keySet())
+		for (int k = offsets[set]; k < offsets[set + 1]; k++)
 		{
-			pvals[k].ignoreAtMTC = false;
-			pvals[k].p = reducedSet.get(k);
+			int i = getStoredIndex(k);
+			pvals[i].ignoreAtMTC = false;
+			pvals[i].p = getStoredValue(k);
 		}
 
 		return pvals;
 	}
 
+	/**
+	 * @return the number of stored sets.
+	 */
+	public int size()
+	{
+		return numberOfSets;
+	}
+
+	/**
+	 * @return the size of each set.
+	 */
+	public int getSetSize()
+	{
+		return setSize;
+	}
+
+	/**
+	 * Retrieves the p-values of the given set. Entries that have been
+	 * marked with "ignoreAtMTC" get a p-value of 1.0.
+	 *
+	 * @param set the index of the set.
+	 * @param p the array that receives the p-values, must have at least
+	 *  {@link #getSetSize()} entries.
+	 * @return p for convenience.
+	 */
+	public double [] get(int set, double [] p)
+	{
+		if (set < 0 || set >= numberOfSets)
+			throw new IndexOutOfBoundsException("Set " + set + " out of range");
+
+		Arrays.fill(p, 0, setSize, 1.0);
+		if (mappedValues != null)
+		{
+			for (int k = offsets[set]; k < offsets[set + 1]; k++)
+				p[mappedIndices.get(k)] = mappedValues.get(k);
+		} else
+		{
+			for (int k = offsets[set]; k < offsets[set + 1]; k++)
+				p[indices[k]] = values[k];
+		}
+		return p;
+	}
+
+	/**
+	 * @return the start of each set within the stored values followed by the
+	 *  end of the last set.
+	 */
+	int [] getOffsets()
+	{
+		return Arrays.copyOf(offsets, numberOfSets + 1);
+	}
+
+	/**
+	 * @return the total number of stored values.
+	 */
+	int getNumberOfValues()
+	{
+		return offsets[numberOfSets];
+	}
+
+	/**
+	 * @param k the position within all stored values
+	 * @return the index of the value within its set.
+	 */
+	int getStoredIndex(int k)
+	{
+		return mappedIndices != null ? mappedIndices.get(k) : indices[k];
+	}
+
+	/**
+	 * @param k the position within all stored values
+	 * @return the value.
+	 */
+	double getStoredValue(int k)
+	{
+		return mappedValues != null ? mappedValues.get(k) : values[k];
+	}
+
 	public Iterator<PValue[]> iterator()
 	{
 		return new PValueSetStoreIterator();
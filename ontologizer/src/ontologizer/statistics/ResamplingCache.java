@@ -0,0 +1,316 @@
+package ontologizer.statistics;
+
+import static ontologizer.util.Util.mix;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A directory of resampled p-value sets that survives restarts. Each entry
+ * holds a {@link PvalueSetStore} and is identified by a key that the caller
+ * derives from everything that determines the resampled p-values.
+ *
+ * Entries are memory-mapped on load. The total size of the entries is
+ * bounded by a disk budget; if it is exceeded, the least recently used
+ * entries are deleted.
+ */
+public class ResamplingCache
+{
+	private static Logger logger = Logger.getLogger(ResamplingCache.class.getName());
+
+	/** The suffix of the entries */
+	private static final String SUFFIX = ".pvals";
+
+	private static final int MAGIC = 0x50565353; /* PVSS */
+
+	private static final int VERSION = 1;
+
+	/** Magic, version, key, set size, number of sets and number of values */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+
+	private final File directory;
+
+	private final long diskBudget;
+
+	/**
+	 * Constructs the cache.
+	 *
+	 * @param directory the directory for the entries. It is created if it
+	 *  doesn't exist yet.
+	 * @param diskBudget the maximum number of bytes used by all entries.
+	 */
+	public ResamplingCache(File directory, long diskBudget)
+	{
+		this.directory = directory;
+		this.diskBudget = diskBudget;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+			logger.log(Level.WARNING, "Unable to create resampling cache directory " + directory);
+	}
+
+	/**
+	 * Derives a key from the given components.
+	 *
+	 * @param fingerprint the fingerprint of the calculation.
+	 * @param method the name of the correction.
+	 * @param studySetSize the size of the study set.
+	 * @param numberOfResamplingSteps the number of resampling steps.
+	 * @return the key
+	 */
+	public static long getKey(long fingerprint, String method, int studySetSize, int numberOfResamplingSteps)
+	{
+		long h = mix(fingerprint);
+		h = mix(h ^ method.hashCode());
+		h = mix(h ^ studySetSize);
+		return mix(h ^ numberOfResamplingSteps);
+	}
+
+	private File getFile(long key)
+	{
+		return new File(directory, String.format("%016x", key) + SUFFIX);
+	}
+
+	private File [] getEntries()
+	{
+		File [] entries = directory.listFiles(new FileFilter()
+		{
+			@Override
+			public boolean accept(File pathname)
+			{
+				return pathname.isFile() && pathname.getName().endsWith(SUFFIX);
+			}
+		});
+		return entries != null ? entries : new File[0];
+	}
+
+	/**
+	 * Loads the entry with the given key. The header, the offsets of the
+	 * sets and the indices of the values are checked against the expected
+	 * dimensions. Entries that fail the check are deleted and reported as
+	 * missing.
+	 *
+	 * @param key
+	 * @param setSize the expected size of each p-value set.
+	 * @param numberOfSets the expected number of sets.
+	 * @return the mapped entry or null if there is no valid entry.
+	 */
+	public PvalueSetStore load(long key, int setSize, int numberOfSets)
+	{
+		File file = getFile(key);
+		if (!file.isFile())
+			return null;
+
+		try
+		{
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = raf.getChannel();
+				MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				buf.order(ByteOrder.LITTLE_ENDIAN);
+
+				if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getLong() != key ||
+					buf.getInt() != setSize || buf.getInt() != numberOfSets)
+				{
+					return invalid(file);
+				}
+
+				int numberOfValues = buf.getInt();
+				long expectedSize = HEADER_SIZE + 4L * (numberOfSets + 1) + 4L * numberOfValues + 8L * numberOfValues;
+				if (numberOfValues < 0 || channel.size() != expectedSize)
+					return invalid(file);
+
+				int [] offsets = new int[numberOfSets + 1];
+				buf.asIntBuffer().get(offsets);
+				if (offsets[0] != 0 || offsets[numberOfSets] != numberOfValues)
+					return invalid(file);
+				for (int i = 0; i < numberOfSets; i++)
+				{
+					/* Each set holds at most one value per index */
+					if (offsets[i + 1] < offsets[i] || offsets[i + 1] - offsets[i] > setSize)
+						return invalid(file);
+				}
+				buf.position(buf.position() + 4 * offsets.length);
+
+				IntBuffer indices = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+				indices.limit(numberOfValues);
+				for (int k = 0; k < numberOfValues; k++)
+				{
+					int index = indices.get(k);
+					if (index < 0 || index >= setSize)
+						return invalid(file);
+				}
+				buf.position(buf.position() + 4 * numberOfValues);
+				DoubleBuffer values = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+				/* Remember the use for the LRU eviction */
+				file.setLastModified(System.currentTimeMillis());
+				return new PvalueSetStore(setSize, offsets, indices, values);
+			} finally
+			{
+				raf.close();
+			}
+		} catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Unable to read resampling cache entry " + file, e);
+			return null;
+		}
+	}
+
+	private PvalueSetStore invalid(File file)
+	{
+		logger.log(Level.INFO, "Discarding invalid resampling cache entry " + file);
+		file.delete();
+		return null;
+	}
+
+	/**
+	 * Stores the given entry and evicts least recently used entries if the
+	 * disk budget is exceeded.
+	 *
+	 * @param key
+	 * @param store
+	 */
+	public void store(long key, PvalueSetStore store)
+	{
+		int [] offsets = store.getOffsets();
+		int numberOfValues = store.getNumberOfValues();
+		long size = HEADER_SIZE + 4L * offsets.length + 12L * numberOfValues;
+		if (size > diskBudget)
+			return;
+
+		File file = getFile(key);
+		File tmp = new File(directory, file.getName() + ".tmp");
+		try
+		{
+			RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+			try
+			{
+				raf.setLength(0);
+				FileChannel channel = raf.getChannel();
+
+				ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+				buf.putInt(MAGIC);
+				buf.putInt(VERSION);
+				buf.putLong(key);
+				buf.putInt(store.getSetSize());
+				buf.putInt(store.size());
+				buf.putInt(numberOfValues);
+				for (int o : offsets)
+					buf = put(channel, buf, 4).putInt(o);
+				for (int k = 0; k < numberOfValues; k++)
+					buf = put(channel, buf, 4).putInt(store.getStoredIndex(k));
+				for (int k = 0; k < numberOfValues; k++)
+					buf = put(channel, buf, 8).putDouble(store.getStoredValue(k));
+				buf.flip();
+				while (buf.hasRemaining())
+					channel.write(buf);
+			} finally
+			{
+				raf.close();
+			}
+
+			if (!tmp.renameTo(file))
+			{
+				file.delete();
+				if (!tmp.renameTo(file))
+					throw new IOException("Unable to rename " + tmp + " to " + file);
+			}
+		} catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Unable to write resampling cache entry " + file, e);
+			tmp.delete();
+			return;
+		}
+
+		evict(file);
+	}
+
+	/**
+	 * Makes sure that the buffer has room for the given number of bytes
+	 * by writing its contents to the channel if necessary.
+	 */
+	private static ByteBuffer put(FileChannel channel, ByteBuffer buf, int bytes) throws IOException
+	{
+		if (buf.remaining() < bytes)
+		{
+			buf.flip();
+			while (buf.hasRemaining())
+				channel.write(buf);
+			buf.clear();
+		}
+		return buf;
+	}
+
+	/**
+	 * Deletes the least recently used entries until the disk budget is met.
+	 *
+	 * @param keep the entry that should not be deleted.
+	 */
+	private void evict(File keep)
+	{
+		File [] entries = getEntries();
+		long total = 0;
+		final long [] lastModified = new long[entries.length];
+		Integer [] order = new Integer[entries.length];
+		for (int i = 0; i < entries.length; i++)
+		{
+			total += entries[i].length();
+			lastModified[i] = entries[i].lastModified();
+			order[i] = i;
+		}
+		if (total <= diskBudget)
+			return;
+
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer o1, Integer o2)
+			{
+				return Long.compare(lastModified[o1], lastModified[o2]);
+			}
+		});
+
+		for (int i = 0; i < order.length && total > diskBudget; i++)
+		{
+			File entry = entries[order[i]];
+			if (entry.equals(keep))
+				continue;
+			long length = entry.length();
+			if (entry.delete())
+				total -= length;
+		}
+	}
+
+	/**
+	 * Removes the entry with the given key.
+	 *
+	 * @param key
+	 */
+	public void remove(long key)
+	{
+		getFile(key).delete();
+	}
+
+	/**
+	 * Removes all entries, including those that have been stored by other
+	 * instances or processes that share the directory.
+	 */
+	public void clear()
+	{
+		for (File entry : getEntries())
+			entry.delete();
+	}
+}
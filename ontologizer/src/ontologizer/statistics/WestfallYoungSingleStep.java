@@ -1,11 +1,11 @@
 package ontologizer.statistics;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.TreeMap;
 
 public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 {
-	private HashMap<Integer,double[]> sampledMinPPerSize = new HashMap<Integer,double[]>();
+	private TreeMap<Integer,double[]> sampledMinPPerSize = new TreeMap<Integer,double[]>();
 
 	public String getDescription()
 	{
@@ -58,37 +58,34 @@ public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 		Arrays.sort(sortedRawPValues);
 
 		/* this will hold the minima of the sampled p-values */
-		double [] sampledMinP = new double[numberOfResamplingSteps];
+		double [] sampledMinP;
 
 		int studySetSize = pvalues.currentStudySetSize();
 
-		if (sampledMinPPerSize.containsKey(studySetSize)) {  // we have samples
-			System.out.println("Using available samples for study set size " + studySetSize);
-			sampledMinP = sampledMinPPerSize.get(studySetSize);
-		} else {        // we have to sample
+		sampledMinP = getSamples(sampledMinPPerSize, studySetSize);
+		if (sampledMinP == null) {        // we have to sample
 			System.out.println("Sampling for study set size " + studySetSize + "\nThis may take a while...");
 
-			initProgress(numberOfResamplingSteps);
-
-			for (int b=0; b < numberOfResamplingSteps; b++) {
-				/* create random sample */
-				PValue [] randomRawP = pvalues.calculateRandomPValues(null);
-
-				if (randomRawP.length > 0)
+			final double [] minP = new double[numberOfResamplingSteps];
+			resample(pvalues, numberOfResamplingSteps, new IResampledPValuesVisitor()
+			{
+				@Override
+				public void visit(int b, PValue[] randomRawP)
 				{
-					/* determine minimal p-value in sample */
-					double minP = randomRawP[0].p;
-					for (i=1; i < randomRawP.length; i++) {
-						minP = Math.min(minP,randomRawP[i].p);
+					if (randomRawP.length > 0)
+					{
+						/* determine minimal p-value in sample */
+						double min = randomRawP[0].p;
+						for (int i=1; i < randomRawP.length; i++) {
+							min = Math.min(min,randomRawP[i].p);
+						}
+						minP[b] = min;
 					}
-					sampledMinP[b] = minP;
 				}
-
-				updateProgress(b);
-				System.out.print("created " + b + " samples out of " + numberOfResamplingSteps + "\r");
-			}
+			});
 			/* sort sampled minimal p-values according to size */
-			Arrays.sort(sampledMinP);
+			Arrays.sort(minP);
+			sampledMinP = minP;
 
 			sampledMinPPerSize.put(studySetSize,sampledMinP);
 		}
@@ -104,7 +101,7 @@ public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 
 		for (i=0; i < m; i++) {
 			count[i] = lastcount;
-			while (samplesConsidered < numberOfResamplingSteps && sampledMinP[samplesConsidered] <= sortedRawPValues[i].value) {
+			while (samplesConsidered < sampledMinP.length && sampledMinP[samplesConsidered] <= sortedRawPValues[i].value) {
 				count[i]++;
 				samplesConsidered++;
 			}
@@ -115,25 +112,13 @@ public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 		/* Calculate the adjusted p values */
 		for (i=0;i<m;i++)
 		{
-			rawP[sortedRawPValues[i].index].p_adjusted = ((double)count[i])/numberOfResamplingSteps;
+			rawP[sortedRawPValues[i].index].p_adjusted = ((double)count[i])/sampledMinP.length;
 		}
 		return rawP;
 	}
 
 	public void resetCache()
 	{
-		sampledMinPPerSize = new HashMap<Integer,double[]>();
-	}
-
-	public int getSizeTolerance()
-	{
-		// TODO Auto-generated method stub
-		return 0;
-	}
-
-	public void setSizeTolerance(int t)
-	{
-		// TODO Auto-generated method stub
-
+		sampledMinPPerSize = new TreeMap<Integer,double[]>();
 	}
 }
@@ -1,12 +1,16 @@
 package ontologizer.statistics;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.TreeMap;
 
 public class WestfallYoungSingleStepApproximate extends AbstractResamplingTestCorrection
 {
-	private HashMap<Integer,double[]> sampledMinPPerSize = new HashMap<Integer,double[]>();
-	private int sizeTolerance = 10;
+	private TreeMap<Integer,double[]> sampledMinPPerSize = new TreeMap<Integer,double[]>();
+
+	public WestfallYoungSingleStepApproximate()
+	{
+		sizeTolerance = 10;
+	}
 
 	public String getDescription()
 	{
@@ -59,58 +63,34 @@ public class WestfallYoungSingleStepApproximate extends AbstractResamplingTestCo
 		Arrays.sort(sortedRawPValues);
 
 		/* this will hold the minima of the sampled p-values */
-		double [] sampledMinP = new double[numberOfResamplingSteps];
+		double [] sampledMinP;
 
 		int studySetSize = pvalues.currentStudySetSize();
 
-		// determine optimal optimal studyset size for which samples are available
-		int bestStudysetSize = 0;
-		double bestStudysetRatio = 0.0;
-
-
-		for (int s : sampledMinPPerSize.keySet()) {
-			double curRatio;
-			if (s >= studySetSize) {
-				curRatio = ((double) s)/studySetSize;
-			} else {
-				curRatio = ((double) studySetSize)/s;
-			}
-			if (bestStudysetRatio == 0.0 || curRatio < bestStudysetRatio) {
-				bestStudysetRatio = curRatio;
-				bestStudysetSize = s;
-			}
-		}
-		double ratioCutoff = 1 + 0.01 * sizeTolerance;
-
-
-		if (bestStudysetSize != 0 && bestStudysetRatio <= ratioCutoff) {  // use approximate samples
-			System.out.println("Needing samples for study set size " + studySetSize);
-			System.out.println("Using available samples made for study set size " + bestStudysetSize);
-			sampledMinP = sampledMinPPerSize.get(bestStudysetSize);
-		} else {        // we have to sample
+		sampledMinP = getSamples(sampledMinPPerSize, studySetSize);
+		if (sampledMinP == null) {        // we have to sample
 			System.out.println("Sampling for study set size " + studySetSize + "\nThis may take a while...");
 
-			initProgress(numberOfResamplingSteps);
-
-			for (int b=0; b < numberOfResamplingSteps; b++) {
-				/* create random sample */
-				PValue [] randomRawP = pvalues.calculateRandomPValues(null);
-
-				if (randomRawP.length > 0)
+			final double [] minP = new double[numberOfResamplingSteps];
+			resample(pvalues, numberOfResamplingSteps, new IResampledPValuesVisitor()
+			{
+				@Override
+				public void visit(int b, PValue[] randomRawP)
 				{
-					/* determine minimal p-value in sample */
-					double minP = randomRawP[0].p;
-					for (i=1; i < randomRawP.length; i++) {
-						minP = Math.min(minP,randomRawP[i].p);
+					if (randomRawP.length > 0)
+					{
+						/* determine minimal p-value in sample */
+						double min = randomRawP[0].p;
+						for (int i=1; i < randomRawP.length; i++) {
+							min = Math.min(min,randomRawP[i].p);
+						}
+						minP[b] = min;
 					}
-					sampledMinP[b] = minP;
 				}
-
-				updateProgress(b);
-				System.out.print("created " + b + " samples out of " + numberOfResamplingSteps + "\r");
-			}
+			});
 			/* sort sampled minimal p-values according to size */
-			Arrays.sort(sampledMinP);
+			Arrays.sort(minP);
+			sampledMinP = minP;
 
 			sampledMinPPerSize.put(studySetSize,sampledMinP);
 		}
@@ -126,7 +106,7 @@ public class WestfallYoungSingleStepApproximate extends AbstractResamplingTestCo
 
 		for (i=0; i < m; i++) {
 			count[i] = lastcount;
-			while (samplesConsidered < numberOfResamplingSteps && sampledMinP[samplesConsidered] <= sortedRawPValues[i].value) {
+			while (samplesConsidered < sampledMinP.length && sampledMinP[samplesConsidered] <= sortedRawPValues[i].value) {
 				count[i]++;
 				samplesConsidered++;
 			}
@@ -137,23 +117,13 @@ public class WestfallYoungSingleStepApproximate extends AbstractResamplingTestCo
 		/* Calculate the adjusted p values */
 		for (i=0;i<m;i++)
 		{
-			rawP[sortedRawPValues[i].index].p_adjusted = ((double)count[i])/numberOfResamplingSteps;
+			rawP[sortedRawPValues[i].index].p_adjusted = ((double)count[i])/sampledMinP.length;
 		}
 		return rawP;
 	}
 
 	public void resetCache()
 	{
-		sampledMinPPerSize = new HashMap<Integer,double[]>();
-	}
-
-	public int getSizeTolerance()
-	{
-		return sizeTolerance;
-	}
-
-	public void setSizeTolerance(int t)
-	{
-		sizeTolerance = t;
+		sampledMinPPerSize = new TreeMap<Integer,double[]>();
 	}
 }
@@ -2,11 +2,12 @@ package ontologizer.statistics;
 
 import java.util.Arrays;
 
-public class WestfallYoungStepDown extends AbstractTestCorrection
-						   implements IResampling
+public class WestfallYoungStepDown extends AbstractResamplingTestCorrection
 {
-	/** Specifies the number of resampling steps */
-	private int numberOfResamplingSteps = 1000;
+	public WestfallYoungStepDown()
+	{
+		numberOfResamplingSteps = 1000;
+	}
 
 	public String getDescription()
 	{
@@ -45,14 +46,14 @@ public class WestfallYoungStepDown extends AbstractTestCorrection
 		int i;
 
 		/* Calculate raw P-values */
-		PValue [] rawP = pvalues.calculateRawPValues(null);
+		final PValue [] rawP = pvalues.calculateRawPValues(null);
 
-		double [] q = new double[rawP.length];
-		int [] count = new int[rawP.length];
+		final double [] q = new double[rawP.length];
+		final int [] count = new int[rawP.length];
 
 		/* Sort the raw P-values and remember their original index */
-		int m = rawP.length;
-		int r[] = new int[m];
+		final int m = rawP.length;
+		final int r[] = new int[m];
 		Entry [] sortedRawPValues = new Entry[m];
 
 		for (i=0;i<m;i++)
@@ -69,27 +70,26 @@ public class WestfallYoungStepDown extends AbstractTestCorrection
 
 		/* Now "permute" */
 		System.out.println("Sampling " + numberOfResamplingSteps + " random study sets\nThis may take a while...");
-		for (int b=0; b < numberOfResamplingSteps; b++)
+		resample(pvalues, numberOfResamplingSteps, new IResampledPValuesVisitor()
 		{
-			/* Compute raw p values of "permuted" data */
-			PValue [] randomRawP = pvalues.calculateRandomPValues(null);
-
-			assert(randomRawP.length == rawP.length);
-
-			/* Compute the successive minima of raw p values */
-			q[m-1] = randomRawP[r[m-1]].p;
-			for (i=m-2;i>=0;i--)
-				q[i] = Math.min(q[i+1],randomRawP[r[i]].p);
-
-			/* Count up */
-			for (i=0;i<m;i++)
+			@Override
+			public void visit(int b, PValue[] randomRawP)
 			{
-				if (q[i] <= rawP[r[i]].p) // = sortedRawPValues[i].value
-					count[i]++;
+				assert(randomRawP.length == rawP.length);
+
+				/* Compute the successive minima of raw p values */
+				q[m-1] = randomRawP[r[m-1]].p;
+				for (int i=m-2;i>=0;i--)
+					q[i] = Math.min(q[i+1],randomRawP[r[i]].p);
+
+				/* Count up */
+				for (int i=0;i<m;i++)
+				{
+					if (q[i] <= rawP[r[i]].p) // = sortedRawPValues[i].value
+						count[i]++;
+				}
 			}
-
-			System.out.print(b + "\r");
-		}
+		});
 		System.out.println("Done!");
 
 		/* Enforce monotony contraints */
@@ -105,29 +105,9 @@ public class WestfallYoungStepDown extends AbstractTestCorrection
 		return rawP;
 	}
 
-	public void setNumberOfResamplingSteps(int n)
-	{
-		numberOfResamplingSteps = n;
-	}
-
-	public int getNumberOfResamplingSteps()
-	{
-		return numberOfResamplingSteps;
-	}
-
 	public void resetCache()
 	{
 		// no cache here, nothing to do
 
 	}
-
-	public int getSizeTolerance()
-	{
-		return 0;
-	}
-
-	public void setSizeTolerance(int t)
-	{
-
-	}
 }
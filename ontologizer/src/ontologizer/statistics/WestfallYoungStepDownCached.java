@@ -1,15 +1,24 @@
 package ontologizer.statistics;
 
+import java.io.File;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public class WestfallYoungStepDownCached extends AbstractTestCorrection
-						   implements IResampling
+public class WestfallYoungStepDownCached extends AbstractResamplingTestCorrection
 {
-	/** Specifies the number of resampling steps */
-	private int numberOfResamplingSteps = 1000;
+	private static Logger logger = Logger.getLogger(WestfallYoungStepDownCached.class.getName());
 
-	private HashMap<Integer,PvalueSetStore> sampledPValuesPerSize = new HashMap<Integer,PvalueSetStore>();
+	private TreeMap<Integer,PvalueSetStore> sampledPValuesPerSize = new TreeMap<Integer,PvalueSetStore>();
+
+	/** The persistent cache of sampled p-values, may be null */
+	private ResamplingCache diskCache;
+
+	public WestfallYoungStepDownCached()
+	{
+		numberOfResamplingSteps = 1000;
+	}
 
 	public String getDescription()
 	{
@@ -73,33 +82,51 @@ public class WestfallYoungStepDownCached extends AbstractTestCorrection
 		int studySetSize = pvalueCalc.currentStudySetSize();
 
 		/* holds the sampled random p values for the current study set size */
-		PvalueSetStore randomSampledPValues;
-
-		if (sampledPValuesPerSize.containsKey(studySetSize)) {
-			System.out.println("Using available samples for study set size " + studySetSize);
-			randomSampledPValues = sampledPValuesPerSize.get(studySetSize);
-		} else {
-			System.out.println("Sampling for study set size " + studySetSize + "\nThis may take a while...");
-			randomSampledPValues = new PvalueSetStore(numberOfResamplingSteps,m);
-			for (int b=0; b < numberOfResamplingSteps; b++) {
-				/* Compute raw p values of "permuted" data */
-				randomSampledPValues.add(pvalueCalc.calculateRandomPValues(null));
-
-				System.out.print("created " + b + " samples out of " + numberOfResamplingSteps + "\r");
+		PvalueSetStore randomSampledPValues = getSamples(sampledPValuesPerSize, studySetSize);
+
+		if (randomSampledPValues == null) {
+			/* Try the samples of a previous run */
+			long key = 0;
+			boolean persistent = diskCache != null && pvalueCalc instanceof IFingerprintable;
+			if (persistent)
+			{
+				key = ResamplingCache.getKey(((IFingerprintable)pvalueCalc).getFingerprint(), getName(), studySetSize, numberOfResamplingSteps);
+				randomSampledPValues = diskCache.load(key, m, numberOfResamplingSteps);
+				if (randomSampledPValues != null)
+					logger.log(Level.FINE, "Using stored samples for study set size " + studySetSize);
+			}
+
+			if (randomSampledPValues == null)
+			{
+				logger.log(Level.INFO, "Sampling for study set size " + studySetSize + ". This may take a while...");
+				final PvalueSetStore store = new PvalueSetStore(numberOfResamplingSteps,m);
+				resample(pvalueCalc, numberOfResamplingSteps, new IResampledPValuesVisitor()
+				{
+					@Override
+					public void visit(int b, PValue[] randomRawP)
+					{
+						/* Compute raw p values of "permuted" data */
+						store.add(randomRawP);
+					}
+				});
+				randomSampledPValues = store;
+				if (persistent)
+					diskCache.store(key, store);
 			}
 			sampledPValuesPerSize.put(studySetSize,randomSampledPValues);
 		}
 
 		/* Now "permute" */
-		for (PValue [] randomRawP : randomSampledPValues)
+		double [] randomRawP = new double[m];
+		for (int b=0; b < randomSampledPValues.size(); b++)
 		{
-			/* Compute raw p values of "permuted" data */
-//			PValue [] randomRawP = randomSampledPValues[b];
+			/* Get the raw p values of "permuted" data */
+			randomSampledPValues.get(b, randomRawP);
 
 			/* Compute the successive minima of raw p values */
-			q[m-1] = randomRawP[r[m-1]].p;
+			q[m-1] = randomRawP[r[m-1]];
 			for (i=m-2;i>=0;i--)
-				q[i] = Math.min(q[i+1],randomRawP[r[i]].p);
+				q[i] = Math.min(q[i+1],randomRawP[r[i]]);
 
 			/* Count up */
 			for (i=0;i<m;i++)
@@ -122,34 +149,40 @@ public class WestfallYoungStepDownCached extends AbstractTestCorrection
 		return rawP;
 	}
 
+	@Override
 	public void setNumberOfResamplingSteps(int n)
 	{
 		if (n != numberOfResamplingSteps)
 		{
-			numberOfResamplingSteps = n;
+			super.setNumberOfResamplingSteps(n);
 
-			/* Clear the cache */
-			sampledPValuesPerSize = new HashMap<Integer,PvalueSetStore>();
+			/* Clear the cache, persistent entries are keyed by the number of steps */
+			sampledPValuesPerSize = new TreeMap<Integer,PvalueSetStore>();
 		}
 	}
 
-	public int getNumberOfResamplingSteps()
-	{
-		return numberOfResamplingSteps;
-	}
-
+	/**
+	 * Drops the samples held in memory. Entries of the persistent cache are
+	 * kept, as the directory may be shared with other calculations and
+	 * processes.
+	 */
 	public void resetCache()
 	{
-		sampledPValuesPerSize = new HashMap<Integer,PvalueSetStore>();
-	}
-
-	public int getSizeTolerance()
-	{
-		return 0;
+		sampledPValuesPerSize = new TreeMap<Integer,PvalueSetStore>();
 	}
 
-	public void setSizeTolerance(int t)
+	/**
+	 * Enables the persistent cache of sampled p-values, which is used if the
+	 * p-value calculation implements {@link IFingerprintable}. Entries are
+	 * keyed by the fingerprint of the calculation, the size of the study set
+	 * and the number of resampling steps. Note that stored samples are reused
+	 * irrespective of the seed.
+	 *
+	 * @param directory the directory of the cache or null to disable it.
+	 * @param diskBudget the maximum number of bytes occupied by the cache.
+	 */
+	public void setCacheDirectory(File directory, long diskBudget)
 	{
-
+		diskCache = directory != null ? new ResamplingCache(directory, diskBudget) : null;
 	}
 }
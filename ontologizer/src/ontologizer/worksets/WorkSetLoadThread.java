@@ -476,7 +476,7 @@ public class WorkSetLoadThread extends Thread
 					}
 				});
 
-				AssociationContainer ac = new AssociationContainer(ap.getAssociations(), ap.getAnnotationMapping());
+				AssociationContainer ac = ap.getAssociationContainer();
 				assocMap.put(assocName, ac);
 				workSetProgress.message("");
 				workSetProgress.initGauge(0);
@@ -0,0 +1,82 @@
+package ontologizer;
+
+import static ontologizer.types.ByteString.EMPTY;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.io.annotation.AssociationParser;
+import ontologizer.io.obo.OBOParser;
+import ontologizer.io.obo.OBOParserException;
+import ontologizer.io.obo.OBOParserFileInput;
+import ontologizer.io.snapshot.AnnotationSnapshot;
+import ontologizer.io.snapshot.AnnotationSnapshotReader;
+import ontologizer.io.snapshot.SnapshotException;
+import ontologizer.ontology.TermContainer;
+
+/**
+ * Compares parsing an annotation file (cold start) with loading the
+ * associations from an annotation snapshot (warm start).
+ */
+@State(Scope.Benchmark)
+public class AnnotationSnapshotBenchmark
+{
+	private String associationFilename;
+
+	private File snapshotFile;
+
+	private TermContainer terms;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, OBOParserException
+	{
+		OBOParser oboParser = new OBOParser(new OBOParserFileInput(BenchmarkResources.getFilename(BenchmarkResources.OBO_NAME)));
+		oboParser.doParse();
+		terms = new TermContainer(oboParser.getTermMap(), EMPTY, EMPTY);
+
+		associationFilename = BenchmarkResources.getFilename(BenchmarkResources.ASSOCIATION_NAME);
+		snapshotFile = File.createTempFile("benchmark", ".snapshot");
+		snapshotFile.delete();
+		AnnotationSnapshot.load(associationFilename, terms, null, snapshotFile.getAbsolutePath());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		snapshotFile.delete();
+	}
+
+	@Benchmark
+	@Warmup(iterations=5)
+	@Fork(value=1)
+	@Measurement(time=2,timeUnit=TimeUnit.SECONDS)
+	public AssociationContainer benchmarkColdParse() throws IOException
+	{
+		AssociationParser ap = new AssociationParser(new OBOParserFileInput(associationFilename), terms);
+		return ap.getAssociationContainer();
+	}
+
+	@Benchmark
+	@Warmup(iterations=5)
+	@Fork(value=1)
+	@Measurement(time=2,timeUnit=TimeUnit.SECONDS)
+	public AssociationContainer benchmarkWarmLoad() throws IOException, SnapshotException
+	{
+		AnnotationSnapshotReader reader = new AnnotationSnapshotReader(snapshotFile);
+		if (!reader.isUpToDate(new File(associationFilename), terms, null))
+			throw new IllegalStateException("Snapshot is stale");
+		return reader.read();
+	}
+}
@@ -0,0 +1,53 @@
+package ontologizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helper to access the resources that are used by the benchmarks.
+ */
+final class BenchmarkResources
+{
+	/** Name of the ontology resource */
+	static final String OBO_NAME = "gene_ontology.1_2.obo.gz";
+
+	/** Name of the association resource */
+	static final String ASSOCIATION_NAME = "gene_association.sgd.gz";
+
+	private BenchmarkResources()
+	{
+	}
+
+	/**
+	 * Determine a filename of the given resource that can be used to directly
+	 * read from the filesystem.
+	 *
+	 * @param name the name of the resource.
+	 * @return the filename
+	 * @throws IOException
+	 */
+	static String getFilename(String name) throws IOException
+	{
+		ClassLoader cl = BenchmarkResources.class.getClassLoader();
+		String filename = cl.getResource(name).getPath();
+		if (filename.contains("!/"))
+		{
+			/* The requested file is inside an archive, copy the contents to a temporary file */
+			InputStream is = cl.getResourceAsStream(name);
+			try
+			{
+				File tmpFile = File.createTempFile("benchmark", "-" + name);
+				tmpFile.deleteOnExit();
+				Files.copy(is, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				filename = tmpFile.getAbsolutePath();
+			} finally
+			{
+				is.close();
+			}
+		}
+		return filename;
+	}
+}
@@ -0,0 +1,60 @@
+package ontologizer;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ontologizer.io.obo.OBOParser;
+import ontologizer.io.obo.OBOParserException;
+import ontologizer.io.obo.OBOParserFileInput;
+
+/**
+ * Like {@link OBOParserBenchmark} but parses the stanzas with a varying
+ * number of worker threads.
+ */
+@State(Scope.Benchmark)
+public class ParallelOBOParserBenchmark
+{
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private String oboFilename;
+
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		oboFilename = BenchmarkResources.getFilename(BenchmarkResources.OBO_NAME);
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Benchmark
+	@Warmup(iterations=5)
+	@Fork(value=1)
+	@Measurement(time=2,timeUnit=TimeUnit.SECONDS)
+	public OBOParser benchmarkParallelOBOParser() throws IOException, OBOParserException
+	{
+		OBOParser oboParser = new OBOParser(new OBOParserFileInput(oboFilename));
+		oboParser.doParse(executor);
+		return oboParser;
+	}
+}
@@ -0,0 +1,66 @@
+package ontologizer;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ontologizer.io.obo.OBOParser;
+import ontologizer.io.obo.OBOParserException;
+import ontologizer.io.obo.OBOParserFileInput;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import sonumina.math.graph.SlimDirectedGraphView;
+
+/**
+ * Measures the construction of the slim graph view on a fork join pool with
+ * a varying number of threads.
+ *
+ * @see SequentialSlimGraphViewBenchmark
+ */
+@State(Scope.Benchmark)
+public class SlimGraphViewBenchmark
+{
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private Ontology ontology;
+
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, OBOParserException
+	{
+		OBOParser oboParser = new OBOParser(new OBOParserFileInput(BenchmarkResources.getFilename(BenchmarkResources.OBO_NAME)));
+		oboParser.doParse();
+		TermContainer tc = new TermContainer(oboParser.getTermMap(), oboParser.getFormatVersion(), oboParser.getDate());
+		ontology = Ontology.create(tc);
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	@Benchmark
+	@Warmup(iterations=5)
+	@Fork(value=1)
+	@Measurement(time=2,timeUnit=TimeUnit.SECONDS)
+	public SlimDirectedGraphView<Term> benchmarkParallel()
+	{
+		return ontology.getSlimGraphView(pool);
+	}
+}
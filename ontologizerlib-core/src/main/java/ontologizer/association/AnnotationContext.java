@@ -158,6 +158,17 @@ public class AnnotationContext implements Serializable
 		return symbols;
 	}
 
+	/**
+	 * Return the array of object ids. The object id of a symbol is stored
+	 * at the index of the symbol. Entries may be null.
+	 *
+	 * @return array of object ids.
+	 */
+	public ByteString [] getObjectIds()
+	{
+		return objectIds;
+	}
+
 	/**
 	 * Map the given symbol to the unique id.
 	 *
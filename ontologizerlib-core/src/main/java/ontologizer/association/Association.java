@@ -174,6 +174,22 @@ public class Association implements Serializable
 		termID = new TermID(term);
 	}
 
+	/**
+	 * Constructs a new association object with all attributes. Used to
+	 * materialize associations from the columns of an
+	 * {@link AssociationContainer}.
+	 */
+	Association(ByteString dbObject, ByteString symbol, ByteString synonym, ByteString evidence, ByteString aspect, TermID termID, boolean notQualifier)
+	{
+		this.DB_Object = dbObject;
+		this.DB_Object_Symbol = symbol;
+		this.synonym = synonym;
+		this.evidence = evidence;
+		this.aspect = aspect;
+		this.termID = termID;
+		this.notQualifier = notQualifier;
+	}
+
 	private Association() {};
 
 	/**
@@ -1,31 +1,308 @@
 package ontologizer.association;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import ontologizer.ontology.TermID;
 import ontologizer.types.ByteString;
 
 /**
  * After AssociationParser was used to parse the gene_association.XXX file, this
  * class is used to store and process the information about Associations.
+ *
+ * The associations are stored in primitive columns that are sorted by the gene.
+ * The term ids, evidence codes, aspects, object ids and synonyms are stored only
+ * once and referenced by index. {@link Gene2Associations} and {@link Association}
+ * objects returned by this class are views that are created on demand.
  */
 public class AssociationContainer implements Iterable<Gene2Associations>, Serializable
 {
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 3L;
 
-	/** Associations keys by the unique id */
-	private Gene2Associations [] associations;
+	/**
+	 * The associations are stored in columns sorted by the gene index. The
+	 * associations of gene i occupy the rows offsets[i] to offsets[i+1] - 1.
+	 */
+	private int [] offsets;
+
+	/** The index of the term of each row into termIDs */
+	private int [] termIndices;
+
+	/** The distinct term ids */
+	private TermID [] termIDs;
+
+	/** The index of the evidence code of each row into evidenceCodes */
+	private IndexColumn evidenceIndices;
+
+	/** The distinct evidence codes */
+	private ByteString [] evidenceCodes;
+
+	/** The index of the aspect of each row into aspects */
+	private IndexColumn aspectIndices;
+
+	/** The distinct aspects */
+	private ByteString [] aspects;
+
+	/** The bit set of rows that have a NOT qualifier */
+	private long [] notQualifiers;
+
+	/** The index of the object id of each row into objectIDs */
+	private int [] objectIDIndices;
+
+	/** The distinct object ids */
+	private ByteString [] objectIDs;
+
+	/** The index of the synonym of each row into synonyms */
+	private int [] synonymIndices;
+
+	/** The distinct synonyms */
+	private ByteString [] synonyms;
 
 	/** Mapping */
 	private AnnotationContext annotationMapping;
 
+	/**
+	 * Assigns consecutive indices to distinct values.
+	 */
+	private static class Dictionary<T>
+	{
+		private HashMap<T,Integer> indices = new HashMap<T,Integer>();
+		private List<T> values = new ArrayList<T>();
+
+		public int index(T value)
+		{
+			Integer idx = indices.get(value);
+			if (idx == null)
+			{
+				idx = values.size();
+				values.add(value);
+				indices.put(value, idx);
+			}
+			return idx;
+		}
+
+		public int size()
+		{
+			return values.size();
+		}
+
+		public T get(int index)
+		{
+			return values.get(index);
+		}
+
+		public T [] toArray(T [] a)
+		{
+			return values.toArray(a);
+		}
+	}
+
+	/**
+	 * A column of indices that is stored in bytes as long as all indices
+	 * fit into a byte and in ints otherwise.
+	 */
+	private static class IndexColumn implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private byte [] bytes;
+		private int [] ints;
+
+		public IndexColumn(int capacity)
+		{
+			bytes = new byte[capacity];
+		}
+
+		public IndexColumn(byte [] bytes, int [] ints)
+		{
+			this.bytes = bytes;
+			this.ints = ints;
+		}
+
+		public int get(int row)
+		{
+			if (bytes != null)
+				return bytes[row] & 0xff;
+			return ints[row];
+		}
+
+		public void set(int row, int index)
+		{
+			if (bytes != null)
+			{
+				if (index <= 255)
+				{
+					bytes[row] = (byte)index;
+					return;
+				}
+
+				/* Widen */
+				ints = new int[bytes.length];
+				for (int i=0;i<bytes.length;i++)
+					ints[i] = bytes[i] & 0xff;
+				bytes = null;
+			}
+			ints[row] = index;
+		}
+
+		public int length()
+		{
+			if (bytes != null)
+				return bytes.length;
+			return ints.length;
+		}
+
+		public void resize(int capacity)
+		{
+			if (bytes != null) bytes = Arrays.copyOf(bytes, capacity);
+			else ints = Arrays.copyOf(ints, capacity);
+		}
+	}
+
+	/**
+	 * Assigns consecutive indices to the values of a dictionary that are
+	 * actually referenced.
+	 */
+	private static class Compaction
+	{
+		private int [] newIndices;
+		private int [] oldIndices;
+		private int size;
+
+		public Compaction(int n)
+		{
+			newIndices = new int[n];
+			oldIndices = new int[n];
+			Arrays.fill(newIndices, -1);
+		}
+
+		public int map(int oldIndex)
+		{
+			int idx = newIndices[oldIndex];
+			if (idx == -1)
+			{
+				idx = newIndices[oldIndex] = size;
+				oldIndices[size++] = oldIndex;
+			}
+			return idx;
+		}
+
+		public <T> T [] toArray(Dictionary<T> dict, T [] a)
+		{
+			T [] values = Arrays.copyOf(a, size);
+			for (int i=0;i<size;i++)
+				values[i] = dict.get(oldIndices[i]);
+			return values;
+		}
+	}
+
+	/**
+	 * Collects associations row by row in primitive columns, i.e., without
+	 * keeping the {@link Association} objects. Rows are kept in the order in
+	 * which they are added, including duplicates, until the container is
+	 * built. Used by parsers in order to avoid materializing all associations
+	 * at once.
+	 */
+	public static class Builder
+	{
+		private Dictionary<ByteString> symbolDict = new Dictionary<ByteString>();
+		private Dictionary<TermID> termDict = new Dictionary<TermID>();
+		private Dictionary<ByteString> evidenceDict = new Dictionary<ByteString>();
+		private Dictionary<ByteString> aspectDict = new Dictionary<ByteString>();
+		private Dictionary<ByteString> objectIDDict = new Dictionary<ByteString>();
+		private Dictionary<ByteString> synonymDict = new Dictionary<ByteString>();
+
+		private int [] symbolIndices = new int[1024];
+		private int [] termIndices = new int[1024];
+		private IndexColumn evidenceIndices = new IndexColumn(1024);
+		private IndexColumn aspectIndices = new IndexColumn(1024);
+		private long [] notQualifiers = new long[1024 >>> 6];
+		private int [] objectIDIndices = new int[1024];
+		private int [] synonymIndices = new int[1024];
+
+		/** The number of rows that have been added */
+		private int rows;
+
+		/**
+		 * Adds the given association as a new row.
+		 *
+		 * @param a
+		 */
+		public void add(Association a)
+		{
+			if (rows == termIndices.length)
+			{
+				int capacity = rows * 2;
+				symbolIndices = Arrays.copyOf(symbolIndices, capacity);
+				termIndices = Arrays.copyOf(termIndices, capacity);
+				evidenceIndices.resize(capacity);
+				aspectIndices.resize(capacity);
+				notQualifiers = Arrays.copyOf(notQualifiers, capacity >>> 6);
+				objectIDIndices = Arrays.copyOf(objectIDIndices, capacity);
+				synonymIndices = Arrays.copyOf(synonymIndices, capacity);
+			}
+
+			symbolIndices[rows] = symbolDict.index(a.getObjectSymbol());
+			termIndices[rows] = termDict.index(a.getTermID());
+			evidenceIndices.set(rows, evidenceDict.index(a.getEvidence()));
+			aspectIndices.set(rows, aspectDict.index(a.getAspect()));
+			if (a.hasNotQualifier())
+				notQualifiers[rows >>> 6] |= 1L << rows;
+			objectIDIndices[rows] = objectIDDict.index(a.getDB_Object());
+			synonymIndices[rows] = synonymDict.index(a.getSynonym());
+			rows++;
+		}
+
+		/**
+		 * @return the number of rows that have been added.
+		 */
+		public int size()
+		{
+			return rows;
+		}
+
+		/**
+		 * Materializes the association of the given row.
+		 *
+		 * @param row
+		 * @return the association.
+		 */
+		public Association get(int row)
+		{
+			return new Association(objectIDDict.get(objectIDIndices[row]), symbolDict.get(symbolIndices[row]),
+					synonymDict.get(synonymIndices[row]), evidenceDict.get(evidenceIndices.get(row)),
+					aspectDict.get(aspectIndices.get(row)), termDict.get(termIndices[row]),
+					(notQualifiers[row >>> 6] & (1L << row)) != 0);
+		}
+
+		/**
+		 * Builds the container. Rows whose object symbol is not known to the
+		 * mapping are ignored. Duplicate rows of a gene to the same term are
+		 * ignored as well, only the first one is kept.
+		 *
+		 * @param annotationMapping
+		 * @return the container.
+		 */
+		public AssociationContainer build(AnnotationContext annotationMapping)
+		{
+			AssociationContainer container = new AssociationContainer(annotationMapping);
+			container.init(this);
+			return container;
+		}
+	}
+
 	/**
 	 * Constructs the container using a list of association and an annotation mapping created from it.
+	 * Associations whose object symbol is not known to the mapping are ignored. Duplicate
+	 * associations of a gene to the same term are ignored as well, only the first one is kept.
 	 *
 	 * @param assocs
 	 * @param annotationMapping
@@ -33,31 +310,199 @@ public class AssociationContainer implements Iterable<Gene2Associations>, Serial
 	public AssociationContainer(List<Association> assocs, AnnotationContext annotationMapping)
 	{
 		this.annotationMapping = annotationMapping;
-		associations = new Gene2Associations[annotationMapping.getSymbols().length];
+
+		Builder builder = new Builder();
 		for (Association a : assocs)
-			addAssociation(a);
+			builder.add(a);
+		init(builder);
 	}
 
 	/**
-	 * Adds a new association. Note that this will not read out synonyms or any other field
-	 * than the object symbol.
+	 * Fills the columns with the rows of the given builder.
 	 *
-	 * @param a the associated to be added
+	 * @param builder
 	 */
-	private void addAssociation(Association a)
+	private void init(Builder builder)
 	{
-		ByteString symbol = a.getObjectSymbol();
-		int index = annotationMapping.mapSymbol(a.getObjectSymbol());
-		if (index == Integer.MAX_VALUE)
-			return;
+		int numGenes = annotationMapping.getSymbols().length;
+		int numRows = builder.rows;
+
+		/* Map the symbols to genes */
+		int [] symbol2Gene = new int[builder.symbolDict.size()];
+		for (int s=0;s<symbol2Gene.length;s++)
+			symbol2Gene[s] = annotationMapping.mapSymbol(builder.symbolDict.get(s));
+
+		int [] counts = new int[numGenes + 1];
+		for (int r=0;r<numRows;r++)
+		{
+			int gene = symbol2Gene[builder.symbolIndices[r]];
+			if (gene != Integer.MAX_VALUE)
+				counts[gene + 1]++;
+		}
+		for (int g=0;g<numGenes;g++)
+			counts[g+1] += counts[g];
+
+		/* Stable counting sort of the rows by gene */
+		int [] sorted = new int[counts[numGenes]];
+		int [] next = Arrays.copyOf(counts, numGenes);
+		for (int r=0;r<numRows;r++)
+		{
+			int gene = symbol2Gene[builder.symbolIndices[r]];
+			if (gene != Integer.MAX_VALUE)
+				sorted[next[gene]++] = r;
+		}
+
+		/* Fill the columns, skip duplicate terms within a gene */
+		offsets = new int[numGenes + 1];
+		termIndices = new int[sorted.length];
+		evidenceIndices = new IndexColumn(sorted.length);
+		aspectIndices = new IndexColumn(sorted.length);
+		notQualifiers = new long[(sorted.length + 63) >>> 6];
+		objectIDIndices = new int[sorted.length];
+		synonymIndices = new int[sorted.length];
+
+		/* The values of the builder that are referenced by the kept rows */
+		Compaction terms = new Compaction(builder.termDict.size());
+		Compaction evidences = new Compaction(builder.evidenceDict.size());
+		Compaction aspectValues = new Compaction(builder.aspectDict.size());
+		Compaction objects = new Compaction(builder.objectIDDict.size());
+		Compaction synonymValues = new Compaction(builder.synonymDict.size());
+
+		/* Stores for each term the last gene (plus one) that was annotated to it */
+		int [] termStamps = new int[builder.termDict.size()];
+		int rows = 0;
+		for (int g=0;g<numGenes;g++)
+		{
+			offsets[g] = rows;
+			for (int j=counts[g];j<counts[g+1];j++)
+			{
+				int r = sorted[j];
+				int term = builder.termIndices[r];
+				if (termStamps[term] == g + 1)
+					continue;
+				termStamps[term] = g + 1;
 
-		Gene2Associations g2a = associations[index];
-		if (g2a == null)
+				termIndices[rows] = terms.map(term);
+				evidenceIndices.set(rows, evidences.map(builder.evidenceIndices.get(r)));
+				aspectIndices.set(rows, aspectValues.map(builder.aspectIndices.get(r)));
+				if ((builder.notQualifiers[r >>> 6] & (1L << r)) != 0)
+					notQualifiers[rows >>> 6] |= 1L << rows;
+				objectIDIndices[rows] = objects.map(builder.objectIDIndices[r]);
+				synonymIndices[rows] = synonymValues.map(builder.synonymIndices[r]);
+				rows++;
+			}
+		}
+		offsets[numGenes] = rows;
+
+		if (rows != sorted.length)
 		{
-			g2a = new Gene2Associations(symbol);
-			associations[index] = g2a;
+			termIndices = Arrays.copyOf(termIndices, rows);
+			evidenceIndices.resize(rows);
+			aspectIndices.resize(rows);
+			notQualifiers = Arrays.copyOf(notQualifiers, (rows + 63) >>> 6);
+			objectIDIndices = Arrays.copyOf(objectIDIndices, rows);
+			synonymIndices = Arrays.copyOf(synonymIndices, rows);
 		}
-		g2a.add(a);
+
+		termIDs = terms.toArray(builder.termDict, new TermID[0]);
+		evidenceCodes = evidences.toArray(builder.evidenceDict, new ByteString[0]);
+		aspects = aspectValues.toArray(builder.aspectDict, new ByteString[0]);
+		objectIDs = objects.toArray(builder.objectIDDict, new ByteString[0]);
+		synonyms = synonymValues.toArray(builder.synonymDict, new ByteString[0]);
+	}
+
+	private AssociationContainer(AnnotationContext annotationMapping)
+	{
+		this.annotationMapping = annotationMapping;
+	}
+
+	/**
+	 * Creates a container from previously extracted columns, e.g., when
+	 * loading a container from a cache. The arrays are not copied.
+	 *
+	 * @param annotationMapping the mapping of the genes.
+	 * @param offsets the row offsets of each gene, with one additional
+	 *  element denoting the total number of rows.
+	 * @param termIndices the term index of each row.
+	 * @param termIDs the distinct term ids.
+	 * @param evidenceIndices the evidence index of each row, at most 256
+	 *  evidence codes can be referenced.
+	 * @param evidenceCodes the distinct evidence codes.
+	 * @param aspectIndices the aspect index of each row, at most 256 aspects
+	 *  can be referenced.
+	 * @param aspects the distinct aspects.
+	 * @param notQualifiers the bit set of rows with a NOT qualifier.
+	 * @param objectIDIndices the object id index of each row.
+	 * @param objectIDs the distinct object ids.
+	 * @param synonymIndices the synonym index of each row.
+	 * @param synonyms the distinct synonyms.
+	 * @return the container.
+	 */
+	public static AssociationContainer create(AnnotationContext annotationMapping, int [] offsets,
+			int [] termIndices, TermID [] termIDs, byte [] evidenceIndices, ByteString [] evidenceCodes,
+			byte [] aspectIndices, ByteString [] aspects, long [] notQualifiers,
+			int [] objectIDIndices, ByteString [] objectIDs, int [] synonymIndices, ByteString [] synonyms)
+	{
+		return create(annotationMapping, offsets, termIndices, termIDs, new IndexColumn(evidenceIndices, null), evidenceCodes,
+				new IndexColumn(aspectIndices, null), aspects, notQualifiers, objectIDIndices, objectIDs, synonymIndices, synonyms);
+	}
+
+	/**
+	 * Creates a container from previously extracted columns like
+	 * {@link #create(AnnotationContext, int[], int[], TermID[], byte[], ByteString[], byte[], ByteString[], long[], int[], ByteString[], int[], ByteString[])}
+	 * but with evidence and aspect indices that need not fit into a byte.
+	 * The arrays are not copied.
+	 *
+	 * @param annotationMapping the mapping of the genes.
+	 * @param offsets the row offsets of each gene, with one additional
+	 *  element denoting the total number of rows.
+	 * @param termIndices the term index of each row.
+	 * @param termIDs the distinct term ids.
+	 * @param evidenceIndices the evidence index of each row.
+	 * @param evidenceCodes the distinct evidence codes.
+	 * @param aspectIndices the aspect index of each row.
+	 * @param aspects the distinct aspects.
+	 * @param notQualifiers the bit set of rows with a NOT qualifier.
+	 * @param objectIDIndices the object id index of each row.
+	 * @param objectIDs the distinct object ids.
+	 * @param synonymIndices the synonym index of each row.
+	 * @param synonyms the distinct synonyms.
+	 * @return the container.
+	 */
+	public static AssociationContainer create(AnnotationContext annotationMapping, int [] offsets,
+			int [] termIndices, TermID [] termIDs, int [] evidenceIndices, ByteString [] evidenceCodes,
+			int [] aspectIndices, ByteString [] aspects, long [] notQualifiers,
+			int [] objectIDIndices, ByteString [] objectIDs, int [] synonymIndices, ByteString [] synonyms)
+	{
+		return create(annotationMapping, offsets, termIndices, termIDs, new IndexColumn(null, evidenceIndices), evidenceCodes,
+				new IndexColumn(null, aspectIndices), aspects, notQualifiers, objectIDIndices, objectIDs, synonymIndices, synonyms);
+	}
+
+	private static AssociationContainer create(AnnotationContext annotationMapping, int [] offsets,
+			int [] termIndices, TermID [] termIDs, IndexColumn evidenceIndices, ByteString [] evidenceCodes,
+			IndexColumn aspectIndices, ByteString [] aspects, long [] notQualifiers,
+			int [] objectIDIndices, ByteString [] objectIDs, int [] synonymIndices, ByteString [] synonyms)
+	{
+		int rows = termIndices.length;
+		if (offsets.length != annotationMapping.getSymbols().length + 1 || offsets[offsets.length - 1] != rows ||
+			evidenceIndices.length() != rows || aspectIndices.length() != rows || notQualifiers.length != (rows + 63) >>> 6 ||
+			objectIDIndices.length != rows || synonymIndices.length != rows)
+			throw new IllegalArgumentException("Inconsistent column lengths");
+
+		AssociationContainer container = new AssociationContainer(annotationMapping);
+		container.offsets = offsets;
+		container.termIndices = termIndices;
+		container.termIDs = termIDs;
+		container.evidenceIndices = evidenceIndices;
+		container.evidenceCodes = evidenceCodes;
+		container.aspectIndices = aspectIndices;
+		container.aspects = aspects;
+		container.notQualifiers = notQualifiers;
+		container.objectIDIndices = objectIDIndices;
+		container.objectIDs = objectIDs;
+		container.synonymIndices = synonymIndices;
+		container.synonyms = synonyms;
+		return container;
 	}
 
 	/**
@@ -86,7 +531,7 @@ public class AssociationContainer implements Iterable<Gene2Associations>, Serial
 		if (index == Integer.MAX_VALUE)
 			return null;
 
-		return associations[index];
+		return getItemAssociations(index);
 	}
 
 	/**
@@ -150,7 +595,7 @@ public class AssociationContainer implements Iterable<Gene2Associations>, Serial
 			@Override
 			public boolean hasNext()
 			{
-				if (current == associations.length)
+				if (current == offsets.length - 1)
 					return false;
 				return true;
 			}
@@ -158,7 +603,9 @@ public class AssociationContainer implements Iterable<Gene2Associations>, Serial
 			@Override
 			public Gene2Associations next()
 			{
-				Gene2Associations value = associations[current];
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Gene2Associations value = getItemAssociations(current);
 				current++;
 				return value;
 			}
@@ -176,30 +623,173 @@ public class AssociationContainer implements Iterable<Gene2Associations>, Serial
 	 */
 	public Map<String,Integer> getAllEvidenceCodes()
 	{
+		int [] counts = new int[evidenceCodes.length];
+		for (int row=0;row<evidenceIndices.length();row++)
+			counts[evidenceIndices.get(row)]++;
+
 		Map<String,Integer> evidenceCounts = new HashMap<String, Integer>();
-		for (Gene2Associations g2a : associations)
+		for (int i=0;i<counts.length;i++)
 		{
-			for (Association a : g2a)
-			{
-				String ev = a.getEvidence().toString();
-				int count;
-
-				if (evidenceCounts.containsKey(ev)) count = evidenceCounts.get(ev) + 1;
-				else count = 1;
-
-				evidenceCounts.put(ev, count);
-			}
+			if (evidenceCodes[i] != null)
+				evidenceCounts.put(evidenceCodes[i].toString(), counts[i]);
 		}
 		return evidenceCounts;
 	}
 
 	/**
 	 * @param i index
-	 * @return the i'th Gene2Association
+	 * @return the i'th Gene2Association or null if the gene has no associations.
 	 */
 	public Gene2Associations getItemAssociations(int i)
 	{
-		return associations[i];
+		if (offsets[i] == offsets[i+1])
+			return null;
+		return new Gene2Associations(this, i);
+	}
+
+	/**
+	 * @return the number of associations (rows) stored in the container.
+	 */
+	public int getNumberOfAssociations()
+	{
+		return termIndices.length;
+	}
+
+	/**
+	 * @param gene the index of the gene as defined by the mapping.
+	 * @return the first row of the associations of the given gene.
+	 */
+	public int getAssociationsStart(int gene)
+	{
+		return offsets[gene];
+	}
+
+	/**
+	 * @param gene the index of the gene as defined by the mapping.
+	 * @return the row following the last association of the given gene.
+	 */
+	public int getAssociationsEnd(int gene)
+	{
+		return offsets[gene + 1];
+	}
+
+	/**
+	 * @param row
+	 * @return the index of the term of the given row into {@link #getTermIDs()}.
+	 */
+	public int getTermIndex(int row)
+	{
+		return termIndices[row];
+	}
+
+	/**
+	 * @param row
+	 * @return the term id of the given row.
+	 */
+	public TermID getTermID(int row)
+	{
+		return termIDs[termIndices[row]];
+	}
+
+	/**
+	 * @return the distinct term ids that are referenced by the associations.
+	 *  Must not be modified.
+	 */
+	public TermID [] getTermIDs()
+	{
+		return termIDs;
+	}
+
+	/**
+	 * @param row
+	 * @return the index of the evidence code of the given row into
+	 *  {@link #getEvidenceCodes()}.
+	 */
+	public int getEvidenceIndex(int row)
+	{
+		return evidenceIndices.get(row);
+	}
+
+	/**
+	 * @return the distinct evidence codes. Must not be modified.
+	 */
+	public ByteString [] getEvidenceCodes()
+	{
+		return evidenceCodes;
+	}
+
+	/**
+	 * @param row
+	 * @return the index of the aspect of the given row into {@link #getAspects()}.
+	 */
+	public int getAspectIndex(int row)
+	{
+		return aspectIndices.get(row);
+	}
+
+	/**
+	 * @return the distinct aspects. Must not be modified.
+	 */
+	public ByteString [] getAspects()
+	{
+		return aspects;
+	}
+
+	/**
+	 * @param row
+	 * @return whether the association of the given row is qualified as "NOT".
+	 */
+	public boolean hasNotQualifier(int row)
+	{
+		return (notQualifiers[row >>> 6] & (1L << row)) != 0;
+	}
+
+	/**
+	 * @param row
+	 * @return the index of the object id of the given row into {@link #getObjectIDs()}.
+	 */
+	public int getObjectIDIndex(int row)
+	{
+		return objectIDIndices[row];
+	}
+
+	/**
+	 * @return the distinct object ids. Must not be modified.
+	 */
+	public ByteString [] getObjectIDs()
+	{
+		return objectIDs;
+	}
+
+	/**
+	 * @param row
+	 * @return the index of the synonym of the given row into {@link #getSynonyms()}.
+	 */
+	public int getSynonymIndex(int row)
+	{
+		return synonymIndices[row];
+	}
+
+	/**
+	 * @return the distinct synonyms. Must not be modified.
+	 */
+	public ByteString [] getSynonyms()
+	{
+		return synonyms;
+	}
+
+	/**
+	 * Materializes the association of the given row.
+	 *
+	 * @param gene the index of the gene to which the row belongs.
+	 * @param row
+	 * @return the association.
+	 */
+	Association getAssociation(int gene, int row)
+	{
+		return new Association(objectIDs[objectIDIndices[row]], annotationMapping.getSymbols()[gene],
+				synonyms[synonymIndices[row]], evidenceCodes[evidenceIndices.get(row)],
+				aspects[aspectIndices.get(row)], termIDs[termIndices[row]], hasNotQualifier(row));
 	}
 
 	/**
@@ -19,6 +19,12 @@ import ontologizer.types.ByteString;
  * <P>
  * This class implements the Iterable interface, so you easly can iterate
  * over the associations to this gene.
+ * </P>
+ * <P>
+ * Objects obtained from an {@link AssociationContainer} are views on the
+ * columns of the container. Adding an association to such a view copies the
+ * associations of the view first, i.e., the container is not modified.
+ * </P>
  *
  * @author Peter Robinson, Sebastian Bauer
  */
@@ -30,9 +36,15 @@ public class Gene2Associations implements Iterable<Association>, Serializable
 	/** Name of the gene for which this object stores 0 - n associations */
 	private ByteString gene;
 
-	/** List of GO functional annotations */
+	/** List of GO functional annotations, null for views */
 	private ArrayList<Association> associations;
 
+	/** The container on which this object is a view */
+	private AssociationContainer container;
+
+	/** The index of the gene within the container */
+	private int geneIndex;
+
 	public Gene2Associations(ByteString name)
 	{
 		associations = new ArrayList<Association>();
@@ -40,7 +52,22 @@ public class Gene2Associations implements Iterable<Association>, Serializable
 	}
 
 	/**
-	 * Add a new association to the gene.
+	 * Constructs a view on the associations of the given gene.
+	 *
+	 * @param container the container storing the associations
+	 * @param geneIndex the index of the gene within the container
+	 */
+	Gene2Associations(AssociationContainer container, int geneIndex)
+	{
+		this.container = container;
+		this.geneIndex = geneIndex;
+		gene = container.getMapping().getSymbols()[geneIndex];
+	}
+
+	/**
+	 * Add a new association to the gene. If this object is a view on an
+	 * {@link AssociationContainer}, the associations are copied before and
+	 * the container remains unchanged.
 	 *
 	 * @param a defines the association to be added.
 	 */
@@ -52,10 +79,25 @@ public class Gene2Associations implements Iterable<Association>, Serializable
 			if (containsID(a.getTermID()))
 				return;
 
+			if (container != null)
+				detach();
 			associations.add(a);
 		}
 	}
 
+	/**
+	 * Copies the associations of the view, so that this object no longer
+	 * refers to the container.
+	 */
+	private void detach()
+	{
+		ArrayList<Association> copy = new ArrayList<Association>();
+		for (Association a : this)
+			copy.add(a);
+		associations = copy;
+		container = null;
+	}
+
 	public ByteString name()
 	{
 		return gene;
@@ -69,6 +111,14 @@ public class Gene2Associations implements Iterable<Association>, Serializable
 	public ArrayList<TermID> getAssociations()
 	{
 		ArrayList<TermID> a = new ArrayList<TermID>();
+		if (container != null)
+		{
+			int end = container.getAssociationsEnd(geneIndex);
+			for (int row=container.getAssociationsStart(geneIndex);row<end;row++)
+				a.add(container.getTermID(row));
+			return a;
+		}
+
 		Iterator<Association> it = associations.iterator();
 		while (it.hasNext())
 		{
@@ -83,7 +133,34 @@ public class Gene2Associations implements Iterable<Association>, Serializable
 	 */
 	public Iterator<Association> iterator()
 	{
-		return associations.iterator();
+		if (container == null)
+			return associations.iterator();
+
+		return new Iterator<Association>()
+		{
+			int row = container.getAssociationsStart(geneIndex);
+			int end = container.getAssociationsEnd(geneIndex);
+
+			@Override
+			public boolean hasNext()
+			{
+				return row < end;
+			}
+
+			@Override
+			public Association next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return container.getAssociation(geneIndex, row++);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	/**
@@ -94,6 +171,17 @@ public class Gene2Associations implements Iterable<Association>, Serializable
 	 */
 	public boolean containsID(TermID tid)
 	{
+		if (container != null)
+		{
+			int end = container.getAssociationsEnd(geneIndex);
+			for (int row=container.getAssociationsStart(geneIndex);row<end;row++)
+			{
+				if (container.getTermID(row).equals(tid))
+					return true;
+			}
+			return false;
+		}
+
 		for (Association assoc : associations)
 		{
 			if (assoc.getTermID().equals(tid))
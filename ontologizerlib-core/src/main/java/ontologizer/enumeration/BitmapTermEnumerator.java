@@ -0,0 +1,564 @@
+package ontologizer.enumeration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import ontologizer.association.Association;
+import ontologizer.association.Gene2Associations;
+import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+import sonumina.collections.ObjectIntHashMap;
+import sonumina.math.graph.CSRDirectedGraphView;
+
+/**
+ * A variant of {@link TermEnumerator} that identifies genes and terms by dense
+ * indices. Genes are numbered in the order in which they are pushed, terms are
+ * identified by their vertex index within the {@link CSRDirectedGraphView} of
+ * the ontology.
+ *
+ * For each term, the set of annotated genes is stored as a sorted int array or,
+ * if it is dense, as a bitmap. The total annotations are determined lazily in a
+ * single pass over the terms in reverse topological order by or-ing the sets of
+ * the children into the set of the parent.
+ *
+ * Only relevant terms are reported, but irrelevant terms still pass the genes to
+ * their ancestors. Annotations to terms that are not part of the ontology are
+ * ignored. Genes without any remaining annotation don't get an index.
+ */
+public class BitmapTermEnumerator implements Iterable<TermID>
+{
+	/** The ontology */
+	private Ontology graph;
+
+	/** The view that defines the term indices */
+	private CSRDirectedGraphView<Term> view;
+
+	/** The genes in the order of their indices */
+	private List<ByteString> genes = new ArrayList<ByteString>();
+
+	/** Maps the genes to their indices */
+	private ObjectIntHashMap<ByteString> gene2Index = new ObjectIntHashMap<ByteString>();
+
+	/** The directly annotated genes of each term, only the first directCounts[t] entries are valid */
+	private int [][] direct;
+
+	/** The number of directly annotated genes of each term */
+	private int [] directCounts;
+
+	/** Whether a gene has been pushed more than once */
+	private boolean repushed;
+
+	/** Marks the terms that have been added during the current push */
+	private int [] pushStamps;
+
+	/** The current push */
+	private int push;
+
+	/** The relevance of each term. 0 means unknown, 1 relevant, 2 not relevant */
+	private byte [] relevance;
+
+	/** The totally annotated genes of a term as sorted array or null */
+	private int [][] totalArrays;
+
+	/** The totally annotated genes of a term as bitmap or null */
+	private long [][] totalBitmaps;
+
+	/** The number of totally annotated genes of each term */
+	private int [] totalCounts;
+
+	/** The relevant annotated terms in topological order, null if the totals are outdated */
+	private int [] annotatedTerms;
+
+	/**
+	 * Construct the enumerator.
+	 *
+	 * @param graph the ontology.
+	 * @throws IllegalArgumentException if the ontology contains a cycle.
+	 */
+	public BitmapTermEnumerator(Ontology graph)
+	{
+		this.graph = graph;
+		this.view = graph.getCSRGraphView();
+
+		int n = view.getNumberOfVertices();
+		direct = new int[n][];
+		directCounts = new int[n];
+		pushStamps = new int[n];
+		relevance = new byte[n];
+	}
+
+	/**
+	 * @return the view of the ontology whose vertex indices are the term indices.
+	 */
+	public CSRDirectedGraphView<Term> getView()
+	{
+		return view;
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return whether the term is relevant with respect to the relevant
+	 *  subset and subontology of the ontology.
+	 */
+	public boolean isRelevant(int t)
+	{
+		if (relevance[t] == 0)
+			relevance[t] = (byte)(graph.isRelevantTerm(view.getVertex(t)) ? 1 : 2);
+		return relevance[t] == 1;
+	}
+
+	/**
+	 * Pushes the given gene association into the enumerator.
+	 *
+	 * @param geneAssociations the gene associations
+	 */
+	public void push(Gene2Associations geneAssociations)
+	{
+		push(geneAssociations, null);
+	}
+
+	/**
+	 * Pushes the given gene association into the enumerator. I.e.
+	 * add the gene in question to all terms annotating that gene.
+	 *
+	 * @param geneAssociations the gene associations
+	 * @param evidences consider only annotation entries that correspond to
+	 *  the given evidence codes.
+	 */
+	public void push(Gene2Associations geneAssociations, Set<ByteString> evidences)
+	{
+		ByteString geneName = geneAssociations.name();
+		int gene = -1;
+
+		push++;
+		for (Association association : geneAssociations)
+		{
+			if (evidences != null && !evidences.contains(association.getEvidence()))
+				continue;
+
+			int t = getTermIndex(association.getTermID());
+			if (t < 0 || !isRelevant(t) || pushStamps[t] == push)
+				continue;
+			pushStamps[t] = push;
+
+			if (gene < 0)
+			{
+				gene = gene2Index.getIfAbsent(geneName, -1);
+				if (gene < 0)
+				{
+					gene = genes.size();
+					genes.add(geneName);
+					gene2Index.put(geneName, gene);
+				} else
+				{
+					repushed = true;
+				}
+			}
+
+			int [] d = direct[t];
+			if (d == null)
+				d = direct[t] = new int[4];
+			else if (directCounts[t] == d.length)
+				d = direct[t] = Arrays.copyOf(d, d.length * 2);
+			d[directCounts[t]++] = gene;
+		}
+
+		if (gene >= 0)
+			annotatedTerms = null;
+	}
+
+	/**
+	 * Extract the set bits of the given bitmap.
+	 */
+	private static int [] toArray(long [] bits, int count)
+	{
+		int [] a = new int[count];
+		int k = 0;
+		for (int w=0;w<bits.length;w++)
+		{
+			long word = bits[w];
+			while (word != 0)
+			{
+				a[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * Determine the total annotations if they are outdated.
+	 */
+	private void computeTotals()
+	{
+		if (annotatedTerms != null)
+			return;
+
+		int n = view.getNumberOfVertices();
+		int numGenes = genes.size();
+
+		if (repushed)
+		{
+			/* A gene may have been added twice to a term, or not in ascending order */
+			for (int t=0;t<n;t++)
+			{
+				if (directCounts[t] == 0) continue;
+				int [] d = direct[t];
+				Arrays.sort(d, 0, directCounts[t]);
+				int m = 1;
+				for (int i=1;i<directCounts[t];i++)
+				{
+					if (d[i] != d[m - 1])
+						d[m++] = d[i];
+				}
+				directCounts[t] = m;
+			}
+			repushed = false;
+		}
+
+		totalArrays = new int[n][];
+		totalBitmaps = new long[n][];
+		totalCounts = new int[n];
+
+		long [] scratch = new long[(numGenes + 63) >>> 6];
+		int [] order = view.topologicalOrder;
+		int numAnnotated = 0;
+
+		for (int k=n-1;k>=0;k--)
+		{
+			int t = order[k];
+			boolean annotated = false;
+
+			int [] d = direct[t];
+			for (int i=0;i<directCounts[t];i++)
+			{
+				scratch[d[i] >>> 6] |= 1L << d[i];
+				annotated = true;
+			}
+
+			for (int j=view.childOffsets[t];j<view.childOffsets[t+1];j++)
+			{
+				int c = view.children[j];
+				if (totalCounts[c] == 0)
+					continue;
+				annotated = true;
+
+				long [] bits = totalBitmaps[c];
+				if (bits != null)
+				{
+					for (int w=0;w<bits.length;w++)
+						scratch[w] |= bits[w];
+				} else
+				{
+					for (int g : totalArrays[c])
+						scratch[g >>> 6] |= 1L << g;
+				}
+			}
+
+			if (!annotated)
+				continue;
+
+			int count = 0;
+			for (int w=0;w<scratch.length;w++)
+				count += Long.bitCount(scratch[w]);
+			totalCounts[t] = count;
+
+			/* An array needs 32 bits per gene, a bitmap one bit per possible gene */
+			if (count >= numGenes >>> 5) totalBitmaps[t] = scratch.clone();
+			else totalArrays[t] = toArray(scratch, count);
+			Arrays.fill(scratch, 0);
+
+			if (isRelevant(t))
+				numAnnotated++;
+		}
+
+		annotatedTerms = new int[numAnnotated];
+		int i = 0;
+		for (int k=0;k<n;k++)
+		{
+			int t = order[k];
+			if (totalCounts[t] != 0 && isRelevant(t))
+				annotatedTerms[i++] = t;
+		}
+	}
+
+	/**
+	 * @return the number of genes that have an index.
+	 */
+	public int getNumberOfGenes()
+	{
+		return genes.size();
+	}
+
+	/**
+	 * @param gene the index of the gene.
+	 * @return the name of the gene.
+	 */
+	public ByteString getGene(int gene)
+	{
+		return genes.get(gene);
+	}
+
+	/**
+	 * @param geneName the name of the gene.
+	 * @return the index of the gene or -1 if the gene has no index.
+	 */
+	public int getGeneIndex(ByteString geneName)
+	{
+		return gene2Index.getIfAbsent(geneName, -1);
+	}
+
+	/**
+	 * @return all genes in the order of their indices.
+	 */
+	public List<ByteString> getGenesAsList()
+	{
+		return new ArrayList<ByteString>(genes);
+	}
+
+	/**
+	 * @param tid the id of the term.
+	 * @return the index of the term or -1 if the term is not part of the ontology.
+	 */
+	public int getTermIndex(TermID tid)
+	{
+		Term term = graph.getTerm(tid);
+		if (term == null)
+			return -1;
+		return view.getVertexIndex(term);
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the id of the term.
+	 */
+	public TermID getTermID(int t)
+	{
+		return view.getVertex(t).getID();
+	}
+
+	/**
+	 * @return the indices of the relevant terms to which at least a single
+	 *  gene is annotated in topological order. Must not be modified.
+	 */
+	public int [] getAnnotatedTermIndices()
+	{
+		computeTotals();
+		return annotatedTerms;
+	}
+
+	/**
+	 * @return the total number of terms to which at least a single gene has been annotated.
+	 */
+	public int getTotalNumberOfAnnotatedTerms()
+	{
+		return getAnnotatedTermIndices().length;
+	}
+
+	/**
+	 * @return the currently annotated terms as a list in topological order.
+	 */
+	public List<TermID> getAllAnnotatedTermsAsList()
+	{
+		ArrayList<TermID> at = new ArrayList<TermID>();
+		for (TermID t : this)
+			at.add(t);
+		return at;
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return whether the term is relevant and at least a single gene is annotated.
+	 */
+	public boolean isAnnotated(int t)
+	{
+		return getTotalAnnotatedCount(t) != 0;
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the number of genes that are directly annotated to the term.
+	 */
+	public int getDirectAnnotatedCount(int t)
+	{
+		computeTotals();
+		return directCounts[t];
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the number of genes that are directly or indirectly annotated to the term.
+	 */
+	public int getTotalAnnotatedCount(int t)
+	{
+		computeTotals();
+		if (!isRelevant(t))
+			return 0;
+		return totalCounts[t];
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the sorted indices of the genes that are directly annotated to the term.
+	 */
+	public int [] getDirectAnnotatedGenes(int t)
+	{
+		computeTotals();
+		if (directCounts[t] == 0)
+			return new int[0];
+		return Arrays.copyOf(direct[t], directCounts[t]);
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the sorted indices of the genes that are directly or indirectly
+	 *  annotated to the term.
+	 */
+	public int [] getTotalAnnotatedGenes(int t)
+	{
+		if (getTotalAnnotatedCount(t) == 0)
+			return new int[0];
+		if (totalBitmaps[t] != null)
+			return toArray(totalBitmaps[t], totalCounts[t]);
+		return totalArrays[t].clone();
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @param gene the index of the gene.
+	 * @return whether the gene is directly or indirectly annotated to the term.
+	 */
+	public boolean isTotalAnnotated(int t, int gene)
+	{
+		if (getTotalAnnotatedCount(t) == 0)
+			return false;
+		if (totalBitmaps[t] != null)
+			return (totalBitmaps[t][gene >>> 6] & (1L << gene)) != 0;
+		return Arrays.binarySearch(totalArrays[t], gene) >= 0;
+	}
+
+	/**
+	 * Determines the number of genes of the given set that are directly or
+	 * indirectly annotated to the given term.
+	 *
+	 * @param t the index of the term.
+	 * @param geneBits the set of genes as bitmap, i.e., gene i is contained if
+	 *  bit (i &amp; 63) of word (i &gt;&gt;&gt; 6) is set.
+	 * @return the size of the intersection.
+	 */
+	public int getTotalAnnotatedCount(int t, long [] geneBits)
+	{
+		if (getTotalAnnotatedCount(t) == 0)
+			return 0;
+
+		int count = 0;
+		long [] bits = totalBitmaps[t];
+		if (bits != null)
+		{
+			int words = Math.min(bits.length, geneBits.length);
+			for (int w=0;w<words;w++)
+				count += Long.bitCount(bits[w] & geneBits[w]);
+		} else
+		{
+			for (int g : totalArrays[t])
+			{
+				int w = g >>> 6;
+				if (w < geneBits.length && (geneBits[w] & (1L << g)) != 0)
+					count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the genes of the given set that are directly or indirectly
+	 * annotated to the given term to the target set.
+	 *
+	 * @param t the index of the term.
+	 * @param geneBits the set of genes as bitmap.
+	 * @param target the bitmap to which the genes of the intersection are
+	 *  added. Must have at least as many words as geneBits.
+	 */
+	public void addTotalAnnotatedGenes(int t, long [] geneBits, long [] target)
+	{
+		if (getTotalAnnotatedCount(t) == 0)
+			return;
+
+		long [] bits = totalBitmaps[t];
+		if (bits != null)
+		{
+			int words = Math.min(bits.length, geneBits.length);
+			for (int w=0;w<words;w++)
+				target[w] |= bits[w] & geneBits[w];
+		} else
+		{
+			for (int g : totalArrays[t])
+			{
+				int w = g >>> 6;
+				if (w < geneBits.length)
+					target[w] |= geneBits[w] & (1L << g);
+			}
+		}
+	}
+
+	/**
+	 * Return genes directly or indirectly annotated to the given term in the
+	 * representation of {@link TermEnumerator}.
+	 *
+	 * @param tid
+	 * @return the annotated genes
+	 */
+	public TermAnnotatedGenes getAnnotatedGenes(TermID tid)
+	{
+		TermAnnotatedGenes tag = new TermAnnotatedGenes();
+		int t = getTermIndex(tid);
+		if (t < 0)
+			return tag;
+
+		for (int g : getDirectAnnotatedGenes(t))
+			tag.directAnnotated.add(genes.get(g));
+		for (int g : getTotalAnnotatedGenes(t))
+			tag.totalAnnotated.add(genes.get(g));
+		return tag;
+	}
+
+	/**
+	 * Iterates over the ids of the annotated terms in topological order.
+	 */
+	@Override
+	public Iterator<TermID> iterator()
+	{
+		final int [] terms = getAnnotatedTermIndices();
+		return new Iterator<TermID>()
+		{
+			private int i;
+
+			@Override
+			public boolean hasNext()
+			{
+				return i < terms.length;
+			}
+
+			@Override
+			public TermID next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return getTermID(terms[i++]);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
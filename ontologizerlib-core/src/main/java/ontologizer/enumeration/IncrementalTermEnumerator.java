@@ -0,0 +1,378 @@
+package ontologizer.enumeration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import ontologizer.association.Association;
+import ontologizer.association.Gene2Associations;
+import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+import sonumina.math.graph.CSRDirectedGraphView;
+import sonumina.math.graph.UpwardClosure;
+
+/**
+ * A variant of {@link TermEnumerator} for gene sets that change by a few genes
+ * at a time. Genes can be added and removed. Each change only touches the
+ * upward closure of the terms that are annotated to the affected gene.
+ *
+ * Terms are identified by their vertex index within the view of the upward
+ * closure.
+ *
+ * Annotations to terms that are not part of the ontology are ignored.
+ */
+public class IncrementalTermEnumerator implements Iterable<TermID>
+{
+	/**
+	 * The contribution of a single gene.
+	 */
+	private static class GeneTerms
+	{
+		/** The number of times the gene has been added */
+		int references;
+
+		/** The sorted indices of the terms to which the gene is directly annotated */
+		int [] direct;
+
+		/** The sorted indices of the relevant terms to which the gene is annotated at whole */
+		int [] total;
+	}
+
+	/** The ontology */
+	private Ontology graph;
+
+	/** Determines the terms that are implicitly annotated to a gene */
+	private UpwardClosure<Term> closure;
+
+	private CSRDirectedGraphView<Term> view;
+
+	/** The genes and the terms to which they are annotated, in the order of their addition */
+	private LinkedHashMap<ByteString,GeneTerms> genes = new LinkedHashMap<ByteString,GeneTerms>();
+
+	/** The number of directly annotated genes of each term */
+	private int [] directCounts;
+
+	/** The number of genes annotated at whole to each term */
+	private int [] totalCounts;
+
+	/** The number of terms with a non-zero total count */
+	private int numberOfAnnotatedTerms;
+
+	/** The relevance of each term. 0 means unknown, 1 relevant, 2 not relevant */
+	private byte [] relevance;
+
+	/**
+	 * Construct the enumerator.
+	 *
+	 * @param graph the ontology.
+	 * @throws IllegalArgumentException if the ontology contains a cycle.
+	 */
+	public IncrementalTermEnumerator(Ontology graph)
+	{
+		this.graph = graph;
+
+		closure = graph.createUpwardClosure();
+		if (closure == null)
+			throw new IllegalArgumentException("The ontology contains a cycle");
+		view = closure.getView();
+
+		int n = view.getNumberOfVertices();
+		directCounts = new int[n];
+		totalCounts = new int[n];
+		relevance = new byte[n];
+	}
+
+	private boolean isRelevant(int t)
+	{
+		if (relevance[t] == 0)
+			relevance[t] = (byte)(graph.isRelevantTerm(view.getVertex(t)) ? 1 : 2);
+		return relevance[t] == 1;
+	}
+
+	/**
+	 * Apply the contribution of the given gene to the counts.
+	 *
+	 * @param gt
+	 * @param delta 1 or -1
+	 */
+	private void apply(GeneTerms gt, int delta)
+	{
+		for (int t : gt.direct)
+			directCounts[t] += delta;
+		for (int t : gt.total)
+		{
+			int before = totalCounts[t];
+			totalCounts[t] += delta;
+			if (before == 0) numberOfAnnotatedTerms++;
+			else if (totalCounts[t] == 0) numberOfAnnotatedTerms--;
+		}
+	}
+
+	private static boolean contains(int [] a, int len, int v)
+	{
+		for (int i=0;i<len;i++)
+		{
+			if (a[i] == v)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the given gene to the enumerator.
+	 *
+	 * @param geneAssociations the associations of the gene.
+	 * @return whether the counts have been changed.
+	 */
+	public boolean addGene(Gene2Associations geneAssociations)
+	{
+		return addGene(geneAssociations, null);
+	}
+
+	/**
+	 * Adds the given gene to the enumerator, i.e., adds the gene to all terms
+	 * annotating the gene. If the gene has been added before, only its
+	 * reference count is increased.
+	 *
+	 * @param geneAssociations the associations of the gene.
+	 * @param evidences consider only annotation entries that correspond to
+	 *  the given evidence codes.
+	 * @return whether the counts have been changed.
+	 */
+	public boolean addGene(Gene2Associations geneAssociations, Set<ByteString> evidences)
+	{
+		ByteString geneName = geneAssociations.name();
+		GeneTerms gt = genes.get(geneName);
+		if (gt != null)
+		{
+			gt.references++;
+			return false;
+		}
+
+		closure.clear();
+		int [] direct = new int[4];
+		int numDirect = 0;
+		for (Association association : geneAssociations)
+		{
+			if (evidences != null && !evidences.contains(association.getEvidence()))
+				continue;
+
+			Term term = graph.getTerm(association.getTermID());
+			if (term == null)
+				continue;
+			int t = view.getVertexIndex(term);
+			if (t < 0 || !isRelevant(t) || contains(direct, numDirect, t))
+				continue;
+
+			closure.add(t);
+			if (numDirect == direct.length)
+				direct = Arrays.copyOf(direct, numDirect * 2);
+			direct[numDirect++] = t;
+		}
+
+		int [] total = new int[closure.size()];
+		int numTotal = 0;
+		for (int k=0;k<closure.size();k++)
+		{
+			int t = closure.get(k);
+			if (isRelevant(t))
+				total[numTotal++] = t;
+		}
+
+		gt = new GeneTerms();
+		gt.references = 1;
+		gt.direct = Arrays.copyOf(direct, numDirect);
+		gt.total = Arrays.copyOf(total, numTotal);
+		Arrays.sort(gt.direct);
+		Arrays.sort(gt.total);
+		genes.put(geneName, gt);
+
+		apply(gt, 1);
+		return numTotal != 0;
+	}
+
+	/**
+	 * Removes the given gene from the enumerator. If the gene has been added
+	 * several times, only its reference count is decreased.
+	 *
+	 * @param geneName the name of the gene, i.e., the name of the
+	 *  {@link Gene2Associations} that has been added.
+	 * @return whether the counts have been changed.
+	 */
+	public boolean removeGene(ByteString geneName)
+	{
+		GeneTerms gt = genes.get(geneName);
+		if (gt == null)
+			return false;
+		if (--gt.references > 0)
+			return false;
+
+		genes.remove(geneName);
+		apply(gt, -1);
+		return gt.total.length != 0;
+	}
+
+	/**
+	 * @param geneName
+	 * @return whether the gene is part of the enumerator.
+	 */
+	public boolean containsGene(ByteString geneName)
+	{
+		return genes.containsKey(geneName);
+	}
+
+	/**
+	 * @return the view whose vertex indices are the term indices.
+	 */
+	public CSRDirectedGraphView<Term> getView()
+	{
+		return view;
+	}
+
+	/**
+	 * @param tid the id of the term.
+	 * @return the index of the term or -1 if the term is not part of the ontology.
+	 */
+	public int getTermIndex(TermID tid)
+	{
+		Term term = graph.getTerm(tid);
+		if (term == null)
+			return -1;
+		return view.getVertexIndex(term);
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the id of the term.
+	 */
+	public TermID getTermID(int t)
+	{
+		return view.getVertex(t).getID();
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the number of genes that are directly annotated to the term.
+	 */
+	public int getDirectAnnotatedCount(int t)
+	{
+		return directCounts[t];
+	}
+
+	/**
+	 * @param t the index of the term.
+	 * @return the number of genes that are directly or indirectly annotated to the term.
+	 */
+	public int getTotalAnnotatedCount(int t)
+	{
+		return totalCounts[t];
+	}
+
+	/**
+	 * @return the total number of terms to which at least a single gene has been annotated.
+	 */
+	public int getTotalNumberOfAnnotatedTerms()
+	{
+		return numberOfAnnotatedTerms;
+	}
+
+	/**
+	 * @return the number of genes that have been added.
+	 */
+	public int getNumberOfGenes()
+	{
+		return genes.size();
+	}
+
+	/**
+	 * @return all genes that are annotated to at least one term in the
+	 *  order of their addition.
+	 */
+	public List<ByteString> getGenesAsList()
+	{
+		ArrayList<ByteString> list = new ArrayList<ByteString>();
+		for (Entry<ByteString,GeneTerms> e : genes.entrySet())
+		{
+			if (e.getValue().total.length != 0)
+				list.add(e.getKey());
+		}
+		return list;
+	}
+
+	/**
+	 * Return genes directly or indirectly annotated to the given term in the
+	 * representation of {@link TermEnumerator}. Note that this needs to visit
+	 * all genes.
+	 *
+	 * @param tid
+	 * @return the annotated genes
+	 */
+	public TermAnnotatedGenes getAnnotatedGenes(TermID tid)
+	{
+		TermAnnotatedGenes tag = new TermAnnotatedGenes();
+		int t = getTermIndex(tid);
+		if (t < 0 || totalCounts[t] == 0)
+			return tag;
+
+		for (Entry<ByteString,GeneTerms> e : genes.entrySet())
+		{
+			GeneTerms gt = e.getValue();
+			if (Arrays.binarySearch(gt.total, t) >= 0)
+			{
+				tag.totalAnnotated.add(e.getKey());
+				if (Arrays.binarySearch(gt.direct, t) >= 0)
+					tag.directAnnotated.add(e.getKey());
+			}
+		}
+		return tag;
+	}
+
+	/**
+	 * Iterates over the ids of the annotated terms.
+	 */
+	@Override
+	public Iterator<TermID> iterator()
+	{
+		return new Iterator<TermID>()
+		{
+			private int t = advance(0);
+
+			private int advance(int from)
+			{
+				while (from < totalCounts.length && totalCounts[from] == 0)
+					from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return t < totalCounts.length;
+			}
+
+			@Override
+			public TermID next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				TermID tid = getTermID(t);
+				t = advance(t + 1);
+				return tid;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -17,6 +17,7 @@ import ontologizer.ontology.Term;
 import ontologizer.ontology.TermID;
 import ontologizer.ontology.Ontology.IVisitingGOVertex;
 import ontologizer.types.ByteString;
+import sonumina.math.graph.UpwardClosure;
 
 /**
  * This class encapsulates the enumeration of explicit and implicit
@@ -51,6 +52,15 @@ public class TermEnumerator implements Iterable<TermID>
 
 	private HashMap<TermID,TermAnnotatedGenes> map;
 
+	/** Used to determine the terms that are implicitly annotated to a gene, null if not available */
+	private UpwardClosure<Term> closure;
+
+	/**
+	 * Caches the relevance of the terms of the closure, indexed by the closure's
+	 * vertex indices. 0 means unknown, 1 relevant, 2 not relevant.
+	 */
+	private byte [] relevance;
+
 	/** Holds the number of suspicious annotations */
 //	private int suspiciousCount;
 
@@ -64,6 +74,10 @@ public class TermEnumerator implements Iterable<TermID>
 		this.graph = graph;
 
 		map = new HashMap<TermID,TermAnnotatedGenes>();
+
+		closure = graph.createUpwardClosure();
+		if (closure != null)
+			relevance = new byte[closure.getView().getNumberOfVertices()];
 	}
 
 	/**
@@ -151,6 +165,8 @@ public class TermEnumerator implements Iterable<TermID>
 		}
 
 		/* Then add the total counts */
+		if (closure != null && addTotalCounts(geneName, termIDSet))
+			return;
 
 		/**
 		 * The term visitor: To all visited terms (which here
@@ -171,16 +187,7 @@ public class TermEnumerator implements Iterable<TermID>
 			public boolean visited(Term term)
 			{
 				if (graph.isRelevantTermID(term.getID()))
-				{
-					TermAnnotatedGenes termGenes = map.get(term.getID());
-
-					if (termGenes == null)
-					{
-						termGenes = new TermAnnotatedGenes();
-						map.put(term.getID(),termGenes);
-					}
-					termGenes.totalAnnotated.add(geneName);
-				}
+					addTotalAnnotated(term.getID(), geneName);
 				return true;
 			}
 		};
@@ -192,6 +199,54 @@ public class TermEnumerator implements Iterable<TermID>
 		graph.walkToSource(termIDSet,vistingGOVertex);
 	}
 
+	/**
+	 * Add the given gene to the total annotations of the given term.
+	 *
+	 * @param termID
+	 * @param geneName
+	 */
+	private void addTotalAnnotated(TermID termID, ByteString geneName)
+	{
+		TermAnnotatedGenes termGenes = map.get(termID);
+
+		if (termGenes == null)
+		{
+			termGenes = new TermAnnotatedGenes();
+			map.put(termID,termGenes);
+		}
+		termGenes.totalAnnotated.add(geneName);
+	}
+
+	/**
+	 * Add the given gene to the total annotations of all relevant terms that
+	 * are ancestors of the given terms using the upward closure.
+	 *
+	 * @param geneName
+	 * @param termIDSet
+	 * @return false if not all terms are part of the closure's view, in which
+	 *  case nothing has been added.
+	 */
+	private boolean addTotalCounts(ByteString geneName, Set<TermID> termIDSet)
+	{
+		closure.clear();
+		for (TermID termID : termIDSet)
+		{
+			Term term = graph.getTerm(termID);
+			if (term == null || !closure.addVertex(term))
+				return false;
+		}
+
+		for (int k=0;k<closure.size();k++)
+		{
+			int v = closure.get(k);
+			if (relevance[v] == 0)
+				relevance[v] = (byte)(graph.isRelevantTerm(closure.getVertex(k)) ? 1 : 2);
+			if (relevance[v] == 1)
+				addTotalAnnotated(closure.getVertex(k).getID(), geneName);
+		}
+		return true;
+	}
+
 	/**
 	 * Return genes directly or indirectly annotated to the given
 	 * goTermID.
@@ -8,13 +8,21 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import sonumina.collections.IntMapper;
+import sonumina.math.graph.CSRDirectedGraphView;
+import sonumina.math.graph.CommonAncestorIndex;
 import sonumina.math.graph.DirectedGraph;
 import sonumina.math.graph.Edge;
+import sonumina.math.graph.FrozenDirectedGraph;
+import sonumina.math.graph.ReachabilityIndex;
 import sonumina.math.graph.SlimDirectedGraphView;
+import sonumina.math.graph.UpwardClosure;
 import sonumina.math.graph.AbstractGraph.INeighbourGrabber;
 import sonumina.math.graph.AbstractGraph.IVisitor;
 import sonumina.math.graph.DirectedGraph.IDistanceVisitor;
@@ -85,6 +93,51 @@ public class Ontology implements Iterable<Term>, Serializable
 	 */
 	private HashMap<String, String> alternativeId2primaryId;
 
+	/**
+	 * The memory budget of the reachability index or 0 if no index has been
+	 * requested. The index itself is not serialized but rebuilt on demand.
+	 */
+	private long reachabilityMemoryBudget;
+
+	/** The modification count of the graph at the time the reachability index was requested */
+	private int reachabilityModCount;
+
+	/** The optional reachability index that is used to speed up existsPath() */
+	private transient volatile ReachabilityIndex reachabilityIndex;
+
+	/** The mapper of the closure view from which the reachability index was built */
+	private transient IntMapper<Term> reachabilityMapper;
+
+	/** The lazily created primitive representation of the graph used for walking */
+	private transient volatile FrozenDirectedGraph<Term> frozenGraph;
+
+	/** The lazily created view that backs the upward closures */
+	private transient CSRDirectedGraphView<Term> closureView;
+
+	/** The modification count of the graph at the time the closure view was built */
+	private transient int closureModCount;
+
+	/** Maps the ontology edges to the ordinal of their relation */
+	private static final FrozenDirectedGraph.IEdgeTypeMapper<Term> RELATION_TYPE = new FrozenDirectedGraph.IEdgeTypeMapper<Term>()
+	{
+		@Override
+		public byte getType(Edge<Term> edge)
+		{
+			return (byte)relationType(((OntologyEdge)edge).getRelation());
+		}
+	};
+
+	/**
+	 * @param relation
+	 * @return the edge type of the frozen graph that represents the given relation.
+	 */
+	private static int relationType(TermRelation relation)
+	{
+		/* Edges without a relation get their own type */
+		if (relation == null) return TermRelation.values().length;
+		return relation.ordinal();
+	}
+
 	/**
 	 * Construct an Ontology graph from the given container.
 	 *
@@ -162,12 +215,37 @@ public class Ontology implements Iterable<Term>, Serializable
 		return graph.topologicalOrder();
 	}
 
+	/** Maps terms to their ids */
+	private static final SlimDirectedGraphView.Map<Term,TermID> TERM_TO_ID = new SlimDirectedGraphView.Map<Term,TermID>()
+	{
+		@Override
+		public TermID map(Term key)
+		{
+			return key.getID();
+		}
+	};
+
 	/**
 	 * @return a slim representation of the ontology.
 	 */
 	public SlimDirectedGraphView<Term> getSlimGraphView()
 	{
-		return SlimDirectedGraphView.create(graph);
+		SlimDirectedGraphView<Term> slim = SlimDirectedGraphView.create(graph);
+		slim.setReachabilityIndex(getValidReachabilityIndex());
+		return slim;
+	}
+
+	/**
+	 * Returns a slim representation of the ontology that is built in parallel.
+	 *
+	 * @param pool the pool used for the construction.
+	 * @return a slim representation of the ontology.
+	 */
+	public SlimDirectedGraphView<Term> getSlimGraphView(ForkJoinPool pool)
+	{
+		SlimDirectedGraphView<Term> slim = SlimDirectedGraphView.create(graph, pool);
+		slim.setReachabilityIndex(getValidReachabilityIndex());
+		return slim;
 	}
 
 	/**
@@ -175,14 +253,162 @@ public class Ontology implements Iterable<Term>, Serializable
 	 */
 	public SlimDirectedGraphView<TermID> getTermIDSlimGraphView()
 	{
-		return SlimDirectedGraphView.create(graph, new SlimDirectedGraphView.Map<Term,TermID>()
+		SlimDirectedGraphView<TermID> slim = SlimDirectedGraphView.create(graph, TERM_TO_ID);
+		slim.setReachabilityIndex(getValidReachabilityIndex());
+		return slim;
+	}
+
+	/**
+	 * Returns a slim representation with TermIDs as underlying type that is built in parallel.
+	 *
+	 * @param pool the pool used for the construction.
+	 * @return a slim representation with TermIDs as underlying type.
+	 */
+	public SlimDirectedGraphView<TermID> getTermIDSlimGraphView(ForkJoinPool pool)
+	{
+		SlimDirectedGraphView<TermID> slim = SlimDirectedGraphView.create(graph, TERM_TO_ID, pool);
+		slim.setReachabilityIndex(getValidReachabilityIndex());
+		return slim;
+	}
+
+	/**
+	 * @return a slim representation of the ontology in compressed sparse row format.
+	 */
+	public CSRDirectedGraphView<Term> getCSRGraphView()
+	{
+		CSRDirectedGraphView<Term> csr = CSRDirectedGraphView.create(graph);
+		csr.setReachabilityIndex(getValidReachabilityIndex());
+		return csr;
+	}
+
+	/**
+	 * Returns a slim representation of the ontology in compressed sparse row
+	 * format that is built in parallel.
+	 *
+	 * @param pool the pool used for the construction.
+	 * @return a slim representation of the ontology in compressed sparse row format.
+	 */
+	public CSRDirectedGraphView<Term> getCSRGraphView(ForkJoinPool pool)
+	{
+		CSRDirectedGraphView<Term> csr = CSRDirectedGraphView.create(graph, pool);
+		csr.setReachabilityIndex(getValidReachabilityIndex());
+		return csr;
+	}
+
+	/**
+	 * @return a slim representation in compressed sparse row format with TermIDs as underlying type.
+	 */
+	public CSRDirectedGraphView<TermID> getTermIDCSRGraphView()
+	{
+		CSRDirectedGraphView<TermID> csr = CSRDirectedGraphView.create(graph, TERM_TO_ID);
+		csr.setReachabilityIndex(getValidReachabilityIndex());
+		return csr;
+	}
+
+	/**
+	 * Returns a slim representation in compressed sparse row format with TermIDs as
+	 * underlying type that is built in parallel.
+	 *
+	 * @param pool the pool used for the construction.
+	 * @return a slim representation in compressed sparse row format with TermIDs as underlying type.
+	 */
+	public CSRDirectedGraphView<TermID> getTermIDCSRGraphView(ForkJoinPool pool)
+	{
+		CSRDirectedGraphView<TermID> csr = CSRDirectedGraphView.create(graph, TERM_TO_ID, pool);
+		csr.setReachabilityIndex(getValidReachabilityIndex());
+		return csr;
+	}
+
+	/**
+	 * Creates a reachability index with the default memory budget. Once present,
+	 * the index is used by existsPath() and attached to all slim views created
+	 * by this ontology.
+	 *
+	 * @return whether the index could be created within the budget.
+	 * @see ReachabilityIndex#DEFAULT_MEMORY_BUDGET
+	 */
+	public boolean createReachabilityIndex()
+	{
+		return createReachabilityIndex(ReachabilityIndex.DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates a reachability index. Once present, the index is used by
+	 * existsPath() and attached to all slim views created by this ontology.
+	 * The index is discarded as soon as the graph is modified.
+	 *
+	 * @param memoryBudget the maximum number of bytes the index may use.
+	 * @return whether the index could be created within the budget.
+	 */
+	public synchronized boolean createReachabilityIndex(long memoryBudget)
+	{
+		reachabilityMemoryBudget = memoryBudget;
+		reachabilityModCount = graph.getModificationCount();
+		if (buildReachabilityIndex())
+			return true;
+
+		reachabilityMemoryBudget = 0;
+		return false;
+	}
+
+	/**
+	 * Builds the reachability index from the closure view with the requested
+	 * budget. The closure view also provides the indices of the terms.
+	 *
+	 * @return whether the index could be built.
+	 */
+	private boolean buildReachabilityIndex()
+	{
+		CSRDirectedGraphView<Term> view = getClosureView();
+		ReachabilityIndex idx = view != null ? ReachabilityIndex.create(view, reachabilityMemoryBudget) : null;
+		if (idx == null)
+			return false;
+
+		reachabilityMapper = view.getMapper();
+		reachabilityIndex = idx;
+		return true;
+	}
+
+	/**
+	 * @return whether a reachability index is present and up-to-date.
+	 */
+	public boolean hasReachabilityIndex()
+	{
+		return getValidReachabilityIndex() != null;
+	}
+
+	/**
+	 * Returns the reachability index if it is still up-to-date. Stale indices
+	 * are dropped, an index that is missing after deserialization is rebuilt.
+	 *
+	 * @return the index or null.
+	 */
+	private ReachabilityIndex getValidReachabilityIndex()
+	{
+		if (reachabilityMemoryBudget == 0)
+			return null;
+
+		ReachabilityIndex idx = reachabilityIndex;
+		if (idx != null && reachabilityModCount == graph.getModificationCount())
+			return idx;
+
+		synchronized (this)
 		{
-			@Override
-			public TermID map(Term key)
+			if (reachabilityMemoryBudget == 0)
+				return null;
+
+			if (reachabilityModCount != graph.getModificationCount())
 			{
-				return key.getID();
+				reachabilityMemoryBudget = 0;
+				reachabilityIndex = null;
+				reachabilityMapper = null;
+				return null;
 			}
-		});
+
+			if (reachabilityIndex == null && !buildReachabilityIndex())
+				reachabilityMemoryBudget = 0;
+			return reachabilityIndex;
+		}
 	}
 
 	/**
@@ -511,14 +737,25 @@ public class Ontology implements Iterable<Term>, Serializable
 			return false;
 		}
 
+		final Term source = termContainer.get(sourceID);
+		Term dest = termContainer.get(destID);
+
+		ReachabilityIndex idx = getValidReachabilityIndex();
+		if (idx != null && source != null && dest != null)
+		{
+			IntMapper<Term> mapper = reachabilityMapper;
+			int sourceIndex = mapper.getIndex(source);
+			int destIndex = mapper.getIndex(dest);
+			if (sourceIndex != -1 && destIndex != -1)
+				return idx.isAncestor(sourceIndex, destIndex);
+		}
+
 		/*
 		 * We walk from the destination to the source against the graph
 		 * direction. Basically a breadth-depth search is done.
 		 */
 
 		final boolean [] pathExists = new boolean[1];
-		final Term source = termContainer.get(sourceID);
-		Term dest = termContainer.get(destID);
 
 		graph.bfs(dest, true, new IVisitor<Term>()
 		{
@@ -585,6 +822,116 @@ public class Ontology implements Iterable<Term>, Serializable
 		return termList;
 	}
 
+	/**
+	 * Returns an immutable primitive representation of the ontology graph. The
+	 * type of each edge is the ordinal of its {@link TermRelation} (edges without
+	 * a relation get the type {@code TermRelation.values().length}). The
+	 * representation is created lazily and recreated whenever the graph
+	 * has been modified.
+	 *
+	 * @return the frozen graph.
+	 */
+	public FrozenDirectedGraph<Term> getFrozenGraph()
+	{
+		FrozenDirectedGraph<Term> fg = frozenGraph;
+		if (fg == null || fg.getModificationCount() != graph.getModificationCount())
+			frozenGraph = fg = graph.freeze(RELATION_TYPE);
+		return fg;
+	}
+
+	/**
+	 * Creates an object that determines the union of the ancestors of terms
+	 * using the precomputed ancestor arrays of the graph. This is much cheaper
+	 * than walking to the source for each term if the visiting order is
+	 * irrelevant. The returned object is not thread-safe but it can be reused.
+	 *
+	 * @return the upward closure or null if the graph contains cycles.
+	 */
+	public UpwardClosure<Term> createUpwardClosure()
+	{
+		CSRDirectedGraphView<Term> view = getClosureView();
+		if (view == null)
+			return null;
+		return new UpwardClosure<Term>(view);
+	}
+
+	/**
+	 * Sets a previously computed view of the graph, e.g., one that has been
+	 * read from a snapshot, that backs the upward closures. The view is only
+	 * accepted if its vertices are the vertices of the graph in the same order.
+	 *
+	 * @param view the view to use.
+	 * @return whether the view has been accepted.
+	 */
+	public synchronized boolean setPrecomputedGraphView(CSRDirectedGraphView<Term> view)
+	{
+		if (view.getNumberOfVertices() != graph.getNumberOfVertices())
+			return false;
+
+		int i = 0;
+		for (Term t : graph.getVertices())
+		{
+			if (view.getVertex(i++) != t)
+				return false;
+		}
+
+		closureView = view;
+		closureModCount = graph.getModificationCount();
+		return true;
+	}
+
+	/**
+	 * Returns the view that backs the upward closures. The view is rebuilt
+	 * whenever the graph has been modified.
+	 *
+	 * @return the view or null if the graph contains cycles.
+	 */
+	private synchronized CSRDirectedGraphView<Term> getClosureView()
+	{
+		if (closureView == null || closureModCount != graph.getModificationCount())
+		{
+			closureModCount = graph.getModificationCount();
+			try
+			{
+				closureView = CSRDirectedGraphView.create(graph);
+			} catch (IllegalArgumentException ex)
+			{
+				closureView = null;
+			}
+		}
+		return closureView;
+	}
+
+	/**
+	 * Walk the frozen graph starting at the given terms.
+	 *
+	 * @param terms the terms to start with.
+	 * @param againstFlow whether to walk to the source or to the sinks.
+	 * @param typeMask the mask of relations to follow.
+	 * @param vistingVertex the visitor.
+	 * @return false if not all terms are part of the graph, in which case nothing is walked.
+	 */
+	private boolean walkFrozen(List<Term> terms, boolean againstFlow, int typeMask, final IVisitingGOVertex vistingVertex)
+	{
+		final FrozenDirectedGraph<Term> fg = getFrozenGraph();
+		int [] initial = new int[terms.size()];
+		for (int i=0;i<initial.length;i++)
+		{
+			if ((initial[i] = fg.getVertexIndex(terms.get(i))) == -1)
+				return false;
+		}
+
+		fg.bfs(initial, againstFlow, typeMask, new FrozenDirectedGraph.IIntVisitor()
+		{
+			@Override
+			public boolean visited(int vertex)
+			{
+				return vistingVertex.visited(fg.getVertex(vertex));
+			}
+		});
+		return true;
+	}
+
 	/**
 	 * Starting at the vertices within the goTermIDSet walk to the source of the
 	 * DAG (ontology vertex) and call the method visiting of given object
@@ -598,7 +945,9 @@ public class Ontology implements Iterable<Term>, Serializable
 	 */
 	public void walkToSource(Collection<TermID> termIDSet, IVisitingGOVertex vistingVertex)
 	{
-		graph.bfs(termIDsToTerms(termIDSet), true, vistingVertex);
+		ArrayList<Term> terms = termIDsToTerms(termIDSet);
+		if (!walkFrozen(terms, true, FrozenDirectedGraph.ALL_TYPES, vistingVertex))
+			graph.bfs(terms, true, vistingVertex);
 	}
 
 	/**
@@ -613,7 +962,15 @@ public class Ontology implements Iterable<Term>, Serializable
 	 */
 	public void walkToSource(Collection<TermID>  termIDSet, IVisitingGOVertex vistingVertex, final Set<TermRelation> relationsToFollow)
 	{
-		graph.bfs(termIDsToTerms(termIDSet), new INeighbourGrabber<Term>() {
+		int typeMask = 0;
+		for (TermRelation relation : relationsToFollow)
+			typeMask |= 1 << relationType(relation);
+
+		ArrayList<Term> terms = termIDsToTerms(termIDSet);
+		if (walkFrozen(terms, true, typeMask, vistingVertex))
+			return;
+
+		graph.bfs(terms, new INeighbourGrabber<Term>() {
 			public Iterator<Term> grabNeighbours(Term t)
 			{
 				Iterator<Edge<Term>> inIter = graph.getInEdges(t);
@@ -661,7 +1018,9 @@ public class Ontology implements Iterable<Term>, Serializable
 	 */
 	public void walkToSinks(Collection<TermID> goTermIDSet, IVisitingGOVertex vistingVertex)
 	{
-		graph.bfs(termIDsToTerms(goTermIDSet), false, vistingVertex);
+		ArrayList<Term> terms = termIDsToTerms(goTermIDSet);
+		if (!walkFrozen(terms, false, FrozenDirectedGraph.ALL_TYPES, vistingVertex))
+			graph.bfs(terms, false, vistingVertex);
 	}
 
 	/**
@@ -957,10 +1316,41 @@ public class Ontology implements Iterable<Term>, Serializable
 	 */
 	public Collection<TermID> getSharedParents(TermID t1, TermID t2)
 	{
-		final Set<TermID> p1 = getTermsOfInducedGraph(null,t1);
+		final FrozenDirectedGraph<Term> fg = getFrozenGraph();
+		ArrayList<Term> terms = termIDsToTerms(Arrays.asList(t1, t2));
+		int v1 = fg.getVertexIndex(terms.get(0));
+		int v2 = fg.getVertexIndex(terms.get(1));
 
 		final ArrayList<TermID> sharedParents = new ArrayList<TermID>();
 
+		if (v1 != -1 && v2 != -1)
+		{
+			/* Mark the ancestors of t1 and collect the marked ancestors of t2 */
+			final boolean [] reached = new boolean[fg.getNumberOfVertices()];
+			fg.bfs(new int[]{v1}, true, new FrozenDirectedGraph.IIntVisitor()
+			{
+				@Override
+				public boolean visited(int vertex)
+				{
+					reached[vertex] = true;
+					return true;
+				}
+			});
+			fg.bfs(new int[]{v2}, true, new FrozenDirectedGraph.IIntVisitor()
+			{
+				@Override
+				public boolean visited(int vertex)
+				{
+					if (reached[vertex])
+						sharedParents.add(fg.getVertex(vertex).getID());
+					return true;
+				}
+			});
+			return sharedParents;
+		}
+
+		final Set<TermID> p1 = getTermsOfInducedGraph(null,t1);
+
 		walkToSource(t2, new IVisitingGOVertex()
 		{
 			public boolean visited(Term t2)
@@ -974,6 +1364,31 @@ public class Ontology implements Iterable<Term>, Serializable
 		return sharedParents;
 	}
 
+	/**
+	 * Creates an index that answers most informative common ancestor queries
+	 * in near-constant time. The vertices of the index are the term ids. A
+	 * reachability index is attached to the underlying view if it fits into the
+	 * default memory budget.
+	 *
+	 * @param informationContent the information content of each term of the graph.
+	 *  Terms that are not contained in the map get an information content of 0.
+	 * @return the index
+	 */
+	public CommonAncestorIndex<TermID> createCommonAncestorIndex(Map<TermID,Double> informationContent)
+	{
+		CSRDirectedGraphView<TermID> view = getTermIDCSRGraphView();
+		if (view.getReachabilityIndex() == null)
+			view.createReachabilityIndex(ReachabilityIndex.DEFAULT_MEMORY_BUDGET);
+
+		double [] ic = new double[view.getNumberOfVertices()];
+		for (int i=0;i<ic.length;i++)
+		{
+			Double d = informationContent.get(view.getVertex(i));
+			if (d != null) ic[i] = d;
+		}
+		return CommonAncestorIndex.create(view, ic);
+	}
+
 	static public class GOLevels
 	{
 		private HashMap<Integer,HashSet<TermID>> level2terms = new HashMap<Integer,HashSet<TermID>>();
@@ -4,7 +4,7 @@ import java.io.Serializable;
 import sonumina.collections.ReferencePool;
 
 /**
- * A common pool for Prefix instances.
+ * A common pool for Prefix instances. The pool is thread-safe.
  *
  * @author Sebastian Bauer
  */
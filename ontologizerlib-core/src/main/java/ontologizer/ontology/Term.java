@@ -339,6 +339,8 @@ public class Term implements ITerm, Serializable
 	@Override
 	public TermID[] getAlternatives()
 	{
+		if (alternatives == null)
+			return new TermID[0];
 		TermID [] alts = new TermID[alternatives.size()];
 		return alternatives.toArray(alts);
 	}
@@ -393,6 +395,13 @@ public class Term implements ITerm, Serializable
 
 	}
 
+	/**
+	 * @return the intersections or null if there are none.
+	 */
+	public String[] getIntersections() {
+		return intersections;
+	}
+
 	public void addAlternativeId(TermID id2) {
 		if (this.alternatives == null)
 			this.alternatives = new ArrayList<TermID>();
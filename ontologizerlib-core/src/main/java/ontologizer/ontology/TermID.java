@@ -33,6 +33,9 @@ public class TermID implements Comparable<TermID>, Serializable
 	/** Map arbitrary ids to integer ids. Used for ontologies like Uberpheno */
 	private static final HashMap<String, Integer> string2id = new HashMap<String, Integer>();
 
+	/** The inverse of string2id */
+	private static final HashMap<Integer, String> id2string = new HashMap<Integer, String>();
+
 	/** The id to be used for the next string id. This is decreasing. */
 	private static int nextId = Integer.MAX_VALUE;
 
@@ -187,16 +190,33 @@ public class TermID implements Comparable<TermID>, Serializable
 	 * @param id
 	 * @return the id referencing the the id.
 	 */
-	private int makeIdFromString(String id)
+	private static synchronized int makeIdFromString(String id)
 	{
 		if (string2id.containsKey(id))
 			return string2id.get(id);
 
 		nextId--;
 		string2id.put(id, nextId);
+		id2string.put(nextId, id);
 		return nextId;
 	}
 
+	/**
+	 * Returns the original string of the integer part of this id if it
+	 * could not be parsed as an integer. As the integers of such ids are
+	 * assigned in the order in which the strings are encountered, they are
+	 * only valid within the current process.
+	 *
+	 * @return the original string or null if the id is numeric.
+	 */
+	public String getStringId()
+	{
+		synchronized (TermID.class)
+		{
+			return id2string.get(id);
+		}
+	}
+
 	/**
 	 * @return the term's prefix.
 	 */
@@ -312,4 +312,21 @@ public final class Util
 	{
 		return t==null?def:t;
 	}
+
+	/**
+	 * The 64 bit finalizer of MurmurHash3. Mixes the bits of the given
+	 * value so that similar values yield very different hashes.
+	 *
+	 * @param h the value to be mixed.
+	 * @return the mixed value.
+	 */
+	public static long mix(long h)
+	{
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
 }
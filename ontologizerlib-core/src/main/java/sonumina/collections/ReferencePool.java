@@ -1,11 +1,11 @@
 package sonumina.collections;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A data structure to hold a pool of references. Simpler
- * than a factory.
+ * than a factory. The pool is thread-safe.
  *
  * @author Sebastian Bauer
  *
@@ -16,17 +16,27 @@ public class ReferencePool<T> implements Serializable
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * The container for all refs. Have to use a HashMap here,
+	 * The container for all refs. Have to use a map here,
 	 * as it is not possible to retrieve the reference
-	 * via a HashSet.
+	 * via a set.
 	 */
-	private HashMap<T,T> referenceMap = new HashMap<T,T>();
+	private ConcurrentHashMap<T,T> referenceMap = new ConcurrentHashMap<T,T>();
 
+	/**
+	 * Returns the pooled reference that equals the given one. If there is
+	 * none, the given one is added to the pool.
+	 *
+	 * @param toBeMapped
+	 * @return the pooled reference.
+	 */
 	public T map(T toBeMapped)
 	{
+		if (toBeMapped == null) return null;
+
 		T ref = referenceMap.get(toBeMapped);
 		if (ref != null) return ref;
-		referenceMap.put(toBeMapped, toBeMapped);
+		ref = referenceMap.putIfAbsent(toBeMapped, toBeMapped);
+		if (ref != null) return ref;
 		return toBeMapped;
 	}
 }
@@ -0,0 +1,850 @@
+package sonumina.math.graph;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import sonumina.collections.IntMapper;
+
+/**
+ * A slim view of a directed acyclic graph that stores its structure in the
+ * compressed sparse row (CSR) format. For every relation (parents, children,
+ * ancestors and descendants) there is a single flat neighbour array and an
+ * offset array of length <code>n+1</code>. The neighbours of vertex
+ * <code>i</code> are stored in the neighbour array in the range
+ * <code>[offsets[i], offsets[i+1])</code>.
+ *
+ * The vertex indices are identical to the ones of the
+ * {@link SlimDirectedGraphView} of the same graph. The ancestors and
+ * descendants are computed by merging the parents' ancestors in topological
+ * order, so no breadth-first search per vertex and no boxing is required.
+ */
+public final class CSRDirectedGraphView<VertexType> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private IntMapper<VertexType> mapper;
+
+	/** Offsets into the parents array */
+	public int [] parentOffsets;
+
+	/** The parents of all vertices */
+	public int [] parents;
+
+	/** Offsets into the children array */
+	public int [] childOffsets;
+
+	/** The children of all vertices */
+	public int [] children;
+
+	/** Offsets into the ancestors array */
+	public int [] ancestorOffsets;
+
+	/** The ancestors of all vertices (including the vertex itself). Each row is sorted. */
+	public int [] ancestors;
+
+	/** Offsets into the descendants array */
+	public int [] descendantOffsets;
+
+	/** The descendants of all vertices (including the vertex itself). Each row is sorted. */
+	public int [] descendants;
+
+	/** The vertex indices in a topological order */
+	public int [] topologicalOrder;
+
+	/** The optional reachability index used to answer isAncestor() and isDescendant() */
+	private ReachabilityIndex reachabilityIndex;
+
+	private CSRDirectedGraphView()
+	{
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int getNumberOfVertices()
+	{
+		return mapper.getSize();
+	}
+
+	/**
+	 * Returns the vertex at the given index.
+	 *
+	 * @param index
+	 * @return the vertex
+	 */
+	public VertexType getVertex(int index)
+	{
+		return mapper.get(index);
+	}
+
+	/**
+	 * Returns the index of the given vertex.
+	 *
+	 * @param v
+	 * @return the index or -1 if the vertex is not part of the graph
+	 */
+	public int getVertexIndex(VertexType v)
+	{
+		return mapper.getIndex(v);
+	}
+
+	/**
+	 * @return the underlying mapper of vertices to indices.
+	 */
+	public IntMapper<VertexType> getMapper()
+	{
+		return mapper;
+	}
+
+	/**
+	 * Returns the row of the given vertex in the given relation as a fresh array.
+	 *
+	 * @param offsets
+	 * @param neighbours
+	 * @param i
+	 * @return the row
+	 */
+	private static int [] row(int [] offsets, int [] neighbours, int i)
+	{
+		return Arrays.copyOfRange(neighbours, offsets[i], offsets[i+1]);
+	}
+
+	/**
+	 * @param i
+	 * @return the parents of vertex i as a fresh array.
+	 */
+	public int [] getParents(int i)
+	{
+		return row(parentOffsets, parents, i);
+	}
+
+	/**
+	 * @param i
+	 * @return the children of vertex i as a fresh array.
+	 */
+	public int [] getChildren(int i)
+	{
+		return row(childOffsets, children, i);
+	}
+
+	/**
+	 * @param i
+	 * @return the sorted ancestors of vertex i as a fresh array.
+	 */
+	public int [] getAncestors(int i)
+	{
+		return row(ancestorOffsets, ancestors, i);
+	}
+
+	/**
+	 * @param i
+	 * @return the sorted descendants of vertex i as a fresh array.
+	 */
+	public int [] getDescendants(int i)
+	{
+		return row(descendantOffsets, descendants, i);
+	}
+
+	/**
+	 * @param i
+	 * @return the number of ancestors of vertex i (including i).
+	 */
+	public int getNumberOfAncestors(int i)
+	{
+		return ancestorOffsets[i+1] - ancestorOffsets[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the number of descendants of vertex i (including i).
+	 */
+	public int getNumberOfDescendants(int i)
+	{
+		return descendantOffsets[i+1] - descendantOffsets[i];
+	}
+
+	/**
+	 * Sets the reachability index that is used to answer ancestor and
+	 * descendant queries. The index must have been built for a view
+	 * with the same vertex indices.
+	 *
+	 * @param reachabilityIndex the index or null to use the rows of this view.
+	 */
+	public void setReachabilityIndex(ReachabilityIndex reachabilityIndex)
+	{
+		if (reachabilityIndex != null && reachabilityIndex.getNumberOfVertices() != getNumberOfVertices())
+			throw new IllegalArgumentException("Reachability index doesn't match the view.");
+		this.reachabilityIndex = reachabilityIndex;
+	}
+
+	/**
+	 * @return the reachability index or null if none is present.
+	 */
+	public ReachabilityIndex getReachabilityIndex()
+	{
+		return reachabilityIndex;
+	}
+
+	/**
+	 * Creates a reachability index for this view and uses it for subsequent
+	 * ancestor and descendant queries.
+	 *
+	 * @param memoryBudget the maximum number of bytes the index may use.
+	 * @return whether the index could be created within the budget.
+	 */
+	public boolean createReachabilityIndex(long memoryBudget)
+	{
+		ReachabilityIndex idx = ReachabilityIndex.create(this, memoryBudget);
+		if (idx == null)
+			return false;
+		reachabilityIndex = idx;
+		return true;
+	}
+
+	/**
+	 * Determines whether node with the index i is an ancestor of node with index j.
+	 * Note that the ancestors of a given term include the given term itself.
+	 *
+	 * @param i
+	 * @param j
+	 * @return true if the node with the index i is an ancestor
+	 * of the node with the index j, otherwise false.
+	 */
+	public boolean isAncestor(int i, int j)
+	{
+		if (reachabilityIndex != null)
+			return reachabilityIndex.isAncestor(i, j);
+
+		return Arrays.binarySearch(ancestors, ancestorOffsets[j], ancestorOffsets[j+1], i) >= 0;
+	}
+
+	/**
+	 * Determines whether the node with index i is a
+	 * descendant of the node with the index j.
+	 * Note that the descendants of a given term include the given term itself.
+	 *
+	 * @param i
+	 * @param j
+	 * @return true if the node with the index i is a descendant
+	 * of the node with the index j, otherwise false.
+	 */
+	public boolean isDescendant(int i, int j)
+	{
+		if (reachabilityIndex != null)
+			return reachabilityIndex.isAncestor(j, i);
+
+		return Arrays.binarySearch(descendants, descendantOffsets[j], descendantOffsets[j+1], i) >= 0;
+	}
+
+	/**
+	 * Fill the parent and child arrays of the view.
+	 *
+	 * @param csr
+	 * @param graph
+	 * @param mapper
+	 */
+	private static <V> void initAdjacency(CSRDirectedGraphView<?> csr, DirectedGraph<V> graph, IntMapper<V> mapper)
+	{
+		int n = mapper.getSize();
+
+		csr.parentOffsets = new int[n+1];
+		csr.childOffsets = new int[n+1];
+		for (int i=0;i<n;i++)
+		{
+			V v = mapper.get(i);
+			csr.parentOffsets[i+1] = csr.parentOffsets[i] + graph.getInDegree(v);
+			csr.childOffsets[i+1] = csr.childOffsets[i] + graph.getOutDegree(v);
+		}
+
+		csr.parents = new int[csr.parentOffsets[n]];
+		csr.children = new int[csr.childOffsets[n]];
+
+		int p = 0;
+		int c = 0;
+		for (int i=0;i<n;i++)
+		{
+			V v = mapper.get(i);
+			Iterator<V> iter = graph.getParentNodes(v);
+			while (iter.hasNext())
+				csr.parents[p++] = mapper.getIndex(iter.next());
+			iter = graph.getChildNodes(v);
+			while (iter.hasNext())
+				csr.children[c++] = mapper.getIndex(iter.next());
+		}
+	}
+
+	/**
+	 * Determine a topological order of the vertices using Kahn's algorithm.
+	 *
+	 * @param csr
+	 * @return false if the graph contains a cycle, in which case no order is set.
+	 */
+	private static boolean initTopologicalOrder(CSRDirectedGraphView<?> csr)
+	{
+		int n = csr.parentOffsets.length - 1;
+		int [] numParents = new int[n];
+		int [] order = new int[n];
+		int tail = 0;
+
+		for (int i=0;i<n;i++)
+		{
+			numParents[i] = csr.parentOffsets[i+1] - csr.parentOffsets[i];
+			if (numParents[i] == 0)
+				order[tail++] = i;
+		}
+
+		for (int head = 0; head < tail; head++)
+		{
+			int v = order[head];
+			for (int k = csr.childOffsets[v]; k < csr.childOffsets[v+1]; k++)
+			{
+				int ch = csr.children[k];
+				if (--numParents[ch] == 0)
+					order[tail++] = ch;
+			}
+		}
+
+		if (tail != n)
+			return false;
+
+		csr.topologicalOrder = order;
+		return true;
+	}
+
+	/**
+	 * Transposes the given relation, i.e., if j is in row i of the given relation,
+	 * i will be in row j of the result. As the rows are processed in ascending
+	 * order, each row of the result is sorted.
+	 *
+	 * @param n the number of vertices
+	 * @param offsets
+	 * @param neighbours
+	 * @param newOffsets where the offsets of the transposed relation are stored (length n+1)
+	 * @return the transposed neighbours
+	 */
+	static int [] transpose(int n, int [] offsets, int [] neighbours, int [] newOffsets)
+	{
+		Arrays.fill(newOffsets, 0);
+		for (int k = 0; k < offsets[n]; k++)
+			newOffsets[neighbours[k] + 1]++;
+		for (int i = 0; i < n; i++)
+			newOffsets[i+1] += newOffsets[i];
+
+		int [] pos = Arrays.copyOf(newOffsets, n);
+		int [] newNeighbours = new int[offsets[n]];
+		for (int i = 0; i < n; i++)
+		{
+			for (int k = offsets[i]; k < offsets[i+1]; k++)
+				newNeighbours[pos[neighbours[k]]++] = i;
+		}
+		return newNeighbours;
+	}
+
+	/**
+	 * Compute the ancestor and descendant closures. The ancestors of each vertex
+	 * are determined as the union of the ancestors of its parents in topological
+	 * order. The resulting unsorted rows are transposed to get the sorted
+	 * descendants, which are transposed again to get the sorted ancestors.
+	 *
+	 * @param csr
+	 */
+	private static void initClosures(CSRDirectedGraphView<?> csr)
+	{
+		int n = csr.topologicalOrder.length;
+
+		/* Rows are appended in topological order, so remember where they start */
+		int [] start = new int[n];
+		int [] length = new int[n];
+		int [] buf = new int[Math.max(16, n * 4)];
+		int used = 0;
+
+		/* Marks vertices that have been already added to the current row */
+		int [] stamp = new int[n];
+		Arrays.fill(stamp, -1);
+
+		for (int v : csr.topologicalOrder)
+		{
+			/* The row of v cannot be larger than the sum of the rows of its parents plus one */
+			int max = 1;
+			for (int k = csr.parentOffsets[v]; k < csr.parentOffsets[v+1]; k++)
+				max += length[csr.parents[k]];
+			if (used + max > buf.length)
+				buf = Arrays.copyOf(buf, Math.max(used + max, buf.length * 2));
+
+			int s = used;
+			buf[used++] = v;
+			stamp[v] = v;
+
+			for (int k = csr.parentOffsets[v]; k < csr.parentOffsets[v+1]; k++)
+			{
+				int p = csr.parents[k];
+				for (int l = start[p]; l < start[p] + length[p]; l++)
+				{
+					int a = buf[l];
+					if (stamp[a] != v)
+					{
+						stamp[a] = v;
+						buf[used++] = a;
+					}
+				}
+			}
+			start[v] = s;
+			length[v] = used - s;
+		}
+
+		/* Bring the unsorted rows into vertex order */
+		int [] unsortedOffsets = new int[n+1];
+		for (int i=0;i<n;i++)
+			unsortedOffsets[i+1] = unsortedOffsets[i] + length[i];
+		int [] unsorted = new int[used];
+		for (int i=0;i<n;i++)
+			System.arraycopy(buf, start[i], unsorted, unsortedOffsets[i], length[i]);
+		buf = null;
+
+		csr.descendantOffsets = new int[n+1];
+		csr.descendants = transpose(n, unsortedOffsets, unsorted, csr.descendantOffsets);
+		unsorted = null;
+
+		csr.ancestorOffsets = new int[n+1];
+		csr.ancestors = transpose(n, csr.descendantOffsets, csr.descendants, csr.ancestorOffsets);
+	}
+
+	/**
+	 * Create the CSR view from the given directed graph.
+	 *
+	 * @param graph the graph, which must not contain any cycle.
+	 * @return the CSR view corresponding to graph
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static <V> CSRDirectedGraphView<V> create(DirectedGraph<V> graph)
+	{
+		CSRDirectedGraphView<V> csr = createIfAcyclic(graph);
+		if (csr == null)
+			throw new IllegalArgumentException("The graph contains a cycle.");
+		return csr;
+	}
+
+	/**
+	 * Check that the given offsets describe the given neighbour array of n vertices.
+	 */
+	private static void checkRows(String what, int n, int [] offsets, int [] neighbours)
+	{
+		if (offsets.length != n + 1 || offsets[0] != 0 || offsets[n] != neighbours.length)
+			throw new IllegalArgumentException("Inconsistent " + what + " rows");
+		for (int i=0;i<n;i++)
+		{
+			if (offsets[i] > offsets[i+1])
+				throw new IllegalArgumentException("Inconsistent " + what + " rows");
+		}
+		for (int v : neighbours)
+		{
+			if (v < 0 || v >= n)
+				throw new IllegalArgumentException("Invalid vertex index " + v + " in " + what + " rows");
+		}
+	}
+
+	/**
+	 * Create the CSR view from previously computed arrays, e.g., arrays that have been
+	 * read from a file. The arrays are not copied but they are checked for basic
+	 * consistency. The ancestor and descendant rows must be sorted and include the
+	 * vertex itself.
+	 *
+	 * @param vertices the vertices in the order of their indices.
+	 * @param numberOfVertices the number of vertices
+	 * @param parentOffsets
+	 * @param parents
+	 * @param childOffsets
+	 * @param children
+	 * @param ancestorOffsets
+	 * @param ancestors
+	 * @param descendantOffsets
+	 * @param descendants
+	 * @param topologicalOrder
+	 * @return the CSR view.
+	 * @throws IllegalArgumentException if the arrays are inconsistent.
+	 */
+	public static <V> CSRDirectedGraphView<V> create(Iterable<V> vertices, int numberOfVertices,
+			int [] parentOffsets, int [] parents, int [] childOffsets, int [] children,
+			int [] ancestorOffsets, int [] ancestors, int [] descendantOffsets, int [] descendants,
+			int [] topologicalOrder)
+	{
+		int n = numberOfVertices;
+		checkRows("parent", n, parentOffsets, parents);
+		checkRows("child", n, childOffsets, children);
+		checkRows("ancestor", n, ancestorOffsets, ancestors);
+		checkRows("descendant", n, descendantOffsets, descendants);
+		if (topologicalOrder.length != n)
+			throw new IllegalArgumentException("Inconsistent topological order");
+
+		CSRDirectedGraphView<V> csr = new CSRDirectedGraphView<V>();
+		csr.mapper = IntMapper.create(vertices, n);
+		csr.parentOffsets = parentOffsets;
+		csr.parents = parents;
+		csr.childOffsets = childOffsets;
+		csr.children = children;
+		csr.ancestorOffsets = ancestorOffsets;
+		csr.ancestors = ancestors;
+		csr.descendantOffsets = descendantOffsets;
+		csr.descendants = descendants;
+		csr.topologicalOrder = topologicalOrder;
+		return csr;
+	}
+
+	/**
+	 * Create the CSR view from the given directed graph if it doesn't contain
+	 * any cycle.
+	 *
+	 * @param graph
+	 * @return the CSR view or null if the graph contains a cycle.
+	 */
+	static <V> CSRDirectedGraphView<V> createIfAcyclic(DirectedGraph<V> graph)
+	{
+		CSRDirectedGraphView<V> csr = new CSRDirectedGraphView<V>();
+		csr.mapper = IntMapper.create(graph.getVertices(), graph.getNumberOfVertices());
+		initAdjacency(csr, graph, csr.mapper);
+		if (!initTopologicalOrder(csr))
+			return null;
+		initClosures(csr);
+		return csr;
+	}
+
+	/**
+	 * Create the CSR view from the given directed graph but apply a mapping of the underlying
+	 * type.
+	 *
+	 * @param graph the graph, which must not contain any cycle.
+	 * @param map mapping
+	 * @return the CSR view.
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static <K,V> CSRDirectedGraphView<V> create(DirectedGraph<K> graph, SlimDirectedGraphView.Map<K,V> map)
+	{
+		CSRDirectedGraphView<K> kg = create(graph);
+		return withMapper(kg, mapVertices(graph, map));
+	}
+
+	/**
+	 * Apply the given map to all vertices of the graph.
+	 *
+	 * @param graph
+	 * @param map
+	 * @return the mapper of the mapped vertices, which uses the same indices
+	 *  as the mapper of the graph's vertices.
+	 */
+	private static <K,V> IntMapper<V> mapVertices(DirectedGraph<K> graph, SlimDirectedGraphView.Map<K,V> map)
+	{
+		ArrayList<V> mapped = new ArrayList<V>(graph.getNumberOfVertices());
+		for (K k : graph.getVertices())
+			mapped.add(map.map(k));
+		return IntMapper.create(mapped);
+	}
+
+	/**
+	 * Returns a view that shares the structure of the given view but uses another mapper.
+	 *
+	 * @param kg
+	 * @param mapper
+	 * @return the new view
+	 */
+	private static <K,V> CSRDirectedGraphView<V> withMapper(CSRDirectedGraphView<K> kg, IntMapper<V> mapper)
+	{
+		CSRDirectedGraphView<V> vg = new CSRDirectedGraphView<V>();
+
+		vg.parentOffsets = kg.parentOffsets;
+		vg.parents = kg.parents;
+		vg.childOffsets = kg.childOffsets;
+		vg.children = kg.children;
+		vg.ancestorOffsets = kg.ancestorOffsets;
+		vg.ancestors = kg.ancestors;
+		vg.descendantOffsets = kg.descendantOffsets;
+		vg.descendants = kg.descendants;
+		vg.topologicalOrder = kg.topologicalOrder;
+		vg.reachabilityIndex = kg.reachabilityIndex;
+		vg.mapper = mapper;
+		return vg;
+	}
+
+	/**
+	 * Fill the parent and child arrays of the view in parallel.
+	 *
+	 * @param csr
+	 * @param graph
+	 * @param mapper
+	 * @param pool
+	 */
+	private static <V> void initAdjacency(final CSRDirectedGraphView<?> csr, final DirectedGraph<V> graph, final IntMapper<V> mapper, ForkJoinPool pool)
+	{
+		int n = mapper.getSize();
+
+		csr.parentOffsets = new int[n+1];
+		csr.childOffsets = new int[n+1];
+
+		/* Determine the degrees, these are turned into the offsets afterwards */
+		new ParallelRange()
+		{
+			@Override
+			void process(int i)
+			{
+				V v = mapper.get(i);
+				csr.parentOffsets[i+1] = graph.getInDegree(v);
+				csr.childOffsets[i+1] = graph.getOutDegree(v);
+			}
+		}.invoke(pool, 0, n);
+
+		for (int i=0;i<n;i++)
+		{
+			csr.parentOffsets[i+1] += csr.parentOffsets[i];
+			csr.childOffsets[i+1] += csr.childOffsets[i];
+		}
+
+		csr.parents = new int[csr.parentOffsets[n]];
+		csr.children = new int[csr.childOffsets[n]];
+
+		new ParallelRange()
+		{
+			@Override
+			void process(int i)
+			{
+				V v = mapper.get(i);
+				int p = csr.parentOffsets[i];
+				Iterator<V> iter = graph.getParentNodes(v);
+				while (iter.hasNext())
+					csr.parents[p++] = mapper.getIndex(iter.next());
+
+				int c = csr.childOffsets[i];
+				iter = graph.getChildNodes(v);
+				while (iter.hasNext())
+					csr.children[c++] = mapper.getIndex(iter.next());
+			}
+		}.invoke(pool, 0, n);
+	}
+
+	/**
+	 * A bitset over all vertices that collects the rows of a closure. The
+	 * words that have been touched are remembered, so the set can be read
+	 * out and cleared without scanning all words.
+	 */
+	private static final class RowBits
+	{
+		private final long [] bits;
+		private final int [] touched;
+		private int numTouched;
+
+		RowBits(int n)
+		{
+			bits = new long[(n + 63) >>> 6];
+			touched = new int[bits.length];
+		}
+
+		void add(int v)
+		{
+			int w = v >>> 6;
+			if (bits[w] == 0)
+				touched[numTouched++] = w;
+			bits[w] |= 1L << v;
+		}
+
+		/**
+		 * Returns the sorted members of the set and clears the set.
+		 *
+		 * @return the members
+		 */
+		int [] drain()
+		{
+			Arrays.sort(touched, 0, numTouched);
+
+			int size = 0;
+			for (int i = 0; i < numTouched; i++)
+				size += Long.bitCount(bits[touched[i]]);
+
+			int [] row = new int[size];
+			int k = 0;
+			for (int i = 0; i < numTouched; i++)
+			{
+				int w = touched[i];
+				long word = bits[w];
+				while (word != 0)
+				{
+					row[k++] = (w << 6) | Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+				}
+				bits[w] = 0;
+			}
+			numTouched = 0;
+			return row;
+		}
+	}
+
+	/**
+	 * Computes the closure of the given relation. The vertices are grouped into
+	 * levels such that the closure rows of all vertices of a level depend only on
+	 * rows of previous levels. The vertices of a level are then processed in parallel.
+	 *
+	 * @param order the order in which the vertices can be processed, i.e., each
+	 *  vertex appears after its neighbours.
+	 * @param offsets the offsets of the relation
+	 * @param neighbours the neighbours of the relation
+	 * @param pool
+	 * @return the closure, each row is sorted and contains the vertex itself.
+	 */
+	private static int [][] closureByLevels(int [] order, final int [] offsets, final int [] neighbours, ForkJoinPool pool)
+	{
+		int n = order.length;
+		int [] level = new int[n];
+		int maxLevel = 0;
+
+		for (int v : order)
+		{
+			int l = 0;
+			for (int k = offsets[v]; k < offsets[v+1]; k++)
+				l = Math.max(l, level[neighbours[k]] + 1);
+			level[v] = l;
+			maxLevel = Math.max(maxLevel, l);
+		}
+
+		/* Group the vertices by level, within a level the given order is kept */
+		int [] levelOffsets = new int[maxLevel + 2];
+		for (int v = 0; v < n; v++)
+			levelOffsets[level[v] + 1]++;
+		for (int l = 0; l <= maxLevel; l++)
+			levelOffsets[l+1] += levelOffsets[l];
+		int [] pos = Arrays.copyOf(levelOffsets, maxLevel + 1);
+		final int [] byLevel = new int[n];
+		for (int v : order)
+			byLevel[pos[level[v]]++] = v;
+
+		final int [][] rows = new int[n][];
+
+		/* The rows are merged in a bitset of the executing thread */
+		final ThreadLocal<RowBits> rowBits = new ThreadLocal<RowBits>()
+		{
+			@Override
+			protected RowBits initialValue()
+			{
+				return new RowBits(rows.length);
+			}
+		};
+
+		ParallelRange merger = new ParallelRange()
+		{
+			@Override
+			void process(int k)
+			{
+				int v = byLevel[k];
+				RowBits bits = rowBits.get();
+				bits.add(v);
+				for (int l = offsets[v]; l < offsets[v+1]; l++)
+				{
+					for (int a : rows[neighbours[l]])
+						bits.add(a);
+				}
+				rows[v] = bits.drain();
+			}
+		};
+		for (int l = 0; l <= maxLevel; l++)
+			merger.invoke(pool, levelOffsets[l], levelOffsets[l+1]);
+		return rows;
+	}
+
+	/**
+	 * Flattens the given rows.
+	 *
+	 * @param rows
+	 * @param offsets the array where the offsets are stored (length must be one more than the number of rows)
+	 * @param pool
+	 * @return the flattened rows.
+	 */
+	private static int [] flatten(final int [][] rows, final int [] offsets, ForkJoinPool pool)
+	{
+		for (int i=0;i<rows.length;i++)
+			offsets[i+1] = offsets[i] + rows[i].length;
+
+		final int [] flat = new int[offsets[rows.length]];
+		new ParallelRange()
+		{
+			@Override
+			void process(int i)
+			{
+				System.arraycopy(rows[i], 0, flat, offsets[i], rows[i].length);
+			}
+		}.invoke(pool, 0, rows.length);
+		return flat;
+	}
+
+	/**
+	 * Compute the ancestor and descendant closures in parallel. The ancestors
+	 * are merged from the parents' ancestors level by level in topological
+	 * order, the descendants from the children's descendants in reverse
+	 * topological order.
+	 *
+	 * @param csr
+	 * @param pool
+	 */
+	private static void initClosures(CSRDirectedGraphView<?> csr, ForkJoinPool pool)
+	{
+		int n = csr.topologicalOrder.length;
+
+		int [][] rows = closureByLevels(csr.topologicalOrder, csr.parentOffsets, csr.parents, pool);
+		csr.ancestorOffsets = new int[n+1];
+		csr.ancestors = flatten(rows, csr.ancestorOffsets, pool);
+
+		int [] reverseOrder = new int[n];
+		for (int i=0;i<n;i++)
+			reverseOrder[i] = csr.topologicalOrder[n - i - 1];
+		rows = closureByLevels(reverseOrder, csr.childOffsets, csr.children, pool);
+		csr.descendantOffsets = new int[n+1];
+		csr.descendants = flatten(rows, csr.descendantOffsets, pool);
+	}
+
+	/**
+	 * Create the CSR view from the given directed graph. The closures and the
+	 * index arrays are computed in parallel using the given pool. The result
+	 * is identical to the one of {@link #create(DirectedGraph)}.
+	 *
+	 * @param graph the graph, which must not contain any cycle.
+	 * @param pool the pool used for the parallel construction.
+	 * @return the CSR view corresponding to graph
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static <V> CSRDirectedGraphView<V> create(DirectedGraph<V> graph, ForkJoinPool pool)
+	{
+		CSRDirectedGraphView<V> csr = new CSRDirectedGraphView<V>();
+		csr.mapper = IntMapper.create(graph.getVertices(), graph.getNumberOfVertices());
+		initAdjacency(csr, graph, csr.mapper, pool);
+		if (!initTopologicalOrder(csr))
+			throw new IllegalArgumentException("The graph contains a cycle.");
+		initClosures(csr, pool);
+		return csr;
+	}
+
+	/**
+	 * Create the CSR view from the given directed graph but apply a mapping of the underlying
+	 * type. The mapper of the new vertex type is built concurrently to the structure
+	 * of the graph. The result is identical to the one of {@link #create(DirectedGraph, SlimDirectedGraphView.Map)}.
+	 *
+	 * @param graph the graph, which must not contain any cycle.
+	 * @param map mapping
+	 * @param pool the pool used for the parallel construction.
+	 * @return the CSR view.
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static <K,V> CSRDirectedGraphView<V> create(final DirectedGraph<K> graph, final SlimDirectedGraphView.Map<K,V> map, ForkJoinPool pool)
+	{
+		ForkJoinTask<IntMapper<V>> mapperTask = pool.submit(new Callable<IntMapper<V>>()
+		{
+			@Override
+			public IntMapper<V> call()
+			{
+				return mapVertices(graph, map);
+			}
+		});
+
+		CSRDirectedGraphView<K> kg = create(graph, pool);
+		return withMapper(kg, mapperTask.join());
+	}
+}
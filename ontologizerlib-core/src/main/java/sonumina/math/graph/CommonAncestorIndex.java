@@ -0,0 +1,290 @@
+package sonumina.math.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An index that answers common ancestor queries on a directed acyclic graph.
+ * Every vertex is associated with an information content (the higher, the
+ * more informative) and the most informative common ancestor (MICA) of two
+ * vertices is the common ancestor with the highest information content. Ties
+ * are broken by choosing the vertex with the smallest index.
+ *
+ * The ancestors of each vertex are stored in the order of decreasing
+ * information content, so a MICA query stops at the first ancestor of one
+ * vertex that is also an ancestor of the other vertex. The membership test is
+ * delegated to {@link CSRDirectedGraphView#isAncestor(int, int)}, which takes
+ * constant time if the view has a {@link ReachabilityIndex} attached.
+ *
+ * The vertices are addressed via the indices of the underlying view.
+ */
+public final class CommonAncestorIndex<VertexType> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The underlying view */
+	private CSRDirectedGraphView<VertexType> view;
+
+	/** The information content of all vertices */
+	private double [] informationContent;
+
+	/**
+	 * The ancestors of all vertices in the order of decreasing information content.
+	 * Uses the offsets of the view's ancestor array.
+	 */
+	private int [] ancestorsByInformationContent;
+
+	private CommonAncestorIndex()
+	{
+	}
+
+	/**
+	 * @return the underlying view.
+	 */
+	public CSRDirectedGraphView<VertexType> getView()
+	{
+		return view;
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int getNumberOfVertices()
+	{
+		return view.getNumberOfVertices();
+	}
+
+	/**
+	 * Returns the index of the given vertex.
+	 *
+	 * @param v
+	 * @return the index or -1 if the vertex is not part of the index.
+	 */
+	public int getVertexIndex(VertexType v)
+	{
+		return view.getVertexIndex(v);
+	}
+
+	/**
+	 * @param i
+	 * @return the information content of the vertex with index i.
+	 */
+	public double getInformationContent(int i)
+	{
+		return informationContent[i];
+	}
+
+	/**
+	 * Determine the most informative common ancestor of the given vertices
+	 * whose information content exceeds the given bound.
+	 *
+	 * @param i
+	 * @param j
+	 * @param bound
+	 * @return the index of the ancestor or -1 if no such ancestor exists.
+	 */
+	private int getMICA(int i, int j, double bound)
+	{
+		/* Walk along the shorter row */
+		if (view.getNumberOfAncestors(i) > view.getNumberOfAncestors(j))
+		{
+			int t = i;
+			i = j;
+			j = t;
+		}
+
+		int [] offsets = view.ancestorOffsets;
+		for (int k=offsets[i];k<offsets[i+1];k++)
+		{
+			int a = ancestorsByInformationContent[k];
+			if (!(informationContent[a] > bound))
+				return -1;
+			if (view.isAncestor(a, j))
+				return a;
+		}
+		return -1;
+	}
+
+	/**
+	 * Determine the most informative common ancestor of the vertices with
+	 * the indices i and j. Note that the ancestors of a vertex include the
+	 * vertex itself.
+	 *
+	 * @param i
+	 * @param j
+	 * @return the index of the most informative common ancestor or -1 if the
+	 *  vertices don't have a common ancestor.
+	 */
+	public int getMICA(int i, int j)
+	{
+		return getMICA(i, j, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Determine the most informative common ancestors of many pairs of vertices.
+	 *
+	 * @param first the indices of the first vertices of the pairs.
+	 * @param second the indices of the second vertices of the pairs.
+	 * @param result the array that receives the index of the most informative
+	 *  common ancestor (or -1) of each pair.
+	 */
+	public void getMICA(int [] first, int [] second, int [] result)
+	{
+		if (first.length != second.length || first.length > result.length)
+			throw new IllegalArgumentException("Arrays of pairs must have the same length");
+
+		for (int k=0;k<first.length;k++)
+			result[k] = getMICA(first[k], second[k]);
+	}
+
+	/**
+	 * Determine the most informative common ancestors of many pairs of vertices.
+	 *
+	 * @param first the indices of the first vertices of the pairs.
+	 * @param second the indices of the second vertices of the pairs.
+	 * @return the index of the most informative common ancestor (or -1) of each pair.
+	 */
+	public int [] getMICA(int [] first, int [] second)
+	{
+		int [] result = new int[first.length];
+		getMICA(first, second, result);
+		return result;
+	}
+
+	/**
+	 * Determine the most informative common ancestor over all pairs that
+	 * can be formed from the two given sets of vertices. This is, for instance,
+	 * the basis of Resnik's similarity of two genes. If several ancestors
+	 * share the maximal information content, the first one found is returned.
+	 *
+	 * @param first the indices of the first set of vertices.
+	 * @param second the indices of the second set of vertices.
+	 * @return the index of the most informative common ancestor or -1 if no
+	 *  pair has a common ancestor.
+	 */
+	public int getMaxMICA(int [] first, int [] second)
+	{
+		int best = -1;
+		double bound = Double.NEGATIVE_INFINITY;
+
+		for (int i : first)
+		{
+			for (int j : second)
+			{
+				/* Only consider ancestors that are strictly better than what we have */
+				int a = getMICA(i, j, bound);
+				if (a != -1)
+				{
+					best = a;
+					bound = informationContent[a];
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Determine all common ancestors of the vertices with the indices i and j.
+	 *
+	 * @param i
+	 * @param j
+	 * @return the sorted indices of all common ancestors.
+	 */
+	public int [] getCommonAncestors(int i, int j)
+	{
+		int [] ancestors = view.ancestors;
+		int [] offsets = view.ancestorOffsets;
+
+		int a = offsets[i], aEnd = offsets[i+1];
+		int b = offsets[j], bEnd = offsets[j+1];
+		int [] buf = new int[Math.min(aEnd - a, bEnd - b)];
+		int n = 0;
+
+		while (a < aEnd && b < bEnd)
+		{
+			int x = ancestors[a];
+			int y = ancestors[b];
+			if (x < y) a++;
+			else if (x > y) b++;
+			else
+			{
+				buf[n++] = x;
+				a++;
+				b++;
+			}
+		}
+
+		if (n == buf.length)
+			return buf;
+		int [] result = new int[n];
+		System.arraycopy(buf, 0, result, 0, n);
+		return result;
+	}
+
+	/**
+	 * Determine the order of all vertices by decreasing information content,
+	 * ties are ordered by increasing index.
+	 *
+	 * @param ic the information content
+	 * @return the vertices in the order
+	 */
+	private static int [] orderByInformationContent(final double [] ic)
+	{
+		Integer [] order = new Integer[ic.length];
+		for (int i=0;i<order.length;i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer o1, Integer o2)
+			{
+				int c = Double.compare(ic[o2], ic[o1]);
+				if (c != 0) return c;
+				return o1.compareTo(o2);
+			}
+		});
+
+		int [] result = new int[order.length];
+		for (int i=0;i<order.length;i++)
+			result[i] = order[i];
+		return result;
+	}
+
+	/**
+	 * Create the index.
+	 *
+	 * @param view the view of the graph. Attach a {@link ReachabilityIndex} to the
+	 *  view in order to get constant time membership tests.
+	 * @param informationContent the information content of each vertex of the view, must not contain NaN.
+	 * @return the index
+	 */
+	public static <V> CommonAncestorIndex<V> create(CSRDirectedGraphView<V> view, double [] informationContent)
+	{
+		if (informationContent.length != view.getNumberOfVertices())
+			throw new IllegalArgumentException("Expected " + view.getNumberOfVertices() + " information content values but got " + informationContent.length);
+
+		CommonAncestorIndex<V> idx = new CommonAncestorIndex<V>();
+		idx.view = view;
+		idx.informationContent = informationContent.clone();
+
+		/* Replace each ancestor by its rank, sort the rows and map the ranks back */
+		int [] order = orderByInformationContent(idx.informationContent);
+		int [] rank = new int[order.length];
+		for (int r=0;r<order.length;r++)
+			rank[order[r]] = r;
+
+		int [] a = new int[view.ancestors.length];
+		for (int k=0;k<a.length;k++)
+			a[k] = rank[view.ancestors[k]];
+
+		int [] offsets = view.ancestorOffsets;
+		for (int i=0;i<view.getNumberOfVertices();i++)
+			Arrays.sort(a, offsets[i], offsets[i+1]);
+
+		for (int k=0;k<a.length;k++)
+			a[k] = order[a[k]];
+		idx.ancestorsByInformationContent = a;
+		return idx;
+	}
+}
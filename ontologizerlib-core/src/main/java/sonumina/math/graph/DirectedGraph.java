@@ -38,6 +38,9 @@ public class DirectedGraph<VertexType> extends AbstractGraph<VertexType> impleme
 	/** Contains the vertices associated to meta information (edges) */
 	private LinkedHashMap<VertexType,VertexAttributes<VertexType>> vertices;
 
+	/** Incremented on every structural modification of the graph */
+	private int modCount;
+
 	public interface IDistanceVisitor<VertexType>
 	{
 		/**
@@ -69,6 +72,7 @@ public class DirectedGraph<VertexType> extends AbstractGraph<VertexType> impleme
 		{
 			VertexAttributes<VertexType> va = new VertexAttributes<VertexType>();
 			vertices.put(vertex,va);
+			modCount++;
 		}
 	}
 
@@ -99,6 +103,7 @@ public class DirectedGraph<VertexType> extends AbstractGraph<VertexType> impleme
 			}
 
 			vertices.remove(vertex);
+			modCount++;
 		}
 	}
 
@@ -193,6 +198,42 @@ public class DirectedGraph<VertexType> extends AbstractGraph<VertexType> impleme
 
 		vaSource.outEdges.add(edge);
 		vaDest.inEdges.add(edge);
+		modCount++;
+	}
+
+	/**
+	 * Returns the number of structural modifications (i.e., additions or
+	 * removals of vertices or edges) that have been applied to the graph.
+	 * This can be used to determine whether data derived from the graph
+	 * is still up-to-date.
+	 *
+	 * @return the modification count.
+	 */
+	public int getModificationCount()
+	{
+		return modCount;
+	}
+
+	/**
+	 * Converts the graph into an immutable primitive representation. All
+	 * edges get the type 0.
+	 *
+	 * @return the frozen graph.
+	 */
+	public FrozenDirectedGraph<VertexType> freeze()
+	{
+		return FrozenDirectedGraph.create(this, null);
+	}
+
+	/**
+	 * Converts the graph into an immutable primitive representation.
+	 *
+	 * @param typeMapper determines the type of each edge.
+	 * @return the frozen graph.
+	 */
+	public FrozenDirectedGraph<VertexType> freeze(FrozenDirectedGraph.IEdgeTypeMapper<VertexType> typeMapper)
+	{
+		return FrozenDirectedGraph.create(this, typeMapper);
 	}
 
 	/**
@@ -221,6 +262,8 @@ public class DirectedGraph<VertexType> extends AbstractGraph<VertexType> impleme
 		if (vaSource == null || vaDest == null)
 			throw new IllegalArgumentException();
 
+		modCount++;
+
 //		System.out.println("start removing -->  ");
 		HashSet<Edge<VertexType>> deleteMe = new HashSet<Edge<VertexType>>();
 		for (Edge<VertexType> edge : vaSource.outEdges){
@@ -1113,6 +1156,7 @@ public class DirectedGraph<VertexType> extends AbstractGraph<VertexType> impleme
 				e.setSource(vertex1);
 
 			vertices.remove(vertex2);
+			modCount++;
 		}
 	}
 
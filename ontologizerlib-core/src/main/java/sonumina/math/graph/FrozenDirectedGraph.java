@@ -0,0 +1,353 @@
+package sonumina.math.graph;
+
+import java.io.Serializable;
+import java.util.Iterator;
+
+import sonumina.collections.IntMapper;
+
+/**
+ * An immutable, primitive representation of a {@link DirectedGraph}. The
+ * vertices are addressed by dense ints (in the iteration order of the source
+ * graph, i.e., the same indices as in {@link SlimDirectedGraphView}) and the
+ * edges are stored as int arrays in the compressed sparse row format. Each
+ * edge carries a relation type that is stored in a parallel byte array.
+ *
+ * In contrast to the source graph, traversing the frozen graph doesn't
+ * allocate any iterator or edge object. The order of the in and out edges of
+ * each vertex is preserved, so traversals visit the vertices in the same
+ * order as the corresponding traversals on the source graph.
+ *
+ * Use {@link DirectedGraph#freeze()} or
+ * {@link DirectedGraph#freeze(IEdgeTypeMapper)} to create an instance.
+ */
+public final class FrozenDirectedGraph<VertexType> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** A type mask that accepts all edge types */
+	public static final int ALL_TYPES = -1;
+
+	/**
+	 * This interface is used as a callback mechanism by the traversal methods.
+	 */
+	public static interface IIntVisitor
+	{
+		/**
+		 * Called for every vertex visited by the algorithm.
+		 *
+		 * @param vertex the index of the vertex that has been just visited.
+		 * @return false if algorithm should be stopped (i.e. no further
+		 *         calls to this method will be issued) otherwise true
+		 */
+		boolean visited(int vertex);
+	}
+
+	/**
+	 * Determines the relation type of an edge while the graph gets frozen.
+	 */
+	public static interface IEdgeTypeMapper<VertexType>
+	{
+		/**
+		 * @param edge
+		 * @return the type of the edge, must be in the range [0,31].
+		 */
+		byte getType(Edge<VertexType> edge);
+	}
+
+	private final IntMapper<VertexType> mapper;
+
+	/** Offsets into the inEdges and inTypes arrays */
+	private final int [] inOffsets;
+
+	/** The sources of the in-going edges of all vertices */
+	private final int [] inEdges;
+
+	/** The types of the in-going edges of all vertices */
+	private final byte [] inTypes;
+
+	/** Offsets into the outEdges and outTypes arrays */
+	private final int [] outOffsets;
+
+	/** The destinations of the outgoing edges of all vertices */
+	private final int [] outEdges;
+
+	/** The types of the outgoing edges of all vertices */
+	private final byte [] outTypes;
+
+	/** The modification count of the source graph at the time it was frozen */
+	private final int modCount;
+
+	private FrozenDirectedGraph(IntMapper<VertexType> mapper, int [] inOffsets, int [] inEdges, byte [] inTypes,
+			int [] outOffsets, int [] outEdges, byte [] outTypes, int modCount)
+	{
+		this.mapper = mapper;
+		this.inOffsets = inOffsets;
+		this.inEdges = inEdges;
+		this.inTypes = inTypes;
+		this.outOffsets = outOffsets;
+		this.outEdges = outEdges;
+		this.outTypes = outTypes;
+		this.modCount = modCount;
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int getNumberOfVertices()
+	{
+		return mapper.getSize();
+	}
+
+	/**
+	 * @return the number of edges.
+	 */
+	public int getNumberOfEdges()
+	{
+		return outEdges.length;
+	}
+
+	/**
+	 * Get the vertex with the given index.
+	 *
+	 * @param v
+	 * @return the vertex
+	 */
+	public VertexType getVertex(int v)
+	{
+		return mapper.get(v);
+	}
+
+	/**
+	 * Returns the index of the given vertex.
+	 *
+	 * @param vertex
+	 * @return the index or -1 if the vertex is not part of the graph.
+	 */
+	public int getVertexIndex(VertexType vertex)
+	{
+		return mapper.getIndex(vertex);
+	}
+
+	/**
+	 * @return the modification count of the source graph at the time the
+	 *  graph has been frozen.
+	 * @see DirectedGraph#getModificationCount()
+	 */
+	public int getModificationCount()
+	{
+		return modCount;
+	}
+
+	/**
+	 * @param v
+	 * @return the number of in-going edges of the vertex with index v.
+	 */
+	public int getInDegree(int v)
+	{
+		return inOffsets[v+1] - inOffsets[v];
+	}
+
+	/**
+	 * @param v
+	 * @return the number of outgoing edges of the vertex with index v.
+	 */
+	public int getOutDegree(int v)
+	{
+		return outOffsets[v+1] - outOffsets[v];
+	}
+
+	/**
+	 * @param v
+	 * @param k
+	 * @return the source of the k-th in-going edge of vertex v.
+	 */
+	public int getParent(int v, int k)
+	{
+		return inEdges[inOffsets[v] + k];
+	}
+
+	/**
+	 * @param v
+	 * @param k
+	 * @return the type of the k-th in-going edge of vertex v.
+	 */
+	public byte getInEdgeType(int v, int k)
+	{
+		return inTypes[inOffsets[v] + k];
+	}
+
+	/**
+	 * @param v
+	 * @param k
+	 * @return the destination of the k-th outgoing edge of vertex v.
+	 */
+	public int getChild(int v, int k)
+	{
+		return outEdges[outOffsets[v] + k];
+	}
+
+	/**
+	 * @param v
+	 * @param k
+	 * @return the type of the k-th outgoing edge of vertex v.
+	 */
+	public byte getOutEdgeType(int v, int k)
+	{
+		return outTypes[outOffsets[v] + k];
+	}
+
+	/**
+	 * Calls the visitor for the source of every in-going edge of the given vertex.
+	 *
+	 * @param v
+	 * @param visitor
+	 */
+	public void forEachParent(int v, IIntVisitor visitor)
+	{
+		for (int k=inOffsets[v];k<inOffsets[v+1];k++)
+			if (!visitor.visited(inEdges[k]))
+				return;
+	}
+
+	/**
+	 * Calls the visitor for the destination of every outgoing edge of the given vertex.
+	 *
+	 * @param v
+	 * @param visitor
+	 */
+	public void forEachChild(int v, IIntVisitor visitor)
+	{
+		for (int k=outOffsets[v];k<outOffsets[v+1];k++)
+			if (!visitor.visited(outEdges[k]))
+				return;
+	}
+
+	/**
+	 * Performs a breadth-first search onto the graph starting at a given
+	 * set of vertices. Vertices occurring in loops are visited only once.
+	 *
+	 * @param initial the indices of the vertices to start with.
+	 * @param againstFlow the bfs in done against the direction of the edges.
+	 * @param visitor the visitor that is called for every visited vertex including
+	 *        the initial ones.
+	 */
+	public void bfs(int [] initial, boolean againstFlow, IIntVisitor visitor)
+	{
+		bfs(initial, againstFlow, ALL_TYPES, visitor);
+	}
+
+	/**
+	 * Performs a breadth-first search onto the graph starting at a given
+	 * set of vertices. Only edges whose type is contained in the given
+	 * mask are followed. Vertices occurring in loops are visited only once.
+	 *
+	 * @param initial the indices of the vertices to start with.
+	 * @param againstFlow the bfs in done against the direction of the edges.
+	 * @param typeMask the mask of types to follow, bit t represents type t.
+	 * @param visitor the visitor that is called for every visited vertex including
+	 *        the initial ones.
+	 */
+	public void bfs(int [] initial, boolean againstFlow, int typeMask, IIntVisitor visitor)
+	{
+		int [] offsets = againstFlow ? inOffsets : outOffsets;
+		int [] edges = againstFlow ? inEdges : outEdges;
+		byte [] types = againstFlow ? inTypes : outTypes;
+
+		long [] visited = new long[(getNumberOfVertices() + 63) >>> 6];
+		int [] queue = new int[getNumberOfVertices()];
+		int head = 0;
+		int tail = 0;
+
+		for (int v : initial)
+		{
+			if ((visited[v >>> 6] & (1L << v)) != 0)
+				continue;
+			visited[v >>> 6] |= 1L << v;
+			queue[tail++] = v;
+			if (!visitor.visited(v))
+				return;
+		}
+
+		while (head < tail)
+		{
+			int v = queue[head++];
+			for (int k=offsets[v];k<offsets[v+1];k++)
+			{
+				if ((typeMask & (1 << types[k])) == 0)
+					continue;
+
+				int w = edges[k];
+				if ((visited[w >>> 6] & (1L << w)) != 0)
+					continue;
+				visited[w >>> 6] |= 1L << w;
+				queue[tail++] = w;
+				if (!visitor.visited(w))
+					return;
+			}
+		}
+	}
+
+	/**
+	 * Freeze the given graph.
+	 *
+	 * @param graph the graph to freeze
+	 * @param typeMapper determines the types of the edges. If null, all edges get type 0.
+	 * @return the frozen graph
+	 */
+	static <V> FrozenDirectedGraph<V> create(DirectedGraph<V> graph, IEdgeTypeMapper<V> typeMapper)
+	{
+		IntMapper<V> mapper = IntMapper.create(graph.getVertices(), graph.getNumberOfVertices());
+		int n = mapper.getSize();
+
+		int [] inOffsets = new int[n+1];
+		int [] outOffsets = new int[n+1];
+		for (int i=0;i<n;i++)
+		{
+			V v = mapper.get(i);
+			inOffsets[i+1] = inOffsets[i] + graph.getInDegree(v);
+			outOffsets[i+1] = outOffsets[i] + graph.getOutDegree(v);
+		}
+
+		int [] inEdges = new int[inOffsets[n]];
+		byte [] inTypes = new byte[inOffsets[n]];
+		int [] outEdges = new int[outOffsets[n]];
+		byte [] outTypes = new byte[outOffsets[n]];
+
+		int p = 0;
+		int c = 0;
+		for (int i=0;i<n;i++)
+		{
+			V v = mapper.get(i);
+			Iterator<Edge<V>> iter = graph.getInEdges(v);
+			while (iter.hasNext())
+			{
+				Edge<V> e = iter.next();
+				inEdges[p] = mapper.getIndex(e.getSource());
+				inTypes[p] = typeOf(typeMapper, e);
+				p++;
+			}
+			iter = graph.getOutEdges(v);
+			while (iter.hasNext())
+			{
+				Edge<V> e = iter.next();
+				outEdges[c] = mapper.getIndex(e.getDest());
+				outTypes[c] = typeOf(typeMapper, e);
+				c++;
+			}
+		}
+
+		return new FrozenDirectedGraph<V>(mapper, inOffsets, inEdges, inTypes, outOffsets, outEdges, outTypes,
+				graph.getModificationCount());
+	}
+
+	private static <V> byte typeOf(IEdgeTypeMapper<V> typeMapper, Edge<V> e)
+	{
+		if (typeMapper == null)
+			return 0;
+
+		byte type = typeMapper.getType(e);
+		if (type < 0 || type > 31)
+			throw new IllegalArgumentException("Edge type " + type + " is out of range");
+		return type;
+	}
+}
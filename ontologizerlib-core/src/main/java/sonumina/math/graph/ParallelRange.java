@@ -0,0 +1,78 @@
+package sonumina.math.graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Helper to process a range of indices in parallel using the fork/join
+ * framework. The range is split recursively until the chunks contain
+ * no more than a given number of indices.
+ */
+abstract class ParallelRange
+{
+	/** The default number of indices that are processed sequentially */
+	static final int DEFAULT_GRAIN = 256;
+
+	private final int grain;
+
+	ParallelRange()
+	{
+		this(DEFAULT_GRAIN);
+	}
+
+	ParallelRange(int grain)
+	{
+		this.grain = Math.max(1, grain);
+	}
+
+	/**
+	 * Process the given index. Invocations for different indices may run
+	 * concurrently.
+	 *
+	 * @param i
+	 */
+	abstract void process(int i);
+
+	/**
+	 * Process all indices in [from,to) using the given pool and wait
+	 * for the completion.
+	 *
+	 * @param pool
+	 * @param from
+	 * @param to
+	 */
+	void invoke(ForkJoinPool pool, int from, int to)
+	{
+		if (from >= to)
+			return;
+		pool.invoke(new Task(from, to));
+	}
+
+	private final class Task extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		Task(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from <= grain)
+			{
+				for (int i = from; i < to; i++)
+					process(i);
+				return;
+			}
+
+			int mid = (from + to) >>> 1;
+			invokeAll(new Task(from, mid), new Task(mid, to));
+		}
+	}
+}
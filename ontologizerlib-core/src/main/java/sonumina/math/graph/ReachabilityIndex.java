@@ -0,0 +1,266 @@
+package sonumina.math.graph;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import ontologizer.util.Util;
+
+/**
+ * An index that answers reachability queries on a directed acyclic graph in
+ * constant time. Depending on the given memory budget, the index is either
+ * a dense bit matrix (one ancestor bitset per vertex) or an open-addressing
+ * hash table of all (descendant, ancestor) pairs. The vertices are addressed
+ * via the indices of the view from which the index has been created.
+ *
+ * Use {@link #create(CSRDirectedGraphView, long)} or
+ * {@link #create(SlimDirectedGraphView, long)} to create an instance.
+ */
+public final class ReachabilityIndex implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The default memory budget in bytes */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	/** Marks empty slots in the pair table. Real keys are never negative. */
+	private static final long EMPTY = -1;
+
+	/** The number of vertices */
+	private int n;
+
+	/** Number of longs per row in the dense matrix */
+	private int words;
+
+	/** The dense matrix, row j contains the ancestors of j. Null if the pair table is used. */
+	private long [] bits;
+
+	/** The open-addressing table of (descendant,ancestor) pairs. Null if the dense matrix is used. */
+	private long [] pairs;
+
+	/** Mask to map hashes to slots of the pair table */
+	private int mask;
+
+	/**
+	 * Accessor to the ancestor rows of different views.
+	 */
+	private static interface IAncestorRows
+	{
+		int getNumberOfVertices();
+		int getNumberOfAncestors(int j);
+		int getAncestor(int j, int k);
+	}
+
+	private ReachabilityIndex()
+	{
+	}
+
+	/**
+	 * @return the number of vertices covered by the index.
+	 */
+	public int getNumberOfVertices()
+	{
+		return n;
+	}
+
+	/**
+	 * @return whether the index is represented as dense bit matrix.
+	 */
+	public boolean isDense()
+	{
+		return bits != null;
+	}
+
+	/**
+	 * @return the approximate amount of memory used by the index in bytes.
+	 */
+	public long getMemoryUsage()
+	{
+		if (bits != null) return bits.length * 8L;
+		return pairs.length * 8L;
+	}
+
+	/**
+	 * Determines whether node with the index i is an ancestor of node with index j.
+	 * Note that the ancestors of a given node include the node itself.
+	 *
+	 * @param i
+	 * @param j
+	 * @return true if the node with the index i is an ancestor
+	 * of the node with the index j, otherwise false.
+	 */
+	public boolean isAncestor(int i, int j)
+	{
+		if (i == j)
+			return true;
+
+		if (bits != null)
+			return (bits[j * words + (i >>> 6)] & (1L << i)) != 0;
+
+		long key = key(i, j);
+		int slot = hash(key) & mask;
+		long k;
+		while ((k = pairs[slot]) != EMPTY)
+		{
+			if (k == key)
+				return true;
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Determines whether the node with index i is a
+	 * descendant of the node with the index j.
+	 * Note that the descendants of a given node include the node itself.
+	 *
+	 * @param i
+	 * @param j
+	 * @return true if the node with the index i is a descendant
+	 * of the node with the index j, otherwise false.
+	 */
+	public boolean isDescendant(int i, int j)
+	{
+		return isAncestor(j, i);
+	}
+
+	private static long key(int ancestor, int descendant)
+	{
+		return ((long)descendant << 32) | ancestor;
+	}
+
+	/**
+	 * @param key
+	 * @return the hash
+	 */
+	private static int hash(long key)
+	{
+		return (int)Util.mix(key);
+	}
+
+	/**
+	 * Build the index from the given rows.
+	 *
+	 * @param rows
+	 * @param memoryBudget
+	 * @return the index or null if the budget is too small
+	 */
+	private static ReachabilityIndex create(IAncestorRows rows, long memoryBudget)
+	{
+		ReachabilityIndex idx = new ReachabilityIndex();
+		int n = idx.n = rows.getNumberOfVertices();
+
+		/* Prefer the dense representation if it fits */
+		int words = (n + 63) >>> 6;
+		long denseBytes = (long)n * words * 8;
+		if (denseBytes <= memoryBudget && (long)n * words <= Integer.MAX_VALUE)
+		{
+			idx.words = words;
+			idx.bits = new long[n * words];
+			for (int j=0;j<n;j++)
+			{
+				int base = j * words;
+				int num = rows.getNumberOfAncestors(j);
+				for (int k=0;k<num;k++)
+				{
+					int i = rows.getAncestor(j, k);
+					idx.bits[base + (i >>> 6)] |= 1L << i;
+				}
+			}
+			return idx;
+		}
+
+		/* Otherwise, put all non-reflexive pairs into a table with a load factor of at most 0.5 */
+		long numPairs = 0;
+		for (int j=0;j<n;j++)
+			numPairs += rows.getNumberOfAncestors(j);
+
+		long capacity = 16;
+		while (capacity < numPairs * 2)
+			capacity <<= 1;
+		if (capacity * 8 > memoryBudget || capacity > (1 << 30))
+			return null;
+
+		idx.pairs = new long[(int)capacity];
+		idx.mask = (int)capacity - 1;
+		Arrays.fill(idx.pairs, EMPTY);
+
+		for (int j=0;j<n;j++)
+		{
+			int num = rows.getNumberOfAncestors(j);
+			for (int k=0;k<num;k++)
+			{
+				int i = rows.getAncestor(j, k);
+				if (i == j) continue;
+
+				long key = key(i, j);
+				int slot = hash(key) & idx.mask;
+				while (idx.pairs[slot] != EMPTY && idx.pairs[slot] != key)
+					slot = (slot + 1) & idx.mask;
+				idx.pairs[slot] = key;
+			}
+		}
+		return idx;
+	}
+
+	/**
+	 * Create a reachability index for the given CSR view.
+	 *
+	 * @param csr the view of the graph
+	 * @param memoryBudget the maximum number of bytes the index may use.
+	 * @return the index or null if the index doesn't fit into the given budget.
+	 */
+	public static ReachabilityIndex create(final CSRDirectedGraphView<?> csr, long memoryBudget)
+	{
+		return create(new IAncestorRows()
+		{
+			@Override
+			public int getNumberOfVertices()
+			{
+				return csr.getNumberOfVertices();
+			}
+
+			@Override
+			public int getNumberOfAncestors(int j)
+			{
+				return csr.getNumberOfAncestors(j);
+			}
+
+			@Override
+			public int getAncestor(int j, int k)
+			{
+				return csr.ancestors[csr.ancestorOffsets[j] + k];
+			}
+		}, memoryBudget);
+	}
+
+	/**
+	 * Create a reachability index for the given slim view.
+	 *
+	 * @param slim the view of the graph
+	 * @param memoryBudget the maximum number of bytes the index may use.
+	 * @return the index or null if the index doesn't fit into the given budget.
+	 */
+	public static ReachabilityIndex create(final SlimDirectedGraphView<?> slim, long memoryBudget)
+	{
+		return create(new IAncestorRows()
+		{
+			@Override
+			public int getNumberOfVertices()
+			{
+				return slim.getNumberOfVertices();
+			}
+
+			@Override
+			public int getNumberOfAncestors(int j)
+			{
+				return slim.vertexAncestors[j].length;
+			}
+
+			@Override
+			public int getAncestor(int j, int k)
+			{
+				return slim.vertexAncestors[j][k];
+			}
+		}, memoryBudget);
+	}
+}
@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import sonumina.collections.IntMapper;
 import sonumina.math.graph.AbstractGraph.IVisitor;
@@ -36,6 +37,9 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 	 * Note that the array of descendants is sorted.*/
 	public int [][] vertexDescendants;
 
+	/** The optional reachability index used to answer isAncestor() and isDescendant() */
+	private ReachabilityIndex reachabilityIndex;
+
 	/**
 	 * Default constructor.
 	 */
@@ -104,6 +108,44 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 		return vertexArray;
 	}
 
+	/**
+	 * Sets the reachability index that is used to answer ancestor and
+	 * descendant queries. The index must have been built for a view
+	 * with the same vertex indices.
+	 *
+	 * @param reachabilityIndex the index or null to use the rows of this view.
+	 */
+	public void setReachabilityIndex(ReachabilityIndex reachabilityIndex)
+	{
+		if (reachabilityIndex != null && reachabilityIndex.getNumberOfVertices() != getNumberOfVertices())
+			throw new IllegalArgumentException("Reachability index doesn't match the view.");
+		this.reachabilityIndex = reachabilityIndex;
+	}
+
+	/**
+	 * @return the reachability index or null if none is present.
+	 */
+	public ReachabilityIndex getReachabilityIndex()
+	{
+		return reachabilityIndex;
+	}
+
+	/**
+	 * Creates a reachability index for this view and uses it for subsequent
+	 * ancestor and descendant queries.
+	 *
+	 * @param memoryBudget the maximum number of bytes the index may use.
+	 * @return whether the index could be created within the budget.
+	 */
+	public boolean createReachabilityIndex(long memoryBudget)
+	{
+		ReachabilityIndex idx = ReachabilityIndex.create(this, memoryBudget);
+		if (idx == null)
+			return false;
+		reachabilityIndex = idx;
+		return true;
+	}
+
 	/**
 	 * Determines whether node with the index i is an ancestor of node with index j.
 	 * Note that the ancestors of a given term include the given term itself.
@@ -115,6 +157,9 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 	 */
 	public boolean isAncestor(int i, int j)
 	{
+		if (reachabilityIndex != null)
+			return reachabilityIndex.isAncestor(i, j);
+
 		int [] ancs = vertexAncestors[j];
 		int r 		=  Arrays.binarySearch(ancs,i);
 		return r >= 0;
@@ -132,6 +177,9 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 	 */
 	public boolean isDescendant(int i, int j)
 	{
+		if (reachabilityIndex != null)
+			return reachabilityIndex.isAncestor(j, i);
+
 		int [] descs 	= vertexDescendants[j];
 		int r 			= Arrays.binarySearch(descs,i);
 		return r >= 0;
@@ -278,12 +326,57 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 	}
 
 	/**
-	 * Initialize the slim graph view from a directed graph.
+	 * Initialize the slim graph view from a directed graph. For acyclic graphs
+	 * the rows are sliced from a {@link CSRDirectedGraphView}, otherwise a
+	 * breadth-first search is done for every vertex.
 	 *
 	 * @param slim
 	 * @param graph
 	 */
 	private static <V> void init(SlimDirectedGraphView<V> slim, DirectedGraph<V> graph)
+	{
+		CSRDirectedGraphView<V> csr = CSRDirectedGraphView.createIfAcyclic(graph);
+		if (csr == null)
+		{
+			initByBFS(slim, graph);
+			return;
+		}
+
+		slim.mapper = csr.getMapper();
+		initFromCSR(slim, csr);
+	}
+
+	/**
+	 * Initialize the rows of the slim graph view from the given CSR view.
+	 *
+	 * @param slim
+	 * @param csr
+	 */
+	private static void initFromCSR(SlimDirectedGraphView<?> slim, CSRDirectedGraphView<?> csr)
+	{
+		int n = csr.getNumberOfVertices();
+
+		slim.vertexParents = new int[n][];
+		slim.vertexChildren = new int[n][];
+		slim.vertexAncestors = new int[n][];
+		slim.vertexDescendants = new int[n][];
+
+		for (int i=0;i<n;i++)
+		{
+			slim.vertexParents[i] = csr.getParents(i);
+			slim.vertexChildren[i] = csr.getChildren(i);
+			slim.vertexAncestors[i] = csr.getAncestors(i);
+			slim.vertexDescendants[i] = csr.getDescendants(i);
+		}
+	}
+
+	/**
+	 * Initialize the slim graph view from a directed graph that may contain cycles.
+	 *
+	 * @param slim
+	 * @param graph
+	 */
+	private static <V> void initByBFS(SlimDirectedGraphView<V> slim, DirectedGraph<V> graph)
 	{
 		int i;
 		IntMapper<V> mapper;
@@ -354,21 +447,22 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 	 */
 	private static <V> int[] createIndicesFromIter(IntMapper<V> vertex2Index, Iterator<V> iterator)
 	{
-		ArrayList<Integer> indicesList = new ArrayList<Integer>(10);
+		int [] indicesArray = new int[10];
+		int size = 0;
 
 		while (iterator.hasNext())
 		{
 			V p = iterator.next();
 			int idx = vertex2Index.getIndex(p);
 			if (idx != -1)
-				indicesList.add(idx);
+			{
+				if (size == indicesArray.length)
+					indicesArray = Arrays.copyOf(indicesArray, size * 2);
+				indicesArray[size++] = idx;
+			}
 		}
 
-		int [] indicesArray = new int[indicesList.size()];
-		for (int i=0;i<indicesList.size();i++)
-			indicesArray[i] = indicesList.get(i);
-
-		return indicesArray;
+		return Arrays.copyOf(indicesArray, size);
 	}
 
 	/**
@@ -384,6 +478,68 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 		return g;
 	}
 
+	/**
+	 * Create the slim view from the given CSR view. Both views share the same
+	 * vertex indices.
+	 *
+	 * @param csr
+	 * @return the slim graph corresponding to csr
+	 */
+	public static <V> SlimDirectedGraphView<V> create(CSRDirectedGraphView<V> csr)
+	{
+		SlimDirectedGraphView<V> g = new SlimDirectedGraphView<V>();
+		g.mapper = csr.getMapper();
+		initFromCSR(g, csr);
+		return g;
+	}
+
+	/**
+	 * Create the slim view from the given CSR view using the given pool
+	 * to copy the rows in parallel.
+	 *
+	 * @param csr
+	 * @param pool
+	 * @return the slim graph corresponding to csr
+	 */
+	public static <V> SlimDirectedGraphView<V> create(final CSRDirectedGraphView<V> csr, ForkJoinPool pool)
+	{
+		int n = csr.getNumberOfVertices();
+		final SlimDirectedGraphView<V> g = new SlimDirectedGraphView<V>();
+		g.mapper = csr.getMapper();
+		g.vertexParents = new int[n][];
+		g.vertexChildren = new int[n][];
+		g.vertexAncestors = new int[n][];
+		g.vertexDescendants = new int[n][];
+
+		new ParallelRange()
+		{
+			@Override
+			void process(int i)
+			{
+				g.vertexParents[i] = csr.getParents(i);
+				g.vertexChildren[i] = csr.getChildren(i);
+				g.vertexAncestors[i] = csr.getAncestors(i);
+				g.vertexDescendants[i] = csr.getDescendants(i);
+			}
+		}.invoke(pool, 0, n);
+		return g;
+	}
+
+	/**
+	 * Create the slim view from the given directed acyclic graph. The closures
+	 * and index arrays are computed in parallel using the given pool. The result
+	 * is identical to the one of {@link #create(DirectedGraph)}.
+	 *
+	 * @param graph the graph, which must not contain any cycle.
+	 * @param pool the pool used for the parallel construction.
+	 * @return the slim graph corresponding to graph
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static <V> SlimDirectedGraphView<V> create(DirectedGraph<V> graph, ForkJoinPool pool)
+	{
+		return create(CSRDirectedGraphView.create(graph, pool), pool);
+	}
+
 	/**
 	 * Simple functional interface to provide a map form one type to another
 	 */
@@ -409,6 +565,7 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 		vg.vertexChildren = kg.vertexChildren;
 		vg.vertexDescendants = kg.vertexDescendants;
 		vg.vertexParents = kg.vertexParents;
+		vg.reachabilityIndex = kg.reachabilityIndex;
 
 		vg.mapper = IntMapper.create(new Iterable<V>()
 		{
@@ -441,4 +598,20 @@ public final class SlimDirectedGraphView<VertexType> implements Serializable
 		}, kg.mapper.getSize());
 		return vg;
 	}
+
+	/**
+	 * Create the slim view from the given directed acyclic graph but apply a mapping
+	 * of the underlying type. The construction is done in parallel using the
+	 * given pool. The result is identical to the one of {@link #create(DirectedGraph, Map)}.
+	 *
+	 * @param graph the graph, which must not contain any cycle.
+	 * @param map mapping
+	 * @param pool the pool used for the parallel construction.
+	 * @return the slim graph view.
+	 * @throws IllegalArgumentException if the graph contains a cycle
+	 */
+	public static <K,V> SlimDirectedGraphView<V> create(DirectedGraph<K> graph, Map<K,V> map, ForkJoinPool pool)
+	{
+		return create(CSRDirectedGraphView.create(graph, map, pool), pool);
+	}
 }
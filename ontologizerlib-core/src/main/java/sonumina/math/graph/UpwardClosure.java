@@ -0,0 +1,149 @@
+package sonumina.math.graph;
+
+/**
+ * Determines the union of the ancestors of a set of vertices using the
+ * precomputed ancestor arrays of a {@link CSRDirectedGraphView}. The members
+ * are tracked in a dense bitset and a list, both of which are reused after
+ * {@link #clear()}, whose costs are proportional to the size of the
+ * previous union only.
+ *
+ * An instance is not thread-safe, use one instance per thread.
+ */
+public final class UpwardClosure<VertexType>
+{
+	/** The underlying view */
+	private final CSRDirectedGraphView<VertexType> view;
+
+	/** Bit v is set if the vertex with index v is a member */
+	private final long [] bits;
+
+	/** The indices of all members in the order of their addition */
+	private final int [] members;
+
+	/** The number of members */
+	private int size;
+
+	/**
+	 * Constructs an empty upward closure.
+	 *
+	 * @param view the view that defines the ancestors and the indices of the vertices.
+	 */
+	public UpwardClosure(CSRDirectedGraphView<VertexType> view)
+	{
+		this.view = view;
+		this.bits = new long[(view.getNumberOfVertices() + 63) >>> 6];
+		this.members = new int[view.getNumberOfVertices()];
+	}
+
+	/**
+	 * @return the underlying view.
+	 */
+	public CSRDirectedGraphView<VertexType> getView()
+	{
+		return view;
+	}
+
+	/**
+	 * Removes all members.
+	 */
+	public void clear()
+	{
+		for (int k=0;k<size;k++)
+			bits[members[k] >>> 6] = 0;
+		size = 0;
+	}
+
+	/**
+	 * Adds the vertex with the given index and all of its ancestors.
+	 *
+	 * @param v
+	 */
+	public void add(int v)
+	{
+		/* The vertex itself is an ancestor, so if it is a member all its ancestors are members as well */
+		if ((bits[v >>> 6] & (1L << v)) != 0)
+			return;
+
+		int [] ancestors = view.ancestors;
+		for (int k=view.ancestorOffsets[v];k<view.ancestorOffsets[v+1];k++)
+		{
+			int a = ancestors[k];
+			if ((bits[a >>> 6] & (1L << a)) == 0)
+			{
+				bits[a >>> 6] |= 1L << a;
+				members[size++] = a;
+			}
+		}
+	}
+
+	/**
+	 * Adds the vertices with the given indices and all of their ancestors.
+	 *
+	 * @param vertices
+	 */
+	public void add(int [] vertices)
+	{
+		for (int v : vertices)
+			add(v);
+	}
+
+	/**
+	 * Adds the given vertex and all of its ancestors.
+	 *
+	 * @param vertex
+	 * @return false if the vertex is not part of the view, in which case nothing is added.
+	 */
+	public boolean addVertex(VertexType vertex)
+	{
+		int v = view.getVertexIndex(vertex);
+		if (v == -1)
+			return false;
+		add(v);
+		return true;
+	}
+
+	/**
+	 * @param v
+	 * @return whether the vertex with the given index is a member.
+	 */
+	public boolean contains(int v)
+	{
+		return (bits[v >>> 6] & (1L << v)) != 0;
+	}
+
+	/**
+	 * @return the number of members.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param k
+	 * @return the index of the k-th member.
+	 */
+	public int get(int k)
+	{
+		return members[k];
+	}
+
+	/**
+	 * @param k
+	 * @return the k-th member.
+	 */
+	public VertexType getVertex(int k)
+	{
+		return view.getVertex(members[k]);
+	}
+
+	/**
+	 * @return the indices of all members.
+	 */
+	public int [] toArray()
+	{
+		int [] a = new int[size];
+		System.arraycopy(members, 0, a, 0, size);
+		return a;
+	}
+}
@@ -0,0 +1,222 @@
+package ontologizer.association;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+public class AssociationContainerTest
+{
+	private static String gafLine(String objectId, String symbol, String not, String term, String evidence, String aspect, String synonym)
+	{
+		return "DB\t" + objectId + "\t" + symbol + "\t" + not + "\t" + term + "\tPMID:1\t" + evidence + "\t\t" + aspect + "\tName\t" + synonym + "\tgene\ttaxon:1\t20100308\tDB";
+	}
+
+	private static void assertSameAssociation(Association expected, Association actual)
+	{
+		assertEquals(expected.getDB_Object(), actual.getDB_Object());
+		assertEquals(expected.getObjectSymbol(), actual.getObjectSymbol());
+		assertEquals(expected.getSynonym(), actual.getSynonym());
+		assertEquals(expected.getEvidence(), actual.getEvidence());
+		assertEquals(expected.getAspect(), actual.getAspect());
+		assertEquals(expected.getTermID(), actual.getTermID());
+		assertEquals(expected.hasNotQualifier(), actual.hasNotQualifier());
+	}
+
+	@Test
+	public void testSimple()
+	{
+		List<Association> assocs = new ArrayList<Association>();
+		assocs.add(Association.createFromGAFLine(gafLine("ID2", "G2", "", "GO:0000002", "IEA", "P", "SYN2")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID1", "G1", "NOT", "GO:0000001", "IDA", "F", "SYN1")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID1", "G1", "", "GO:0000001", "IEA", "F", "SYN1")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID1", "G1", "", "GO:0000003", "IEA", "C", "SYN1")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID4", "G4", "", "GO:0000003", "IEA", "C", "SYN4")));
+
+		HashMap<ByteString,ByteString> synonym2Item = new HashMap<ByteString,ByteString>();
+		synonym2Item.put(new ByteString("SYN1"), new ByteString("G1"));
+		HashMap<ByteString,ByteString> objectId2Item = new HashMap<ByteString,ByteString>();
+		objectId2Item.put(new ByteString("ID2"), new ByteString("G2"));
+		AnnotationContext ac = new AnnotationContext(Arrays.asList(new ByteString("G1"), new ByteString("G2"), new ByteString("G3")), synonym2Item, objectId2Item);
+		AssociationContainer container = new AssociationContainer(assocs, ac);
+
+		/* The duplicate of GO:0000001 and the association of the unknown G4 are skipped */
+		assertEquals(3, container.getNumberOfAssociations());
+
+		Gene2Associations g1 = container.get(new ByteString("SYN1"));
+		assertEquals(new ByteString("G1"), g1.name());
+		assertEquals(Arrays.asList(new TermID("GO:0000001"), new TermID("GO:0000003")), g1.getAssociations());
+		assertTrue(g1.containsID(new TermID("GO:0000003")));
+		assertFalse(g1.containsID(new TermID("GO:0000002")));
+
+		Iterator<Association> iter = g1.iterator();
+		assertSameAssociation(assocs.get(1), iter.next());
+		assertSameAssociation(assocs.get(3), iter.next());
+		assertFalse(iter.hasNext());
+
+		Gene2Associations g2 = container.get(new ByteString("ID2"));
+		assertEquals(new ByteString("G2"), g2.name());
+		assertSameAssociation(assocs.get(0), g2.iterator().next());
+
+		assertNull(container.get(new ByteString("G3")));
+		assertNull(container.get(new ByteString("G4")));
+		assertTrue(container.containsGene(new ByteString("G1")));
+		assertFalse(container.containsGene(new ByteString("G3")));
+
+		int gene = ac.mapSymbol(new ByteString("G1"));
+		int start = container.getAssociationsStart(gene);
+		assertEquals(2, container.getAssociationsEnd(gene) - start);
+		assertTrue(container.hasNotQualifier(start));
+		assertFalse(container.hasNotQualifier(start + 1));
+		assertEquals("IDA", container.getEvidenceCodes()[container.getEvidenceIndex(start)].toString());
+		assertEquals("C", container.getAspects()[container.getAspectIndex(start + 1)].toString());
+
+		Map<String,Integer> evidences = container.getAllEvidenceCodes();
+		assertEquals(2, evidences.size());
+		assertEquals(1, (int)evidences.get("IDA"));
+		assertEquals(2, (int)evidences.get("IEA"));
+	}
+
+	@Test
+	public void testMatchesGene2Associations()
+	{
+		Random rnd = new Random(42);
+		String [] evidences = new String[]{"IEA", "IDA", "TAS", "IMP"};
+		String [] aspects = new String[]{"P", "F", "C"};
+
+		List<ByteString> symbols = new ArrayList<ByteString>();
+		for (int i=0;i<50;i++)
+			symbols.add(new ByteString("G" + i));
+
+		List<Association> assocs = new ArrayList<Association>();
+		for (int i=0;i<2000;i++)
+		{
+			int gene = rnd.nextInt(60);
+			assocs.add(Association.createFromGAFLine(gafLine("ID" + gene, "G" + gene, rnd.nextInt(10) == 0 ? "NOT" : "",
+					String.format("GO:%07d", rnd.nextInt(100)), evidences[rnd.nextInt(evidences.length)],
+					aspects[rnd.nextInt(aspects.length)], "SYN" + gene)));
+		}
+
+		AnnotationContext ac = new AnnotationContext(symbols, null, null);
+		AssociationContainer container = new AssociationContainer(assocs, ac);
+
+		/* Build the expected gene associations as the row-based container did */
+		Map<ByteString,Gene2Associations> expected = new HashMap<ByteString,Gene2Associations>();
+		for (Association a : assocs)
+		{
+			if (ac.mapSymbol(a.getObjectSymbol()) == Integer.MAX_VALUE)
+				continue;
+			Gene2Associations g2a = expected.get(a.getObjectSymbol());
+			if (g2a == null)
+			{
+				g2a = new Gene2Associations(a.getObjectSymbol());
+				expected.put(a.getObjectSymbol(), g2a);
+			}
+			g2a.add(a);
+		}
+
+		int numGenes = 0;
+		int numAssocs = 0;
+		for (Gene2Associations g2a : container)
+		{
+			if (g2a == null)
+				continue;
+			numGenes++;
+
+			Gene2Associations e = expected.get(g2a.name());
+			assertEquals(e.getAssociations(), g2a.getAssociations());
+
+			Iterator<Association> iter = g2a.iterator();
+			for (Association a : e)
+			{
+				assertSameAssociation(a, iter.next());
+				numAssocs++;
+			}
+			assertFalse(iter.hasNext());
+		}
+		assertEquals(expected.size(), numGenes);
+		assertEquals(numAssocs, container.getNumberOfAssociations());
+	}
+
+	@Test
+	public void testBuilder()
+	{
+		List<Association> assocs = new ArrayList<Association>();
+		assocs.add(Association.createFromGAFLine(gafLine("ID2", "G2", "", "GO:0000002", "IEA", "P", "SYN2")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID1", "G1", "NOT", "GO:0000001", "IDA", "F", "SYN1")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID1", "G1", "", "GO:0000001", "IEA", "F", "SYN1")));
+		assocs.add(Association.createFromGAFLine(gafLine("ID4", "G4", "", "GO:0000004", "TAS", "C", "SYN4")));
+
+		AssociationContainer.Builder builder = new AssociationContainer.Builder();
+		for (Association a : assocs)
+			builder.add(a);
+		assertEquals(assocs.size(), builder.size());
+		for (int row=0;row<assocs.size();row++)
+			assertSameAssociation(assocs.get(row), builder.get(row));
+
+		AnnotationContext ac = new AnnotationContext(Arrays.asList(new ByteString("G1"), new ByteString("G2")), null, null);
+		AssociationContainer container = builder.build(ac);
+		assertEquals(2, container.getNumberOfAssociations());
+
+		/* The values of the skipped rows are not referenced */
+		assertEquals(Arrays.asList(new TermID("GO:0000001"), new TermID("GO:0000002")), Arrays.asList(container.getTermIDs()));
+		assertEquals(2, container.getEvidenceCodes().length);
+		assertNull(container.getAllEvidenceCodes().get("TAS"));
+		assertSameAssociation(assocs.get(1), container.get(new ByteString("G1")).iterator().next());
+	}
+
+	@Test
+	public void testManyEvidenceCodes()
+	{
+		/* More distinct evidence codes than fit into a byte */
+		AssociationContainer.Builder builder = new AssociationContainer.Builder();
+		List<ByteString> symbols = new ArrayList<ByteString>();
+		for (int i=0;i<300;i++)
+		{
+			builder.add(Association.createFromGAFLine(gafLine("ID" + i, "G" + i, "", "GO:0000001", "E" + i, i < 200 ? "P" : "F", "SYN" + i)));
+			symbols.add(new ByteString("G" + i));
+		}
+		assertEquals("E299", builder.get(299).getEvidence().toString());
+
+		AssociationContainer container = builder.build(new AnnotationContext(symbols, null, null));
+		assertEquals(300, container.getNumberOfAssociations());
+		assertEquals(300, container.getEvidenceCodes().length);
+		assertEquals(300, container.getAllEvidenceCodes().size());
+		assertEquals("E298", container.get(new ByteString("G298")).iterator().next().getEvidence().toString());
+		assertEquals("F", container.get(new ByteString("G298")).iterator().next().getAspect().toString());
+
+		int gene = container.getMapping().mapSymbol(new ByteString("G298"));
+		int row = container.getAssociationsStart(gene);
+		assertEquals("E298", container.getEvidenceCodes()[container.getEvidenceIndex(row)].toString());
+	}
+
+	@Test
+	public void testAddToView()
+	{
+		List<Association> assocs = new ArrayList<Association>();
+		assocs.add(Association.createFromGAFLine(gafLine("ID1", "G1", "", "GO:0000001", "IEA", "F", "SYN1")));
+		AnnotationContext ac = new AnnotationContext(Arrays.asList(new ByteString("G1")), null, null);
+		AssociationContainer container = new AssociationContainer(assocs, ac);
+
+		Gene2Associations g1 = container.get(new ByteString("G1"));
+		g1.add(Association.createFromGAFLine(gafLine("ID1", "G1", "", "GO:0000001", "IDA", "F", "SYN1")));
+		g1.add(Association.createFromGAFLine(gafLine("ID1", "G1", "", "GO:0000002", "IDA", "F", "SYN1")));
+		assertEquals(Arrays.asList(new TermID("GO:0000001"), new TermID("GO:0000002")), g1.getAssociations());
+
+		/* The container is not affected */
+		assertEquals(Arrays.asList(new TermID("GO:0000001")), container.get(new ByteString("G1")).getAssociations());
+	}
+}
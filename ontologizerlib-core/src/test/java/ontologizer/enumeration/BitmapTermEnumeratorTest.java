@@ -0,0 +1,109 @@
+package ontologizer.enumeration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import ontologizer.association.Gene2Associations;
+import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+public class BitmapTermEnumeratorTest
+{
+	@Test
+	public void testMatchesTermEnumerator()
+	{
+		InternalOntology internal = new InternalOntology();
+		TermEnumerator e = new TermEnumerator(internal.graph);
+		BitmapTermEnumerator be = new BitmapTermEnumerator(internal.graph);
+		for (Gene2Associations g2a : internal.assoc)
+		{
+			e.push(g2a);
+			be.push(g2a);
+		}
+
+		assertEquals(e.getTotalNumberOfAnnotatedTerms(), be.getTotalNumberOfAnnotatedTerms());
+		assertEquals(e.getAllAnnotatedTermsAsSet(), new HashSet<TermID>(be.getAllAnnotatedTermsAsList()));
+		assertEquals(e.getGenes(), new HashSet<ByteString>(be.getGenesAsList()));
+
+		for (TermID tid : e)
+		{
+			TermAnnotatedGenes expected = e.getAnnotatedGenes(tid);
+			TermAnnotatedGenes actual = be.getAnnotatedGenes(tid);
+			assertEquals(new HashSet<ByteString>(expected.directAnnotated), new HashSet<ByteString>(actual.directAnnotated));
+			assertEquals(new HashSet<ByteString>(expected.totalAnnotated), new HashSet<ByteString>(actual.totalAnnotated));
+
+			int t = be.getTermIndex(tid);
+			assertEquals(expected.directAnnotatedCount(), be.getDirectAnnotatedCount(t));
+			assertEquals(expected.totalAnnotatedCount(), be.getTotalAnnotatedCount(t));
+			assertTrue(be.isAnnotated(t));
+		}
+	}
+
+	@Test
+	public void testQueries()
+	{
+		InternalOntology internal = new InternalOntology();
+		BitmapTermEnumerator be = new BitmapTermEnumerator(internal.graph);
+		for (Gene2Associations g2a : internal.assoc)
+			be.push(g2a);
+
+		/* Pushing a gene again doesn't change anything */
+		int numGenes = be.getNumberOfGenes();
+		be.push(internal.assoc.iterator().next());
+		assertEquals(numGenes, be.getNumberOfGenes());
+
+		/* Every other gene */
+		long [] geneBits = new long[(numGenes + 63) >>> 6];
+		for (int g=0;g<numGenes;g+=2)
+			geneBits[g >>> 6] |= 1L << g;
+
+		for (int t : be.getAnnotatedTermIndices())
+		{
+			int [] total = be.getTotalAnnotatedGenes(t);
+			assertEquals(be.getTotalAnnotatedCount(t), total.length);
+
+			int [] direct = be.getDirectAnnotatedGenes(t);
+			assertEquals(be.getDirectAnnotatedCount(t), direct.length);
+			for (int i=1;i<direct.length;i++)
+				assertTrue(direct[i-1] < direct[i]);
+
+			int even = 0;
+			for (int i=0;i<total.length;i++)
+			{
+				if (i > 0) assertTrue(total[i-1] < total[i]);
+				assertTrue(be.isTotalAnnotated(t, total[i]));
+				if ((total[i] & 1) == 0) even++;
+			}
+			assertEquals(even, be.getTotalAnnotatedCount(t, geneBits));
+
+			long [] added = new long[geneBits.length];
+			be.addTotalAnnotatedGenes(t, geneBits, added);
+			assertEquals(even, be.getTotalAnnotatedCount(t, added));
+			for (int w=0;w<added.length;w++)
+				assertEquals(0, added[w] & ~geneBits[w]);
+
+			/* The totals of a term include the totals of its children */
+			for (int c : be.getView().getChildren(t))
+			{
+				for (int g : be.getTotalAnnotatedGenes(c))
+					assertTrue(be.isTotalAnnotated(t, g));
+			}
+		}
+
+		int root = be.getTermIndex(internal.graph.getRootTerm().getID());
+		assertEquals(numGenes, be.getTotalAnnotatedCount(root));
+		int [] all = new int[numGenes];
+		for (int g=0;g<numGenes;g++)
+			all[g] = g;
+		assertArrayEquals(all, be.getTotalAnnotatedGenes(root));
+
+		assertEquals(-1, be.getTermIndex(new TermID("GO:9999999")));
+		assertEquals(-1, be.getGeneIndex(new ByteString("unknown")));
+	}
+}
@@ -2,13 +2,17 @@ package ontologizer.enumeration;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.HashMap;
 import java.util.HashSet;
 
 import org.junit.Test;
 
+import ontologizer.association.Association;
 import ontologizer.association.Gene2Associations;
 import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.ontology.Term;
 import ontologizer.ontology.TermID;
+import ontologizer.ontology.Ontology.IVisitingGOVertex;
 import ontologizer.types.ByteString;
 
 public class GOTermEnumeratorTest
@@ -32,4 +36,42 @@ public class GOTermEnumeratorTest
 		TermAnnotatedGenes ag = annotatedGenes(e, "GO:0000001");
 		assertEquals(internal.assoc.getAllAnnotatedGenes(), new HashSet<ByteString>(ag.totalAnnotated));
 	}
+
+	@Test
+	public void testTotalAnnotationsMatchWalkToSource()
+	{
+		final InternalOntology internal = new InternalOntology();
+		TermEnumerator e = new TermEnumerator(internal.graph);
+		for (Gene2Associations g2a : internal.assoc)
+			e.push(g2a);
+
+		/* Determine the expected total annotations by walking to the source for each gene */
+		final HashMap<TermID,HashSet<ByteString>> expected = new HashMap<TermID,HashSet<ByteString>>();
+		for (final Gene2Associations g2a : internal.assoc)
+		{
+			HashSet<TermID> terms = new HashSet<TermID>();
+			for (Association a : g2a)
+				terms.add(a.getTermID());
+			internal.graph.walkToSource(terms, new IVisitingGOVertex()
+			{
+				@Override
+				public boolean visited(Term term)
+				{
+					HashSet<ByteString> genes = expected.get(term.getID());
+					if (genes == null)
+						expected.put(term.getID(), genes = new HashSet<ByteString>());
+					genes.add(g2a.name());
+					return true;
+				}
+			});
+		}
+
+		assertEquals(expected.keySet(), e.getAllAnnotatedTermsAsSet());
+		for (TermID t : e)
+		{
+			TermAnnotatedGenes ag = e.getAnnotatedGenes(t);
+			assertEquals(expected.get(t), new HashSet<ByteString>(ag.totalAnnotated));
+			assertEquals(ag.totalAnnotated.size(), new HashSet<ByteString>(ag.totalAnnotated).size());
+		}
+	}
 }
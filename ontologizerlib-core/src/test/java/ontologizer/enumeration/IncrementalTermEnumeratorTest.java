@@ -0,0 +1,107 @@
+package ontologizer.enumeration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import ontologizer.association.Gene2Associations;
+import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+public class IncrementalTermEnumeratorTest
+{
+	private static void assertMatches(InternalOntology internal, List<Gene2Associations> genes, IncrementalTermEnumerator ie)
+	{
+		TermEnumerator e = new TermEnumerator(internal.graph);
+		for (Gene2Associations g2a : genes)
+			e.push(g2a);
+
+		assertEquals(e.getTotalNumberOfAnnotatedTerms(), ie.getTotalNumberOfAnnotatedTerms());
+		assertEquals(e.getGenes(), new HashSet<ByteString>(ie.getGenesAsList()));
+
+		HashSet<TermID> terms = new HashSet<TermID>();
+		for (TermID tid : ie)
+			terms.add(tid);
+		assertEquals(e.getAllAnnotatedTermsAsSet(), terms);
+
+		for (TermID tid : e)
+		{
+			TermAnnotatedGenes expected = e.getAnnotatedGenes(tid);
+			TermAnnotatedGenes actual = ie.getAnnotatedGenes(tid);
+			assertEquals(new HashSet<ByteString>(expected.directAnnotated), new HashSet<ByteString>(actual.directAnnotated));
+			assertEquals(new HashSet<ByteString>(expected.totalAnnotated), new HashSet<ByteString>(actual.totalAnnotated));
+
+			int t = ie.getTermIndex(tid);
+			assertEquals(expected.directAnnotatedCount(), ie.getDirectAnnotatedCount(t));
+			assertEquals(expected.totalAnnotatedCount(), ie.getTotalAnnotatedCount(t));
+		}
+	}
+
+	@Test
+	public void testAddAndRemove()
+	{
+		InternalOntology internal = new InternalOntology();
+		IncrementalTermEnumerator ie = new IncrementalTermEnumerator(internal.graph);
+
+		List<Gene2Associations> genes = new ArrayList<Gene2Associations>();
+		for (Gene2Associations g2a : internal.assoc)
+		{
+			genes.add(g2a);
+			ie.addGene(g2a);
+		}
+		assertMatches(internal, genes, ie);
+
+		/* Remove every other gene */
+		List<Gene2Associations> remaining = new ArrayList<Gene2Associations>();
+		for (int i=0;i<genes.size();i++)
+		{
+			Gene2Associations g2a = genes.get(i);
+			if ((i & 1) == 0)
+			{
+				assertTrue(ie.removeGene(g2a.name()));
+				assertFalse(ie.containsGene(g2a.name()));
+			} else
+			{
+				remaining.add(g2a);
+			}
+		}
+		assertMatches(internal, remaining, ie);
+
+		/* Add them again */
+		for (int i=0;i<genes.size();i+=2)
+			ie.addGene(genes.get(i));
+		assertMatches(internal, genes, ie);
+	}
+
+	@Test
+	public void testReferenceCounting()
+	{
+		InternalOntology internal = new InternalOntology();
+		IncrementalTermEnumerator ie = new IncrementalTermEnumerator(internal.graph);
+		Gene2Associations g2a = internal.assoc.iterator().next();
+
+		assertTrue(ie.addGene(g2a));
+		int annotatedTerms = ie.getTotalNumberOfAnnotatedTerms();
+
+		/* Adding the gene again changes nothing */
+		assertFalse(ie.addGene(g2a));
+		assertEquals(annotatedTerms, ie.getTotalNumberOfAnnotatedTerms());
+		assertEquals(1, ie.getNumberOfGenes());
+
+		/* Only the second removal changes the counts */
+		assertFalse(ie.removeGene(g2a.name()));
+		assertTrue(ie.containsGene(g2a.name()));
+		assertTrue(ie.removeGene(g2a.name()));
+		for (int t=0;t<ie.getView().getNumberOfVertices();t++)
+			assertEquals(0, ie.getTotalAnnotatedCount(t));
+		assertEquals(0, ie.getTotalNumberOfAnnotatedTerms());
+		assertFalse(ie.removeGene(g2a.name()));
+	}
+}
@@ -0,0 +1,248 @@
+package sonumina.math.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import sonumina.math.graph.AbstractGraph.IVisitor;
+
+public class CSRDirectedGraphViewTest
+{
+	/**
+	 * Build a random DAG. Edges are always going from a vertex with
+	 * a lower number to a vertex with a higher number but vertices are
+	 * added in a shuffled order.
+	 *
+	 * @param n number of vertices
+	 * @param seed the random seed
+	 * @return the graph
+	 */
+	static DirectedGraph<TestData> randomDAG(int n, long seed)
+	{
+		Random rnd = new Random(seed);
+		DirectedGraph<TestData> graph = new DirectedGraph<TestData>();
+		List<TestData> vertices = new ArrayList<TestData>();
+		for (int i=0;i<n;i++)
+			vertices.add(new TestData("v" + i));
+
+		List<TestData> shuffled = new ArrayList<TestData>(vertices);
+		Collections.shuffle(shuffled, rnd);
+		for (TestData v : shuffled)
+			graph.addVertex(v);
+
+		for (int i=1;i<n;i++)
+		{
+			int numParents = 1 + rnd.nextInt(3);
+			for (int j=0;j<numParents;j++)
+			{
+				TestData p = vertices.get(rnd.nextInt(i));
+				if (!graph.hasEdge(p, vertices.get(i)))
+					graph.addEdge(new Edge<TestData>(p, vertices.get(i)));
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Determine the sorted closure of the given vertex by a bfs.
+	 */
+	private static int [] closureByBFS(DirectedGraph<TestData> graph, final CSRDirectedGraphView<TestData> csr, TestData v, boolean againstFlow)
+	{
+		final List<Integer> list = new ArrayList<Integer>();
+		graph.bfs(v, againstFlow, new IVisitor<TestData>()
+		{
+			@Override
+			public boolean visited(TestData vertex)
+			{
+				list.add(csr.getVertexIndex(vertex));
+				return true;
+			}
+		});
+		int [] a = new int[list.size()];
+		for (int i=0;i<a.length;i++)
+			a[i] = list.get(i);
+		Arrays.sort(a);
+		return a;
+	}
+
+	private static int [] indices(CSRDirectedGraphView<TestData> csr, Iterator<TestData> iter)
+	{
+		List<Integer> list = new ArrayList<Integer>();
+		while (iter.hasNext())
+			list.add(csr.getVertexIndex(iter.next()));
+		int [] a = new int[list.size()];
+		for (int i=0;i<a.length;i++)
+			a[i] = list.get(i);
+		return a;
+	}
+
+	@Test
+	public void testCSRMatchesBFS()
+	{
+		DirectedGraph<TestData> graph = randomDAG(300, 4711);
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		assertEquals(300, csr.getNumberOfVertices());
+
+		for (int i=0;i<csr.getNumberOfVertices();i++)
+		{
+			TestData v = csr.getVertex(i);
+			assertArrayEquals(indices(csr, graph.getParentNodes(v)), csr.getParents(i));
+			assertArrayEquals(indices(csr, graph.getChildNodes(v)), csr.getChildren(i));
+			assertArrayEquals(closureByBFS(graph, csr, v, true), csr.getAncestors(i));
+			assertArrayEquals(closureByBFS(graph, csr, v, false), csr.getDescendants(i));
+		}
+
+		/* Check the topological order */
+		int [] rank = new int[csr.getNumberOfVertices()];
+		for (int i=0;i<rank.length;i++)
+			rank[csr.topologicalOrder[i]] = i;
+		for (int i=0;i<rank.length;i++)
+			for (int p : csr.getParents(i))
+				assertTrue(rank[p] < rank[i]);
+	}
+
+	@Test
+	public void testSlimViewFromCSRIsIdentical()
+	{
+		DirectedGraph<TestData> graph = randomDAG(200, 11);
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		SlimDirectedGraphView<TestData> slim = SlimDirectedGraphView.create(graph);
+
+		for (int i=0;i<csr.getNumberOfVertices();i++)
+		{
+			assertEquals(csr.getVertex(i), slim.getVertex(i));
+			assertArrayEquals(csr.getAncestors(i), slim.vertexAncestors[i]);
+			assertArrayEquals(csr.getDescendants(i), slim.vertexDescendants[i]);
+			assertArrayEquals(csr.getParents(i), slim.vertexParents[i]);
+			assertArrayEquals(csr.getChildren(i), slim.vertexChildren[i]);
+		}
+	}
+
+	@Test
+	public void testIsAncestor()
+	{
+		DirectedGraph<TestData> graph = new DirectedGraph<TestData>();
+		TestData a = new TestData("a");
+		TestData b = new TestData("b");
+		TestData c = new TestData("c");
+		graph.addVertex(a);
+		graph.addVertex(b);
+		graph.addVertex(c);
+		graph.addEdge(new Edge<TestData>(a,b));
+		graph.addEdge(new Edge<TestData>(b,c));
+
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		int ai = csr.getVertexIndex(a);
+		int ci = csr.getVertexIndex(c);
+		assertTrue(csr.isAncestor(ai, ci));
+		assertTrue(csr.isAncestor(ci, ci));
+		assertFalse(csr.isAncestor(ci, ai));
+		assertTrue(csr.isDescendant(ci, ai));
+		assertFalse(csr.isDescendant(ai, ci));
+		assertEquals(3, csr.getNumberOfAncestors(ci));
+		assertEquals(3, csr.getNumberOfDescendants(ai));
+	}
+
+	@Test
+	public void testParallelConstructionIsIdentical()
+	{
+		DirectedGraph<TestData> graph = randomDAG(2000, 815);
+		CSRDirectedGraphView<TestData> seq = CSRDirectedGraphView.create(graph);
+
+		SlimDirectedGraphView.Map<TestData,String> map = new SlimDirectedGraphView.Map<TestData,String>()
+		{
+			@Override
+			public String map(TestData key)
+			{
+				return key.id;
+			}
+		};
+		SlimDirectedGraphView<String> seqMapped = SlimDirectedGraphView.create(graph, map);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			CSRDirectedGraphView<TestData> par = CSRDirectedGraphView.create(graph, pool);
+			assertArrayEquals(seq.topologicalOrder, par.topologicalOrder);
+			assertArrayEquals(seq.parentOffsets, par.parentOffsets);
+			assertArrayEquals(seq.parents, par.parents);
+			assertArrayEquals(seq.childOffsets, par.childOffsets);
+			assertArrayEquals(seq.children, par.children);
+			assertArrayEquals(seq.ancestorOffsets, par.ancestorOffsets);
+			assertArrayEquals(seq.ancestors, par.ancestors);
+			assertArrayEquals(seq.descendantOffsets, par.descendantOffsets);
+			assertArrayEquals(seq.descendants, par.descendants);
+			for (int i=0;i<seq.getNumberOfVertices();i++)
+				assertEquals(seq.getVertex(i), par.getVertex(i));
+
+			SlimDirectedGraphView<String> parMapped = SlimDirectedGraphView.create(graph, map, pool);
+			assertEquals(seqMapped.getNumberOfVertices(), parMapped.getNumberOfVertices());
+			for (int i=0;i<seqMapped.getNumberOfVertices();i++)
+			{
+				assertEquals(seqMapped.getVertex(i), parMapped.getVertex(i));
+				assertArrayEquals(seqMapped.vertexParents[i], parMapped.vertexParents[i]);
+				assertArrayEquals(seqMapped.vertexChildren[i], parMapped.vertexChildren[i]);
+				assertArrayEquals(seqMapped.vertexAncestors[i], parMapped.vertexAncestors[i]);
+				assertArrayEquals(seqMapped.vertexDescendants[i], parMapped.vertexDescendants[i]);
+			}
+		} finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testUpwardClosure()
+	{
+		DirectedGraph<TestData> graph = randomDAG(300, 99);
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		UpwardClosure<TestData> closure = new UpwardClosure<TestData>(csr);
+		Random rnd = new Random(1);
+
+		for (int t=0;t<20;t++)
+		{
+			closure.clear();
+			boolean [] expected = new boolean[csr.getNumberOfVertices()];
+			for (int k=0;k<5;k++)
+			{
+				int v = rnd.nextInt(csr.getNumberOfVertices());
+				closure.add(v);
+				for (int a : csr.getAncestors(v))
+					expected[a] = true;
+			}
+
+			int num = 0;
+			for (int i=0;i<expected.length;i++)
+			{
+				assertEquals(expected[i], closure.contains(i));
+				if (expected[i]) num++;
+			}
+			assertEquals(num, closure.size());
+			assertEquals(num, closure.toArray().length);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testCycleIsRejected()
+	{
+		DirectedGraph<TestData> graph = new DirectedGraph<TestData>();
+		TestData a = new TestData("a");
+		TestData b = new TestData("b");
+		graph.addVertex(a);
+		graph.addVertex(b);
+		graph.addEdge(new Edge<TestData>(a,b));
+		graph.addEdge(new Edge<TestData>(b,a));
+		CSRDirectedGraphView.create(graph);
+	}
+}
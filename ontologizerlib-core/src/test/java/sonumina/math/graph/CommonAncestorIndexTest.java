@@ -0,0 +1,142 @@
+package sonumina.math.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CommonAncestorIndexTest
+{
+	/**
+	 * Determine the mica by scanning all common ancestors.
+	 */
+	private static int micaByScan(CSRDirectedGraphView<TestData> csr, double [] ic, int i, int j)
+	{
+		int best = -1;
+		for (int a : csr.getAncestors(i))
+		{
+			if (!csr.isAncestor(a, j))
+				continue;
+			if (best == -1 || ic[a] > ic[best] || (ic[a] == ic[best] && a < best))
+				best = a;
+		}
+		return best;
+	}
+
+	private static void checkIndex(CSRDirectedGraphView<TestData> csr, double [] ic)
+	{
+		CommonAncestorIndex<TestData> idx = CommonAncestorIndex.create(csr, ic);
+		int n = csr.getNumberOfVertices();
+
+		int [] first = new int[n * n];
+		int [] second = new int[n * n];
+		for (int i=0;i<n;i++)
+		{
+			for (int j=0;j<n;j++)
+			{
+				first[i * n + j] = i;
+				second[i * n + j] = j;
+
+				int mica = micaByScan(csr, ic, i, j);
+				assertEquals(mica, idx.getMICA(i, j));
+
+				int [] common = idx.getCommonAncestors(i, j);
+				int num = 0;
+				for (int a : csr.getAncestors(i))
+					if (csr.isAncestor(a, j)) num++;
+				assertEquals(num, common.length);
+			}
+		}
+
+		int [] micas = idx.getMICA(first, second);
+		for (int k=0;k<micas.length;k++)
+			assertEquals(micaByScan(csr, ic, first[k], second[k]), micas[k]);
+	}
+
+	@Test
+	public void testMICA()
+	{
+		DirectedGraph<TestData> graph = CSRDirectedGraphViewTest.randomDAG(150, 3);
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+
+		/* Information content that increases along the edges as in an ontology */
+		Random rnd = new Random(7);
+		double [] ic = new double[csr.getNumberOfVertices()];
+		for (int i : csr.topologicalOrder)
+		{
+			for (int p : csr.getParents(i))
+				ic[i] = Math.max(ic[i], ic[p]);
+			ic[i] += rnd.nextInt(3);
+		}
+		checkIndex(csr, ic);
+
+		/* Arbitrary information content, also with an attached reachability index */
+		for (int i=0;i<ic.length;i++)
+			ic[i] = rnd.nextInt(10);
+		checkIndex(csr, ic);
+		assertEquals(true, csr.createReachabilityIndex(ReachabilityIndex.DEFAULT_MEMORY_BUDGET));
+		checkIndex(csr, ic);
+	}
+
+	@Test
+	public void testMaxMICA()
+	{
+		DirectedGraph<TestData> graph = CSRDirectedGraphViewTest.randomDAG(100, 5);
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		Random rnd = new Random(9);
+		double [] ic = new double[csr.getNumberOfVertices()];
+		for (int i=0;i<ic.length;i++)
+			ic[i] = rnd.nextDouble();
+		CommonAncestorIndex<TestData> idx = CommonAncestorIndex.create(csr, ic);
+
+		for (int t=0;t<50;t++)
+		{
+			int [] first = new int[1 + rnd.nextInt(4)];
+			int [] second = new int[1 + rnd.nextInt(4)];
+			for (int k=0;k<first.length;k++) first[k] = rnd.nextInt(ic.length);
+			for (int k=0;k<second.length;k++) second[k] = rnd.nextInt(ic.length);
+
+			double best = Double.NEGATIVE_INFINITY;
+			for (int i : first)
+				for (int j : second)
+				{
+					int m = idx.getMICA(i, j);
+					if (m != -1) best = Math.max(best, ic[m]);
+				}
+
+			int mica = idx.getMaxMICA(first, second);
+			if (mica == -1) assertEquals(Double.NEGATIVE_INFINITY, best, 0);
+			else assertEquals(best, ic[mica], 0);
+		}
+	}
+
+	@Test
+	public void testCommonAncestors()
+	{
+		DirectedGraph<TestData> graph = new DirectedGraph<TestData>();
+		TestData a = new TestData("a");
+		TestData b = new TestData("b");
+		TestData c = new TestData("c");
+		TestData d = new TestData("d");
+		graph.addVertex(a);
+		graph.addVertex(b);
+		graph.addVertex(c);
+		graph.addVertex(d);
+		graph.addEdge(new Edge<TestData>(a,b));
+		graph.addEdge(new Edge<TestData>(a,c));
+		graph.addEdge(new Edge<TestData>(b,d));
+
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		CommonAncestorIndex<TestData> idx = CommonAncestorIndex.create(csr, new double[]{0, 1, 1, 2});
+		int ai = csr.getVertexIndex(a);
+		int bi = csr.getVertexIndex(b);
+		int ci = csr.getVertexIndex(c);
+		int di = csr.getVertexIndex(d);
+		assertArrayEquals(new int[]{ai}, idx.getCommonAncestors(ci, di));
+		assertArrayEquals(new int[]{ai, bi}, idx.getCommonAncestors(bi, di));
+		assertEquals(bi, idx.getMICA(bi, di));
+		assertEquals(ai, idx.getMICA(ci, di));
+	}
+}
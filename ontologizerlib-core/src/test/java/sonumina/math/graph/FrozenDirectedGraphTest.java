@@ -0,0 +1,102 @@
+package sonumina.math.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import sonumina.math.graph.AbstractGraph.IVisitor;
+import sonumina.math.graph.FrozenDirectedGraph.IIntVisitor;
+
+public class FrozenDirectedGraphTest
+{
+	private static List<TestData> bfs(DirectedGraph<TestData> graph, List<TestData> initial, boolean againstFlow)
+	{
+		final List<TestData> visited = new ArrayList<TestData>();
+		graph.bfs(initial, againstFlow, new IVisitor<TestData>()
+		{
+			@Override
+			public boolean visited(TestData vertex)
+			{
+				visited.add(vertex);
+				return true;
+			}
+		});
+		return visited;
+	}
+
+	private static List<TestData> bfs(final FrozenDirectedGraph<TestData> frozen, List<TestData> initial, boolean againstFlow, int typeMask)
+	{
+		int [] initialIndices = new int[initial.size()];
+		for (int i=0;i<initialIndices.length;i++)
+			initialIndices[i] = frozen.getVertexIndex(initial.get(i));
+
+		final List<TestData> visited = new ArrayList<TestData>();
+		frozen.bfs(initialIndices, againstFlow, typeMask, new IIntVisitor()
+		{
+			@Override
+			public boolean visited(int vertex)
+			{
+				visited.add(frozen.getVertex(vertex));
+				return true;
+			}
+		});
+		return visited;
+	}
+
+	@Test
+	public void testBFSOrderMatchesGraph()
+	{
+		DirectedGraph<TestData> graph = CSRDirectedGraphViewTest.randomDAG(500, 42);
+		FrozenDirectedGraph<TestData> frozen = graph.freeze();
+		assertEquals(graph.getNumberOfVertices(), frozen.getNumberOfVertices());
+		assertEquals(graph.getNumberEdges(), frozen.getNumberOfEdges());
+
+		for (TestData v : graph)
+		{
+			List<TestData> initial = Arrays.asList(v);
+			assertEquals(bfs(graph, initial, true), bfs(frozen, initial, true, FrozenDirectedGraph.ALL_TYPES));
+			assertEquals(bfs(graph, initial, false), bfs(frozen, initial, false, FrozenDirectedGraph.ALL_TYPES));
+		}
+	}
+
+	@Test
+	public void testTypedEdges()
+	{
+		DirectedGraph<TestData> graph = new DirectedGraph<TestData>();
+		TestData a = new TestData("a");
+		TestData b = new TestData("b");
+		TestData c = new TestData("c");
+		TestData d = new TestData("d");
+		graph.addVertex(a);
+		graph.addVertex(b);
+		graph.addVertex(c);
+		graph.addVertex(d);
+		graph.addEdge(new Edge<TestData>(a,b));
+		graph.addEdge(new Edge<TestData>(b,d));
+		graph.addEdge(new Edge<TestData>(c,d));
+
+		final TestData typedSource = c;
+		FrozenDirectedGraph<TestData> frozen = graph.freeze(new FrozenDirectedGraph.IEdgeTypeMapper<TestData>()
+		{
+			@Override
+			public byte getType(Edge<TestData> edge)
+			{
+				return (byte)(edge.getSource() == typedSource ? 1 : 0);
+			}
+		});
+
+		int di = frozen.getVertexIndex(d);
+		assertEquals(2, frozen.getInDegree(di));
+		assertEquals(0, frozen.getInEdgeType(di, 0));
+		assertEquals(1, frozen.getInEdgeType(di, 1));
+
+		assertEquals(Arrays.asList(d, b, c, a), bfs(frozen, Arrays.asList(d), true, FrozenDirectedGraph.ALL_TYPES));
+		assertEquals(Arrays.asList(d, b, a), bfs(frozen, Arrays.asList(d), true, 1 << 0));
+		assertEquals(Arrays.asList(d, c), bfs(frozen, Arrays.asList(d), true, 1 << 1));
+		assertEquals(graph.getModificationCount(), frozen.getModificationCount());
+	}
+}
@@ -0,0 +1,98 @@
+package sonumina.math.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReachabilityIndexTest
+{
+	private static void checkIndex(CSRDirectedGraphView<TestData> csr, ReachabilityIndex idx)
+	{
+		int n = csr.getNumberOfVertices();
+		assertEquals(n, idx.getNumberOfVertices());
+
+		for (int i=0;i<n;i++)
+		{
+			for (int j=0;j<n;j++)
+			{
+				assertEquals(csr.isAncestor(i, j), idx.isAncestor(i, j));
+				assertEquals(csr.isDescendant(i, j), idx.isDescendant(i, j));
+			}
+		}
+	}
+
+	@Test
+	public void testDenseIndex()
+	{
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(CSRDirectedGraphViewTest.randomDAG(250, 1));
+		ReachabilityIndex idx = ReachabilityIndex.create(csr, ReachabilityIndex.DEFAULT_MEMORY_BUDGET);
+		assertNotNull(idx);
+		assertTrue(idx.isDense());
+		checkIndex(csr, idx);
+	}
+
+	/**
+	 * Build a binary tree with n vertices.
+	 */
+	private static DirectedGraph<TestData> binaryTree(int n)
+	{
+		DirectedGraph<TestData> graph = new DirectedGraph<TestData>();
+		TestData [] vertices = new TestData[n];
+		for (int i=0;i<n;i++)
+		{
+			vertices[i] = new TestData("v" + i);
+			graph.addVertex(vertices[i]);
+			if (i > 0)
+				graph.addEdge(new Edge<TestData>(vertices[(i - 1) / 2], vertices[i]));
+		}
+		return graph;
+	}
+
+	@Test
+	public void testPairIndex()
+	{
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(binaryTree(2500));
+
+		/* The dense matrix needs 2500 * 40 * 8 bytes, so this must use the pair table */
+		long budget = 2500 * 40 * 8 - 1;
+		ReachabilityIndex idx = ReachabilityIndex.create(csr, budget);
+		assertNotNull(idx);
+		assertFalse(idx.isDense());
+		assertTrue(idx.getMemoryUsage() <= budget);
+		checkIndex(csr, idx);
+
+		idx = ReachabilityIndex.create(csr, 1);
+		assertNull(idx);
+	}
+
+	@Test
+	public void testViewsUseIndex()
+	{
+		DirectedGraph<TestData> graph = CSRDirectedGraphViewTest.randomDAG(100, 3);
+		CSRDirectedGraphView<TestData> csr = CSRDirectedGraphView.create(graph);
+		SlimDirectedGraphView<TestData> slim = SlimDirectedGraphView.create(graph);
+
+		boolean [][] expected = new boolean[100][100];
+		for (int i=0;i<100;i++)
+			for (int j=0;j<100;j++)
+				expected[i][j] = slim.isAncestor(i, j);
+
+		assertTrue(slim.createReachabilityIndex(ReachabilityIndex.DEFAULT_MEMORY_BUDGET));
+		assertTrue(csr.createReachabilityIndex(ReachabilityIndex.DEFAULT_MEMORY_BUDGET));
+		assertNotNull(slim.getReachabilityIndex());
+
+		for (int i=0;i<100;i++)
+		{
+			for (int j=0;j<100;j++)
+			{
+				assertEquals(expected[i][j], slim.isAncestor(i, j));
+				assertEquals(expected[i][j], csr.isAncestor(i, j));
+				assertEquals(expected[j][i], slim.isDescendant(i, j));
+			}
+		}
+	}
+}
@@ -9,12 +9,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import ontologizer.association.AnnotationContext;
 import ontologizer.association.Association;
+import ontologizer.association.AssociationContainer;
 import ontologizer.io.linescanner.AbstractByteLineScanner;
 import ontologizer.io.obo.IParserInput;
+import ontologizer.io.obo.ParserInputProgress;
 import ontologizer.ontology.TermID;
 import ontologizer.ontology.TermMap;
 import ontologizer.types.ByteString;
@@ -51,7 +54,13 @@ public class AssociationParser
 	private boolean iterative;
 	private boolean parsingFinished;
 
-	/** Mapping from gene (or gene product) names to Association objects */
+	/** Executes the parsing stage of GAF files or null */
+	private ExecutorService executor;
+
+	/** The parsed associations, stored in columns */
+	private AssociationContainer.Builder associationRows;
+
+	/** The parsed associations as objects, materialized on demand */
 	private ArrayList<Association> associations;
 
 	/** The mapping */
@@ -150,7 +159,7 @@ public class AssociationParser
 		this.progress = progress;
 		this.iterative = iterative;
 
-		associations = new ArrayList<Association>();
+		associationRows = new AssociationContainer.Builder();
 
 		if (iterative)
 		{
@@ -160,6 +169,31 @@ public class AssociationParser
 		parse();
 	}
 
+	/**
+	 * Construct the association parser object and parse the given input.
+	 * GAF files are parsed in a pipeline, in which the given executor parses
+	 * and filters blocks of lines while the calling thread reads the input
+	 * and enters the associations into the annotation context. The result is
+	 * identical to the sequential parsing.
+	 *
+	 * @param input specifies wrapping input that contains association of genes to GO terms.
+	 * @param terms the container of the GO terms
+	 * @param names list of genes from which the associations should be gathered.
+	 *        If null all associations are taken,
+	 * @param evidences keep only the annotation whose evidence match the given ones. If null, all annotations are used.
+	 * @param progress
+	 * @param executor the executor that parses the lines. If null, the input is parsed sequentially.
+	 * @throws IOException
+	 */
+	public AssociationParser(IParserInput input, TermMap terms, HashSet<ByteString> names, Collection<String> evidences, IAssociationParserProgress progress, ExecutorService executor) throws IOException
+	{
+		this(input,terms,names,evidences,progress,true);
+
+		this.iterative = false;
+		this.executor = executor;
+		parse();
+	}
+
 	/**
 	 * Start or continue to parse the associations. This needs only to be called when the
 	 * parser was created with the iterative flag set to true.
@@ -211,10 +245,12 @@ public class AssociationParser
 			{
 				AffyParser ap = new AffyParser();
 				ap.parse(input,head,names,terms,progress);
-				associations = ap.getAssociations();
 				Set<ByteString> allSymbols = new HashSet<ByteString>();
-				for (Association a : associations)
+				for (Association a : ap.getAssociations())
+				{
+					associationRows.add(a);
 					allSymbols.add(a.getObjectSymbol());
+				}
 				annotationMapping = new AnnotationContext(allSymbols, ap.getSynonym2Symbol(), new HashMap<ByteString,ByteString>());
 				fileType = Type.AFFYMETRIX;
 			} else
@@ -229,7 +265,7 @@ public class AssociationParser
 		{
 			durationMillis = 1;
 		}
-		logger.log(Level.INFO, "Parsed annotations in " + durationMillis + " ms" + " (" + (associations.size() * 1000 / durationMillis) + " per second)");
+		logger.log(Level.INFO, "Parsed annotations in " + durationMillis + " ms" + " (" + ((long)associationRows.size() * 1000 / durationMillis) + " per second)");
 
 		parsingFinished = true;
 		return true;
@@ -276,7 +312,7 @@ public class AssociationParser
 					if (terms.get(tid) != null)
 					{
 						Association assoc = new Association(new ByteString(fields[0]),tid.toString());
-						associations.add(assoc);
+						associationRows.add(assoc);
 					} else
 					{
 						logger.warning(tid.toString() + " which annotates " + fields[0] + " not found");
@@ -324,13 +360,14 @@ public class AssociationParser
 	private void importGAF(IParserInput input, byte [] head, HashSet<ByteString> names, TermMap terms, Collection<String> evidences, IAssociationParserProgress progress) throws IOException
 	{
 		if (progress != null)
-			progress.init(input.getSize());
+			progress.init(ParserInputProgress.size(input));
 
 		GAFByteLineScanner ls = new GAFByteLineScanner(input, head, names, terms,getByteStringSetFromStringCollection(evidences), progress);
-		ls.scan();
+		if (executor != null) ls.scan(executor);
+		else ls.scan();
 
 		if (progress != null)
-			progress.update(input.getSize());
+			progress.update(ParserInputProgress.size(input));
 
 		logger.log(Level.INFO, ls.good + " associations parsed, " + ls.kept
 				+ " of which were kept while " + ls.bad
@@ -345,7 +382,7 @@ public class AssociationParser
 				+ " terms are directly associated to " + ls.getAnnotationContext().getSymbols().length
 				+ " items.");
 
-		associations = ls.getAssociations();
+		associationRows = ls.getAssociations();
 		annotationMapping = ls.getAnnotationContext();
 
 		if (symbolWarnings >= 1000)
@@ -355,13 +392,35 @@ public class AssociationParser
 	}
 
 	/**
+	 * Returns all parsed associations in the order of the input. The
+	 * associations are stored in columns during parsing, the objects are
+	 * created on the first call. Use {@link #getAssociationContainer()} in
+	 * order to avoid this.
+	 *
 	 * @return all parsed associations.
 	 */
 	public ArrayList<Association> getAssociations()
 	{
+		if (associations == null || associations.size() != associationRows.size())
+		{
+			associations = new ArrayList<Association>(associationRows.size());
+			for (int row=0;row<associationRows.size();row++)
+				associations.add(associationRows.get(row));
+		}
 		return associations;
 	}
 
+	/**
+	 * Builds the container of the parsed associations directly from the
+	 * columns, i.e., without creating an object for each association.
+	 *
+	 * @return the container.
+	 */
+	public AssociationContainer getAssociationContainer()
+	{
+		return associationRows.build(annotationMapping);
+	}
+
 	public AnnotationContext getAnnotationMapping()
 	{
 		return annotationMapping;
@@ -374,8 +433,8 @@ public class AssociationParser
 	{
 		ArrayList<ByteString> arrayList = new ArrayList<ByteString>();
 
-		for (Association assoc : associations)
-			arrayList.add(assoc.getObjectSymbol());
+		for (int row=0;row<associationRows.size();row++)
+			arrayList.add(associationRows.get(row).getObjectSymbol());
 
 		return arrayList;
 	}
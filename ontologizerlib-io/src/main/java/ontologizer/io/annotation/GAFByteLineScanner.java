@@ -1,16 +1,24 @@
 package ontologizer.io.annotation;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import ontologizer.association.AnnotationContext;
 import ontologizer.association.Association;
+import ontologizer.association.AssociationContainer;
 import ontologizer.io.linescanner.AbstractByteLineScanner;
+import ontologizer.io.linescanner.AbstractChunkedByteScanner;
+import ontologizer.io.obo.IFileParserInput;
 import ontologizer.io.obo.IParserInput;
+import ontologizer.io.obo.ParserInputProgress;
 import ontologizer.ontology.PrefixPool;
 import ontologizer.ontology.Term;
 import ontologizer.ontology.TermID;
@@ -29,6 +37,12 @@ class GAFByteLineScanner extends AbstractByteLineScanner
 
 	private static final byte PIPE = (byte)'|';
 
+	/** Number of bytes that are at least read before a block is parsed in the pipelined mode */
+	private static final int BLOCK_SIZE = 1 << 18;
+
+	/** Maximal number of blocks that wait for being merged */
+	private static final int MAX_PENDING_BLOCKS = 64;
+
 	/** The wrapped input */
 	private IParserInput input;
 
@@ -44,6 +58,12 @@ class GAFByteLineScanner extends AbstractByteLineScanner
 	/** Monitor progress */
 	private IAssociationParserProgress progress;
 
+	/** The beginning of the text that has already been consumed from the input */
+	private byte [] head;
+
+	/** Whether the leading lines that are not part of the head are still to be skipped */
+	private boolean skipLeadingLines;
+
 	private int lineno = 0;
 	private long millis = 0;
 	public int good = 0;
@@ -56,8 +76,8 @@ class GAFByteLineScanner extends AbstractByteLineScanner
 	private int symbolWarnings = 0;
 	private int dbObjectWarnings = 0;
 
-	/** Mapping from gene (or gene product) names to Association objects */
-	private ArrayList<Association> associations = new ArrayList<Association>();
+	/** The kept associations, stored in columns */
+	private AssociationContainer.Builder associations = new AssociationContainer.Builder();
 
 	/** Our prefix pool */
 	private PrefixPool prefixPool = new PrefixPool();
@@ -82,157 +102,276 @@ class GAFByteLineScanner extends AbstractByteLineScanner
 	/** Maps synonyms to item indices within the items list */
 	private ObjectIntHashMap<ByteString> synonymMap = new ObjectIntHashMap<ByteString>();
 
+	/** The block that holds the line that is parsed in the sequential mode */
+	private Block sequentialBlock = new Block();
+
 	public GAFByteLineScanner(IParserInput input, byte [] head, Set<ByteString> names, TermMap terms, Set<ByteString> evidences, IAssociationParserProgress progress)
 	{
-		super(input.inputStream());
+		super(input.inputStream(), getChannel(input));
 
-		push(head);
+		/* A mapped file is scanned from its beginning, which includes the head */
+		if (getChannel(input) == null)
+			push(head);
+		else
+			skipLeadingLines = true;
 
 		this.input = input;
 		this.names = names;
 		this.terms = terms;
 		this.evidences = evidences;
 		this.progress = progress;
+		this.head = head;
 	}
 
-	@Override
-	public boolean newLine(byte[] buf, int start, int len)
+	/**
+	 * @return the channel of the input if it can be mapped to memory, null otherwise.
+	 */
+	private static FileChannel getChannel(IParserInput input)
 	{
-		/* Progress stuff */
-		if (progress != null)
-		{
-			long newMillis = System.currentTimeMillis();
-			if (newMillis - millis > 250)
-			{
-				progress.update(input.getPosition());
-				millis = newMillis;
-			}
-		}
+		if (input instanceof IFileParserInput)
+			return ((IFileParserInput)input).getChannel();
+		return null;
+	}
 
-		lineno++;
+	/**
+	 * The associations of a block of consecutive lines that passed the first
+	 * stage, i.e., the parsing and filtering of the lines. This stage doesn't
+	 * modify the scanner, so several blocks can be parsed concurrently.
+	 */
+	private class Block
+	{
+		/** Number of lines of the block */
+		private int lines;
 
-		/* Ignore comments */
-		if (len < 1 || buf[start]=='!')
-			return true;
+		private int good;
+		private int skipped;
+		private int nots;
+		private int evidenceMismatch;
+		private int kept;
+		private int obsolete;
 
-		Association assoc = Association.createFromGAFLine(buf,start,len,prefixPool);
+		/** The associations that are kept */
+		private ArrayList<Association> associations = new ArrayList<Association>();
 
-		TermID currentTermID = assoc.getTermID();
+		/** The synonyms of the associations that are kept */
+		private ArrayList<ByteString []> synonyms = new ArrayList<ByteString []>();
 
-		Term currentTerm;
+		/** The line numbers within the block of the associations that are kept */
+		private int [] linenos = new int[16];
 
-		good++;
+		/** Terms that have been referenced */
+		private ArrayList<TermID> usedTerms = new ArrayList<TermID>();
 
-		if (assoc.hasNotQualifier())
+		private void clear()
 		{
-			skipped++;
-			nots++;
-			return true;
+			lines = good = skipped = nots = evidenceMismatch = kept = obsolete = 0;
+			associations.clear();
+			synonyms.clear();
+			usedTerms.clear();
 		}
 
-		if (evidences != null)
+		/**
+		 * Parses all lines of the given buffer.
+		 *
+		 * @param buf
+		 * @param len
+		 */
+		private void parse(byte [] buf, int len)
 		{
-			/*
-			 * Skip if evidence of the annotation was not supplied as
-			 * argument
-			 */
-			if (!evidences.contains(assoc.getEvidence()))
+			int lineStart = 0;
+			for (int pos=0;pos<len;pos++)
 			{
-				skipped++;
-				evidenceMismatch++;
-				return true;
+				if (buf[pos] == '\n')
+				{
+					parseLine(buf, lineStart, pos - lineStart);
+					lineStart = pos + 1;
+				}
 			}
+			if (lineStart < len)
+				parseLine(buf, lineStart, len - lineStart);
 		}
 
-		currentTerm = terms.get(currentTermID);
-		if (currentTerm == null)
+		/**
+		 * Parses a single line and keeps the association if it passes all
+		 * filters.
+		 *
+		 * @param buf
+		 * @param start
+		 * @param len
+		 */
+		private void parseLine(byte[] buf, int start, int len)
 		{
-			if (altTermID2Term == null)
+			lines++;
+
+			/* Ignore comments */
+			if (len < 1 || buf[start]=='!')
+				return;
+
+			Association assoc = Association.createFromGAFLine(buf,start,len,prefixPool);
+
+			TermID currentTermID = assoc.getTermID();
+
+			Term currentTerm;
+
+			good++;
+
+			if (assoc.hasNotQualifier())
 			{
-				/* Create the alternative ID to Term map */
-				altTermID2Term = new HashMap<TermID, Term>();
+				skipped++;
+				nots++;
+				return;
+			}
 
-				for (Term t : terms)
-					for (TermID altID : t.getAlternatives())
-						altTermID2Term.put(altID, t);
+			if (evidences != null)
+			{
+				/*
+				 * Skip if evidence of the annotation was not supplied as
+				 * argument
+				 */
+				if (!evidences.contains(assoc.getEvidence()))
+				{
+					skipped++;
+					evidenceMismatch++;
+					return;
+				}
 			}
 
-			/* Try to find the term among the alternative terms before giving up. */
-			currentTerm = altTermID2Term.get(currentTermID);
+			currentTerm = terms.get(currentTermID);
 			if (currentTerm == null)
 			{
-				logger.log(Level.WARNING, "Skipping association of the item \"{}\" t {} because the term was not found! "
-						+ "Are the OBO file and the association file both up-to-date?",
-						new Object[] { assoc.getObjectSymbol(), currentTermID });
-				skipped++;
-				return true;
+				/* Try to find the term among the alternative terms before giving up. */
+				currentTerm = getAltTermID2Term().get(currentTermID);
+				if (currentTerm == null)
+				{
+					logger.log(Level.WARNING, "Skipping association of the item \"{}\" t {} because the term was not found! "
+							+ "Are the OBO file and the association file both up-to-date?",
+							new Object[] { assoc.getObjectSymbol(), currentTermID });
+					skipped++;
+					return;
+				} else
+				{
+					/* Okay, found, so set the new attributes */
+					currentTermID = currentTerm.getID();
+					assoc.setTermID(currentTermID);
+				}
 			} else
 			{
-				/* Okay, found, so set the new attributes */
+				/* Reset the term id so a unique id is used */
 				currentTermID = currentTerm.getID();
 				assoc.setTermID(currentTermID);
 			}
-		} else
-		{
-			/* Reset the term id so a unique id is used */
-			currentTermID = currentTerm.getID();
-			assoc.setTermID(currentTermID);
-		}
 
-		usedGoTerms.add(currentTermID);
-
-		if (currentTerm.isObsolete())
-		{
-			logger.log(Level.WARNING, "Skipping association of the item \"{}\" t {} because the term was not found! "
-					+ "Are the OBO file and the association file both up-to-date?",
-					new Object[] { assoc.getObjectSymbol(), currentTermID });
-			skipped++;
-			obsolete++;
-			return true;
-		}
+			usedTerms.add(currentTermID);
 
-		ByteString[] synonyms;
+			if (currentTerm.isObsolete())
+			{
+				logger.log(Level.WARNING, "Skipping association of the item \"{}\" t {} because the term was not found! "
+						+ "Are the OBO file and the association file both up-to-date?",
+						new Object[] { assoc.getObjectSymbol(), currentTermID });
+				skipped++;
+				obsolete++;
+				return;
+			}
 
-		/* populate synonym string field */
-		if (assoc.getSynonym() != null && assoc.getSynonym().length() > 2)
-		{
-			/* Note that there can be multiple synonyms, separated by a pipe */
-			synonyms = assoc.getSynonym().split(PIPE);
-		} else
-			synonyms = null;
+			ByteString[] synonyms;
 
-		if (names != null)
-		{
-			/* We are only interested in associations to given genes */
-			boolean keep = false;
+			/* populate synonym string field */
+			if (assoc.getSynonym() != null && assoc.getSynonym().length() > 2)
+			{
+				/* Note that there can be multiple synonyms, separated by a pipe */
+				synonyms = assoc.getSynonym().split(PIPE);
+			} else
+				synonyms = null;
 
-			/* Check if synonyms are contained */
-			if (synonyms != null)
+			if (names != null)
 			{
-				for (int i = 0; i < synonyms.length; i++)
+				/* We are only interested in associations to given genes */
+				boolean keep = false;
+
+				/* Check if synonyms are contained */
+				if (synonyms != null)
 				{
-					if (names.contains(synonyms[i]))
+					for (int i = 0; i < synonyms.length; i++)
 					{
-						keep = true;
-						break;
+						if (names.contains(synonyms[i]))
+						{
+							keep = true;
+							break;
+						}
 					}
 				}
-			}
 
-			if (keep || names.contains(assoc.getObjectSymbol()) || names.contains(assoc.getDB_Object()))
-			{
-				kept++;
+				if (keep || names.contains(assoc.getObjectSymbol()) || names.contains(assoc.getDB_Object()))
+				{
+					kept++;
+				} else
+				{
+					skipped++;
+					return;
+				}
 			} else
 			{
-				skipped++;
-				return true;
+				kept++;
 			}
-		} else
+
+			if (associations.size() == linenos.length)
+				linenos = Arrays.copyOf(linenos, linenos.length * 2);
+			linenos[associations.size()] = lines;
+			associations.add(assoc);
+			this.synonyms.add(synonyms);
+		}
+	}
+
+	/**
+	 * @return the map from alternative term ids to terms, which is created on demand.
+	 */
+	private synchronized HashMap<TermID, Term> getAltTermID2Term()
+	{
+		if (altTermID2Term == null)
 		{
-			kept++;
+			/* Create the alternative ID to Term map */
+			altTermID2Term = new HashMap<TermID, Term>();
+
+			for (Term t : terms)
+				for (TermID altID : t.getAlternatives())
+					altTermID2Term.put(altID, t);
 		}
+		return altTermID2Term;
+	}
 
-		/* Add the Association to ArrayList */
+	/**
+	 * The second stage, i.e., enter the associations of the given block and
+	 * their objects into the maps. The blocks must be merged in the order of
+	 * the lines.
+	 *
+	 * @param block
+	 */
+	private void merge(Block block)
+	{
+		good += block.good;
+		skipped += block.skipped;
+		nots += block.nots;
+		evidenceMismatch += block.evidenceMismatch;
+		kept += block.kept;
+		obsolete += block.obsolete;
+		usedGoTerms.addAll(block.usedTerms);
+
+		for (int k=0;k<block.associations.size();k++)
+			addAssociation(block.associations.get(k), block.synonyms.get(k), lineno + block.linenos[k]);
+
+		lineno += block.lines;
+	}
+
+	/**
+	 * Adds the given association and enters its object into the maps.
+	 *
+	 * @param assoc
+	 * @param synonyms
+	 * @param lineno the line of the association, used for warnings.
+	 */
+	private void addAssociation(Association assoc, ByteString [] synonyms, int lineno)
+	{
+		/* Add the Association to the columns */
 		associations.add(assoc);
 
 		/* And throw them in item buckets */
@@ -286,9 +425,96 @@ class GAFByteLineScanner extends AbstractByteLineScanner
 			for (ByteString synonym : synonyms)
 				synonymMap.put(synonym, objectIndex);
 		}
+	}
+
+	/**
+	 * Issue a progress report.
+	 */
+	private void updateProgress()
+	{
+		if (progress != null)
+		{
+			long newMillis = System.currentTimeMillis();
+			if (newMillis - millis > 250)
+			{
+				progress.update(ParserInputProgress.position(input));
+				millis = newMillis;
+			}
+		}
+	}
+
+	@Override
+	public boolean newLine(byte[] buf, int start, int len)
+	{
+		updateProgress();
+
+		/* Skip the lines that precede the head, see AssociationParser */
+		if (skipLeadingLines)
+		{
+			if (len == 0 || buf[start] == '#')
+				return true;
+			skipLeadingLines = false;
+		}
+
+		sequentialBlock.clear();
+		sequentialBlock.parseLine(buf, start, len);
+		merge(sequentialBlock);
 		return true;
 	}
 
+	/**
+	 * Scans the input in a pipeline. The calling thread reads the input and
+	 * cuts it into blocks of whole lines, the blocks are parsed and filtered
+	 * by the executor and finally, the calling thread enters the
+	 * associations of the blocks into the maps in the order of the blocks.
+	 * The result is identical to the one of {@link #scan()}.
+	 *
+	 * @param executor
+	 * @throws IOException
+	 */
+	public void scan(ExecutorService executor) throws IOException
+	{
+		new BlockScanner().scan(input.inputStream(), head, executor);
+	}
+
+	/**
+	 * Cuts the input into blocks of whole lines and merges the blocks
+	 * that have been parsed by the executor.
+	 */
+	private class BlockScanner extends AbstractChunkedByteScanner<Block>
+	{
+		public BlockScanner()
+		{
+			super(BLOCK_SIZE, MAX_PENDING_BLOCKS);
+		}
+
+		@Override
+		protected int findChunkEnd(byte [] buf, int len)
+		{
+			/* Cut after the last complete line */
+			int end = len;
+			while (end > 0 && buf[end - 1] != '\n')
+				end--;
+			return end;
+		}
+
+		@Override
+		protected Block parse(byte [] chunk)
+		{
+			Block block = new Block();
+			block.parse(chunk, chunk.length);
+			return block;
+		}
+
+		@Override
+		protected boolean collect(Block block)
+		{
+			merge(block);
+			updateProgress();
+			return true;
+		}
+	}
+
 	/**
 	 * @return the number of terms used by the import.
 	 */
@@ -297,7 +523,10 @@ class GAFByteLineScanner extends AbstractByteLineScanner
 		return usedGoTerms.size();
 	}
 
-	public ArrayList<Association> getAssociations()
+	/**
+	 * @return the kept associations.
+	 */
+	public AssociationContainer.Builder getAssociations()
 	{
 		return associations;
 	}
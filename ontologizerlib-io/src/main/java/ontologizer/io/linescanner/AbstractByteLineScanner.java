@@ -2,10 +2,14 @@ package ontologizer.io.linescanner;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * This is a simple class that can be used to read an input stream
- * in byte representation in a line-based manner.
+ * in byte representation in a line-based manner. If a channel of an
+ * uncompressed file is available, the file can be mapped to memory
+ * instead, see {@link #AbstractByteLineScanner(InputStream, FileChannel)}.
  *
  * @author Sebastian Bauer
  */
@@ -21,13 +25,65 @@ abstract public class AbstractByteLineScanner
 	private byte [] pushedBytes;
 	private int pushedCurrent = -1;
 
+	/** The channel to be mapped or null */
+	private FileChannel fc;
+
 	public AbstractByteLineScanner(InputStream is)
 	{
 		this.is = is;
 	}
 
+	/**
+	 * Constructs a scanner that maps the given channel to memory if it is not
+	 * null. Otherwise, the stream is read. Note that in the former case, the
+	 * lines are still copied as they are handed over as byte arrays. Use
+	 * {@link AbstractMappedByteLineScanner} directly to avoid that.
+	 *
+	 * Pushing bytes and retrieving the available bytes after an abort is
+	 * supported only if the stream is read.
+	 *
+	 * @param is the stream to be read if the channel is null.
+	 * @param fc the channel of an uncompressed file or null.
+	 */
+	public AbstractByteLineScanner(InputStream is, FileChannel fc)
+	{
+		this.is = is;
+		this.fc = fc;
+	}
+
+	/**
+	 * Scans the channel by mapping it to memory.
+	 *
+	 * @throws IOException
+	 */
+	private void scanMapped() throws IOException
+	{
+		if (pushedBytes != null)
+			throw new IllegalStateException("push() is not supported for mapped channels");
+
+		AbstractMappedByteLineScanner mapped = new AbstractMappedByteLineScanner(fc)
+		{
+			@Override
+			public boolean newLine(ByteBuffer buf, int start, int len)
+			{
+				if (len > byteBuf.length)
+					byteBuf = new byte[Math.max(len, byteBuf.length * 2)];
+				buf.position(start);
+				buf.get(byteBuf, 0, len);
+				return AbstractByteLineScanner.this.newLine(byteBuf, 0, len);
+			}
+		};
+		mapped.scan();
+	}
+
 	public void scan() throws IOException
 	{
+		if (fc != null)
+		{
+			scanMapped();
+			return;
+		}
+
 		int read;
 		int read_offset = 0;
 
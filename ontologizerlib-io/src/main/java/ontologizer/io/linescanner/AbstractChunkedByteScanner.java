@@ -0,0 +1,199 @@
+package ontologizer.io.linescanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Scans an input stream in a pipeline. The calling thread reads the input
+ * and cuts it into chunks at positions determined by
+ * {@link #findChunkEnd(byte[], int)}, the chunks are parsed by an executor
+ * and finally, the calling thread collects the results in the order of the
+ * chunks.
+ *
+ * @param <T> the type of the result of parsing a chunk.
+ */
+abstract public class AbstractChunkedByteScanner<T>
+{
+	/** Number of bytes that are at least read before a chunk is parsed */
+	private final int chunkSize;
+
+	/** Maximal number of chunks that wait for being collected */
+	private final int maxPendingChunks;
+
+	/**
+	 * Constructs the scanner.
+	 *
+	 * @param chunkSize the minimal number of bytes that are read before a
+	 *  chunk is cut.
+	 * @param maxPendingChunks the maximal number of chunks that wait for
+	 *  being collected.
+	 */
+	public AbstractChunkedByteScanner(int chunkSize, int maxPendingChunks)
+	{
+		this.chunkSize = chunkSize;
+		this.maxPendingChunks = maxPendingChunks;
+	}
+
+	/**
+	 * Determines where the chunk ends, i.e., the number of bytes of the
+	 * given buffer that can be parsed independently of the bytes that
+	 * follow.
+	 *
+	 * @param buf the buffer.
+	 * @param len the number of valid bytes in the buffer.
+	 * @return the end of the chunk or 0 if the buffer doesn't contain a
+	 *  complete chunk.
+	 */
+	protected abstract int findChunkEnd(byte [] buf, int len);
+
+	/**
+	 * Parses the given chunk. Called by the threads of the executor unless
+	 * {@link #parseImmediately(int)} says otherwise.
+	 *
+	 * @param chunk the bytes of the chunk.
+	 * @return the result.
+	 */
+	protected abstract T parse(byte [] chunk);
+
+	/**
+	 * Collects the result of a chunk. Called by the scanning thread in the
+	 * order of the chunks.
+	 *
+	 * @param result
+	 * @return false if the scan should be aborted.
+	 * @throws IOException
+	 */
+	protected abstract boolean collect(T result) throws IOException;
+
+	/**
+	 * Returns whether the chunk of the given index shall be parsed by the
+	 * scanning thread rather than by the executor, e.g., because it defines
+	 * a state that the following chunks depend on.
+	 *
+	 * @param chunkIndex the index of the chunk.
+	 * @return whether the chunk is parsed immediately.
+	 */
+	protected boolean parseImmediately(int chunkIndex)
+	{
+		return false;
+	}
+
+	/**
+	 * Scans the given stream.
+	 *
+	 * @param is the stream.
+	 * @param head bytes that precede the stream, e.g., bytes that have been
+	 *  read already in order to detect the format. May be null.
+	 * @param executor the executor that parses the chunks.
+	 * @throws IOException
+	 */
+	public void scan(InputStream is, byte [] head, ExecutorService executor) throws IOException
+	{
+		ArrayDeque<Future<T>> pending = new ArrayDeque<Future<T>>();
+		int headLength = head != null ? head.length : 0;
+		byte [] buf = new byte[Math.max(chunkSize, headLength * 2)];
+		if (head != null)
+			System.arraycopy(head, 0, buf, 0, headLength);
+		int filled = headLength;
+		int chunkIndex = 0;
+		boolean eof = false;
+
+		try
+		{
+			while (!pending.isEmpty() || !eof)
+			{
+				if (!eof)
+				{
+					while (filled < buf.length)
+					{
+						int read = is.read(buf, filled, buf.length - filled);
+						if (read < 0)
+						{
+							eof = true;
+							break;
+						}
+						filled += read;
+					}
+
+					int end = eof ? filled : findChunkEnd(buf, filled);
+					if (end == 0 && !eof)
+					{
+						/* The buffer doesn't contain a complete chunk, so read more */
+						buf = Arrays.copyOf(buf, buf.length * 2);
+						continue;
+					}
+
+					if (end > 0)
+					{
+						final byte [] chunk = Arrays.copyOf(buf, end);
+						System.arraycopy(buf, end, buf, 0, filled - end);
+						filled -= end;
+
+						Callable<T> task = new Callable<T>()
+						{
+							@Override
+							public T call()
+							{
+								return parse(chunk);
+							}
+						};
+
+						if (parseImmediately(chunkIndex++))
+						{
+							FutureTask<T> immediate = new FutureTask<T>(task);
+							immediate.run();
+							pending.add(immediate);
+						} else
+						{
+							pending.add(executor.submit(task));
+						}
+					}
+				}
+
+				/* Collect the chunks in order */
+				while (!pending.isEmpty() && (eof || pending.size() > maxPendingChunks || pending.peek().isDone()))
+				{
+					if (!collect(get(pending.poll())))
+						return;
+				}
+			}
+		} finally
+		{
+			for (Future<T> f : pending)
+				f.cancel(true);
+		}
+	}
+
+	/**
+	 * Waits for the given chunk.
+	 *
+	 * @param f
+	 * @return the result of the chunk.
+	 * @throws IOException
+	 */
+	private static <T> T get(Future<T> f) throws IOException
+	{
+		try
+		{
+			return f.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing");
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package ontologizer.io.linescanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A line scanner for local uncompressed files. Unlike
+ * {@link AbstractByteLineScanner}, the file is mapped to memory and the lines
+ * are handed over as slices of the mapping, i.e., without any copying.
+ *
+ * Files larger than 2 GB are mapped in several windows. A line must not
+ * exceed the size of a window.
+ */
+abstract public class AbstractMappedByteLineScanner
+{
+	/** The default size of a window */
+	private static final int WINDOW_SIZE = 1 << 30;
+
+	/** The number of bytes after which the position of the channel is updated */
+	private static final int CHANNEL_UPDATE_INTERVAL = 1 << 20;
+
+	private FileChannel fc;
+
+	private int windowSize;
+
+	/** The offset of the current line or of the first unscanned byte */
+	private long position;
+
+	/**
+	 * Constructs a scanner for the given channel.
+	 *
+	 * @param fc the channel to be scanned. Its position is advanced during the
+	 *  scan, so it can be used to monitor the progress.
+	 */
+	public AbstractMappedByteLineScanner(FileChannel fc)
+	{
+		this(fc, WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructs a scanner for the given channel with the given window size.
+	 *
+	 * @param fc
+	 * @param windowSize
+	 */
+	AbstractMappedByteLineScanner(FileChannel fc, int windowSize)
+	{
+		this.fc = fc;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Scan the channel from the beginning.
+	 *
+	 * @throws IOException if the channel cannot be mapped or a line exceeds
+	 *  the window size.
+	 */
+	public void scan() throws IOException
+	{
+		long size = fc.size();
+		long nextChannelUpdate = CHANNEL_UPDATE_INTERVAL;
+
+		position = 0;
+		while (position < size)
+		{
+			long windowStart = position;
+			int len = (int)Math.min(size - windowStart, windowSize);
+			boolean last = windowStart + len == size;
+			MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, windowStart, len);
+
+			int lineStart = 0;
+			for (int pos=0;pos<len;pos++)
+			{
+				if (buf.get(pos) == '\n')
+				{
+					boolean cont = newLine(buf, lineStart, pos - lineStart);
+					lineStart = pos + 1;
+					position = windowStart + lineStart;
+					if (!cont)
+					{
+						fc.position(position);
+						return;
+					}
+
+					if (position >= nextChannelUpdate)
+					{
+						fc.position(position);
+						nextChannelUpdate = position + CHANNEL_UPDATE_INTERVAL;
+					}
+				}
+			}
+
+			if (last)
+			{
+				if (lineStart < len)
+					newLine(buf, lineStart, len - lineStart);
+				position = size;
+			} else if (lineStart == 0)
+			{
+				throw new IOException("Line at offset " + windowStart + " exceeds " + windowSize + " bytes");
+			}
+		}
+		fc.position(position);
+	}
+
+	/**
+	 * Returns the offset of the line that is currently scanned. After the
+	 * scanning has been aborted, this is the offset of the first byte
+	 * following the line at which the scanning was aborted.
+	 *
+	 * @return the offset within the file.
+	 */
+	public long getPosition()
+	{
+		return position;
+	}
+
+	/**
+	 * Called whenever a new line was encountered. The line is located at the
+	 * absolute indices start to start + len - 1 of buf. The position and limit
+	 * of buf may be changed by the callee.
+	 *
+	 * @param buf the buffer that contains the line
+	 * @param start
+	 * @param len
+	 * @return false for aborting the reading
+	 */
+	abstract public boolean newLine(ByteBuffer buf, int start, int len);
+}
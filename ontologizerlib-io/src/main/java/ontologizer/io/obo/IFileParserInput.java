@@ -0,0 +1,29 @@
+package ontologizer.io.obo;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * Optionally implemented by parser inputs that wrap a local file. The
+ * parsers use it to report the progress of files above 2 GB and to map
+ * uncompressed files to memory.
+ */
+public interface IFileParserInput extends IParserInput
+{
+	/**
+	 * @return the size of the contents of the input stream or -1 if this
+	 *  information is not available.
+	 */
+	public long getLongSize();
+
+	/**
+	 * @return the current position of the input or -1 if this information
+	 *  is not available.
+	 */
+	public long getLongPosition();
+
+	/**
+	 * @return the channel of the input if the input is an uncompressed local
+	 *  file that can be mapped to memory, null otherwise.
+	 */
+	public FileChannel getChannel();
+}
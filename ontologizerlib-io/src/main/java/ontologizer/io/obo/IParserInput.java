@@ -21,12 +21,15 @@ public interface IParserInput
 
 	/**
 	 * @return the size of the contents of the input stream or -1 if this
-	 *  information is not available.
+	 *  information is not available or doesn't fit into an int.
+	 * @see IFileParserInput#getLongSize()
 	 */
 	public int getSize();
 
 	/**
-	 * @return the current position of the input.
+	 * @return the current position of the input or -1 if this information
+	 *  is not available or doesn't fit into an int.
+	 * @see IFileParserInput#getLongPosition()
 	 */
 	public int getPosition();
 
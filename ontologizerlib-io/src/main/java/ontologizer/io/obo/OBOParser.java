@@ -26,14 +26,22 @@ import static ontologizer.io.obo.OBOKeywords.XREF_KEYWORD;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import ontologizer.io.linescanner.AbstractByteLineScanner;
+import ontologizer.io.linescanner.AbstractChunkedByteScanner;
 import ontologizer.ontology.Namespace;
 import ontologizer.ontology.ParentTermID;
 import ontologizer.ontology.PrefixPool;
@@ -71,6 +79,12 @@ public class OBOParser
 		TYPEDEF
 	}
 
+	/** Number of bytes that are at least read before a chunk is parsed in parallel */
+	private final static int CHUNK_SIZE = 1 << 18;
+
+	/** Maximal number of chunks that wait for being collected */
+	private final static int MAX_PENDING_CHUNKS = 64;
+
 	/** Flag to keep the definitions */
 	public final static int PARSE_DEFINITIONS 	= 1 << 0;
 
@@ -152,43 +166,7 @@ public class OBOParser
 	private ReferencePool<TermID> termIDPool = new ReferencePool<TermID>();
 
 	/** All parsed namespaces */
-	private HashMap<ByteString,Namespace> namespaces = new HashMap<ByteString,Namespace>();
-
-	/** The Stanza currently being processed */
-	private Stanza currentStanza;
-
-	/** The id of the current Term in the stanza currently being parsed */
-	private TermID currentID;
-
-	/** The name of the GO Term currently being parsed */
-	private ByteString currentName;
-
-	/** The namespace of the stanza currently being parsed */
-	private Namespace currentNamespace;
-
-	/** The definition of the stanza currently being parsed */
-	private ByteString currentDefintion;
-
-	/** Is current term obsolete? */
-	private boolean currentObsolete;
-
-	/** The parents of the term of the stanza currently being parsed */
-	private ArrayList<ParentTermID> currentParents = new ArrayList<ParentTermID>();
-
-	/** The alternative ids of the term */
-	private ArrayList<TermID> currentAlternatives = new ArrayList<TermID>();
-
-	/** The equivalent ids of the term */
-	private ArrayList<TermID> currentEquivalents = new ArrayList<TermID>();
-
-	/** Synonyms, if any, for the Term currently being parsed */
-	private ArrayList<ByteString> currentSynonyms = new ArrayList<ByteString>();
-
-	/** The subsets */
-	private ArrayList<Subset> currentSubsets = new ArrayList<Subset>();
-
-	/** The xrefs of the term */
-	private ArrayList<TermXref> currentXrefs = new ArrayList<TermXref>();
+	private ConcurrentHashMap<ByteString,Namespace> namespaces = new ConcurrentHashMap<ByteString,Namespace>();
 
 	/**
 	 * Construct an obo parser.
@@ -222,66 +200,6 @@ public class OBOParser
 		return this.terms;
 	}
 
-	/**
-	 * This puts the results of the parse of a single OBO stanza into one Term
-	 * object and stores that in the HashSet terms.
-	 */
-	private void enterNewTerm()
-	{
-		if (currentStanza != null)
-		{
-			/* Ignore typedefs */
-			if (currentStanza == Stanza.TYPEDEF)
-				return;
-
-			/* If no name is defined use the id as a name */
-			if (currentName == null && currentID != null)
-				currentName = currentID.toByteString();
-
-			if (currentID == null || currentName == null)
-			{
-				logger.warning("Error parsing stanza: " + currentStanza.toString()+" currentID: "+currentID+", currentName: "+currentName);
-
-				resetCurrentStanza();
-				return;
-
-			}
-
-			/* Create a Term object and put it in the HashMap terms. */
-			Term t = new Term(currentID, currentName, currentNamespace, currentParents);
-			t.setObsolete(currentObsolete);
-			t.setDefinition(currentDefintion);
-			t.setAlternatives(currentAlternatives);
-			t.setEquivalents(currentEquivalents);
-			t.setSubsets(currentSubsets);
-			t.setSynonyms(currentSynonyms);
-			t.setXrefs(currentXrefs);
-			terms.add(t);
-
-			/* Statistics */
-			numberOfRelations += currentParents.size();
-		}
-
-		resetCurrentStanza();
-	}
-
-	private void resetCurrentStanza()
-	{
-		/* Now reset... */
-		currentID = null;
-		currentName = null;
-		currentNamespace = null;
-		currentDefintion = null;
-		currentObsolete = false;
-		currentParents.clear();
-		currentAlternatives.clear();
-		currentEquivalents.clear();
-		currentSubsets.clear();
-		currentSynonyms.clear();
-		currentXrefs.clear();
-	}
-
-
 	/**
 	 * The main parsing routine for the gene_ontology.obo file
 	 *
@@ -291,7 +209,7 @@ public class OBOParser
 	 */
 	public String doParse() throws IOException, OBOParserException
 	{
-		return doParse(null);
+		return doParse((IOBOParserProgress)null);
 	}
 
 	/**
@@ -307,27 +225,17 @@ public class OBOParser
 		long startMillis = System.currentTimeMillis();
 
 		if (progress != null)
-			progress.init(input.getSize());
+			progress.init(ParserInputProgress.size(input));
 
 		class OBOByteLineScanner extends AbstractByteLineScanner
 		{
-			private int linenum;
 			private long millis = 0;
-			public int currentTerm = 0;
-
-			private byte [] multilineBuf;
-
-			private byte [] line;
-			private int start;
-			private int len;
 
-			private byte [] temp;
+			public final StanzaParser parser = new StanzaParser(terms, false);
 
-			public OBOParserException exception;
-
-			public OBOByteLineScanner(InputStream is)
+			public OBOByteLineScanner(InputStream is, FileChannel fc)
 			{
-				super(is);
+				super(is, fc);
 			}
 
 			/**
@@ -340,521 +248,997 @@ public class OBOParser
 					long newMillis = System.currentTimeMillis();
 					if (newMillis - millis > 250)
 					{
-						int pos = input.getPosition();
+						int pos = ParserInputProgress.position(input);
 						if (pos >= 0)
-							progress.update(pos, currentTerm);
+							progress.update(pos, parser.currentTerm);
 
 						millis = newMillis;
 					}
 				}
 			}
 
-			/**
-			 * Expands the multiline buf with the given buf.
-			 *
-			 * @param buf
-			 * @param start
-			 * @param len
-			 */
-			private void expandMultilibeBuf(byte [] buf, int start, int len)
+			@Override
+			public boolean newLine(byte[] buf, int start, int len)
 			{
-				int oldlen;
-				if (multilineBuf != null)
-					oldlen = multilineBuf.length;
-				else oldlen = 0;
+				updateProgress();
+				return parser.newLine(buf, start, len);
+			}
+		}
+
+		FileChannel fc = input instanceof IFileParserInput ? ((IFileParserInput)input).getChannel() : null;
+		OBOByteLineScanner obls = new OBOByteLineScanner(input.inputStream(), fc);
+		obls.scan();
+		obls.parser.enterNewTerm(); /* Get very last stanza after loop! */
+		numberOfRelations += obls.parser.numberOfRelations;
+		if (progress != null)
+			progress.update(ParserInputProgress.size(input),obls.parser.currentTerm);
 
-				byte [] newMultilineBuf = new byte[oldlen + len];
+		if (obls.parser.exception != null)
+			throw obls.parser.exception;
+		input.close();
 
-				if (oldlen != 0)
-					System.arraycopy(multilineBuf, 0, newMultilineBuf, 0, oldlen);
-				System.arraycopy(buf, start, newMultilineBuf, oldlen, len);
-				multilineBuf = newMultilineBuf;
-			}
+		long durationMillis = System.currentTimeMillis() - startMillis;
+		logger.log(Level.INFO, "Got " + terms.size() + " terms and " + numberOfRelations + " relations in " + durationMillis + " ms");
+		return this.getParseDiagnostics();
+	}
 
-			/**
-			 * Returns the current line content as string.
-			 *
-			 * @return
-			 */
-			private String getLineContens()
+	/**
+	 * Parses the gene_ontology.obo file using the given executor.
+	 *
+	 * @param executor the executor that parses the stanzas. If null, the file
+	 *  is parsed sequentially.
+	 * @return A string giving details about the parsed obo file
+	 * @throws OBOParserException
+	 * @throws IOException
+	 * @see #doParse(IOBOParserProgress, ExecutorService)
+	 */
+	public String doParse(ExecutorService executor) throws IOException, OBOParserException
+	{
+		return doParse(null, executor);
+	}
+
+	/**
+	 * Parses the gene_ontology.obo file using the given executor. The calling
+	 * thread reads (and decompresses) the input and splits it into chunks
+	 * of whole stanzas, i.e., a chunk always starts with a [Term] or [Typedef]
+	 * line. The chunks are then parsed by the executor. The header and the
+	 * first stanzas are parsed by the calling thread, as the stanzas refer to
+	 * the subsets defined in the header. The parsed terms are collected in
+	 * the order of the chunks, so the result is identical to the one of
+	 * {@link #doParse(IOBOParserProgress)}. This includes the integers of
+	 * term ids without an integer part, which are assigned in the order in
+	 * which the ids appear in the file.
+	 *
+	 * @param progress
+	 * @param executor the executor that parses the stanzas. If null, the file
+	 *  is parsed sequentially.
+	 * @return A string giving details about the parsed obo file
+	 * @throws OBOParserException
+	 * @throws IOException
+	 */
+	public String doParse(final IOBOParserProgress progress, ExecutorService executor) throws IOException, OBOParserException
+	{
+		if (executor == null)
+			return doParse(progress);
+
+		long startMillis = System.currentTimeMillis();
+
+		if (progress != null)
+			progress.init(ParserInputProgress.size(input));
+
+		StanzaScanner scanner = new StanzaScanner(progress);
+		scanner.scan(input.inputStream(), null, executor);
+		if (scanner.exception != null)
+			throw scanner.exception;
+		int currentTerm = scanner.currentTerm;
+
+		if (progress != null)
+			progress.update(ParserInputProgress.size(input),currentTerm);
+		input.close();
+
+		long durationMillis = System.currentTimeMillis() - startMillis;
+		logger.log(Level.INFO, "Got " + terms.size() + " terms and " + numberOfRelations + " relations in " + durationMillis + " ms");
+		return this.getParseDiagnostics();
+	}
+
+	/**
+	 * Cuts the input into chunks of whole stanzas and collects the terms
+	 * of the chunks that have been parsed by {@link StanzaParser}. The
+	 * first chunk contains the header and is parsed right away, as the
+	 * stanzas refer to the subsets defined in the header.
+	 */
+	private class StanzaScanner extends AbstractChunkedByteScanner<StanzaParser>
+	{
+		private IOBOParserProgress progress;
+
+		/** Number of lines and stanzas of the chunks that have been collected so far */
+		private int linenum;
+		private int currentTerm;
+
+		/** The first parse error */
+		private OBOParserException exception;
+
+		public StanzaScanner(IOBOParserProgress progress)
+		{
+			super(CHUNK_SIZE, MAX_PENDING_CHUNKS);
+
+			this.progress = progress;
+		}
+
+		@Override
+		protected int findChunkEnd(byte [] buf, int len)
+		{
+			return findLastStanza(buf, len);
+		}
+
+		@Override
+		protected boolean parseImmediately(int chunkIndex)
+		{
+			return chunkIndex == 0;
+		}
+
+		@Override
+		protected StanzaParser parse(byte [] chunk)
+		{
+			StanzaParser parser = new StanzaParser(new ArrayList<Term>(), true);
+			parser.parse(chunk);
+			return parser;
+		}
+
+		@Override
+		protected boolean collect(StanzaParser parser)
+		{
+			parser.resolvePlaceholders();
+			terms.addAll(parser.terms);
+			numberOfRelations += parser.numberOfRelations;
+			currentTerm += parser.currentTerm;
+
+			if (parser.exception != null)
 			{
-				return new ByteString(line,start,start+len).toString();
+				OBOParserException e = parser.exception;
+				exception = new OBOParserException(e.getMessage(), e.getLine(), linenum + e.getLineNum());
+				return false;
 			}
+			linenum += parser.linenum;
 
-			/**
-			 * Compares buf vs cmp.
-			 * @param buf
-			 * @param start where to start in buf
-			 * @param len where to end in buf
-			 * @param cmp is assumed to be lower case
-			 * @return
-			 */
-			private boolean equalsIgnoreCase(final byte [] buf, int start, int len, byte [] cmp)
+			if (progress != null)
 			{
-				if (cmp.length != len) return false;
-
-				for (int i=0;i<len;i++)
-				{
-					byte c = buf[start+i];
-					if (c>=65 && c <=90) c += 32;
-					if (cmp[i] != c)
-						return false;
-				}
-				return true;
+				int pos = ParserInputProgress.position(input);
+				if (pos >= 0)
+					progress.update(pos, currentTerm);
 			}
+			return true;
+		}
+	}
 
-			@Override
-			public boolean newLine(byte[] buf, int start, int len)
-			{
-				linenum++;
-				updateProgress();
+	/**
+	 * Determines whether the given term id has a prefix but no digit after
+	 * it, i.e., whether TermID assigns an integer to it.
+	 *
+	 * @param buf
+	 * @param start
+	 * @param len
+	 * @return whether the id has no integer part.
+	 */
+	static boolean isStringID(byte [] buf, int start, int len)
+	{
+		int i = start;
+		while (i < start + len && buf[i] != ':')
+			i++;
 
-				if (len == 0)
-					return true;
+		/* TermID rejects these ids, see TermID(byte[],int,int,PrefixPool) */
+		if (i == start + len || i < 1)
+			return false;
+
+		for (i++;i<start+len;i++)
+		{
+			if (buf[i] >= '0' && buf[i] <= '9')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the start of the last stanza, i.e., the last line that starts with
+	 * a [ and that doesn't continue the previous line. Lines may be
+	 * terminated by LF or CRLF.
+	 *
+	 * @param buf
+	 * @param len
+	 * @return the offset of the line or 0 if there is no such line after offset 0.
+	 */
+	static int findLastStanza(byte [] buf, int len)
+	{
+		for (int i=len-1;i>0;i--)
+		{
+			if (buf[i] != '[' || buf[i-1] != '\n')
+				continue;
+
+			/* Check whether the previous line ends with a backslash */
+			int j = i - 2;
+			if (j >= 0 && buf[j] == '\r')
+				j--;
+			if (j < 0 || buf[j] != '\\')
+				return i;
+		}
+		return 0;
+	}
+
+	/**
+	 * Parses the lines of a sequence of stanzas. The state of the stanza that
+	 * is currently being parsed is kept per instance, so several instances can
+	 * parse disjoint chunks of the input concurrently.
+	 *
+	 * The integers of term ids without an integer part are assigned in the
+	 * order in which they are encountered. To keep that order when parsing
+	 * concurrently, such ids can be replaced by placeholders that are resolved
+	 * in the order of the chunks by {@link #resolvePlaceholders()}.
+	 */
+	private class StanzaParser
+	{
+		/** Receives the parsed terms */
+		private final Collection<Term> terms;
 
-				if (buf[start+len-1] == '\\')
+		/** Whether ids without an integer part are replaced by placeholders */
+		private final boolean deferStringIDs;
+
+		/** The placeholders in the order in which they were handed out */
+		private ArrayList<TermID> placeholders = new ArrayList<TermID>();
+
+		/** The ids that the placeholders stand for */
+		private ArrayList<byte []> placeholderIDs = new ArrayList<byte []>();
+
+		/** The terms whose name has been taken from their id */
+		private Set<Term> namedByID = Collections.newSetFromMap(new IdentityHashMap<Term,Boolean>());
+
+		private int linenum;
+		public int currentTerm = 0;
+
+		/** Statistics */
+		private int numberOfRelations;
+
+		private byte [] multilineBuf;
+
+		private byte [] line;
+		private int start;
+		private int len;
+
+		private byte [] temp;
+
+		public OBOParserException exception;
+
+		/** The Stanza currently being processed */
+		private Stanza currentStanza;
+
+		/** The id of the current Term in the stanza currently being parsed */
+		private TermID currentID;
+
+		/** The name of the GO Term currently being parsed */
+		private ByteString currentName;
+
+		/** Whether the current name has been taken from the id */
+		private boolean currentNameFromID;
+
+		/** The namespace of the stanza currently being parsed */
+		private Namespace currentNamespace;
+
+		/** The definition of the stanza currently being parsed */
+		private ByteString currentDefintion;
+
+		/** Is current term obsolete? */
+		private boolean currentObsolete;
+
+		/** The parents of the term of the stanza currently being parsed */
+		private ArrayList<ParentTermID> currentParents = new ArrayList<ParentTermID>();
+
+		/** The alternative ids of the term */
+		private ArrayList<TermID> currentAlternatives = new ArrayList<TermID>();
+
+		/** The equivalent ids of the term */
+		private ArrayList<TermID> currentEquivalents = new ArrayList<TermID>();
+
+		/** Synonyms, if any, for the Term currently being parsed */
+		private ArrayList<ByteString> currentSynonyms = new ArrayList<ByteString>();
+
+		/** The subsets */
+		private ArrayList<Subset> currentSubsets = new ArrayList<Subset>();
+
+		/** The xrefs of the term */
+		private ArrayList<TermXref> currentXrefs = new ArrayList<TermXref>();
+
+		/**
+		 * @param terms receives the parsed terms
+		 * @param deferStringIDs whether ids without an integer part are
+		 *  replaced by placeholders, which requires a call to
+		 *  {@link #resolvePlaceholders()} after parsing.
+		 */
+		public StanzaParser(Collection<Term> terms, boolean deferStringIDs)
+		{
+			this.terms = terms;
+			this.deferStringIDs = deferStringIDs;
+		}
+
+		/**
+		 * This puts the results of the parse of a single OBO stanza into one Term
+		 * object and stores that in the collection of terms.
+		 */
+		private void enterNewTerm()
+		{
+			if (currentStanza != null)
+			{
+				/* Ignore typedefs */
+				if (currentStanza == Stanza.TYPEDEF)
+					return;
+
+				/* If no name is defined use the id as a name */
+				if (currentName == null && currentID != null)
 				{
-					expandMultilibeBuf(buf, start, len-1);
-					return true;
+					currentName = currentID.toByteString();
+					currentNameFromID = true;
 				}
 
-				if (multilineBuf != null)
+				if (currentID == null || currentName == null)
 				{
-					expandMultilibeBuf(buf, start, len);
-					buf = multilineBuf;
-					start = 0;
-					len = multilineBuf.length;
+					logger.warning("Error parsing stanza: " + currentStanza.toString()+" currentID: "+currentID+", currentName: "+currentName);
+
+					resetCurrentStanza();
+					return;
+
 				}
-				multilineBuf = null;
 
-				/* Skip any comments */
-				if (buf[start] == '!')
-					return true;
+				/* Create a Term object and put it in the HashMap terms. */
+				Term t = new Term(currentID, currentName, currentNamespace, currentParents);
+				t.setObsolete(currentObsolete);
+				t.setDefinition(currentDefintion);
+				t.setAlternatives(currentAlternatives);
+				t.setEquivalents(currentEquivalents);
+				t.setSubsets(currentSubsets);
+				t.setSynonyms(currentSynonyms);
+				t.setXrefs(currentXrefs);
+				terms.add(t);
+				if (currentNameFromID && deferStringIDs)
+					namedByID.add(t);
+
+				/* Statistics */
+				numberOfRelations += currentParents.size();
+			}
 
-				/* Trim line ending */
-				while (len != 0 && Character.isWhitespace(buf[start + len-1]))
-						len--;
-				if (len == 0)
-					return true;
+			resetCurrentStanza();
+		}
 
-				/* Bring the line info into our context */
-				this.line = buf;
-				this.start = start;
-				this.len = len;
+		private void resetCurrentStanza()
+		{
+			/* Now reset... */
+			currentID = null;
+			currentName = null;
+			currentNameFromID = false;
+			currentNamespace = null;
+			currentDefintion = null;
+			currentObsolete = false;
+			currentParents.clear();
+			currentAlternatives.clear();
+			currentEquivalents.clear();
+			currentSubsets.clear();
+			currentSynonyms.clear();
+			currentXrefs.clear();
+		}
 
-				/* If the line starts with "[", we are at a new [Term] or [Typedef] */
-				if (buf[start] == '[')
-				{
-					enterNewTerm();
-					currentTerm++;
+		/**
+		 * Expands the multiline buf with the given buf.
+		 *
+		 * @param buf
+		 * @param start
+		 * @param len
+		 */
+		private void expandMultilibeBuf(byte [] buf, int start, int len)
+		{
+			int oldlen;
+			if (multilineBuf != null)
+				oldlen = multilineBuf.length;
+			else oldlen = 0;
 
-					if (buf[start + len - 1] != ']')
-					{
-						exception = new OBOParserException("Unclosed stanza", getLineContens(), linenum);
-						return false;
-					}
+			byte [] newMultilineBuf = new byte[oldlen + len];
 
-					start++;
-					len-=2;
+			if (oldlen != 0)
+				System.arraycopy(multilineBuf, 0, newMultilineBuf, 0, oldlen);
+			System.arraycopy(buf, start, newMultilineBuf, oldlen, len);
+			multilineBuf = newMultilineBuf;
+		}
 
-					if (equalsIgnoreCase(line, start, len, TERM_KEYWORD)) currentStanza = Stanza.TERM;
-					else if (equalsIgnoreCase(line, start, len, TYPEDEF_KEYWORD)) currentStanza = Stanza.TYPEDEF;
-					else
-					{
-						exception = new OBOParserException("Unknown stanza type", getLineContens(), linenum);
-						return false;
-					}
-					currentTerm++;
-				} else
-				{
-					/* Find colon */
-					int keyEnd = -1;
-					int valueStart = -1;
-					for (int i=start;i<start+len;i++)
-					{
-						if (buf[i] == ':')
-						{
-							keyEnd = i;
-							break;
-						}
-					}
+		/**
+		 * Returns the current line content as string.
+		 *
+		 * @return
+		 */
+		private String getLineContens()
+		{
+			return new ByteString(line,start,start+len).toString();
+		}
 
-					/* Ignore these lines without key: value format */
-					if (keyEnd == -1)
-						return true;
+		/**
+		 * Compares buf vs cmp.
+		 * @param buf
+		 * @param start where to start in buf
+		 * @param len where to end in buf
+		 * @param cmp is assumed to be lower case
+		 * @return
+		 */
+		private boolean equalsIgnoreCase(final byte [] buf, int start, int len, byte [] cmp)
+		{
+			if (cmp.length != len) return false;
 
-					/* Find start of the value */
-					for (int i=keyEnd+1;i<start+len;i++)
-					{
-						if (!Character.isWhitespace(buf[i]))
-						{
-							valueStart = i;
-							break;
-						}
-					}
+			for (int i=0;i<len;i++)
+			{
+				byte c = buf[start+i];
+				if (c>=65 && c <=90) c += 32;
+				if (cmp[i] != c)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Parses a single line.
+		 *
+		 * @param buf
+		 * @param start
+		 * @param len
+		 * @return false if the parsing should be aborted due to an error.
+		 */
+		public boolean newLine(byte[] buf, int start, int len)
+		{
+			linenum++;
 
-					/* Ignore any lines without a proper value */
-					if (valueStart == -1)
-						return true;
+			if (len == 0)
+				return true;
 
-					int keyStart = start;
-					int keyLen = keyEnd - start;
-					int valueLen = start + len - valueStart;
+			/* Tolerate CRLF line endings */
+			if (buf[start+len-1] == '\r' && --len == 0)
+				return true;
 
-					if (currentStanza == null) readHeaderValue(line, keyStart, keyLen, valueStart, valueLen);
-					else if (currentStanza == Stanza.TERM) readTermValue(line, keyStart, keyLen, valueStart, valueLen);
-				}
+			if (buf[start+len-1] == '\\')
+			{
+				expandMultilibeBuf(buf, start, len-1);
 				return true;
 			}
 
-			/**
-			 * Parse key/value as header.
-			 *
-			 * @param buf
-			 * @param keyStart
-			 * @param keyLen
-			 * @param valueStart
-			 * @param valueLen
-			 */
-			private void readHeaderValue(byte[] buf, int keyStart, int keyLen, int valueStart, int valueLen)
+			if (multilineBuf != null)
+			{
+				expandMultilibeBuf(buf, start, len);
+				buf = multilineBuf;
+				start = 0;
+				len = multilineBuf.length;
+			}
+			multilineBuf = null;
+
+			/* Skip any comments */
+			if (buf[start] == '!')
+				return true;
+
+			/* Trim line ending */
+			while (len != 0 && Character.isWhitespace(buf[start + len-1]))
+					len--;
+			if (len == 0)
+				return true;
+
+			/* Bring the line info into our context */
+			this.line = buf;
+			this.start = start;
+			this.len = len;
+
+			/* If the line starts with "[", we are at a new [Term] or [Typedef] */
+			if (buf[start] == '[')
 			{
-				if (equalsIgnoreCase(buf, keyStart, keyLen, FORMAT_VERSION_KEYWORD))
+				enterNewTerm();
+				currentTerm++;
+
+				if (buf[start + len - 1] != ']')
 				{
-					format_version = new ByteString(buf, valueStart, valueStart + valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, DATE_KEYWORD))
+					exception = new OBOParserException("Unclosed stanza", getLineContens(), linenum);
+					return false;
+				}
+
+				start++;
+				len-=2;
+
+				if (equalsIgnoreCase(line, start, len, TERM_KEYWORD)) currentStanza = Stanza.TERM;
+				else if (equalsIgnoreCase(line, start, len, TYPEDEF_KEYWORD)) currentStanza = Stanza.TYPEDEF;
+				else
 				{
-					date = new ByteString(buf, valueStart, valueStart + valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, DATA_VERSION_KEYWORD))
+					exception = new OBOParserException("Unknown stanza type", getLineContens(), linenum);
+					return false;
+				}
+				currentTerm++;
+			} else
+			{
+				/* Find colon */
+				int keyEnd = -1;
+				int valueStart = -1;
+				for (int i=start;i<start+len;i++)
 				{
-					data_version = new ByteString(buf, valueStart, valueStart + valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, SUBSETDEF_KEYWORD))
+					if (buf[i] == ':')
+					{
+						keyEnd = i;
+						break;
+					}
+				}
+
+				/* Ignore these lines without key: value format */
+				if (keyEnd == -1)
+					return true;
+
+				/* Find start of the value */
+				for (int i=keyEnd+1;i<start+len;i++)
 				{
-					Subset s = Subset.createFromString(new String(buf, valueStart, valueLen));
-					if (!subsets.containsKey(s.getName()))
-						subsets.put(s.getName(),s);
+					if (!Character.isWhitespace(buf[i]))
+					{
+						valueStart = i;
+						break;
+					}
 				}
+
+				/* Ignore any lines without a proper value */
+				if (valueStart == -1)
+					return true;
+
+				int keyStart = start;
+				int keyLen = keyEnd - start;
+				int valueLen = start + len - valueStart;
+
+				if (currentStanza == null) readHeaderValue(line, keyStart, keyLen, valueStart, valueLen);
+				else if (currentStanza == Stanza.TERM) readTermValue(line, keyStart, keyLen, valueStart, valueLen);
 			}
+			return true;
+		}
 
-			/**
-			 * Reads the term id stored in the buf at the given locations.
-			 *
-			 * @param buf
-			 * @param valueStart
-			 * @param valueLen
-			 * @return
-			 */
-			private TermID readTermID(byte[] buf, int valueStart, int valueLen)
+		/**
+		 * Parse key/value as header.
+		 *
+		 * @param buf
+		 * @param keyStart
+		 * @param keyLen
+		 * @param valueStart
+		 * @param valueLen
+		 */
+		private void readHeaderValue(byte[] buf, int keyStart, int keyLen, int valueStart, int valueLen)
+		{
+			if (equalsIgnoreCase(buf, keyStart, keyLen, FORMAT_VERSION_KEYWORD))
+			{
+				format_version = new ByteString(buf, valueStart, valueStart + valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, DATE_KEYWORD))
+			{
+				date = new ByteString(buf, valueStart, valueStart + valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, DATA_VERSION_KEYWORD))
 			{
-				return termIDPool.map(new TermID(buf,valueStart,valueLen,prefixPool));
+				data_version = new ByteString(buf, valueStart, valueStart + valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, SUBSETDEF_KEYWORD))
+			{
+				Subset s = Subset.createFromString(new String(buf, valueStart, valueLen));
+				if (!subsets.containsKey(s.getName()))
+					subsets.put(s.getName(),s);
 			}
+		}
 
-			/**
-			 * Finds the first occurrence of c in buf starting from start but
-			 * not exceeding len.
-			 *
-			 * @return -1 if not found.
-			 */
-			private int findUnescaped(final byte [] buf, int start, int len, char c)
+		/**
+		 * Reads the term id stored in the buf at the given locations.
+		 *
+		 * @param buf
+		 * @param valueStart
+		 * @param valueLen
+		 * @return
+		 */
+		private TermID readTermID(byte[] buf, int valueStart, int valueLen)
+		{
+			if (deferStringIDs && isStringID(buf, valueStart, valueLen))
 			{
-				while (len > 0)
-				{
-					if (buf[start] == '\\')
-					{
-						start+=2;
-						len-=2;
-						continue;
-					}
-
-					if (buf[start] == c)
-						return start;
-					start++;
-					len--;
-				}
-				return -1;
+				TermID placeholder = new TermID(TermID.DEFAULT_PREFIX, placeholders.size());
+				placeholders.add(placeholder);
+				placeholderIDs.add(Arrays.copyOfRange(buf, valueStart, valueStart + valueLen));
+				return placeholder;
 			}
+			return termIDPool.map(new TermID(buf,valueStart,valueLen,prefixPool));
+		}
 
+		/**
+		 * Assigns the ids to the placeholders in the order in which they
+		 * have been handed out and replaces the terms that refer to
+		 * placeholders. Must be called in the order of the chunks.
+		 */
+		public void resolvePlaceholders()
+		{
+			if (placeholders.isEmpty())
+				return;
 
-			/**
-			 * Finds teh first occurrence of c1 or c2 in buf starting from start but
-			 * not exceeding len.
-			 *
-			 * @return -1 if not found.
-			 */
-			@SuppressWarnings("unused")
-			private int findUnescaped(final byte [] buf, int start, int len, char c1, char c2)
+			IdentityHashMap<TermID,TermID> resolved = new IdentityHashMap<TermID,TermID>();
+			for (int i=0;i<placeholders.size();i++)
 			{
-				while (len != 0)
-				{
-					if (buf[start] == c1|| buf[start] == c2)
-						return start;
-					start++;
-					len--;
-				}
-				return -1;
+				byte [] id = placeholderIDs.get(i);
+				resolved.put(placeholders.get(i), termIDPool.map(new TermID(id,0,id.length,prefixPool)));
 			}
 
-			/**
-			 * Finds the first occurrence of c1, c2, or c3 in buf starting from start but
-			 * not exceeding len.
-			 *
-			 * @return -1 if not found.
-			 */
-			private int findUnescaped(final byte [] buf, int start, int len, char c1, char c2, char c3)
+			ArrayList<Term> resolvedTerms = new ArrayList<Term>(terms.size());
+			for (Term t : terms)
+				resolvedTerms.add(resolve(t, resolved));
+			terms.clear();
+			terms.addAll(resolvedTerms);
+			placeholders.clear();
+			placeholderIDs.clear();
+		}
+
+		/**
+		 * @return the term with all placeholders replaced by their ids. This
+		 *  is the given term if it doesn't refer to any placeholder.
+		 */
+		private Term resolve(Term t, IdentityHashMap<TermID,TermID> resolved)
+		{
+			TermID id = resolve(t.getID(), resolved);
+			boolean changed = id != t.getID();
+
+			ArrayList<ParentTermID> parents = new ArrayList<ParentTermID>();
+			for (ParentTermID p : t.getParents())
 			{
-				while (len != 0)
-				{
-					if (buf[start] == c1|| buf[start] == c2)
-						return start;
-					start++;
-					len--;
-				}
-				return -1;
+				TermID parent = resolve(p.termid, resolved);
+				changed |= parent != p.termid;
+				parents.add(new ParentTermID(parent, p.relation));
+			}
+			ArrayList<TermID> alternatives = new ArrayList<TermID>();
+			for (TermID a : t.getAlternatives())
+			{
+				TermID alternative = resolve(a, resolved);
+				changed |= alternative != a;
+				alternatives.add(alternative);
+			}
+			ArrayList<TermID> equivalents = new ArrayList<TermID>();
+			for (TermID e : t.getEquivalents())
+			{
+				TermID equivalent = resolve(e, resolved);
+				changed |= equivalent != e;
+				equivalents.add(equivalent);
 			}
+			if (!changed)
+				return t;
+
+			ByteString name = namedByID.contains(t) ? id.toByteString() : t.getName();
+			Term r = new Term(id, name, t.getNamespace(), parents);
+			r.setObsolete(t.isObsolete());
+			r.setDefinition(t.getDefinition());
+			r.setAlternatives(alternatives);
+			r.setEquivalents(equivalents);
+			r.setSubsets(new ArrayList<Subset>(Arrays.asList(t.getSubsets())));
+			if (t.getSynonyms() != null)
+				r.setSynonyms(new ArrayList<ByteString>(Arrays.asList(t.getSynonyms())));
+			if (t.getXrefs() != null)
+				r.setXrefs(new ArrayList<TermXref>(Arrays.asList(t.getXrefs())));
+			return r;
+		}
 
-			/**
-			 * Skip spaces starting at start not more than len.
-			 *
-			 * @param buf
-			 * @param start
-			 * @param len
-			 * @return -1 if no space could be found.
-			 */
-			private int skipSpaces(final byte [] buf, int start, int len)
+		private TermID resolve(TermID id, IdentityHashMap<TermID,TermID> resolved)
+		{
+			TermID r = resolved.get(id);
+			return r != null ? r : id;
+		}
+
+		/**
+		 * Finds the first occurrence of c in buf starting from start but
+		 * not exceeding len.
+		 *
+		 * @return -1 if not found.
+		 */
+		private int findUnescaped(final byte [] buf, int start, int len, char c)
+		{
+			while (len > 0)
 			{
-				while (len != 0)
+				if (buf[start] == '\\')
 				{
-					if (buf[start] != ' ' && buf[start] != '\t')
-						return start;
-					start++;
-					len--;
+					start+=2;
+					len-=2;
+					continue;
 				}
-				return -1;
+
+				if (buf[start] == c)
+					return start;
+				start++;
+				len--;
 			}
+			return -1;
+		}
 
 
-			private void parse_id(byte[] buf, int valueStart, int valueLen)
+		/**
+		 * Finds teh first occurrence of c1 or c2 in buf starting from start but
+		 * not exceeding len.
+		 *
+		 * @return -1 if not found.
+		 */
+		@SuppressWarnings("unused")
+		private int findUnescaped(final byte [] buf, int start, int len, char c1, char c2)
+		{
+			while (len != 0)
 			{
-				currentID = readTermID(buf, valueStart, valueLen);
-				if ((options & SETNAMEEQUALTOID) != 0)
-					currentName = currentID.toByteString();
+				if (buf[start] == c1|| buf[start] == c2)
+					return start;
+				start++;
+				len--;
 			}
+			return -1;
+		}
 
-			private void parse_name(byte[] buf, int valueStart, int valueLen)
+		/**
+		 * Finds the first occurrence of c1, c2, or c3 in buf starting from start but
+		 * not exceeding len.
+		 *
+		 * @return -1 if not found.
+		 */
+		private int findUnescaped(final byte [] buf, int start, int len, char c1, char c2, char c3)
+		{
+			while (len != 0)
 			{
-				currentName = new ByteString(buf, valueStart, valueStart + valueLen);
+				if (buf[start] == c1|| buf[start] == c2)
+					return start;
+				start++;
+				len--;
 			}
+			return -1;
+		}
 
-			private void parse_is_a(byte[] buf, int valueStart, int valueLen)
+		/**
+		 * Skip spaces starting at start not more than len.
+		 *
+		 * @param buf
+		 * @param start
+		 * @param len
+		 * @return -1 if no space could be found.
+		 */
+		private int skipSpaces(final byte [] buf, int start, int len)
+		{
+			while (len != 0)
 			{
-				currentParents.add(new ParentTermID(readTermID(buf, valueStart, valueLen),TermRelation.IS_A));
+				if (buf[start] != ' ' && buf[start] != '\t')
+					return start;
+				start++;
+				len--;
 			}
+			return -1;
+		}
 
-			private void parse_relationship(byte[] buf, int valueStart, int valueLen)
+
+		private void parse_id(byte[] buf, int valueStart, int valueLen)
+		{
+			currentID = readTermID(buf, valueStart, valueLen);
+			if ((options & SETNAMEEQUALTOID) != 0)
 			{
-				TermRelation type;
+				currentName = currentID.toByteString();
+				currentNameFromID = true;
+			}
+		}
+
+		private void parse_name(byte[] buf, int valueStart, int valueLen)
+		{
+			currentName = new ByteString(buf, valueStart, valueStart + valueLen);
+			currentNameFromID = false;
+		}
 
-				int typeStart = valueStart;
-				int typeEnd = findUnescaped(buf, valueStart, valueLen, ' ');
-				if (typeEnd== -1) return;
+		private void parse_is_a(byte[] buf, int valueStart, int valueLen)
+		{
+			currentParents.add(new ParentTermID(readTermID(buf, valueStart, valueLen),TermRelation.IS_A));
+		}
 
-				int idStart = skipSpaces(buf, typeEnd, valueStart + valueLen - typeEnd);
-				if (idStart == -1) return;
-				int idEnd = findUnescaped(buf, idStart, valueStart + valueLen - idStart, '[', ' ', '!');
-				if (idEnd == -1) idEnd = valueStart + valueLen;
+		private void parse_relationship(byte[] buf, int valueStart, int valueLen)
+		{
+			TermRelation type;
 
-				if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,PART_OF_KEYWORD)) type = TermRelation.PART_OF_A;
-				else if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,REGULATES_KEYWORD)) type = TermRelation.REGULATES;
-				else if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,NEGATIVELY_REGULATES_KEYWORD)) type = TermRelation.POSITIVELY_REGULATES;
-				else if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,POSITIVELY_REGULATES_KEYWORD)) type = TermRelation.NEGATIVELY_REGULATES;
-				else type = TermRelation.UNKOWN;
+			int typeStart = valueStart;
+			int typeEnd = findUnescaped(buf, valueStart, valueLen, ' ');
+			if (typeEnd== -1) return;
 
-				currentParents.add(new ParentTermID(readTermID(buf,idStart,idEnd - idStart + 1),type));
-			}
+			int idStart = skipSpaces(buf, typeEnd, valueStart + valueLen - typeEnd);
+			if (idStart == -1) return;
+			int idEnd = findUnescaped(buf, idStart, valueStart + valueLen - idStart, '[', ' ', '!');
+			if (idEnd == -1) idEnd = valueStart + valueLen;
 
-			private void parse_synonym(byte[] buf, int valueStart, int valueLen)
-			{
-				if ((options & IGNORE_SYNONYMS) == 0)
-				{
-					int synonymStart = findUnescaped(buf, valueStart, valueLen, '\"');
-					if (synonymStart == -1) return;
-					synonymStart++;
-					int synonymEnd = findUnescaped(buf, synonymStart, valueStart + valueLen - synonymStart, '\"');
-					if (synonymEnd == -1) return;
+			if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,PART_OF_KEYWORD)) type = TermRelation.PART_OF_A;
+			else if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,REGULATES_KEYWORD)) type = TermRelation.REGULATES;
+			else if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,NEGATIVELY_REGULATES_KEYWORD)) type = TermRelation.POSITIVELY_REGULATES;
+			else if (equalsIgnoreCase(buf,typeStart, typeEnd - typeStart,POSITIVELY_REGULATES_KEYWORD)) type = TermRelation.NEGATIVELY_REGULATES;
+			else type = TermRelation.UNKOWN;
 
-					currentSynonyms.add(new ByteString(buf,synonymStart,synonymEnd));
-				}
-			}
+			currentParents.add(new ParentTermID(readTermID(buf,idStart,idEnd - idStart + 1),type));
+		}
 
-			private void parse_def(byte[] buf, int valueStart, int valueLen)
+		private void parse_synonym(byte[] buf, int valueStart, int valueLen)
+		{
+			if ((options & IGNORE_SYNONYMS) == 0)
 			{
-				if ((options & PARSE_DEFINITIONS) != 0)
-				{
-					/* TODO: Refactor with the above */
-					int defStart = findUnescaped(buf, valueStart, valueLen, '\"');
-					if (defStart == -1) return;
-					defStart++;
-					int defEnd = findUnescaped(buf, defStart, valueStart + valueLen - defStart, '\"');
-					if (defEnd == -1) return;
-
-					if (temp == null || temp.length < defEnd - defStart + 1)
-						temp = new byte[defEnd - defStart + 1];
-					int len = 0;
-					for (int i=defStart;i<defEnd;i++)
-					{
-						if (buf[i]=='\\')
-							continue;
-						temp[len++] = buf[i];
-					}
-					currentDefintion = new ByteString(temp, 0, len);
-				}
+				int synonymStart = findUnescaped(buf, valueStart, valueLen, '\"');
+				if (synonymStart == -1) return;
+				synonymStart++;
+				int synonymEnd = findUnescaped(buf, synonymStart, valueStart + valueLen - synonymStart, '\"');
+				if (synonymEnd == -1) return;
+
+				currentSynonyms.add(new ByteString(buf,synonymStart,synonymEnd));
 			}
+		}
 
-			private void parse_namespace(byte[] buf, int valueStart, int valueLen)
+		private void parse_def(byte[] buf, int valueStart, int valueLen)
+		{
+			if ((options & PARSE_DEFINITIONS) != 0)
 			{
-				ByteString newNamespace = new ByteString(buf, valueStart, valueStart + valueLen);
-				Namespace namespace = namespaces.get(newNamespace);
-				if (namespace == null)
+				/* TODO: Refactor with the above */
+				int defStart = findUnescaped(buf, valueStart, valueLen, '\"');
+				if (defStart == -1) return;
+				defStart++;
+				int defEnd = findUnescaped(buf, defStart, valueStart + valueLen - defStart, '\"');
+				if (defEnd == -1) return;
+
+				if (temp == null || temp.length < defEnd - defStart + 1)
+					temp = new byte[defEnd - defStart + 1];
+				int len = 0;
+				for (int i=defStart;i<defEnd;i++)
 				{
-					namespace = new Namespace(newNamespace);
-					namespaces.put(newNamespace,namespace);
+					if (buf[i]=='\\')
+						continue;
+					temp[len++] = buf[i];
 				}
-
-				currentNamespace = namespace;
+				currentDefintion = new ByteString(temp, 0, len);
 			}
+		}
 
-			private void parse_equivalent_to(byte[] buf, int valueStart, int valueLen)
+		private void parse_namespace(byte[] buf, int valueStart, int valueLen)
+		{
+			ByteString newNamespace = new ByteString(buf, valueStart, valueStart + valueLen);
+			Namespace namespace = namespaces.get(newNamespace);
+			if (namespace == null)
 			{
-				currentEquivalents.add(readTermID(buf, valueStart, valueLen));
+				/* Another parser may have entered the namespace meanwhile */
+				namespace = new Namespace(newNamespace);
+				Namespace existing = namespaces.putIfAbsent(newNamespace,namespace);
+				if (existing != null)
+					namespace = existing;
 			}
 
-			private void parse_is_obsolete(byte[] buf, int valueStart, int valueLen)
-			{
-				currentObsolete = equalsIgnoreCase(buf, valueStart, valueLen, TRUE_KEYWORD);
-			}
+			currentNamespace = namespace;
+		}
 
+		private void parse_equivalent_to(byte[] buf, int valueStart, int valueLen)
+		{
+			currentEquivalents.add(readTermID(buf, valueStart, valueLen));
+		}
 
-			private void parse_alt_id(byte[] buf, int valueStart, int valueLen)
-			{
-				currentAlternatives.add(readTermID(buf, valueStart, valueLen));
-			}
+		private void parse_is_obsolete(byte[] buf, int valueStart, int valueLen)
+		{
+			currentObsolete = equalsIgnoreCase(buf, valueStart, valueLen, TRUE_KEYWORD);
+		}
 
 
-			private void parse_xref(byte[] buf, int valueStart, int valueLen)
+		private void parse_alt_id(byte[] buf, int valueStart, int valueLen)
+		{
+			currentAlternatives.add(readTermID(buf, valueStart, valueLen));
+		}
+
+
+		private void parse_xref(byte[] buf, int valueStart, int valueLen)
+		{
+			if ((options & PARSE_XREFS) !=0)
 			{
-				if ((options & PARSE_XREFS) !=0)
+				/* Parse xrefs, e.g.
+				 *  (1st form) ICD-10:Q20.4  or
+				 *  (2nd form) UMLS:C0426891 "Broad thumb"
+				 *
+				 *  We refer to the part before the colon as db, the part after the colon as id,
+				 *  and the stuff between the quotation marks as name.
+				 *
+				 *  Also see http://www.geneontology.org/GO.format.obo-1_2.shtml#S.2.2.3
+				 */
+
+				int dbStart = valueStart;
+				int dbEnd = findUnescaped(buf, valueStart, valueLen, ':');
+				if (dbEnd == -1) return;
+
+				int idStart = skipSpaces(buf, dbEnd + 1, valueStart + valueLen - dbEnd - 1);
+				if (idStart == -1) return;
+				int idEnd = valueStart + valueLen;
+
+				/* We assume that the unescaped presence of " indicates a name, i.e., the 2nd form */
+				int nameStart = findUnescaped(buf, idStart + 1, valueStart + valueLen - idStart - 1, '"');
+				String xrefName;
+				if (nameStart != -1)
 				{
-					/* Parse xrefs, e.g.
-					 *  (1st form) ICD-10:Q20.4  or
-					 *  (2nd form) UMLS:C0426891 "Broad thumb"
-					 *
-					 *  We refer to the part before the colon as db, the part after the colon as id,
-					 *  and the stuff between the quotation marks as name.
-					 *
-					 *  Also see http://www.geneontology.org/GO.format.obo-1_2.shtml#S.2.2.3
-					 */
-
-					int dbStart = valueStart;
-					int dbEnd = findUnescaped(buf, valueStart, valueLen, ':');
-					if (dbEnd == -1) return;
-
-					int idStart = skipSpaces(buf, dbEnd + 1, valueStart + valueLen - dbEnd - 1);
-					if (idStart == -1) return;
-					int idEnd = valueStart + valueLen;
-
-					/* We assume that the unescaped presence of " indicates a name, i.e., the 2nd form */
-					int nameStart = findUnescaped(buf, idStart + 1, valueStart + valueLen - idStart - 1, '"');
-					String xrefName;
-					if (nameStart != -1)
-					{
-						nameStart++; /* Skip " */
-						int nameEnd = findUnescaped(buf, nameStart, valueStart + valueLen - nameStart, '"');
+					nameStart++; /* Skip " */
+					int nameEnd = findUnescaped(buf, nameStart, valueStart + valueLen - nameStart, '"');
 
-						/* So we have a name, thus the idEnd must decrease because it includes the whole line so far */
-						idEnd = nameStart - 2;
-						while (idEnd > idStart && buf[idEnd-1] == ' ') idEnd--;
+					/* So we have a name, thus the idEnd must decrease because it includes the whole line so far */
+					idEnd = nameStart - 2;
+					while (idEnd > idStart && buf[idEnd-1] == ' ') idEnd--;
 
-						xrefName = new String(buf,nameStart,nameEnd-nameStart);
-					} else xrefName = null;
+					xrefName = new String(buf,nameStart,nameEnd-nameStart);
+				} else xrefName = null;
 
-					String xrefDb = new String(buf,dbStart,dbEnd-dbStart);
-					String xrefId = new String(buf,idStart,idEnd-idStart);
+				String xrefDb = new String(buf,dbStart,dbEnd-dbStart);
+				String xrefId = new String(buf,idStart,idEnd-idStart);
 
-					currentXrefs.add(new TermXref(xrefDb, xrefId, xrefName));
-				}
+				currentXrefs.add(new TermXref(xrefDb, xrefId, xrefName));
 			}
+		}
+
+		private void parse_subset(byte[] buf, int valueStart, int valueLen)
+		{
+			/* TODO: Avoid ByteString creation */
+			Subset subset = subsets.get(new ByteString(buf, valueStart, valueStart + valueLen));
+			if (subset != null)
+				currentSubsets.add(subset);
+		}
 
-			private void parse_subset(byte[] buf, int valueStart, int valueLen)
+		/**
+		 * Parse key/value as term value.
+		 *
+		 * @param buf
+		 * @param keyStart
+		 * @param keyLen
+		 * @param valueStart
+		 * @param valueLen
+		 */
+		private void readTermValue(byte[] buf, int keyStart, int keyLen, int valueStart, int valueLen)
+		{
+			if (equalsIgnoreCase(buf, keyStart, keyLen, ID_KEYWORD))
+			{
+				parse_id(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, NAME_KEYWORD))
 			{
-				/* TODO: Avoid ByteString creation */
-				Subset subset = subsets.get(new ByteString(buf, valueStart, valueStart + valueLen));
-				if (subset != null)
-					currentSubsets.add(subset);
+				parse_name(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, IS_A_KEYWORD))
+			{
+				parse_is_a(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, RELATIONSHIP_KEYWORD))
+			{
+				parse_relationship(buf, valueStart, valueLen);
+			} else if ((options & IGNORE_SYNONYMS) == 0 && equalsIgnoreCase(buf, keyStart, keyLen, SYNONYM_KEYWORD))
+			{
+				parse_synonym(buf, valueStart, valueLen);
+			} else if ((options & PARSE_DEFINITIONS) != 0 && equalsIgnoreCase(buf, keyStart, keyLen, DEF_KEYWORD))
+			{
+				parse_def(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, NAMESPACE_KEYWORD))
+			{
+				parse_namespace(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, EQUIVALENT_TO_KEYWORD))
+			{
+				parse_equivalent_to(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, IS_OBSOLETE_KEYWORD))
+			{
+				parse_is_obsolete(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, ALT_ID_KEYWORD))
+			{
+				parse_alt_id(buf, valueStart, valueLen);
+			} else if (((options & PARSE_XREFS) !=0) && equalsIgnoreCase(buf, keyStart, keyLen, XREF_KEYWORD))
+			{
+				parse_xref(buf, valueStart, valueLen);
+			} else if (equalsIgnoreCase(buf, keyStart, keyLen, SUBSET_KEYWORD))
+			{
+				parse_subset(buf, valueStart, valueLen);
 			}
+		}
 
-			/**
-			 * Parse key/value as term value.
-			 *
-			 * @param buf
-			 * @param keyStart
-			 * @param keyLen
-			 * @param valueStart
-			 * @param valueLen
-			 */
-			private void readTermValue(byte[] buf, int keyStart, int keyLen, int valueStart, int valueLen)
+		/**
+		 * Parses all lines of the given chunk including the last stanza.
+		 *
+		 * @param buf
+		 */
+		public void parse(byte [] buf)
+		{
+			int lineStart = 0;
+			for (int pos=0;pos<buf.length;pos++)
 			{
-				if (equalsIgnoreCase(buf, keyStart, keyLen, ID_KEYWORD))
-				{
-					parse_id(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, NAME_KEYWORD))
-				{
-					parse_name(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, IS_A_KEYWORD))
-				{
-					parse_is_a(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, RELATIONSHIP_KEYWORD))
-				{
-					parse_relationship(buf, valueStart, valueLen);
-				} else if ((options & IGNORE_SYNONYMS) == 0 && equalsIgnoreCase(buf, keyStart, keyLen, SYNONYM_KEYWORD))
-				{
-					parse_synonym(buf, valueStart, valueLen);
-				} else if ((options & PARSE_DEFINITIONS) != 0 && equalsIgnoreCase(buf, keyStart, keyLen, DEF_KEYWORD))
-				{
-					parse_def(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, NAMESPACE_KEYWORD))
-				{
-					parse_namespace(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, EQUIVALENT_TO_KEYWORD))
-				{
-					parse_equivalent_to(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, IS_OBSOLETE_KEYWORD))
-				{
-					parse_is_obsolete(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, ALT_ID_KEYWORD))
-				{
-					parse_alt_id(buf, valueStart, valueLen);
-				} else if (((options & PARSE_XREFS) !=0) && equalsIgnoreCase(buf, keyStart, keyLen, XREF_KEYWORD))
+				if (buf[pos] == '\n')
 				{
-					parse_xref(buf, valueStart, valueLen);
-				} else if (equalsIgnoreCase(buf, keyStart, keyLen, SUBSET_KEYWORD))
-				{
-					parse_subset(buf, valueStart, valueLen);
+					if (!newLine(buf, lineStart, pos - lineStart))
+						return;
+					lineStart = pos + 1;
 				}
 			}
+			if (lineStart < buf.length && !newLine(buf, lineStart, buf.length - lineStart))
+				return;
+			enterNewTerm();
 		}
-
-		OBOByteLineScanner obls = new OBOByteLineScanner(input.inputStream());
-		obls.scan();
-		enterNewTerm(); /* Get very last stanza after loop! */
-		if (progress != null)
-			progress.update(input.getSize(),obls.currentTerm);
-
-		if (obls.exception != null)
-			throw obls.exception;
-		input.close();
-
-		long durationMillis = System.currentTimeMillis() - startMillis;
-		logger.log(Level.INFO, "Got " + terms.size() + " terms and " + numberOfRelations + " relations in " + durationMillis + " ms");
-		return this.getParseDiagnostics();
 	}
 
 	public ByteString getFormatVersion()
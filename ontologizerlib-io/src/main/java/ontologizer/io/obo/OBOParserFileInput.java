@@ -1,5 +1,6 @@
 package ontologizer.io.obo;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,12 +14,13 @@ import java.util.zip.GZIPInputStream;
  *
  * @author Sebastian Bauer
  */
-public class OBOParserFileInput implements IParserInput
+public class OBOParserFileInput implements IFileParserInput
 {
 	private String filename;
 	private FileInputStream fis;
 	private InputStream is;
 	private FileChannel fc;
+	private boolean mappable;
 
 	public OBOParserFileInput(String filename) throws IOException
 	{
@@ -32,6 +34,7 @@ public class OBOParserFileInput implements IParserInput
 		{
 			fis.close();
 			is = fis = new FileInputStream(filename);
+			mappable = new File(filename).isFile();
 		}
 
 		fc = fis.getChannel();
@@ -56,10 +59,22 @@ public class OBOParserFileInput implements IParserInput
 
 	@Override
 	public int getSize()
+	{
+		return toInt(getLongSize());
+	}
+
+	@Override
+	public int getPosition()
+	{
+		return toInt(getLongPosition());
+	}
+
+	@Override
+	public long getLongSize()
 	{
 		try
 		{
-			return (int)fc.size();
+			return fc.size();
 		} catch (IOException e)
 		{
 		}
@@ -67,17 +82,32 @@ public class OBOParserFileInput implements IParserInput
 	}
 
 	@Override
-	public int getPosition()
+	public long getLongPosition()
 	{
 		try
 		{
-			return (int)fc.position();
+			return fc.position();
 		} catch (IOException e)
 		{
 		}
 		return -1;
 	}
 
+	@Override
+	public FileChannel getChannel()
+	{
+		if (!mappable)
+			return null;
+		return fc;
+	}
+
+	private static int toInt(long l)
+	{
+		if (l > Integer.MAX_VALUE)
+			return -1;
+		return (int)l;
+	}
+
 	@Override
 	public String getFilename()
 	{
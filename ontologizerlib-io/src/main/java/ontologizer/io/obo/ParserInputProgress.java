@@ -0,0 +1,62 @@
+package ontologizer.io.obo;
+
+/**
+ * Maps the size and the position of an input to the int range of the
+ * progress interfaces. Inputs below 2 GB are reported unchanged, larger
+ * inputs are reported in units of the smallest power of two for which the
+ * size fits into an int. The latter requires an {@link IFileParserInput}.
+ */
+public final class ParserInputProgress
+{
+	private ParserInputProgress()
+	{
+	}
+
+	/**
+	 * @param input the input
+	 * @return the size of the input in progress units or -1 if this
+	 *  information is not available.
+	 */
+	public static int size(IParserInput input)
+	{
+		if (!(input instanceof IFileParserInput))
+			return input.getSize();
+
+		long size = ((IFileParserInput)input).getLongSize();
+		if (size < 0)
+			return -1;
+		return scale(size, size);
+	}
+
+	/**
+	 * @param input the input
+	 * @return the position of the input in progress units or -1 if this
+	 *  information is not available.
+	 */
+	public static int position(IParserInput input)
+	{
+		if (!(input instanceof IFileParserInput))
+			return input.getPosition();
+
+		IFileParserInput fileInput = (IFileParserInput)input;
+		long pos = fileInput.getLongPosition();
+		if (pos < 0)
+			return -1;
+		return scale(pos, fileInput.getLongSize());
+	}
+
+	/**
+	 * Scales the given value such that the given size fits into an int.
+	 *
+	 * @param value the value to scale
+	 * @param size the size, which determines the scale, may be negative
+	 * @return the scaled value
+	 */
+	static int scale(long value, long size)
+	{
+		int shift = 33 - Long.numberOfLeadingZeros(Math.max(size, 0));
+		if (shift > 0)
+			value >>= shift;
+		return (int)Math.min(value, Integer.MAX_VALUE);
+	}
+}
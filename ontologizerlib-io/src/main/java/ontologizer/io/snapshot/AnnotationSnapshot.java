@@ -0,0 +1,188 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.util.Util.mix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.io.annotation.AssociationParser;
+import ontologizer.io.obo.OBOParserFileInput;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermMap;
+
+/**
+ * A compact binary snapshot of a parsed {@link AssociationContainer} together
+ * with its {@link ontologizer.association.AnnotationContext}. Loading a
+ * snapshot skips the tokenization of the annotation file as well as the
+ * construction of the symbol, object id and synonym maps.
+ *
+ * The container format is the same as for {@link OntologySnapshot}. Besides the
+ * size, modification time and checksums of the annotation file, a snapshot
+ * records a key that identifies the ontology and the evidence filter that were
+ * used for parsing. A snapshot is only used if the key, the size, the
+ * modification time and the checksum of the beginning of the annotation file
+ * match. The checksum of the entire annotation file is only compared on
+ * request, as this requires to read the entire file.
+ *
+ * @see AnnotationSnapshotWriter
+ * @see AnnotationSnapshotReader
+ */
+public final class AnnotationSnapshot
+{
+	private static Logger logger = Logger.getLogger(AnnotationSnapshot.class.getName());
+
+	/** The magic bytes that start every snapshot */
+	static final byte [] MAGIC = "ANNOSNAP".getBytes(Charset.forName("US-ASCII"));
+
+	/** The current version of the format */
+	public static final int VERSION = 3;
+
+	private AnnotationSnapshot()
+	{
+	}
+
+	private static long hash(TermID tid)
+	{
+		/* The integers of non-numeric ids depend on the process */
+		String stringId = tid.getStringId();
+		long id = stringId != null ? mix(stringId.hashCode()) : tid.id;
+		return mix(((long)tid.getPrefix().toString().hashCode() << 32) ^ id);
+	}
+
+	/**
+	 * Determine the key that identifies the parameters that influence the
+	 * parsing of an annotation file, i.e., the ontology and the evidence
+	 * filter.
+	 *
+	 * @param terms the terms of the ontology.
+	 * @param evidences the evidence filter, may be null.
+	 * @return the key.
+	 */
+	static String getKey(TermMap terms, Collection<String> evidences)
+	{
+		StringBuilder key = new StringBuilder();
+		if (terms instanceof TermContainer)
+		{
+			key.append(((TermContainer)terms).getFormatVersion());
+			key.append('/');
+			key.append(((TermContainer)terms).getDate());
+		}
+
+		/* The fingerprint covers the ids, alternative ids and the obsolete state of all terms.
+		 * It doesn't depend on the order of the terms */
+		long fingerprint = 0;
+		for (Term t : terms)
+		{
+			long h = hash(t.getID()) + (t.isObsolete() ? 1 : 0);
+			for (TermID alt : t.getAlternatives())
+				h = h * 31 + hash(alt);
+			fingerprint += mix(h);
+		}
+		key.append('/');
+		key.append(Long.toHexString(fingerprint));
+
+		key.append('/');
+		if (evidences == null) key.append('*');
+		else
+		{
+			boolean first = true;
+			for (String ev : new TreeSet<String>(evidences))
+			{
+				if (!first) key.append(',');
+				key.append(ev);
+				first = false;
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Loads the associations defined by the given annotation file. If the
+	 * snapshot file exists and was created from the annotation file in its
+	 * current state using the same ontology and evidence filter, the
+	 * associations are loaded from the snapshot. Otherwise, the annotation file
+	 * is parsed and a new snapshot is written. Failures to write the snapshot
+	 * are logged but otherwise ignored.
+	 *
+	 * @param associationFilename the name of the annotation file.
+	 * @param terms the terms of the ontology.
+	 * @param evidences keep only the annotation whose evidence match the given
+	 *  ones. If null, all annotations are used.
+	 * @param snapshotFilename the name of the snapshot file.
+	 * @return the container of the associations.
+	 * @throws IOException
+	 */
+	public static AssociationContainer load(String associationFilename, TermMap terms, Collection<String> evidences, String snapshotFilename) throws IOException
+	{
+		return load(associationFilename, terms, evidences, snapshotFilename, false);
+	}
+
+	/**
+	 * Loads the associations defined by the given annotation file like
+	 * {@link #load(String, TermMap, Collection, String)}.
+	 *
+	 * @param associationFilename the name of the annotation file.
+	 * @param terms the terms of the ontology.
+	 * @param evidences keep only the annotation whose evidence match the given
+	 *  ones. If null, all annotations are used.
+	 * @param snapshotFilename the name of the snapshot file.
+	 * @param verify whether the checksums of the snapshot and of the entire
+	 *  annotation file should be verified before the snapshot is used.
+	 * @return the container of the associations.
+	 * @throws IOException
+	 */
+	public static AssociationContainer load(String associationFilename, TermMap terms, Collection<String> evidences, String snapshotFilename, boolean verify) throws IOException
+	{
+		File associationFile = new File(associationFilename);
+		File snapshotFile = new File(snapshotFilename);
+
+		if (snapshotFile.exists())
+		{
+			try
+			{
+				AnnotationSnapshotReader reader = new AnnotationSnapshotReader(snapshotFile);
+				if (reader.isUpToDate(associationFile, terms, evidences, verify))
+				{
+					if (verify)
+						reader.verify();
+					return reader.read();
+				}
+				logger.log(Level.INFO, "Snapshot \"" + snapshotFilename + "\" is stale");
+			} catch (SnapshotException e)
+			{
+				logger.log(Level.INFO, "Ignoring snapshot \"" + snapshotFilename + "\": " + e.getMessage());
+			} catch (IOException e)
+			{
+				logger.log(Level.INFO, "Ignoring snapshot \"" + snapshotFilename + "\": " + e.getMessage());
+			}
+		}
+
+		OBOParserFileInput input = new OBOParserFileInput(associationFilename);
+		AssociationContainer container;
+		try
+		{
+			AssociationParser ap = new AssociationParser(input, terms, null, evidences, null);
+			container = ap.getAssociationContainer();
+		} finally
+		{
+			input.close();
+		}
+
+		try
+		{
+			AnnotationSnapshotWriter.write(container, terms, evidences, snapshotFile, associationFile);
+		} catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Could not write snapshot \"" + snapshotFilename + "\": " + e.getMessage());
+		}
+		return container;
+	}
+}
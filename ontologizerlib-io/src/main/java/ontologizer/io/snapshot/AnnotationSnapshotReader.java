@@ -0,0 +1,222 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.io.snapshot.AnnotationSnapshot.MAGIC;
+import static ontologizer.io.snapshot.AnnotationSnapshot.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.AssociationContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermMap;
+import ontologizer.types.ByteString;
+import sonumina.collections.ObjectIntHashMap;
+
+/**
+ * Reads an {@link AssociationContainer} from a binary snapshot. The header
+ * is verified when the reader is constructed, the checksum of the payload
+ * only on {@link #verify()}.
+ *
+ * @see AnnotationSnapshot
+ */
+public final class AnnotationSnapshotReader extends SnapshotReader
+{
+	/** The key of the parameters that were used to create the snapshot */
+	private String key;
+
+	/** The position of the contents within the int array */
+	private int contentsPosition;
+
+	/**
+	 * Opens the given snapshot and verifies its header.
+	 *
+	 * @param file the snapshot file.
+	 * @throws IOException if the file cannot be read.
+	 * @throws SnapshotException if the file is no valid snapshot.
+	 */
+	public AnnotationSnapshotReader(File file) throws IOException, SnapshotException
+	{
+		super(file, MAGIC, VERSION);
+
+		try
+		{
+			decodeStrings();
+			key = getJavaString();
+			contentsPosition = ints.position();
+		} catch (BufferUnderflowException e)
+		{
+			throw new SnapshotException("Malformed snapshot");
+		} catch (IndexOutOfBoundsException e)
+		{
+			throw new SnapshotException("Malformed snapshot");
+		} catch (IllegalArgumentException e)
+		{
+			throw new SnapshotException("Malformed snapshot: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns whether the snapshot has been written from the given source in
+	 * its current state using the given parameters. Only the size, the
+	 * modification time and the beginning of the source are compared.
+	 *
+	 * @param source the annotation file.
+	 * @param terms the terms of the ontology.
+	 * @param evidences the evidence filter, may be null.
+	 * @return whether the snapshot can be used.
+	 * @throws IOException if the source cannot be read.
+	 */
+	public boolean isUpToDate(File source, TermMap terms, Collection<String> evidences) throws IOException
+	{
+		return isUpToDate(source, terms, evidences, false);
+	}
+
+	/**
+	 * Returns whether the snapshot has been written from the given source in
+	 * its current state using the given parameters.
+	 *
+	 * @param source the annotation file.
+	 * @param terms the terms of the ontology.
+	 * @param evidences the evidence filter, may be null.
+	 * @param verifyContents whether the checksum of the entire source should
+	 *  be compared as well, which requires to read the entire source.
+	 * @return whether the snapshot can be used.
+	 * @throws IOException if the source cannot be read.
+	 */
+	public boolean isUpToDate(File source, TermMap terms, Collection<String> evidences, boolean verifyContents) throws IOException
+	{
+		if (!AnnotationSnapshot.getKey(terms, evidences).equals(key))
+			return false;
+		return isUpToDate(source, verifyContents);
+	}
+
+	private ByteString [] getStrings()
+	{
+		ByteString [] strings = new ByteString[getLength()];
+		for (int i=0;i<strings.length;i++)
+			strings[i] = getString();
+		return strings;
+	}
+
+	/**
+	 * Get bytes that have been stored four per int.
+	 */
+	private byte [] getBytes()
+	{
+		int n = ints.get();
+		if (n < 0 || (n + 3L) / 4 > ints.remaining())
+			throw new IllegalArgumentException("Invalid length");
+		byte [] bytes = new byte[n];
+		for (int i=0;i<bytes.length;i+=4)
+		{
+			int v = ints.get();
+			for (int j=0;j<4;j++)
+			{
+				if (i + j < bytes.length)
+					bytes[i + j] = (byte)(v >>> (24 - 8 * j));
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Get the indices into a table of the given size. The indices have been
+	 * stored as bytes if the table has at most 256 entries.
+	 *
+	 * @return the indices as bytes or null if they have been stored as ints.
+	 */
+	private byte [] getByteIndices(int size)
+	{
+		if (size > 256)
+			return null;
+		return getBytes();
+	}
+
+	private static int [] widen(byte [] bytes)
+	{
+		int [] ints = new int[bytes.length];
+		for (int i=0;i<bytes.length;i++)
+			ints[i] = bytes[i] & 0xff;
+		return ints;
+	}
+
+	private ObjectIntHashMap<ByteString> getMap()
+	{
+		int num = getLength();
+		ObjectIntHashMap<ByteString> map = new ObjectIntHashMap<ByteString>(num);
+		for (int i=0;i<num;i++)
+		{
+			ByteString name = getString();
+			map.put(name, ints.get());
+		}
+		return map;
+	}
+
+	/**
+	 * Read the association container from the snapshot.
+	 *
+	 * @return the container.
+	 * @throws SnapshotException if the snapshot is malformed.
+	 */
+	public AssociationContainer read() throws SnapshotException
+	{
+		try
+		{
+			ints.position(contentsPosition);
+
+			/* The annotation context */
+			ByteString [] symbols = getStrings();
+			ByteString [] objectIds = getStrings();
+			ObjectIntHashMap<ByteString> objectIdMap = getMap();
+			ObjectIntHashMap<ByteString> synonymMap = getMap();
+			ObjectIntHashMap<ByteString> objectSymbolMap = new ObjectIntHashMap<ByteString>(symbols.length);
+			for (int i=0;i<symbols.length;i++)
+				objectSymbolMap.put(symbols[i], i);
+			AnnotationContext context = new AnnotationContext(Arrays.asList(symbols), Arrays.asList(objectIds), objectSymbolMap, objectIdMap, synonymMap);
+
+			/* The columns */
+			int [] offsets = getIntArray();
+			TermID [] termIDs = new TermID[getLength()];
+			for (int i=0;i<termIDs.length;i++)
+				termIDs[i] = getTermID();
+			int [] termIndices = getIntArray();
+			ByteString [] evidenceCodes = getStrings();
+			byte [] evidenceIndices = getByteIndices(evidenceCodes.length);
+			int [] wideEvidenceIndices = evidenceIndices == null ? getIntArray() : null;
+			ByteString [] aspects = getStrings();
+			byte [] aspectIndices = getByteIndices(aspects.length);
+			int [] wideAspectIndices = aspectIndices == null ? getIntArray() : null;
+			long [] notQualifiers = new long[getLength()];
+			for (int i=0;i<notQualifiers.length;i++)
+				notQualifiers[i] = getLong();
+			ByteString [] objectIDs = getStrings();
+			int [] objectIDIndices = getIntArray();
+			ByteString [] synonyms = getStrings();
+			int [] synonymIndices = getIntArray();
+
+			if (wideEvidenceIndices != null || wideAspectIndices != null)
+			{
+				return AssociationContainer.create(context, offsets, termIndices, termIDs,
+						wideEvidenceIndices != null ? wideEvidenceIndices : widen(evidenceIndices), evidenceCodes,
+						wideAspectIndices != null ? wideAspectIndices : widen(aspectIndices), aspects, notQualifiers,
+						objectIDIndices, objectIDs, synonymIndices, synonyms);
+			}
+			return AssociationContainer.create(context, offsets, termIndices, termIDs,
+					evidenceIndices, evidenceCodes, aspectIndices, aspects, notQualifiers,
+					objectIDIndices, objectIDs, synonymIndices, synonyms);
+		} catch (BufferUnderflowException e)
+		{
+			throw new SnapshotException("Malformed snapshot");
+		} catch (IndexOutOfBoundsException e)
+		{
+			throw new SnapshotException("Malformed snapshot");
+		} catch (IllegalArgumentException e)
+		{
+			throw new SnapshotException("Malformed snapshot: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.io.snapshot.AnnotationSnapshot.MAGIC;
+import static ontologizer.io.snapshot.AnnotationSnapshot.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.AssociationContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermMap;
+import ontologizer.types.ByteString;
+
+/**
+ * Writes an {@link AssociationContainer} and its annotation context as a
+ * binary snapshot.
+ *
+ * @see AnnotationSnapshot
+ */
+public final class AnnotationSnapshotWriter extends SnapshotWriter
+{
+	private AnnotationSnapshotWriter()
+	{
+	}
+
+	private void putStrings(ByteString [] strings)
+	{
+		put(strings.length);
+		for (ByteString s : strings)
+			putString(s);
+	}
+
+	/**
+	 * Put the given indices into a table of the given size. The indices are
+	 * put as bytes, four per int, if the table has at most 256 entries.
+	 */
+	private void putIndices(int [] indices, int size)
+	{
+		if (size > 256)
+		{
+			put(indices);
+			return;
+		}
+
+		put(indices.length);
+		for (int i=0;i<indices.length;i+=4)
+		{
+			int v = 0;
+			for (int j=0;j<4;j++)
+			{
+				v <<= 8;
+				if (i + j < indices.length)
+					v |= indices[i + j] & 0xff;
+			}
+			put(v);
+		}
+	}
+
+	private void putMap(HashMap<ByteString,ByteString> map, AnnotationContext context)
+	{
+		put(map.size());
+		for (Map.Entry<ByteString,ByteString> e : map.entrySet())
+		{
+			putString(e.getKey());
+			put(context.mapSymbol(e.getValue()));
+		}
+	}
+
+	/**
+	 * Encode the container into the string table and the int array.
+	 *
+	 * @param container
+	 * @param key
+	 */
+	private void encode(AssociationContainer container, String key)
+	{
+		putString(key);
+
+		/* The annotation context */
+		AnnotationContext context = container.getMapping();
+		ByteString [] symbols = context.getSymbols();
+		putStrings(symbols);
+		putStrings(context.getObjectIds());
+		putMap(context.getDbObjectID2Symbol(), context);
+		putMap(context.getSynonym2Symbol(), context);
+
+		/* The columns */
+		int rows = container.getNumberOfAssociations();
+		int [] offsets = new int[symbols.length + 1];
+		for (int i=0;i<symbols.length;i++)
+			offsets[i] = container.getAssociationsStart(i);
+		offsets[symbols.length] = rows;
+		put(offsets);
+
+		TermID [] termIDs = container.getTermIDs();
+		put(termIDs.length);
+		for (TermID tid : termIDs)
+			putTermID(tid);
+
+		int [] termIndices = new int[rows];
+		int [] evidenceIndices = new int[rows];
+		int [] aspectIndices = new int[rows];
+		int [] objectIDIndices = new int[rows];
+		int [] synonymIndices = new int[rows];
+		long [] notQualifiers = new long[(rows + 63) >>> 6];
+		for (int row=0;row<rows;row++)
+		{
+			termIndices[row] = container.getTermIndex(row);
+			evidenceIndices[row] = container.getEvidenceIndex(row);
+			aspectIndices[row] = container.getAspectIndex(row);
+			objectIDIndices[row] = container.getObjectIDIndex(row);
+			synonymIndices[row] = container.getSynonymIndex(row);
+			if (container.hasNotQualifier(row))
+				notQualifiers[row >>> 6] |= 1L << row;
+		}
+		put(termIndices);
+		putStrings(container.getEvidenceCodes());
+		putIndices(evidenceIndices, container.getEvidenceCodes().length);
+		putStrings(container.getAspects());
+		putIndices(aspectIndices, container.getAspects().length);
+		put(notQualifiers.length);
+		for (long l : notQualifiers)
+			putLong(l);
+		putStrings(container.getObjectIDs());
+		put(objectIDIndices);
+		putStrings(container.getSynonyms());
+		put(synonymIndices);
+	}
+
+	/**
+	 * Write a snapshot of the given container.
+	 *
+	 * @param container the container to write.
+	 * @param terms the terms of the ontology that was used to create the container.
+	 * @param evidences the evidence filter that was used to create the container.
+	 * @param file the file to which the snapshot is written. The file is
+	 *  replaced atomically if the file system supports it.
+	 * @param source the annotation file from which the container has been
+	 *  created. Its size, modification time and checksum are stored in order
+	 *  to detect stale snapshots. May be null.
+	 * @throws IOException
+	 */
+	public static void write(AssociationContainer container, TermMap terms, Collection<String> evidences, File file, File source) throws IOException
+	{
+		AnnotationSnapshotWriter writer = new AnnotationSnapshotWriter();
+		writer.encode(container, AnnotationSnapshot.getKey(terms, evidences));
+		writer.write(file, source, MAGIC, VERSION);
+	}
+}
@@ -0,0 +1,118 @@
+package ontologizer.io.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ontologizer.io.obo.OBOParser;
+import ontologizer.io.obo.OBOParserException;
+import ontologizer.io.obo.OBOParserFileInput;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.TermContainer;
+
+/**
+ * A compact binary snapshot of a fully built {@link Ontology}. The snapshot
+ * contains all terms including their names, definitions, parents with the
+ * relation types, alternative ids, subsets, namespaces, synonyms and xrefs as
+ * well as the precomputed ancestor and descendant arrays of the graph. Loading
+ * a snapshot therefore skips parsing the OBO file and computing the closures.
+ *
+ * A snapshot file consists of a fixed-size header followed by the payload.
+ * The header contains a magic, the format version, the size, modification
+ * time and checksums of the source file, the length of the payload and the
+ * CRC32 checksum of the payload. The payload consists of a string table
+ * followed by a flat array of big-endian ints that encodes the terms and the
+ * graph. Numeric term ids are stored as integers, non-numeric ones as
+ * strings. The file is read via a read-only memory mapping, strings are
+ * decoded on first access.
+ *
+ * @see OntologySnapshotWriter
+ * @see OntologySnapshotReader
+ */
+public final class OntologySnapshot
+{
+	private static Logger logger = Logger.getLogger(OntologySnapshot.class.getName());
+
+	/** The magic bytes that start every snapshot */
+	static final byte [] MAGIC = "ONTOSNAP".getBytes(Charset.forName("US-ASCII"));
+
+	/** The current version of the format */
+	public static final int VERSION = 2;
+
+	private OntologySnapshot()
+	{
+	}
+
+	/**
+	 * Loads the ontology defined by the given OBO file. If the snapshot file
+	 * exists and was created from the OBO file in its current state, the
+	 * ontology is loaded from the snapshot. Otherwise, the OBO file is parsed
+	 * and a new snapshot is written. Failures to write the snapshot are logged
+	 * but otherwise ignored.
+	 *
+	 * @param oboFilename the name of the OBO file.
+	 * @param snapshotFilename the name of the snapshot file.
+	 * @return the ontology.
+	 * @throws IOException
+	 * @throws OBOParserException
+	 */
+	public static Ontology load(String oboFilename, String snapshotFilename) throws IOException, OBOParserException
+	{
+		return load(oboFilename, snapshotFilename, false);
+	}
+
+	/**
+	 * Loads the ontology defined by the given OBO file like
+	 * {@link #load(String, String)}.
+	 *
+	 * @param oboFilename the name of the OBO file.
+	 * @param snapshotFilename the name of the snapshot file.
+	 * @param verify whether the checksums of the snapshot and of the entire
+	 *  OBO file should be verified before the snapshot is used.
+	 * @return the ontology.
+	 * @throws IOException
+	 * @throws OBOParserException
+	 */
+	public static Ontology load(String oboFilename, String snapshotFilename, boolean verify) throws IOException, OBOParserException
+	{
+		File oboFile = new File(oboFilename);
+		File snapshotFile = new File(snapshotFilename);
+
+		if (snapshotFile.exists())
+		{
+			try
+			{
+				OntologySnapshotReader reader = new OntologySnapshotReader(snapshotFile);
+				if (reader.isUpToDate(oboFile, verify))
+				{
+					if (verify)
+						reader.verify();
+					return reader.read();
+				}
+				logger.log(Level.INFO, "Snapshot \"" + snapshotFilename + "\" is stale");
+			} catch (SnapshotException e)
+			{
+				logger.log(Level.INFO, "Ignoring snapshot \"" + snapshotFilename + "\": " + e.getMessage());
+			} catch (IOException e)
+			{
+				logger.log(Level.INFO, "Ignoring snapshot \"" + snapshotFilename + "\": " + e.getMessage());
+			}
+		}
+
+		OBOParser oboParser = new OBOParser(new OBOParserFileInput(oboFilename));
+		oboParser.doParse();
+		TermContainer tc = new TermContainer(oboParser.getTermMap(), oboParser.getFormatVersion(), oboParser.getDate());
+		Ontology ontology = Ontology.create(tc);
+
+		try
+		{
+			OntologySnapshotWriter.write(ontology, snapshotFile, oboFile);
+		} catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Could not write snapshot \"" + snapshotFilename + "\": " + e.getMessage());
+		}
+		return ontology;
+	}
+}
@@ -0,0 +1,219 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.io.snapshot.OntologySnapshot.MAGIC;
+import static ontologizer.io.snapshot.OntologySnapshot.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import ontologizer.ontology.Namespace;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.Subset;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermRelation;
+import ontologizer.ontology.TermXref;
+import ontologizer.types.ByteString;
+import sonumina.math.graph.CSRDirectedGraphView;
+
+/**
+ * Reads an {@link Ontology} from a binary snapshot. The header is
+ * verified when the reader is constructed, the checksum of the payload only
+ * on {@link #verify()}.
+ *
+ * Only opening a snapshot costs about as much as mapping the file. As the
+ * ontology is made of objects, {@link #read()} decodes every term and then
+ * rebuilds the graph and the term map via {@link Ontology#create(TermContainer)},
+ * just like after a parse. Only the ancestor and descendant arrays are taken
+ * from the mapping. For the 35520 terms of the GO file of the tests, opening
+ * took about 0.4 ms and reading 150 to 200 ms, of which 40 to 80 ms went into
+ * the rebuild, compared to 250 to 270 ms for parsing and building on a single
+ * core.
+ *
+ * @see OntologySnapshot
+ */
+public final class OntologySnapshotReader extends SnapshotReader
+{
+	private HashMap<ByteString,Namespace> namespaces = new HashMap<ByteString,Namespace>();
+
+	private HashMap<ByteString,Subset> subsets = new HashMap<ByteString,Subset>();
+
+	/**
+	 * Opens the given snapshot and verifies its header.
+	 *
+	 * @param file the snapshot file.
+	 * @throws IOException if the file cannot be read.
+	 * @throws SnapshotException if the file is no valid snapshot.
+	 */
+	public OntologySnapshotReader(File file) throws IOException, SnapshotException
+	{
+		super(file, MAGIC, VERSION);
+	}
+
+	private ArrayList<TermID> getTermIDs()
+	{
+		int num = ints.get();
+		if (num == NONE) return null;
+		ArrayList<TermID> tids = new ArrayList<TermID>(num);
+		for (int i=0;i<num;i++)
+			tids.add(getTermID());
+		return tids;
+	}
+
+	private Namespace getNamespace()
+	{
+		ByteString name = getString();
+		if (name == null || name.equals(Namespace.UNKOWN_NAMESPACE.getName()))
+			return Namespace.UNKOWN_NAMESPACE;
+
+		Namespace namespace = namespaces.get(name);
+		if (namespace == null)
+		{
+			namespace = new Namespace(name);
+			namespaces.put(name, namespace);
+		}
+		return namespace;
+	}
+
+	private Term getTerm()
+	{
+		TermID id = getTermID();
+		ByteString name = getString();
+		ByteString definition = getString();
+		Namespace namespace = getNamespace();
+		boolean obsolete = ints.get() != 0;
+		long ic = getLong();
+
+		ParentTermID [] parents = new ParentTermID[getLength()];
+		TermRelation [] relations = TermRelation.values();
+		for (int i=0;i<parents.length;i++)
+		{
+			TermID parent = getTermID();
+			int relation = ints.get();
+			parents[i] = new ParentTermID(parent, relation != NONE ? relations[relation] : null);
+		}
+
+		Term term = new Term(id, name, namespace, parents);
+		term.setDefinition(definition);
+		term.setObsolete(obsolete);
+		term.setInformationContent(Double.longBitsToDouble(ic));
+
+		ArrayList<TermID> alternatives = getTermIDs();
+		if (alternatives != null && alternatives.size() > 0)
+			term.setAlternatives(alternatives);
+
+		ArrayList<TermID> equivalents = getTermIDs();
+		if (equivalents != null)
+			term.setEquivalents(equivalents);
+
+		int num = ints.get();
+		if (num != NONE)
+		{
+			ArrayList<ByteString> synonyms = new ArrayList<ByteString>(num);
+			for (int i=0;i<num;i++)
+				synonyms.add(getString());
+			term.setSynonyms(synonyms);
+		}
+
+		num = ints.get();
+		if (num > 0)
+		{
+			ArrayList<Subset> termSubsets = new ArrayList<Subset>(num);
+			for (int i=0;i<num;i++)
+			{
+				ByteString subsetName = getString();
+				ByteString subsetDesc = getString();
+				Subset subset = subsets.get(subsetName);
+				if (subset == null)
+				{
+					subset = new Subset(subsetName, subsetDesc);
+					subsets.put(subsetName, subset);
+				}
+				termSubsets.add(subset);
+			}
+			term.setSubsets(termSubsets);
+		}
+
+		num = ints.get();
+		if (num != NONE)
+		{
+			ArrayList<TermXref> xrefs = new ArrayList<TermXref>(num);
+			for (int i=0;i<num;i++)
+			{
+				String database = getJavaString();
+				String xrefId = getJavaString();
+				String xrefName = getJavaString();
+				if (xrefName != null) xrefs.add(new TermXref(database, xrefId, xrefName));
+				else xrefs.add(new TermXref(database, xrefId));
+			}
+			term.setXrefs(xrefs);
+		}
+
+		num = ints.get();
+		if (num != NONE)
+		{
+			ArrayList<String> intersections = new ArrayList<String>(num);
+			for (int i=0;i<num;i++)
+				intersections.add(getJavaString());
+			term.setIntersections(intersections);
+		}
+		return term;
+	}
+
+	/**
+	 * Read the ontology from the snapshot.
+	 *
+	 * @return the ontology.
+	 * @throws SnapshotException if the snapshot is malformed.
+	 */
+	public Ontology read() throws SnapshotException
+	{
+		try
+		{
+			decodeStrings();
+
+			ByteString format = getString();
+			ByteString date = getString();
+
+			int numTerms = getLength();
+			List<Term> terms = new ArrayList<Term>(numTerms);
+			for (int i=0;i<numTerms;i++)
+				terms.add(getTerm());
+
+			Ontology ontology = Ontology.create(new TermContainer(terms, format, date));
+
+			if (ints.get() != 0)
+			{
+				int n = getLength();
+				List<Term> vertices = new ArrayList<Term>(n);
+				for (int i=0;i<n;i++)
+				{
+					int idx = ints.get();
+					vertices.add(idx != NONE ? terms.get(idx) : ontology.getRootTerm());
+				}
+
+				CSRDirectedGraphView<Term> view = CSRDirectedGraphView.create(vertices, n,
+						getIntArray(), getIntArray(), getIntArray(), getIntArray(),
+						getIntArray(), getIntArray(), getIntArray(), getIntArray(),
+						getIntArray());
+				ontology.setPrecomputedGraphView(view);
+			}
+			return ontology;
+		} catch (BufferUnderflowException e)
+		{
+			throw new SnapshotException("Malformed snapshot");
+		} catch (IndexOutOfBoundsException e)
+		{
+			throw new SnapshotException("Malformed snapshot");
+		} catch (IllegalArgumentException e)
+		{
+			throw new SnapshotException("Malformed snapshot: " + e.getMessage());
+		}
+	}
+}
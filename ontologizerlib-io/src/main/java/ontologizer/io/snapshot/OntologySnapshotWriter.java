@@ -0,0 +1,177 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.io.snapshot.OntologySnapshot.MAGIC;
+import static ontologizer.io.snapshot.OntologySnapshot.VERSION;
+import static ontologizer.io.snapshot.SnapshotReader.NONE;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.Subset;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermMap;
+import ontologizer.ontology.TermXref;
+import ontologizer.types.ByteString;
+import sonumina.math.graph.CSRDirectedGraphView;
+
+/**
+ * Writes an {@link Ontology} as a binary snapshot.
+ *
+ * @see OntologySnapshot
+ */
+public final class OntologySnapshotWriter extends SnapshotWriter
+{
+	private OntologySnapshotWriter()
+	{
+	}
+
+	private void putTerm(Term term)
+	{
+		putTermID(term.getID());
+		putString(term.getName());
+		putString(term.getDefinition());
+		putString(term.getNamespace().getName());
+		put(term.isObsolete() ? 1 : 0);
+
+		putLong(Double.doubleToLongBits(term.getInformationContent()));
+
+		ParentTermID [] parents = term.getParents();
+		put(parents.length);
+		for (ParentTermID p : parents)
+		{
+			putTermID(p.termid);
+			put(p.relation != null ? p.relation.ordinal() : NONE);
+		}
+
+		putTermIDs(term.getAlternatives());
+		putTermIDs(term.getEquivalents());
+
+		ByteString [] synonyms = term.getSynonyms();
+		if (synonyms == null) put(NONE);
+		else
+		{
+			put(synonyms.length);
+			for (ByteString s : synonyms)
+				putString(s);
+		}
+
+		Subset [] subsets = term.getSubsets();
+		put(subsets.length);
+		for (Subset s : subsets)
+		{
+			putString(s.getName());
+			putString(s.getDescription());
+		}
+
+		TermXref [] xrefs = term.getXrefs();
+		if (xrefs == null) put(NONE);
+		else
+		{
+			put(xrefs.length);
+			for (TermXref x : xrefs)
+			{
+				putString(x.getDatabase());
+				putString(x.getXrefId());
+				putString(x.getXrefName());
+			}
+		}
+
+		String [] intersections = term.getIntersections();
+		if (intersections == null) put(NONE);
+		else
+		{
+			put(intersections.length);
+			for (String i : intersections)
+				putString(i);
+		}
+	}
+
+	/**
+	 * Encode the ontology into the string table and the int array.
+	 *
+	 * @param ontology
+	 */
+	private void encode(Ontology ontology)
+	{
+		TermMap termMap = ontology.getTermMap();
+		if (termMap instanceof TermContainer)
+		{
+			putString(((TermContainer)termMap).getFormatVersion());
+			putString(((TermContainer)termMap).getDate());
+		} else
+		{
+			put(NONE);
+			put(NONE);
+		}
+
+		/* Terms */
+		HashMap<Term,Integer> term2Index = new HashMap<Term,Integer>();
+		List<Term> terms = new ArrayList<Term>();
+		for (Term t : termMap)
+		{
+			term2Index.put(t, terms.size());
+			terms.add(t);
+		}
+		put(terms.size());
+		for (Term t : terms)
+			putTerm(t);
+
+		/* The graph view, the vertices are stored as indices of the terms */
+		CSRDirectedGraphView<Term> view;
+		try
+		{
+			view = ontology.getCSRGraphView();
+		} catch (IllegalArgumentException e)
+		{
+			/* Graph contains a cycle */
+			view = null;
+		}
+
+		if (view == null)
+		{
+			put(0);
+			return;
+		}
+
+		put(1);
+		put(view.getNumberOfVertices());
+		for (int i=0;i<view.getNumberOfVertices();i++)
+		{
+			Integer idx = term2Index.get(view.getVertex(i));
+			put(idx != null ? idx : NONE);
+		}
+		put(view.parentOffsets);
+		put(view.parents);
+		put(view.childOffsets);
+		put(view.children);
+		put(view.ancestorOffsets);
+		put(view.ancestors);
+		put(view.descendantOffsets);
+		put(view.descendants);
+		put(view.topologicalOrder);
+	}
+
+	/**
+	 * Write a snapshot of the given ontology.
+	 *
+	 * @param ontology the ontology to write.
+	 * @param file the file to which the snapshot is written. The file is
+	 *  replaced atomically if the file system supports it.
+	 * @param source the file from which the ontology has been created. Its size
+	 *  and modification time are stored in order to detect stale snapshots.
+	 *  May be null.
+	 * @throws IOException
+	 */
+	public static void write(Ontology ontology, File file, File source) throws IOException
+	{
+		OntologySnapshotWriter writer = new OntologySnapshotWriter();
+		writer.encode(ontology);
+		writer.write(file, source, MAGIC, VERSION);
+	}
+}
@@ -0,0 +1,19 @@
+package ontologizer.io.snapshot;
+
+/**
+ * An exception which is thrown if a snapshot cannot be used, e.g., because it
+ * has an unknown version or because its checksum doesn't match.
+ *
+ * @see OntologySnapshotReader
+ * @see AnnotationSnapshotReader
+ */
+public class SnapshotException extends Exception
+{
+	/** Serial UID */
+	private static final long serialVersionUID = 1L;
+
+	public SnapshotException(String message)
+	{
+		super(message);
+	}
+}
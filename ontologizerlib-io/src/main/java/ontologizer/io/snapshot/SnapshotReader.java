@@ -0,0 +1,323 @@
+package ontologizer.io.snapshot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import ontologizer.ontology.Prefix;
+import ontologizer.ontology.PrefixPool;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+/**
+ * Base class of the snapshot readers. The file is mapped to memory and its
+ * header is verified when the reader is constructed. The checksum of the
+ * payload is only verified on demand and the strings are decoded when they
+ * are first accessed, so opening a snapshot costs little more than mapping
+ * it.
+ *
+ * @see SnapshotWriter
+ */
+class SnapshotReader
+{
+	/** Size of the header in bytes */
+	static final int HEADER_SIZE = 64;
+
+	/** Marks absent references in the int array */
+	static final int NONE = -1;
+
+	/** The number of bytes at the start of a source that are covered by the head checksum */
+	static final int HEAD_SIZE = 1 << 16;
+
+	/** The mapped payload */
+	private ByteBuffer payload;
+
+	/** The checksum of the payload */
+	private long checksum;
+
+	/** The size of the source at the time the snapshot was written */
+	private long sourceLength;
+
+	/** The modification time of the source at the time the snapshot was written */
+	private long sourceLastModified;
+
+	/** The checksum of the first bytes of the source */
+	private long sourceHeadChecksum;
+
+	/** The checksum of the entire source */
+	private long sourceChecksum;
+
+	/** The offsets of the strings */
+	private IntBuffer stringOffsets;
+
+	/** The position of the string bytes within the payload */
+	private int stringBase;
+
+	/** The strings that have been decoded so far, indexed by the string index */
+	private ByteString [] strings;
+
+	/** The prefixes, indexed by the string index */
+	private Prefix [] prefixes;
+
+	private PrefixPool prefixPool = new PrefixPool();
+
+	/** The int array of the payload */
+	protected IntBuffer ints;
+
+	/**
+	 * Opens the given snapshot and verifies its header.
+	 *
+	 * @param file the snapshot file.
+	 * @param magic the expected magic.
+	 * @param expectedVersion the expected version.
+	 * @throws IOException if the file cannot be read.
+	 * @throws SnapshotException if the file is no valid snapshot.
+	 */
+	SnapshotReader(File file, byte [] magic, int expectedVersion) throws IOException, SnapshotException
+	{
+		MappedByteBuffer mapped;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel fc = raf.getChannel();
+			if (fc.size() < HEADER_SIZE)
+				throw new SnapshotException("File is too small");
+			mapped = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+		} finally
+		{
+			raf.close();
+		}
+
+		byte [] actualMagic = new byte[magic.length];
+		mapped.get(actualMagic);
+		if (!Arrays.equals(actualMagic, magic))
+			throw new SnapshotException("Not a snapshot of the expected type");
+
+		int version = mapped.getInt();
+		if (version != expectedVersion)
+			throw new SnapshotException("Unsupported version " + version);
+		mapped.getInt();
+
+		sourceLength = mapped.getLong();
+		sourceLastModified = mapped.getLong();
+		sourceHeadChecksum = mapped.getLong();
+		sourceChecksum = mapped.getLong();
+		long payloadLength = mapped.getLong();
+		checksum = mapped.getLong();
+
+		if (payloadLength != mapped.capacity() - HEADER_SIZE)
+			throw new SnapshotException("Truncated snapshot");
+
+		mapped.position(HEADER_SIZE);
+		payload = mapped.slice();
+	}
+
+	/**
+	 * Verifies the checksum of the payload. This reads the entire snapshot.
+	 *
+	 * @throws SnapshotException if the checksum doesn't match.
+	 */
+	public void verify() throws SnapshotException
+	{
+		/* Java 7's CRC32 cannot consume buffers directly */
+		CRC32 crc = new CRC32();
+		byte [] buf = new byte[1 << 16];
+		ByteBuffer dup = payload.duplicate();
+		while (dup.hasRemaining())
+		{
+			int len = Math.min(buf.length, dup.remaining());
+			dup.get(buf, 0, len);
+			crc.update(buf, 0, len);
+		}
+		if (crc.getValue() != checksum)
+			throw new SnapshotException("Checksum mismatch");
+	}
+
+	/**
+	 * Determine the CRC32 of the first bytes of the given file.
+	 *
+	 * @param source the file.
+	 * @return the checksum.
+	 * @throws IOException
+	 */
+	static long getHeadChecksum(File source) throws IOException
+	{
+		return getChecksum(source, HEAD_SIZE);
+	}
+
+	/**
+	 * Determine the CRC32 of the contents of the given file.
+	 *
+	 * @param source the file.
+	 * @return the checksum.
+	 * @throws IOException
+	 */
+	static long getChecksum(File source) throws IOException
+	{
+		return getChecksum(source, Long.MAX_VALUE);
+	}
+
+	private static long getChecksum(File source, long max) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		byte [] buf = new byte[1 << 16];
+		FileInputStream in = new FileInputStream(source);
+		try
+		{
+			long remaining = max;
+			int len;
+			while (remaining > 0 && (len = in.read(buf, 0, (int)Math.min(buf.length, remaining))) > 0)
+			{
+				crc.update(buf, 0, len);
+				remaining -= len;
+			}
+		} finally
+		{
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns whether the snapshot has been written from the given source in
+	 * its current state. The size and the modification time of the source
+	 * as well as the checksum of its first bytes must match.
+	 *
+	 * @param source the source, e.g., the OBO file.
+	 * @return whether the snapshot matches the source.
+	 * @throws IOException if the source cannot be read.
+	 */
+	public boolean isUpToDate(File source) throws IOException
+	{
+		return isUpToDate(source, false);
+	}
+
+	/**
+	 * Returns whether the snapshot has been written from the given source in
+	 * its current state.
+	 *
+	 * @param source the source, e.g., the OBO file.
+	 * @param verifyContents whether the checksum of the entire source should
+	 *  be compared as well, which requires to read the entire source.
+	 * @return whether the snapshot matches the source.
+	 * @throws IOException if the source cannot be read.
+	 */
+	public boolean isUpToDate(File source, boolean verifyContents) throws IOException
+	{
+		if (source.length() != sourceLength || source.lastModified() != sourceLastModified)
+			return false;
+		if (getHeadChecksum(source) != sourceHeadChecksum)
+			return false;
+		return !verifyContents || getChecksum(source) == sourceChecksum;
+	}
+
+	protected long getLong()
+	{
+		return ((long)ints.get() << 32) | (ints.get() & 0xffffffffL);
+	}
+
+	/**
+	 * Decode the string of the given index if that hasn't happened yet.
+	 */
+	private ByteString getString(int idx)
+	{
+		ByteString str = strings[idx];
+		if (str == null)
+		{
+			int start = stringOffsets.get(idx);
+			int len = stringOffsets.get(idx + 1) - start;
+			if (start < 0 || len < 0)
+				throw new IllegalArgumentException("Invalid string offsets");
+			byte [] bytes = new byte[len];
+			ByteBuffer buf = payload.duplicate();
+			buf.position(stringBase + start);
+			buf.get(bytes);
+			str = strings[idx] = new ByteString(bytes);
+		}
+		return str;
+	}
+
+	protected ByteString getString()
+	{
+		int idx = ints.get();
+		if (idx == NONE) return null;
+		return getString(idx);
+	}
+
+	protected String getJavaString()
+	{
+		ByteString str = getString();
+		if (str == null) return null;
+		return str.toString();
+	}
+
+	protected TermID getTermID()
+	{
+		int prefixIdx = ints.get();
+		Prefix prefix = prefixes[prefixIdx];
+		if (prefix == null)
+			prefix = prefixes[prefixIdx] = prefixPool.map(new Prefix(getString(prefixIdx)));
+
+		if (ints.get() == 0)
+			return new TermID(prefix, ints.get());
+
+		/* Non-numeric ids get the integer of the current process */
+		return new TermID(prefix.toString() + ":" + getJavaString(), prefixPool);
+	}
+
+	/**
+	 * Reads the number of the following elements, each of which occupies at
+	 * least one int.
+	 *
+	 * @return the number of elements.
+	 * @throws IllegalArgumentException if the number is negative or exceeds
+	 *  the number of remaining ints.
+	 */
+	protected int getLength()
+	{
+		int n = ints.get();
+		if (n < 0 || n > ints.remaining())
+			throw new IllegalArgumentException("Invalid length");
+		return n;
+	}
+
+	protected int [] getIntArray()
+	{
+		int [] a = new int[getLength()];
+		ints.get(a);
+		return a;
+	}
+
+	/**
+	 * Locate the string table and position the int array. Must be called
+	 * before any other get method. The strings themselves are decoded when
+	 * they are first accessed.
+	 */
+	protected void decodeStrings()
+	{
+		ByteBuffer buf = payload.duplicate();
+		int numStrings = buf.getInt();
+		if (numStrings < 0)
+			throw new IllegalArgumentException("Invalid number of strings");
+		stringOffsets = buf.slice().asIntBuffer();
+		stringOffsets.limit(numStrings + 1);
+		buf.position(buf.position() + (numStrings + 1) * 4);
+
+		stringBase = buf.position();
+		strings = new ByteString[numStrings];
+		prefixes = new Prefix[numStrings];
+
+		/* The int array starts after the padded bytes */
+		buf.position(stringBase + ((stringOffsets.get(numStrings) + 3) & ~3));
+		int numInts = buf.getInt();
+		ints = buf.slice().asIntBuffer();
+		ints.limit(numInts);
+	}
+}
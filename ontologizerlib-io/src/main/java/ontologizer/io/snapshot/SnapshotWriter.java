@@ -0,0 +1,230 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.io.snapshot.SnapshotReader.HEADER_SIZE;
+import static ontologizer.io.snapshot.SnapshotReader.NONE;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+/**
+ * Base class of the snapshot writers. A snapshot file consists of a
+ * fixed-size header followed by the payload. The header contains a magic,
+ * the format version, the size and modification time of the source file, the
+ * CRC32 checksums of the first 64 KiB and of the entire source file, the
+ * length of the payload and the CRC32 checksum of the payload. The payload
+ * consists of a string table followed by a flat array of big-endian ints.
+ * Subclasses encode their contents into the string table and the int array.
+ *
+ * @see SnapshotReader
+ */
+class SnapshotWriter
+{
+	/** The string table, maps the strings to their index */
+	private HashMap<ByteString,Integer> string2Index = new HashMap<ByteString,Integer>();
+
+	/** The strings in the order of their index */
+	private List<ByteString> strings = new ArrayList<ByteString>();
+
+	/** The int array */
+	private int [] ints = new int[1024];
+
+	/** The number of ints that have been put */
+	private int numInts;
+
+	protected void put(int i)
+	{
+		if (numInts == ints.length)
+			ints = Arrays.copyOf(ints, ints.length * 2);
+		ints[numInts++] = i;
+	}
+
+	protected void put(int [] a)
+	{
+		put(a.length);
+		for (int i : a)
+			put(i);
+	}
+
+	protected void putLong(long l)
+	{
+		put((int)(l >>> 32));
+		put((int)l);
+	}
+
+	protected void putString(ByteString str)
+	{
+		if (str == null)
+		{
+			put(NONE);
+			return;
+		}
+
+		Integer idx = string2Index.get(str);
+		if (idx == null)
+		{
+			idx = strings.size();
+			strings.add(str);
+			string2Index.put(str, idx);
+		}
+		put(idx);
+	}
+
+	protected void putString(String str)
+	{
+		putString(str != null ? new ByteString(str) : null);
+	}
+
+	/**
+	 * Put the given term id. The integers of non-numeric ids are only valid
+	 * within the current process, hence for them the original string is put.
+	 *
+	 * @param tid
+	 */
+	protected void putTermID(TermID tid)
+	{
+		putString(tid.getPrefix().getByteString());
+
+		String stringId = tid.getStringId();
+		if (stringId == null)
+		{
+			put(0);
+			put(tid.id);
+		} else
+		{
+			put(1);
+			putString(stringId);
+		}
+	}
+
+	protected void putTermIDs(TermID [] tids)
+	{
+		if (tids == null)
+		{
+			put(NONE);
+			return;
+		}
+		put(tids.length);
+		for (TermID tid : tids)
+			putTermID(tid);
+	}
+
+	/**
+	 * Write the encoded payload to the given stream.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	private void writePayload(DataOutputStream out) throws IOException
+	{
+		/* String table: number, offsets and the padded bytes */
+		out.writeInt(strings.size());
+		int offset = 0;
+		out.writeInt(offset);
+		for (ByteString s : strings)
+		{
+			offset += s.length();
+			out.writeInt(offset);
+		}
+
+		byte [] buf = new byte[4096];
+		for (ByteString s : strings)
+		{
+			if (s.length() > buf.length)
+				buf = new byte[s.length()];
+			s.copyTo(0, s.length(), buf, 0);
+			out.write(buf, 0, s.length());
+		}
+		for (int i=offset;(i & 3) != 0;i++)
+			out.writeByte(0);
+
+		/* Int array */
+		out.writeInt(numInts);
+		for (int i=0;i<numInts;i++)
+			out.writeInt(ints[i]);
+	}
+
+	/**
+	 * Write the encoded contents as a snapshot file.
+	 *
+	 * @param file the file to which the snapshot is written. The file is
+	 *  replaced atomically if the file system supports it.
+	 * @param source the file from which the contents have been created. Its
+	 *  size, modification time and checksums are stored in order to detect
+	 *  stale snapshots. May be null.
+	 * @param magic the magic of the snapshot type.
+	 * @param version the version of the snapshot type.
+	 * @throws IOException
+	 */
+	protected void write(File file, File source, byte [] magic, int version) throws IOException
+	{
+		File absolute = file.getAbsoluteFile();
+		File tmp = File.createTempFile(absolute.getName(), ".tmp", absolute.getParentFile());
+		try
+		{
+			CRC32 crc = new CRC32();
+			long payloadLength;
+
+			FileOutputStream fos = new FileOutputStream(tmp);
+			try
+			{
+				/* Header, the payload length and checksum are filled in later */
+				DataOutputStream header = new DataOutputStream(fos);
+				header.write(magic);
+				header.writeInt(version);
+				header.writeInt(0);
+				header.writeLong(source != null ? source.length() : 0);
+				header.writeLong(source != null ? source.lastModified() : 0);
+				header.writeLong(source != null ? SnapshotReader.getHeadChecksum(source) : 0);
+				header.writeLong(source != null ? SnapshotReader.getChecksum(source) : 0);
+				header.writeLong(0);
+				header.writeLong(0);
+				header.flush();
+
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc), 1 << 16));
+				writePayload(out);
+				out.flush();
+				payloadLength = out.size();
+			} finally
+			{
+				fos.close();
+			}
+
+			RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+			try
+			{
+				raf.seek(HEADER_SIZE - 16);
+				raf.writeLong(payloadLength);
+				raf.writeLong(crc.getValue());
+			} finally
+			{
+				raf.close();
+			}
+
+			try
+			{
+				Files.move(tmp.toPath(), absolute.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e)
+			{
+				Files.move(tmp.toPath(), absolute.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally
+		{
+			tmp.delete();
+		}
+	}
+}
@@ -2,6 +2,7 @@ package ontologizer.io.annotation;
 
 import static ontologizer.types.ByteString.EMPTY;
 import static ontologizer.types.ByteString.b;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.BufferedWriter;
@@ -13,7 +14,10 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -21,8 +25,10 @@ import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import ontologizer.association.AnnotationContext;
 import ontologizer.association.Association;
 import ontologizer.association.AssociationContainer;
+import ontologizer.association.Gene2Associations;
 import ontologizer.io.obo.OBOParser;
 import ontologizer.io.obo.OBOParserException;
 import ontologizer.io.obo.OBOParserFileInput;
@@ -65,6 +71,15 @@ public class AssociationParserTest
 
 		AssociationContainer ac = new AssociationContainer(ap.getAssociations(), ap.getAnnotationMapping());
 		Assert.assertEquals("number of parsed associations", nAssociations, ap.getAssociations().size());
+
+		/* The container built from the columns is the same */
+		AssociationContainer direct = ap.getAssociationContainer();
+		Assert.assertEquals(ac.getNumberOfAssociations(), direct.getNumberOfAssociations());
+		for (Gene2Associations g2a : ac)
+		{
+			if (g2a != null)
+				Assert.assertEquals(g2a.getAssociations(), direct.get(g2a.name()).getAssociations());
+		}
 		Assert.assertEquals("number of parsed synonyms", nSynonyms,ap.getAnnotationMapping().getNumberOfSynonyms());
 		Assert.assertEquals("number of parsed DB objects", nDBObjects,ap.getAnnotationMapping().getSymbols().length);
 		Assert.assertEquals("number of annotated genes", nAnnotatedGenes,ac.getAllAnnotatedGenes().size());
@@ -249,4 +264,55 @@ public class AssociationParserTest
 		AssociationParser ap = new AssociationParser(new OBOParserFileInput(tmp.getAbsolutePath()),new TermContainer(oboParser.getTermMap(), EMPTY, EMPTY));
 		assertEquals(21,ap.getAssociations().size());
 	}
+
+	@Test
+	public void testPipelinedIsIdentical() throws IOException, OBOParserException
+	{
+		OBOParser oboParser = new OBOParser(new OBOParserFileInput(OBO_FILE));
+		oboParser.doParse();
+		TermContainer tc = new TermContainer(oboParser.getTermMap(), EMPTY, EMPTY);
+
+		HashSet<ByteString> names = new HashSet<ByteString>();
+		names.add(b("SRL1"));
+		names.add(b("DDR2"));
+		names.add(b("UFO1"));
+
+		List<String> evidences = new ArrayList<String>();
+		evidences.add("IEA");
+		evidences.add("IDA");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			for (int i=0;i<3;i++)
+			{
+				HashSet<ByteString> n = i == 1 ? names : null;
+				List<String> e = i == 2 ? evidences : null;
+
+				AssociationParser seq = new AssociationParser(new OBOParserFileInput(ASSOCIATION_FILE), tc, n, e, null);
+				AssociationParser par = new AssociationParser(new OBOParserFileInput(ASSOCIATION_FILE), tc, n, e, null, executor);
+				assertEquals(AssociationParser.Type.GAF, par.getFileType());
+
+				List<Association> sa = seq.getAssociations();
+				List<Association> pa = par.getAssociations();
+				assertEquals(sa.size(), pa.size());
+				for (int j=0;j<sa.size();j++)
+				{
+					assertEquals(sa.get(j).getDB_Object(), pa.get(j).getDB_Object());
+					assertEquals(sa.get(j).getObjectSymbol(), pa.get(j).getObjectSymbol());
+					assertEquals(sa.get(j).getTermID(), pa.get(j).getTermID());
+					assertEquals(sa.get(j).getEvidence(), pa.get(j).getEvidence());
+				}
+
+				AnnotationContext sc = seq.getAnnotationMapping();
+				AnnotationContext pc = par.getAnnotationMapping();
+				assertArrayEquals(sc.getSymbols(), pc.getSymbols());
+				assertEquals(sc.getSynonym2Symbol(), pc.getSynonym2Symbol());
+				assertEquals(sc.getDbObjectID2Symbol(), pc.getDbObjectID2Symbol());
+			}
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
 }
@@ -0,0 +1,140 @@
+package ontologizer.io.linescanner;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AbstractMappedByteLineScannerTest
+{
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	static class TestMappedByteLineScanner extends AbstractMappedByteLineScanner
+	{
+		public List<String> lines = new ArrayList<String>();
+		public int abortAfter = -1;
+
+		public TestMappedByteLineScanner(FileChannel fc, int windowSize)
+		{
+			super(fc, windowSize);
+		}
+
+		@Override
+		public boolean newLine(ByteBuffer buf, int start, int len)
+		{
+			byte [] b = new byte[len];
+			buf.position(start);
+			buf.get(b);
+			lines.add(new String(b));
+			return lines.size() != abortAfter;
+		}
+	}
+
+	private File write(String contents) throws IOException
+	{
+		File file = tmpFolder.newFile();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(contents.getBytes());
+		out.close();
+		return file;
+	}
+
+	@Test
+	public void testWindows() throws IOException
+	{
+		StringBuilder str = new StringBuilder();
+		List<String> expected = new ArrayList<String>();
+		for (int i=0;i<1000;i++)
+		{
+			String line = i % 7 == 0 ? "" : "line " + i;
+			expected.add(line);
+			str.append(line);
+			str.append('\n');
+		}
+		expected.add("last");
+		str.append("last");
+
+		RandomAccessFile raf = new RandomAccessFile(write(str.toString()), "r");
+		try
+		{
+			/* A small window forces many remappings */
+			TestMappedByteLineScanner tmbls = new TestMappedByteLineScanner(raf.getChannel(), 16);
+			tmbls.scan();
+			assertEquals(expected, tmbls.lines);
+			assertEquals(str.length(), tmbls.getPosition());
+			assertEquals(str.length(), raf.getChannel().position());
+		} finally
+		{
+			raf.close();
+		}
+	}
+
+	@Test
+	public void testAbort() throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(write("test\ntest2\ntest3\n"), "r");
+		try
+		{
+			TestMappedByteLineScanner tmbls = new TestMappedByteLineScanner(raf.getChannel(), 8);
+			tmbls.abortAfter = 2;
+			tmbls.scan();
+			assertEquals(2, tmbls.lines.size());
+			assertEquals(11, tmbls.getPosition());
+		} finally
+		{
+			raf.close();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testLineExceedsWindow() throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(write("short\nthis line is too long\nshort\n"), "r");
+		try
+		{
+			new TestMappedByteLineScanner(raf.getChannel(), 8).scan();
+		} finally
+		{
+			raf.close();
+		}
+	}
+
+	@Test
+	public void testByteLineScannerWithChannel() throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(write("test\n\ntest2"), "r");
+		try
+		{
+			final List<String> lines = new ArrayList<String>();
+			AbstractByteLineScanner abls = new AbstractByteLineScanner(null, raf.getChannel())
+			{
+				@Override
+				public boolean newLine(byte[] buf, int start, int len)
+				{
+					lines.add(new String(buf, start, len));
+					return true;
+				}
+			};
+			abls.scan();
+
+			assertEquals(3, lines.size());
+			assertEquals("test", lines.get(0));
+			assertEquals("", lines.get(1));
+			assertEquals("test2", lines.get(2));
+		} finally
+		{
+			raf.close();
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package ontologizer.io.obo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -28,12 +30,25 @@ public class OBOParserFileInputTest
 		out.println("line4");
 		out.close();
 
-		IParserInput input = new OBOParserFileInput(outFile.getAbsolutePath());
+		IFileParserInput input = new OBOParserFileInput(outFile.getAbsolutePath());
 		BufferedReader in = new BufferedReader(new InputStreamReader(input.inputStream()));
 		assertEquals("line1", in.readLine());
 		assertEquals("line2", in.readLine());
 		assertEquals("line3", in.readLine());
 		assertEquals("line4", in.readLine());
 
+		assertEquals(outFile.length(), input.getLongSize());
+		assertEquals(outFile.length(), input.getSize());
+		assertNotNull(input.getChannel());
+		input.close();
+	}
+
+	@Test
+	public void testCompressedIsNotMappable() throws IOException
+	{
+		IFileParserInput input = new OBOParserFileInput(OBOParserTest.GOtermsOBOFile);
+		assertNull(input.getChannel());
+		assertEquals(new File(OBOParserTest.GOtermsOBOFile).length(), input.getLongSize());
+		input.close();
 	}
 }
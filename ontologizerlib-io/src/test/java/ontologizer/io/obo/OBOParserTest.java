@@ -1,20 +1,28 @@
 package ontologizer.io.obo;
 
 import static ontologizer.types.ByteString.b;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import ontologizer.ontology.ParentTermID;
 import ontologizer.ontology.Term;
 import ontologizer.ontology.TermID;
 import ontologizer.ontology.TermRelation;
@@ -405,4 +413,257 @@ public class OBOParserTest
 		assertEquals(1, terms.size());
 	}
 
+	/**
+	 * Asserts that both parsers got the same terms in the same order.
+	 */
+	private static void assertSameTerms(OBOParser expected, OBOParser actual)
+	{
+		ArrayList<Term> expectedTerms = new ArrayList<Term>(expected.getTermMap());
+		ArrayList<Term> actualTerms = new ArrayList<Term>(actual.getTermMap());
+		assertEquals(expectedTerms.size(), actualTerms.size());
+
+		for (int i=0;i<expectedTerms.size();i++)
+		{
+			Term e = expectedTerms.get(i);
+			Term a = actualTerms.get(i);
+			assertEquals(e.getID(), a.getID());
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getNamespace(), a.getNamespace());
+			assertEquals(e.getDefinition(), a.getDefinition());
+			assertEquals(e.isObsolete(), a.isObsolete());
+			assertArrayEquals(e.getAlternatives(), a.getAlternatives());
+			assertArrayEquals(e.getEquivalents(), a.getEquivalents());
+			assertArrayEquals(e.getSynonyms(), a.getSynonyms());
+			assertArrayEquals(e.getSubsets(), a.getSubsets());
+			assertArrayEquals(e.getXrefs(), a.getXrefs());
+
+			ParentTermID [] ep = e.getParents();
+			ParentTermID [] ap = a.getParents();
+			assertEquals(ep.length, ap.length);
+			for (int j=0;j<ep.length;j++)
+			{
+				assertEquals(ep[j].termid, ap[j].termid);
+				assertEquals(ep[j].relation, ap[j].relation);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelParseIsIdentical() throws IOException, OBOParserException
+	{
+		int options = OBOParser.PARSE_DEFINITIONS | OBOParser.PARSE_XREFS;
+		OBOParser seq = new OBOParser(new OBOParserFileInput(GOtermsOBOFile), options);
+		seq.doParse();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			OBOParser par = new OBOParser(new OBOParserFileInput(GOtermsOBOFile), options);
+			par.doParse(executor);
+
+			assertEquals(nTermCount, par.getTermMap().size());
+			assertEquals(formatVersion,par.getFormatVersion());
+			assertEquals(date,par.getDate());
+			assertEquals(data_version,par.getDataVersion());
+			assertSameTerms(seq, par);
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testMappedParseIsIdentical() throws IOException, OBOParserException
+	{
+		/* Decompress the file, so it gets mapped */
+		File oboFile = tmpFolder.newFile("gene_ontology.obo");
+		GZIPInputStream in = new GZIPInputStream(new FileInputStream(GOtermsOBOFile));
+		FileOutputStream out = new FileOutputStream(oboFile);
+		byte [] buf = new byte[4096];
+		int read;
+		while ((read = in.read(buf)) > 0)
+			out.write(buf, 0, read);
+		in.close();
+		out.close();
+
+		int options = OBOParser.PARSE_DEFINITIONS | OBOParser.PARSE_XREFS;
+		OBOParser compressed = new OBOParser(new OBOParserFileInput(GOtermsOBOFile), options);
+		compressed.doParse();
+
+		OBOParserFileInput input = new OBOParserFileInput(oboFile.getCanonicalPath());
+		assertNotNull(input.getChannel());
+		OBOParser mapped = new OBOParser(input, options);
+		mapped.doParse();
+
+		assertEquals(data_version,mapped.getDataVersion());
+		assertSameTerms(compressed, mapped);
+	}
+
+	@Test
+	public void testParallelParseExceptionLine() throws IOException, OBOParserException
+	{
+		/* Make the file large enough to span several chunks */
+		File tmp = tmpFolder.newFile();
+		PrintWriter pw = new PrintWriter(tmp);
+		int lines = 3;
+		pw.append("format-version: 1.2\nsubsetdef: slim \"Slim\"\n\n");
+		for (int i=0;i<20000;i++)
+		{
+			pw.append("[Term]\nid: GO:" + i + "\nname: term " + i + "\\\n continued\n");
+			lines += 4;
+			if (i > 0)
+			{
+				pw.append("is_a: GO:" + (i / 2) + "\n");
+				lines++;
+			}
+			if (i % 3 == 0)
+			{
+				pw.append("subset: slim\n");
+				lines++;
+			}
+			pw.append("\n");
+			lines++;
+		}
+		pw.append("[Unknown]\nid: GO:4711\n");
+		lines++;
+		pw.close();
+
+		OBOParser seq = new OBOParser(new OBOParserFileInput(tmp.getCanonicalPath()));
+		int expectedLine = -1;
+		try
+		{
+			seq.doParse();
+			assertTrue("Exception asserted", false);
+		} catch (OBOParserException ex)
+		{
+			expectedLine = ex.linenum;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try
+		{
+			OBOParser par = new OBOParser(new OBOParserFileInput(tmp.getCanonicalPath()));
+			par.doParse(executor);
+			assertTrue("Exception asserted", false);
+		} catch (OBOParserException ex)
+		{
+			assertEquals(expectedLine, ex.linenum);
+		} finally
+		{
+			executor.shutdown();
+		}
+		assertEquals(lines, expectedLine);
+	}
+
+	@Test
+	public void testFindLastStanza()
+	{
+		byte [] lf = "[Term]\nid: GO:1\n\n[Term]\nid: GO:2\n".getBytes();
+		assertEquals(17, OBOParser.findLastStanza(lf, lf.length));
+
+		byte [] crlf = "[Term]\r\nid: GO:1\r\n\r\n[Term]\r\nid: GO:2\r\n".getBytes();
+		assertEquals(20, OBOParser.findLastStanza(crlf, crlf.length));
+
+		byte [] continued = "[Term]\r\nname: a\\\r\n[b]\r\n".getBytes();
+		assertEquals(0, OBOParser.findLastStanza(continued, continued.length));
+	}
+
+	@Test
+	public void testParallelParseCRLF() throws IOException, OBOParserException
+	{
+		/* Make the file large enough to span several chunks. Each name is
+		 * continued on a line that starts with a [ */
+		File tmp = tmpFolder.newFile();
+		PrintWriter pw = new PrintWriter(tmp);
+		pw.append("format-version: 1.2\r\n\r\n");
+		for (int i=0;i<20000;i++)
+		{
+			pw.append("[Term]\r\nid: GO:" + i + "\r\nname: term " + i + "\\\r\n[continued]\r\n");
+			if (i > 0)
+				pw.append("is_a: GO:" + (i / 2) + "\r\n");
+			pw.append("\r\n");
+		}
+		pw.close();
+
+		OBOParser seq = new OBOParser(new OBOParserFileInput(tmp.getCanonicalPath()));
+		seq.doParse();
+		assertEquals(20000, seq.getTermMap().size());
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try
+		{
+			OBOParser par = new OBOParser(new OBOParserFileInput(tmp.getCanonicalPath()));
+			par.doParse(executor);
+			assertSameTerms(seq, par);
+
+			for (Term t : par.getTermMap())
+				assertEquals("term " + t.getID().id + "[continued]", t.getName().toString());
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return a representation of i without digits
+	 */
+	private static String letters(int i)
+	{
+		StringBuilder str = new StringBuilder();
+		do
+		{
+			str.append((char)('a' + i % 26));
+			i /= 26;
+		} while (i != 0);
+		return str.toString();
+	}
+
+	@Test
+	public void testParallelParseStringIDs() throws IOException, OBOParserException
+	{
+		/* The integers of ids without an integer part are assigned per
+		 * process, hence use ids that no other test uses. Each id first
+		 * appears as parent of the previous term. */
+		File tmp = tmpFolder.newFile();
+		PrintWriter pw = new PrintWriter(tmp);
+		HashMap<String,Integer> indices = new HashMap<String,Integer>();
+		pw.append("format-version: 1.2\n\n");
+		for (int i=0;i<20000;i++)
+		{
+			indices.put(letters(i), i);
+			pw.append("[Term]\nid: STRINGID:" + letters(i) + "\n");
+			if (i % 2 == 0)
+				pw.append("name: term\n");
+			pw.append("is_a: STRINGID:" + letters(i + 1) + "\n");
+			pw.append("alt_id: STRINGID:alt" + letters(i) + "\n\n");
+		}
+		pw.close();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		OBOParser par = new OBOParser(new OBOParserFileInput(tmp.getCanonicalPath()));
+		try
+		{
+			par.doParse(executor);
+		} finally
+		{
+			executor.shutdown();
+		}
+		assertEquals(20000, par.getTermMap().size());
+
+		/* The integers decrease in the order in which the ids appear */
+		int first = new TermID("STRINGID:" + letters(0)).id;
+		for (Term t : par.getTermMap())
+		{
+			int i = indices.get(t.getID().getStringId());
+			assertEquals(first - (i == 0 ? 0 : 2 * i - 1), t.getID().id);
+			assertEquals(first - 2 * i - 1, t.getParents()[0].termid.id);
+			assertEquals(first - 2 * i - 2, t.getAlternatives()[0].id);
+			if (i % 2 != 0)
+				assertEquals(t.getID().toByteString(), t.getName());
+		}
+
+		OBOParser seq = new OBOParser(new OBOParserFileInput(tmp.getCanonicalPath()));
+		seq.doParse();
+		assertSameTerms(seq, par);
+	}
 }
@@ -4,8 +4,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -18,6 +24,7 @@ import ontologizer.ontology.Subset;
 import ontologizer.ontology.Term;
 import ontologizer.ontology.TermContainer;
 import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermRelation;
 import ontologizer.types.ByteString;
 import ontologizer.ontology.Ontology.GOLevels;
 import ontologizer.ontology.Ontology.IVisitingGOVertex;
@@ -78,6 +85,40 @@ public class OntologyTest
 				new TermID("GO:0006139")));
 	}
 
+	@Test
+	public void testExistsPathWithReachabilityIndex()
+	{
+		assertTrue(graph.createReachabilityIndex());
+		assertTrue(graph.hasReachabilityIndex());
+		testExistsPath();
+		assertTrue(graph.getSlimGraphView().getReachabilityIndex() != null);
+	}
+
+	private static byte [] serialize(Object o) throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(o);
+		oos.close();
+		return bos.toByteArray();
+	}
+
+	@Test
+	public void testReachabilityIndexIsNotSerialized() throws Exception
+	{
+		int size = serialize(graph).length;
+		assertTrue(graph.createReachabilityIndex());
+		byte [] bytes = serialize(graph);
+		assertTrue(bytes.length < size + 64);
+
+		/* The index is rebuilt on demand */
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		graph = (Ontology)ois.readObject();
+		ois.close();
+		assertTrue(graph.hasReachabilityIndex());
+		testExistsPath();
+	}
+
 	@Test
 	public void testWalkToRoot()
 	{
@@ -127,6 +168,38 @@ public class OntologyTest
 		assertEquals(19,vistingGOVertex.getCount());
 	}
 
+	@Test
+	public void testWalkToSourceWithRelations()
+	{
+		final Set<Term> all = new HashSet<Term>();
+		final Set<Term> isA = new HashSet<Term>();
+		Collection<TermID> start = Arrays.asList(new TermID("GO:0006281"));
+
+		graph.walkToSource(start, new IVisitingGOVertex()
+		{
+			@Override
+			public boolean visited(Term term)
+			{
+				all.add(term);
+				return true;
+			}
+		});
+		graph.walkToSource(start, new IVisitingGOVertex()
+		{
+			@Override
+			public boolean visited(Term term)
+			{
+				isA.add(term);
+				return true;
+			}
+		}, EnumSet.of(TermRelation.IS_A, TermRelation.UNKOWN));
+
+		assertEquals(19, all.size());
+		assertTrue(all.containsAll(isA));
+		assertTrue(isA.contains(graph.getRootTerm()));
+		assertTrue(graph.getFrozenGraph() == graph.getFrozenGraph());
+	}
+
 	/**
 	 * Return a termid collection from strings.
 	 *
@@ -0,0 +1,148 @@
+package ontologizer.io.obo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+
+public class ParserInputProgressTest
+{
+	private static class SizedInput implements IFileParserInput
+	{
+		private long size;
+		private long position;
+
+		public SizedInput(long size, long position)
+		{
+			this.size = size;
+			this.position = position;
+		}
+
+		@Override
+		public InputStream inputStream()
+		{
+			return null;
+		}
+
+		@Override
+		public void close()
+		{
+		}
+
+		@Override
+		public int getSize()
+		{
+			return size > Integer.MAX_VALUE ? -1 : (int)size;
+		}
+
+		@Override
+		public int getPosition()
+		{
+			return position > Integer.MAX_VALUE ? -1 : (int)position;
+		}
+
+		@Override
+		public long getLongSize()
+		{
+			return size;
+		}
+
+		@Override
+		public long getLongPosition()
+		{
+			return position;
+		}
+
+		@Override
+		public FileChannel getChannel()
+		{
+			return null;
+		}
+
+		@Override
+		public String getFilename()
+		{
+			return null;
+		}
+	}
+
+	@Test
+	public void testSmallInputIsUnchanged()
+	{
+		IParserInput input = new SizedInput(Integer.MAX_VALUE, 12345);
+		assertEquals(Integer.MAX_VALUE, ParserInputProgress.size(input));
+		assertEquals(12345, ParserInputProgress.position(input));
+	}
+
+	@Test
+	public void testLargeInputIsScaled()
+	{
+		long size = 5L * 1024 * 1024 * 1024;
+		IParserInput input = new SizedInput(size, size / 2);
+		int scaledSize = ParserInputProgress.size(input);
+		int scaledPosition = ParserInputProgress.position(input);
+		assertTrue(scaledSize > 0);
+		assertEquals(size >> 2, scaledSize);
+		assertEquals(scaledSize / 2, scaledPosition);
+
+		input = new SizedInput(size, size);
+		assertEquals(scaledSize, ParserInputProgress.position(input));
+
+		input = new SizedInput(Long.MAX_VALUE, Long.MAX_VALUE);
+		assertEquals(Integer.MAX_VALUE, ParserInputProgress.size(input));
+		assertEquals(Integer.MAX_VALUE, ParserInputProgress.position(input));
+	}
+
+	@Test
+	public void testPlainInput()
+	{
+		/* Inputs that only implement IParserInput report their int values */
+		IParserInput input = new IParserInput()
+		{
+			@Override
+			public InputStream inputStream()
+			{
+				return null;
+			}
+
+			@Override
+			public void close()
+			{
+			}
+
+			@Override
+			public int getSize()
+			{
+				return 100;
+			}
+
+			@Override
+			public int getPosition()
+			{
+				return 50;
+			}
+
+			@Override
+			public String getFilename()
+			{
+				return null;
+			}
+		};
+		assertEquals(100, ParserInputProgress.size(input));
+		assertEquals(50, ParserInputProgress.position(input));
+	}
+
+	@Test
+	public void testUnknown()
+	{
+		IParserInput input = new SizedInput(-1, -1);
+		assertEquals(-1, ParserInputProgress.size(input));
+		assertEquals(-1, ParserInputProgress.position(input));
+
+		input = new SizedInput(-1, 100);
+		assertEquals(100, ParserInputProgress.position(input));
+	}
+}
@@ -0,0 +1,209 @@
+package ontologizer.io.snapshot;
+
+import static ontologizer.types.ByteString.EMPTY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.Association;
+import ontologizer.association.AssociationContainer;
+import ontologizer.association.Gene2Associations;
+import ontologizer.io.obo.OBOParser;
+import ontologizer.io.obo.OBOParserFileInput;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermRelation;
+import ontologizer.types.ByteString;
+
+public class AnnotationSnapshotTest
+{
+	private static TermContainer terms;
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() throws Exception
+	{
+		String oboFilename = AnnotationSnapshotTest.class.getClassLoader().getResource("gene_ontology.1_2.obo.gz").getPath();
+		OBOParser oboParser = new OBOParser(new OBOParserFileInput(oboFilename));
+		oboParser.doParse();
+		terms = new TermContainer(oboParser.getTermMap(), EMPTY, EMPTY);
+	}
+
+	private File copyAssociationFile() throws Exception
+	{
+		File file = tmpFolder.newFile("gene_association.sgd.gz");
+		InputStream is = AnnotationSnapshotTest.class.getClassLoader().getResourceAsStream("gene_association.sgd.gz");
+		try
+		{
+			Files.copy(is, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally
+		{
+			is.close();
+		}
+		return file;
+	}
+
+	private static void assertContainersEqual(AssociationContainer expected, AssociationContainer actual)
+	{
+		AnnotationContext em = expected.getMapping();
+		AnnotationContext am = actual.getMapping();
+		assertArrayEquals(em.getSymbols(), am.getSymbols());
+		assertArrayEquals(em.getObjectIds(), am.getObjectIds());
+		assertEquals(em.getSynonym2Symbol(), am.getSynonym2Symbol());
+		assertEquals(em.getDbObjectID2Symbol(), am.getDbObjectID2Symbol());
+		assertEquals(expected.getNumberOfAssociations(), actual.getNumberOfAssociations());
+		assertEquals(expected.getAllEvidenceCodes(), actual.getAllEvidenceCodes());
+
+		Iterator<Gene2Associations> ai = actual.iterator();
+		for (Gene2Associations eg : expected)
+		{
+			Gene2Associations ag = ai.next();
+			if (eg == null)
+			{
+				assertEquals(null, ag);
+				continue;
+			}
+			assertEquals(eg.name(), ag.name());
+
+			Iterator<Association> aai = ag.iterator();
+			for (Association ea : eg)
+			{
+				Association aa = aai.next();
+				assertEquals(ea.getDB_Object(), aa.getDB_Object());
+				assertEquals(ea.getObjectSymbol(), aa.getObjectSymbol());
+				assertEquals(ea.getSynonym(), aa.getSynonym());
+				assertEquals(ea.getEvidence(), aa.getEvidence());
+				assertEquals(ea.getAspect(), aa.getAspect());
+				assertEquals(ea.getTermID(), aa.getTermID());
+				assertEquals(ea.hasNotQualifier(), aa.hasNotQualifier());
+			}
+			assertFalse(aai.hasNext());
+		}
+		assertFalse(ai.hasNext());
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		File associationFile = copyAssociationFile();
+		File snapshotFile = new File(tmpFolder.getRoot(), "gene_association.snapshot");
+
+		AssociationContainer parsed = AnnotationSnapshot.load(associationFile.getAbsolutePath(), terms, null, snapshotFile.getAbsolutePath());
+		assertTrue(snapshotFile.exists());
+
+		AnnotationSnapshotReader reader = new AnnotationSnapshotReader(snapshotFile);
+		assertTrue(reader.isUpToDate(associationFile, terms, null));
+		assertContainersEqual(parsed, reader.read());
+
+		/* Reading twice must work */
+		assertContainersEqual(parsed, reader.read());
+
+		/* Also via load() */
+		AssociationContainer loaded = AnnotationSnapshot.load(associationFile.getAbsolutePath(), terms, null, snapshotFile.getAbsolutePath());
+		assertContainersEqual(parsed, loaded);
+		assertEquals(parsed.get(new ByteString("SRL1")).getAssociations(), loaded.get(new ByteString("SRL1")).getAssociations());
+	}
+
+	@Test
+	public void testEvidenceFilterIsPartOfKey() throws Exception
+	{
+		File associationFile = copyAssociationFile();
+		File snapshotFile = new File(tmpFolder.getRoot(), "gene_association.snapshot");
+		List<String> evidences = Arrays.asList("IDA", "IMP");
+
+		AnnotationSnapshot.load(associationFile.getAbsolutePath(), terms, null, snapshotFile.getAbsolutePath());
+		assertFalse(new AnnotationSnapshotReader(snapshotFile).isUpToDate(associationFile, terms, evidences));
+
+		AssociationContainer filtered = AnnotationSnapshot.load(associationFile.getAbsolutePath(), terms, evidences, snapshotFile.getAbsolutePath());
+		assertEquals(2, filtered.getAllEvidenceCodes().size());
+
+		/* The order of the evidence codes doesn't matter */
+		AnnotationSnapshotReader reader = new AnnotationSnapshotReader(snapshotFile);
+		assertTrue(reader.isUpToDate(associationFile, terms, Arrays.asList("IMP", "IDA")));
+		assertFalse(reader.isUpToDate(associationFile, terms, null));
+		assertContainersEqual(filtered, reader.read());
+	}
+
+	@Test
+	public void testChangedContentsAreDetected() throws Exception
+	{
+		File associationFile = copyAssociationFile();
+		File snapshotFile = new File(tmpFolder.getRoot(), "gene_association.snapshot");
+		AnnotationSnapshot.load(associationFile.getAbsolutePath(), terms, null, snapshotFile.getAbsolutePath());
+
+		/* Flip a byte but keep the size and the modification time */
+		long lastModified = associationFile.lastModified();
+		byte [] contents = Files.readAllBytes(associationFile.toPath());
+		contents[contents.length / 2] ^= 0xff;
+		Files.write(associationFile.toPath(), contents);
+		assertTrue(associationFile.setLastModified(lastModified));
+
+		AnnotationSnapshotReader reader = new AnnotationSnapshotReader(snapshotFile);
+		assertFalse(reader.isUpToDate(associationFile, terms, null, true));
+
+		/* Changes at the beginning are detected without reading the entire file */
+		contents[contents.length / 2] ^= 0xff;
+		contents[10] ^= 0xff;
+		Files.write(associationFile.toPath(), contents);
+		assertTrue(associationFile.setLastModified(lastModified));
+		assertFalse(reader.isUpToDate(associationFile, terms, null));
+	}
+
+	@Test
+	public void testManyEvidenceCodes() throws Exception
+	{
+		/* More distinct evidence codes and aspects than fit into a byte */
+		File associationFile = tmpFolder.newFile("gene_association.many");
+		PrintWriter out = new PrintWriter(associationFile);
+		out.println("!gaf-version: 2.0");
+		for (int i=0;i<300;i++)
+			out.println("DB\tID" + i + "\tG" + i + "\t\tGO:0008150\tPMID:1\tE" + i + "\t\tA" + i + "\tName\t\tgene\ttaxon:1\t20100308\tDB");
+		out.close();
+		File snapshotFile = new File(tmpFolder.getRoot(), "gene_association.snapshot");
+
+		AssociationContainer parsed = AnnotationSnapshot.load(associationFile.getAbsolutePath(), terms, null, snapshotFile.getAbsolutePath());
+		assertEquals(300, parsed.getNumberOfAssociations());
+		assertEquals(300, parsed.getEvidenceCodes().length);
+		assertEquals(new ByteString("E299"), parsed.get(new ByteString("G299")).iterator().next().getEvidence());
+
+		AssociationContainer loaded = new AnnotationSnapshotReader(snapshotFile).read();
+		assertContainersEqual(parsed, loaded);
+		assertEquals(new ByteString("A299"), loaded.get(new ByteString("G299")).iterator().next().getAspect());
+	}
+
+	private static TermContainer createNonNumericTerms()
+	{
+		return new TermContainer(Arrays.asList(new Term("NN:root", "root"), new Term("NN:child", "child", new ParentTermID(new TermID("NN:root"), TermRelation.IS_A))), EMPTY, EMPTY);
+	}
+
+	@Test
+	public void testKeyOfNonNumericIds() throws Exception
+	{
+		String key = AnnotationSnapshot.getKey(createNonNumericTerms(), null);
+
+		/* The ids get other integers, like in a fresh process */
+		new TermID("NN:other");
+		OntologySnapshotTest.forgetStringIds("root", "child");
+		assertEquals(key, AnnotationSnapshot.getKey(createNonNumericTerms(), null));
+	}
+}
@@ -0,0 +1,276 @@
+package ontologizer.io.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermID;
+import sonumina.math.graph.SlimDirectedGraphView;
+
+public class OntologySnapshotTest
+{
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File oboFile;
+
+	private File snapshotFile;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		oboFile = tmpFolder.newFile("gene_ontology.1_2.obo.gz");
+		InputStream is = OntologySnapshotTest.class.getClassLoader().getResourceAsStream("gene_ontology.1_2.obo.gz");
+		try
+		{
+			Files.copy(is, oboFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally
+		{
+			is.close();
+		}
+		snapshotFile = new File(tmpFolder.getRoot(), "gene_ontology.snapshot");
+	}
+
+	private static void assertTermsEqual(Term expected, Term actual)
+	{
+		assertEquals(expected.getID(), actual.getID());
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getDefinition(), actual.getDefinition());
+		assertEquals(expected.getNamespace(), actual.getNamespace());
+		assertEquals(expected.isObsolete(), actual.isObsolete());
+		assertArrayEquals(expected.getAlternatives(), actual.getAlternatives());
+		assertArrayEquals(expected.getEquivalents(), actual.getEquivalents());
+		assertArrayEquals(expected.getSynonyms(), actual.getSynonyms());
+		assertArrayEquals(expected.getSubsets(), actual.getSubsets());
+		assertArrayEquals(expected.getXrefs(), actual.getXrefs());
+		assertArrayEquals(expected.getIntersections(), actual.getIntersections());
+
+		ParentTermID [] ep = expected.getParents();
+		ParentTermID [] ap = actual.getParents();
+		assertEquals(ep.length, ap.length);
+		for (int i=0;i<ep.length;i++)
+		{
+			assertEquals(ep[i].termid, ap[i].termid);
+			assertEquals(ep[i].relation, ap[i].relation);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		assertFalse(snapshotFile.exists());
+		Ontology parsed = OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+		assertTrue(snapshotFile.exists());
+
+		OntologySnapshotReader reader = new OntologySnapshotReader(snapshotFile);
+		assertTrue(reader.isUpToDate(oboFile));
+		Ontology loaded = reader.read();
+
+		int count = 0;
+		for (Term t : parsed.getTermMap())
+		{
+			Term l = loaded.getTerm(t.getID());
+			assertNotNull(l);
+			assertTermsEqual(t, l);
+			count++;
+		}
+		int loadedCount = 0;
+		for (@SuppressWarnings("unused") Term t : loaded.getTermMap())
+			loadedCount++;
+		assertEquals(count, loadedCount);
+
+		assertEquals(parsed.getRootTerm().getID(), loaded.getRootTerm().getID());
+		assertEquals(parsed.getNumberOfTerms(), loaded.getNumberOfTerms());
+
+		SlimDirectedGraphView<Term> ps = parsed.getSlimGraphView();
+		SlimDirectedGraphView<Term> ls = loaded.getSlimGraphView();
+		for (int i=0;i<ps.getNumberOfVertices();i++)
+		{
+			assertEquals(ps.getVertex(i).getID(), ls.getVertex(i).getID());
+			assertArrayEquals(ps.vertexAncestors[i], ls.vertexAncestors[i]);
+			assertArrayEquals(ps.vertexDescendants[i], ls.vertexDescendants[i]);
+		}
+	}
+
+	@Test
+	public void testStaleSnapshotIsReplaced() throws Exception
+	{
+		OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+		assertTrue(oboFile.setLastModified(oboFile.lastModified() - 10000));
+		assertFalse(new OntologySnapshotReader(snapshotFile).isUpToDate(oboFile));
+
+		Ontology ontology = OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+		assertNotNull(ontology);
+		assertTrue(new OntologySnapshotReader(snapshotFile).isUpToDate(oboFile));
+	}
+
+	@Test
+	public void testCorruptSnapshotIsRejected() throws Exception
+	{
+		OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+
+		RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw");
+		try
+		{
+			raf.seek(raf.length() - 1);
+			int b = raf.read();
+			raf.seek(raf.length() - 1);
+			raf.write(b ^ 0xff);
+		} finally
+		{
+			raf.close();
+		}
+
+		try
+		{
+			new OntologySnapshotReader(snapshotFile).verify();
+			fail("Expected an SnapshotException");
+		} catch (SnapshotException e)
+		{
+		}
+
+		/* Falls back to the OBO file */
+		assertNotNull(OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath(), true));
+		new OntologySnapshotReader(snapshotFile).verify();
+	}
+
+	@Test
+	public void testCorruptLengthIsRejected() throws Exception
+	{
+		Ontology parsed = OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+
+		/* The topological order is the last int array of the snapshot */
+		long lengthPos = snapshotFile.length() - 4L * (parsed.getCSRGraphView().getNumberOfVertices() + 1);
+		for (int length : new int[]{-2, Integer.MAX_VALUE})
+		{
+			RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw");
+			try
+			{
+				raf.seek(lengthPos);
+				raf.writeInt(length);
+			} finally
+			{
+				raf.close();
+			}
+
+			try
+			{
+				new OntologySnapshotReader(snapshotFile).read();
+				fail("Expected an SnapshotException");
+			} catch (SnapshotException e)
+			{
+			}
+
+			/* Falls back to the OBO file without verifying the checksum */
+			Ontology ontology = OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+			assertEquals(parsed.getNumberOfTerms(), ontology.getNumberOfTerms());
+			new OntologySnapshotReader(snapshotFile).verify();
+		}
+	}
+
+	@Test
+	public void testChangedContentsAreDetected() throws Exception
+	{
+		OntologySnapshot.load(oboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+		long lastModified = oboFile.lastModified();
+
+		RandomAccessFile raf = new RandomAccessFile(oboFile, "rw");
+		try
+		{
+			raf.seek(100);
+			int b = raf.read();
+			raf.seek(100);
+			raf.write(b ^ 0xff);
+		} finally
+		{
+			raf.close();
+		}
+		assertTrue(oboFile.setLastModified(lastModified));
+		assertFalse(new OntologySnapshotReader(snapshotFile).isUpToDate(oboFile));
+	}
+
+	/**
+	 * Removes the given non-numeric ids from the static maps of TermID so
+	 * that they get new integers, like in a fresh process.
+	 */
+	@SuppressWarnings("unchecked")
+	static void forgetStringIds(String...ids) throws Exception
+	{
+		Field s2i = TermID.class.getDeclaredField("string2id");
+		Field i2s = TermID.class.getDeclaredField("id2string");
+		s2i.setAccessible(true);
+		i2s.setAccessible(true);
+		synchronized (TermID.class)
+		{
+			for (String id : ids)
+			{
+				Integer i = ((HashMap<String,Integer>)s2i.get(null)).remove(id);
+				((HashMap<Integer,String>)i2s.get(null)).remove(i);
+			}
+		}
+	}
+
+	@Test
+	public void testNonNumericIds() throws Exception
+	{
+		File nonNumericOboFile = tmpFolder.newFile("non_numeric.obo");
+		PrintWriter pw = new PrintWriter(nonNumericOboFile, "UTF-8");
+		try
+		{
+			pw.println("format-version: 1.2");
+			pw.println();
+			pw.println("[Term]");
+			pw.println("id: NN:root");
+			pw.println("name: root");
+			pw.println();
+			pw.println("[Term]");
+			pw.println("id: NN:child");
+			pw.println("name: child");
+			pw.println("is_a: NN:root");
+			pw.println();
+			pw.println("[Term]");
+			pw.println("id: NN:0000003");
+			pw.println("name: numeric");
+			pw.println("is_a: NN:child");
+		} finally
+		{
+			pw.close();
+		}
+
+		OntologySnapshot.load(nonNumericOboFile.getAbsolutePath(), snapshotFile.getAbsolutePath());
+		int oldChildId = new TermID("NN:child").id;
+
+		forgetStringIds("root", "child");
+		assertTrue(new TermID("NN:child").id != oldChildId);
+
+		OntologySnapshotReader reader = new OntologySnapshotReader(snapshotFile);
+		assertTrue(reader.isUpToDate(nonNumericOboFile));
+		Ontology loaded = reader.read();
+		assertEquals("root", loaded.getTerm(new TermID("NN:root")).getName().toString());
+		assertEquals("child", loaded.getTerm(new TermID("NN:child")).getName().toString());
+		assertEquals("numeric", loaded.getTerm(new TermID("NN:0000003")).getName().toString());
+		assertEquals(new TermID("NN:child"), loaded.getTerm(new TermID("NN:0000003")).getParents()[0].termid);
+		assertEquals(new TermID("NN:root"), loaded.getRootTerm().getID());
+	}
+}